@@ -0,0 +1,296 @@
+package com.github.unaimillan.rars;
+
+import com.github.unaimillan.rars.assembler.Symbol;
+import com.github.unaimillan.rars.assembler.SymbolTable;
+import com.github.unaimillan.rars.riscv.InstructionSet;
+import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
+import com.github.unaimillan.rars.riscv.hardware.MemoryConfigurations;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * A directory of assembled program images, so that assembling sources that have not changed since the last
+ * time skips the tokenizer and the assembler.
+ * <p>
+ * Images are keyed by a SHA-256 hash of the source files (names and contents, in order), the RARS version,
+ * the register width, whether pseudo instructions are allowed and warnings are errors, and the memory
+ * configuration.  Files pulled in with .include are not known until the sources are tokenized, so each image
+ * records their hashes and is only used if they still match.  An image holds the text segment statements
+ * (machine code with their source lines), the data pages, the global symbols, the labels local to the lead
+ * file and any warnings, which are reported again on every hit.
+ * <p>
+ * Images are written to a temporary file and moved into place, so several processes may share a directory.
+ * A cache that cannot be read or written is treated as a miss; failed assemblies are not cached.
+ */
+public class AssemblyCache {
+    private static final int FORMAT = 1;
+
+    private final File directory;
+
+    /**
+     * @param directory where to keep the images; it is created when the first image is saved
+     */
+    public AssemblyCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Does the work of {@link RISCVprogram#prepareFilesForAssembly} followed by
+     * {@link RISCVprogram#assemble(ArrayList, boolean, boolean)}, unless an image of the same sources is
+     * cached, in which case the image is loaded into the current memory and symbol tables instead.
+     *
+     * @param program                  the lead program, which receives the assembled statements
+     * @param filenames                the source files to assemble
+     * @param leadFilename             the file among them that program stands for
+     * @param extendedAssemblerEnabled whether pseudo instructions are permitted
+     * @param warningsAreErrors        whether assembler warnings are treated as errors
+     * @return the warnings from assembling the sources, possibly in an earlier run
+     * @throws AssemblyException if the sources do not assemble
+     */
+    public ErrorList assemble(RISCVprogram program, ArrayList<String> filenames, String leadFilename,
+                              boolean extendedAssemblerEnabled, boolean warningsAreErrors) throws AssemblyException {
+        String key;
+        try {
+            key = key(filenames, leadFilename, extendedAssemblerEnabled, warningsAreErrors);
+        } catch (IOException e) {
+            // Let the tokenizer report the unreadable file
+            key = null;
+        }
+        File image = key == null ? null : new File(directory, key + ".img");
+        if (image != null && image.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(image)))) {
+                ErrorList warnings = load(in, program, leadFilename);
+                if (warnings != null) return warnings;
+            } catch (IOException e) {
+                // Unreadable or stale image; assemble and replace it
+            }
+        }
+
+        ArrayList<RISCVprogram> programs = program.prepareFilesForAssembly(filenames, leadFilename, null);
+        ErrorList warnings = program.assemble(programs, extendedAssemblerEnabled, warningsAreErrors);
+        if (image != null) {
+            try {
+                save(image, programs, program, warnings);
+            } catch (IOException e) {
+                // The cache is only an optimization
+            }
+        }
+        return warnings;
+    }
+
+    private static String key(ArrayList<String> filenames, String leadFilename, boolean extendedAssemblerEnabled,
+                              boolean warningsAreErrors) throws IOException {
+        MessageDigest digest = sha256();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(FORMAT);
+        out.writeUTF(Globals.version);
+        out.writeBoolean(InstructionSet.rv64);
+        out.writeBoolean(extendedAssemblerEnabled);
+        out.writeBoolean(warningsAreErrors);
+        out.writeUTF(MemoryConfigurations.getCurrentConfiguration().getConfigurationIdentifier());
+        out.writeUTF(leadFilename);
+        for (String filename : filenames) {
+            byte[] contents = Files.readAllBytes(new File(filename).toPath());
+            out.writeUTF(filename);
+            out.writeInt(contents.length);
+            out.write(contents);
+        }
+        out.flush();
+        return hex(digest.digest(bytes.toByteArray()));
+    }
+
+    // Returns null if the image no longer matches the included files
+    private static ErrorList load(DataInputStream in, RISCVprogram program, String leadFilename) throws IOException {
+        if (in.readInt() != FORMAT) return null;
+        for (int count = in.readInt(); count > 0; count--) {
+            String filename = in.readUTF();
+            byte[] expected = new byte[32];
+            in.readFully(expected);
+            File file = new File(filename);
+            if (!file.isFile() || !Arrays.equals(expected, sha256().digest(Files.readAllBytes(file.toPath())))) {
+                return null;
+            }
+        }
+
+        // Source files, indexed by the statements; the lead file is always first
+        int fileCount = in.readInt();
+        RISCVprogram[] sources = new RISCVprogram[fileCount];
+        for (int i = 0; i < fileCount; i++) {
+            String filename = in.readUTF();
+            sources[i] = i == 0 ? program : new RISCVprogram(filename);
+        }
+        ErrorList warnings = new ErrorList();
+        for (int count = in.readInt(); count > 0; count--) {
+            warnings.add(new ErrorMessage(ErrorMessage.WARNING, in.readUTF(), in.readInt(), in.readInt(),
+                    in.readUTF(), in.readUTF()));
+        }
+        ArrayList<Symbol> globals = readSymbols(in);
+        ArrayList<Symbol> locals = readSymbols(in);
+        int statementCount = in.readInt();
+        ArrayList<ProgramStatement> machineList = new ArrayList<>(statementCount);
+        for (int i = 0; i < statementCount; i++) {
+            int address = in.readInt();
+            int binary = in.readInt();
+            int sourceLine = in.readInt();
+            int file = in.readInt();
+            String source = readNullable(in);
+            ProgramStatement statement = new ProgramStatement(file < 0 ? null : sources[file], source == null ? "" : source,
+                    sourceLine, binary, address);
+            statement.setBasicAssemblyStatement(readNullable(in));
+            statement.setMachineStatement(readNullable(in));
+            machineList.add(statement);
+        }
+
+        // Everything is read except the pages; from here on the image replaces the current assembly
+        Memory memory = Memory.getInstance();
+        memory.clear();
+        memory.readPages(in);
+        try {
+            for (ProgramStatement statement : machineList) {
+                memory.setStatement(statement.getAddress(), statement);
+            }
+        } catch (AddressErrorException e) {
+            throw new IOException("statement outside the text segment", e);
+        }
+        Globals.symbolTable.clear();
+        for (Symbol symbol : globals) {
+            Globals.symbolTable.addSymbol(symbol.getName(), symbol.getAddress(), symbol.getType());
+        }
+        SymbolTable localSymbolTable = new SymbolTable(leadFilename);
+        for (Symbol symbol : locals) {
+            localSymbolTable.addSymbol(symbol.getName(), symbol.getAddress(), symbol.getType());
+        }
+        program.restoreAssembled(leadFilename, machineList, localSymbolTable);
+        return warnings;
+    }
+
+    private void save(File image, ArrayList<RISCVprogram> programs, RISCVprogram program, ErrorList warnings)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(FORMAT);
+
+        // Every file the tokenizer opened, including any that added no lines
+        TreeSet<String> included = new TreeSet<>();
+        for (RISCVprogram source : programs) {
+            if (source.getIncludedFiles() != null) {
+                included.addAll(source.getIncludedFiles());
+            }
+        }
+        out.writeInt(included.size());
+        for (String filename : included) {
+            out.writeUTF(filename);
+            out.write(sha256().digest(Files.readAllBytes(new File(filename).toPath())));
+        }
+
+        IdentityHashMap<RISCVprogram, Integer> sources = new IdentityHashMap<>();
+        ArrayList<String> sourceNames = new ArrayList<>();
+        sources.put(program, 0);
+        sourceNames.add(program.getFilename());
+        ArrayList<ProgramStatement> machineList = program.getMachineList();
+        for (ProgramStatement statement : machineList) {
+            RISCVprogram source = statement.getSourceProgram();
+            if (source != null && !sources.containsKey(source)) {
+                sources.put(source, sourceNames.size());
+                sourceNames.add(source.getFilename());
+            }
+        }
+        out.writeInt(sourceNames.size());
+        for (String name : sourceNames) {
+            out.writeUTF(name);
+        }
+
+        ArrayList<ErrorMessage> messages = warnings == null ? new ArrayList<>() : warnings.getErrorMessages();
+        out.writeInt(messages.size());
+        for (ErrorMessage message : messages) {
+            String history = message.getMacroExpansionHistory();
+            out.writeUTF(message.getFilename());
+            out.writeInt(message.getLine());
+            out.writeInt(message.getPosition());
+            out.writeUTF(message.getMessage());
+            out.writeUTF(history.endsWith("->") ? history.substring(0, history.length() - 2) : history);
+        }
+        writeSymbols(out, Globals.symbolTable.getAllSymbols());
+        writeSymbols(out, program.getLocalSymbolTable().getAllSymbols());
+        out.writeInt(machineList.size());
+        for (ProgramStatement statement : machineList) {
+            RISCVprogram source = statement.getSourceProgram();
+            out.writeInt(statement.getAddress());
+            out.writeInt(statement.getBinaryStatement());
+            out.writeInt(statement.getSourceLine());
+            out.writeInt(source == null ? -1 : sources.get(source));
+            writeNullable(out, statement.getSource());
+            writeNullable(out, statement.getBasicAssemblyStatement());
+            writeNullable(out, statement.getMachineStatement());
+        }
+        Memory.getInstance().writePages(out);
+        out.flush();
+
+        directory.mkdirs();
+        File temporary = File.createTempFile(image.getName(), ".tmp", directory);
+        try {
+            Files.write(temporary.toPath(), bytes.toByteArray());
+            try {
+                Files.move(temporary.toPath(), image.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(temporary.toPath(), image.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            temporary.delete();
+        }
+    }
+
+    private static void writeSymbols(DataOutputStream out, ArrayList<Symbol> symbols) throws IOException {
+        out.writeInt(symbols.size());
+        for (Symbol symbol : symbols) {
+            out.writeUTF(symbol.getName());
+            out.writeInt(symbol.getAddress());
+            out.writeBoolean(symbol.getType());
+        }
+    }
+
+    private static ArrayList<Symbol> readSymbols(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        ArrayList<Symbol> symbols = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            symbols.add(new Symbol(in.readUTF(), in.readInt(), in.readBoolean()));
+        }
+        return symbols;
+    }
+
+    // Strings longer than writeUTF allows are not worth caching; they are written as null
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        boolean present = value != null && value.getBytes(StandardCharsets.UTF_8).length < 0x8000;
+        out.writeBoolean(present);
+        if (present) out.writeUTF(value);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder text = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            text.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return text.toString();
+    }
+}
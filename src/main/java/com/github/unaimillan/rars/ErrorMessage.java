@@ -107,6 +107,16 @@ public class ErrorMessage {
         this.macroExpansionHistory = getExpansionHistory(sourceProgram);
     }
 
+    // Recreates a message saved by AssemblyCache
+    ErrorMessage(boolean isWarning, String filename, int line, int position, String message, String macroExpansionHistory) {
+        this.isWarning = isWarning;
+        this.filename = filename;
+        this.line = line;
+        this.position = position;
+        this.message = message;
+        this.macroExpansionHistory = macroExpansionHistory;
+    }
+
     /**
      * Constructor for ErrorMessage, to be used for runtime exceptions.
      *
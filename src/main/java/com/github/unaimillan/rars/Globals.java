@@ -181,7 +181,7 @@ public class Globals {
      * Method called once upon system initialization to create the global data structures.
      **/
 
-    public static void initialize() {
+    public static synchronized void initialize() {
         if (!initialized) {
             memory = Memory.getInstance();  //clients can use Memory.getInstance instead of Globals.memory
             symbolTable = new SymbolTable("global");
@@ -1,6 +1,7 @@
 package com.github.unaimillan.rars;
 
 import com.formdev.flatlaf.FlatLightLaf;
+import com.github.unaimillan.rars.api.Batch;
 import com.github.unaimillan.rars.api.Options;
 import com.github.unaimillan.rars.api.Program;
 import com.github.unaimillan.rars.riscv.InstructionSet;
@@ -64,7 +65,9 @@ public class Launch {
      * Valid options (not case sensitive, separate by spaces) are:<br>
      * a  -- assemble only, do not simulate<br>
      * ad  -- both a and d<br>
+     * <tt>ac &lt;dir&gt;</tt>  -- reuse assembled programs cached in directory &lt;dir&gt; when nothing changed<br>
      * ae<n>  -- terminate RARS with integer exit code <n> if an assemble error occurs.<br>
+     * <tt>batch &lt;manifest&gt;</tt>  -- run the jobs listed in &lt;manifest&gt; in parallel and report the results as JSON lines<br>
      * ascii  -- display memory or register contents interpreted as ASCII
      * b  -- brief - do not display register/memory address along with contents<br>
      * d  -- print debugging statements<br>
@@ -91,6 +94,7 @@ public class Launch {
      * se<n>  -- terminate RARS with integer exit code <n> if a simulation (run) error occurs.<br>
      * sm  -- Start execution at Main - Execution will start at program statement globally labeled main.<br>
      * smc  -- Self Modifying Code - Program can write and branch to either text or data segment<br>
+     * vt<n>  -- Virtual Time - time CSR and Time/Sleep syscalls follow a clock advancing 1 ms per <n> instructions<br>
      * we  -- assembler Warnings will be considered Errors<br>
      * <n>  -- where <n> is an integer maximum count of steps to simulate.<br>
      * If 0, negative or not specified, there is no maximum.<br>
@@ -123,6 +127,7 @@ public class Launch {
     private ArrayList<String> registerDisplayList;
     private ArrayList<String> memoryDisplayList;
     private ArrayList<String> filenameList;
+    private String batchManifest; // jobs to run in batch mode, or null
     private int instructionCount;
     private PrintStream out; // stream for display of command line output
     private ArrayList<String[]> dumpTriples = null; // each element holds 3 arguments for dump option
@@ -139,6 +144,7 @@ public class Launch {
 
         options = new Options();
         gui = args.length == 0;
+        batchManifest = null;
         simulate = true;
         displayFormat = HEXADECIMAL;
         verbose = true;
@@ -163,7 +169,11 @@ public class Launch {
             // assure command mode works in headless environment (generates exception if not)
             System.setProperty("java.awt.headless", "true");
             
-            dumpSegments(runCommand());
+            if (batchManifest != null) {
+                runBatch();
+            } else {
+                dumpSegments(runCommand());
+            }
             System.exit(Globals.exitCode);
         }
     }
@@ -301,6 +311,24 @@ public class Launch {
                 }
                 continue;
             }
+            if (args[i].toLowerCase().equals("ac")) {
+                if (args.length <= (i + 1)) {
+                    out.println("Assembly cache command line argument requires a directory name.");
+                    argsOK = false;
+                } else {
+                    options.assemblyCache = args[++i];
+                }
+                continue;
+            }
+            if (args[i].toLowerCase().equals("batch")) {
+                if (args.length <= (i + 1)) {
+                    out.println("Batch command line argument requires a manifest file name.");
+                    argsOK = false;
+                } else {
+                    batchManifest = args[++i];
+                }
+                continue;
+            }
             if (args[i].toLowerCase().equals("mc")) {
                 String configName = args[++i];
                 MemoryConfiguration config = MemoryConfigurations.getConfigurationByName(configName);
@@ -322,6 +350,19 @@ public class Launch {
                     // Let it fall thru and get handled by catch-all
                 }
             }
+            // Run on a virtual clock of <n> instructions per millisecond
+            if (args[i].toLowerCase().indexOf("vt") == 0) {
+                String s = args[i].substring(2);
+                try {
+                    int rate = Integer.decode(s);
+                    if (rate > 0) {
+                        options.instructionsPerMillisecond = rate;
+                        continue;
+                    }
+                } catch (NumberFormatException nfe) {
+                    // Let it fall thru and get handled by catch-all
+                }
+            }
             // Set RARS exit code for simulate error
             if (args[i].toLowerCase().indexOf("se") == 0) {
                 String s = args[i].substring(2);
@@ -517,6 +558,8 @@ public class Launch {
                     assert done == Simulator.Reason.BREAKPOINT : "Internal error: All cases other than breakpoints should be handled already";
                     displayAllPostMortem(program); // print registers if we hit a breakpoint, then continue
                 }
+                // The program's exit code is kept in its own machine context
+                Globals.exitCode = program.getExitCode();
 
             } catch (SimulationException e) {
                 Globals.exitCode = simulateErrorExitCode;
@@ -532,6 +575,30 @@ public class Launch {
     }
 
 
+    //////////////////////////////////////////////////////////////////////
+    // Run every job in the batch manifest, writing results to standard out
+    // even if RARS messages go to standard err.
+
+    private void runBatch() {
+        ArrayList<Batch.Job> jobs;
+        try {
+            jobs = Batch.readManifest(new File(batchManifest));
+        } catch (IOException e) {
+            out.println("Error reading batch manifest: " + e.getMessage());
+            Globals.exitCode = 1;
+            return;
+        }
+        Globals.getSettings().setBooleanSettingNonPersistent(Settings.Bool.RV64_ENABLED, rv64);
+        InstructionSet.rv64 = rv64;
+        Globals.instructionSet.populate();
+        try {
+            new Batch(options, System.out).run(jobs, Runtime.getRuntime().availableProcessors());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
     //////////////////////////////////////////////////////////////////////
     // Check for memory address subrange.  Has to be two integers separated
     // by "-"; no embedded spaces.  e.g. 0x00400000-0x00400010
@@ -714,8 +781,13 @@ public class Launch {
         out.println("Usage:  Rars  [options] filename [additional filenames]");
         out.println("  Valid options (not case sensitive, separate by spaces) are:");
         out.println("      a  -- assemble only, do not simulate");
+        out.println("     ac <dir>  -- keep assembled programs in directory <dir> and reuse them when");
+        out.println("            the source files, included files and assembly options are unchanged.");
         out.println("  ae<n>  -- terminate RARS with integer exit code <n> if an assemble error occurs.");
         out.println("  ascii  -- display memory or register contents interpreted as ASCII codes.");
+        out.println("   batch <manifest> -- run each job in <manifest> (sources, stdin file, expected");
+        out.println("            output file, step limit and exit code, separated by tabs) on all cores");
+        out.println("            and write one JSON result per line.  Other options apply to every job.");
         out.println("      b  -- brief - do not display register/memory address along with contents");
         out.println("      d  -- display RARS debugging statements");
         out.println("    dec  -- display memory or register contents in decimal.");
@@ -742,6 +814,8 @@ public class Launch {
         out.println("  se<n>  -- terminate RARS with integer exit code <n> if a simulation (run) error occurs.");
         out.println("     sm  -- start execution at statement with global label main, if defined");
         out.println("    smc  -- Self Modifying Code - Program can write and branch to either text or data segment");
+        out.println("  vt<n>  -- Virtual Time - time CSR and Time/Sleep syscalls use a clock that starts at 0");
+        out.println("            and advances 1 ms per <n> instructions executed; sleeping takes no real time.");
         out.println("    rv64 -- Enables 64 bit assembly and executables (Not fully compatible with rv32)");
         out.println("    <n>  -- where <n> is an integer maximum count of steps to simulate.");
         out.println("            If 0, negative or not specified, there is no maximum.");
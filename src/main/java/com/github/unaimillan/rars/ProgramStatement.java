@@ -10,6 +10,7 @@ import com.github.unaimillan.rars.riscv.hardware.Register;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 import com.github.unaimillan.rars.riscv.BasicInstruction;
 import com.github.unaimillan.rars.riscv.BasicInstructionFormat;
+import com.github.unaimillan.rars.riscv.ExtendedInstruction;
 import com.github.unaimillan.rars.riscv.Instruction;
 import com.github.unaimillan.rars.util.Binary;
 import com.github.unaimillan.rars.venus.NumberDisplayBaseChooser;
@@ -58,14 +59,18 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
     private RISCVprogram sourceProgram;
     private String source, basicAssemblyStatement, machineStatement;
     private TokenList originalTokenList, strippedTokenList;
-    private BasicStatementList basicStatementList;
+    private volatile BasicStatementList basicStatementList;
     private int[] operands;
     private int numOperands;
+    // Operands of a pseudo-instruction as they appear in the basic assembly statement, for template expansion
+    private ArrayList<String> basicOperands;
     private Instruction instruction;
     private int textAddress;
     private int sourceLine;
     private int binaryStatement;
     private boolean altered;
+    // False until a statement built from binary code alone has been decoded; see ensureDecoded()
+    private volatile boolean decoded;
     private static final String invalidOperator = "<INVALID>";
 
     //////////////////////////////////////////////////////////////////////////////////
@@ -98,6 +103,7 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
         this.machineStatement = null;
         this.binaryStatement = 0;  // nop, or sll $0, $0, 0  (32 bits of 0's)
         this.altered = false;
+        this.decoded = true;
     }
 
 
@@ -121,37 +127,66 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
         this.originalTokenList = this.strippedTokenList = null;
         this.source = "";
         this.machineStatement = this.basicAssemblyStatement = null;
-        BasicInstruction instr = Globals.instructionSet.findByBinaryCode(binaryStatement);
-        if (instr == null) {
-            this.operands = null;
-            this.numOperands = 0;
-            this.instruction = null;
-        } else {
-            this.operands = new int[5];
-            this.numOperands = 0;
-            this.instruction = instr;
-            String mask = instr.getOperationMask();
-            BasicInstructionFormat format = instr.getInstructionFormat();
-            if (format == BasicInstructionFormat.J_FORMAT) {
-                this.operands[0] = this.readBinaryCode(mask, Instruction.operandMask[0], binaryStatement);
-                this.operands[1] = fromJumpImmediate(this.readBinaryCode(mask, Instruction.operandMask[1], binaryStatement));
-                this.numOperands = 2;
-            } else if (format == BasicInstructionFormat.B_FORMAT) {
-                this.operands[0] = this.readBinaryCode(mask, Instruction.operandMask[0], binaryStatement);
-                this.operands[1] = this.readBinaryCode(mask, Instruction.operandMask[1], binaryStatement);
-                this.operands[2] = fromBranchImmediate(this.readBinaryCode(mask, Instruction.operandMask[2], binaryStatement));
-                this.numOperands = 3;
-            } else {  // Everything else is normal
-                for (int i = 0; i < 5; i++) {
-                    if (mask.indexOf(Instruction.operandMask[i]) != -1) {
-                        this.operands[i] = this.readBinaryCode(mask, Instruction.operandMask[i], binaryStatement);
-                        this.numOperands++;
+        this.altered = false;
+        // Decoding and the basic statement text are deferred: self-modifying code may store
+        // many words into the text segment that are never executed or displayed.
+        this.decoded = false;
+    }
+
+    /**
+     * Constructor for ProgramStatement restored from a cached assembled image: the machine code is
+     * decoded as for {@link #ProgramStatement(int, int)}, but the statement still refers back to
+     * its source line.
+     *
+     * @param sourceProgram   The RISCVprogram object for the file holding the source line.
+     * @param source          The corresponding RISCV source statement.
+     * @param sourceLine      The line number of the source statement.
+     * @param binaryStatement The 32-bit machine code.
+     * @param textAddress     The Text Segment address in memory where the binary machine code for this statement
+     *                        is stored.
+     **/
+    public ProgramStatement(RISCVprogram sourceProgram, String source, int sourceLine, int binaryStatement, int textAddress) {
+        this(binaryStatement, textAddress);
+        this.sourceProgram = sourceProgram;
+        this.source = source;
+        this.sourceLine = sourceLine;
+    }
+
+    // Finds the instruction and operands of a statement built from binary code alone.
+    private void ensureDecoded() {
+        if (decoded) return;
+        synchronized (this) {
+            if (decoded) return;
+            BasicInstruction instr = Globals.instructionSet.findByBinaryCode(binaryStatement);
+            if (instr == null) {
+                this.operands = null;
+                this.numOperands = 0;
+                this.instruction = null;
+            } else {
+                this.operands = new int[5];
+                this.numOperands = 0;
+                this.instruction = instr;
+                BasicInstructionFormat format = instr.getInstructionFormat();
+                if (format == BasicInstructionFormat.J_FORMAT) {
+                    this.operands[0] = instr.readOperand(0, binaryStatement);
+                    this.operands[1] = fromJumpImmediate(instr.readOperand(1, binaryStatement));
+                    this.numOperands = 2;
+                } else if (format == BasicInstructionFormat.B_FORMAT) {
+                    this.operands[0] = instr.readOperand(0, binaryStatement);
+                    this.operands[1] = instr.readOperand(1, binaryStatement);
+                    this.operands[2] = fromBranchImmediate(instr.readOperand(2, binaryStatement));
+                    this.numOperands = 3;
+                } else {  // Everything else is normal
+                    for (int i = 0; i < 5; i++) {
+                        if (instr.hasOperand(i)) {
+                            this.operands[i] = instr.readOperand(i, binaryStatement);
+                            this.numOperands++;
+                        }
                     }
                 }
             }
+            decoded = true;
         }
-        this.altered = false;
-        this.basicStatementList = buildBasicStatementListFromBinaryCode(binaryStatement, instr, operands, numOperands);
     }
 
     public int compareTo(ProgramStatement obj1) {
@@ -179,7 +214,9 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
         String tokenValue;
         int registerNumber;
         this.numOperands = 0;
+        ArrayList<String> basicOperands = instruction instanceof ExtendedInstruction ? new ArrayList<>() : null;
         for (int i = 1; i < strippedTokenList.size(); i++) {
+            int operandStart = basic.length();
             token = strippedTokenList.get(i);
             tokenType = token.getType();
             tokenValue = token.getValue();
@@ -355,6 +392,9 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
                 basic += basicStatementElement;
                 basicStatementList.addString(basicStatementElement);
             }
+            if (basicOperands != null) {
+                basicOperands.add(basic.substring(operandStart));
+            }
             // add separator if not at end of token list AND neither current nor 
             // next token is a parenthesis
             if ((i < strippedTokenList.size() - 1)) {
@@ -368,6 +408,7 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
             }
         }
         this.basicAssemblyStatement = basic;
+        this.basicOperands = basicOperands;
     } //buildBasicStatementFromBasicInstruction()
 
 
@@ -452,6 +493,7 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
         // a crude attempt at string formatting.  Where's C when you need it?
         String blanks = "                               ";
         String result = "[" + this.textAddress + "]";
+        ensureDecoded();
         if (this.basicAssemblyStatement != null) {
             int firstSpace = this.basicAssemblyStatement.indexOf(" ");
             result += blanks.substring(0, 16 - result.length()) + this.basicAssemblyStatement.substring(0, firstSpace);
@@ -568,6 +610,17 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
         return basicAssemblyStatement;
     }
 
+    /**
+     * Produces the operands of the Basic Assembly statement of a pseudo-instruction, one per
+     * token (parentheses included), in the form the statement shows them.
+     *
+     * @return The operands, or null if this is not a pseudo-instruction or has not been built yet.
+     **/
+
+    public ArrayList<String> getBasicOperands() {
+        return basicOperands;
+    }
+
     /**
      * Produces printable Basic Assembly statement for this RISCV source
      * statement.  This is generated dynamically and any addresses and
@@ -577,7 +630,14 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
      * @return The Basic Assembly statement.
      **/
     public String getPrintableBasicAssemblyStatement() {
-        return basicStatementList.toString();
+        BasicStatementList list = basicStatementList;
+        if (list == null) {
+            // Statement built from binary code; produce the text on first request
+            ensureDecoded();
+            list = buildBasicStatementListFromBinaryCode(binaryStatement, (BasicInstruction) instruction, operands, numOperands);
+            basicStatementList = list;
+        }
+        return list.toString();
     }
 
     /**
@@ -624,6 +684,7 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
      * @return The Instruction that matches the operator used in this statement.
      **/
     public Instruction getInstruction() {
+        ensureDecoded();
         return instruction;
     }
 
@@ -642,6 +703,7 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
      * @return int array of operand values (if any) required by this statement's operator.
      **/
     public int[] getOperands() {
+        ensureDecoded();
         return operands;
     }
 
@@ -652,6 +714,7 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
      * @return Operand value at given operand array position.  If < 0 or >= numOperands, it returns -1.
      **/
     public int getOperand(int i) {
+        ensureDecoded();
         if (i >= 0 && i < this.numOperands) {
             return operands[i];
         } else {
@@ -659,30 +722,6 @@ public class ProgramStatement implements Comparable<ProgramStatement> {
         }
     }
 
-    /**
-     * Reads an operand from a binary statement according to a mask and format
-     * <p>
-     * i.e.
-     * <pre>
-     * 0b01001 == readBinaryCode("ttttttttttttttsssss010fffff1101001",'f',
-     *                          0b0101000001000001000010010011101001)</pre>
-     *
-     * @param format          the format of the full binary statement (all operands present)
-     * @param mask            the value (f,s, or t) to mask out
-     * @param binaryStatement the binary statement to read from
-     * @return the bits read pushed to the right
-     */
-    private int readBinaryCode(String format, char mask, int binaryStatement) {
-        int out = 0;
-        for (int i = 0; i < 32; i++) {
-            if (format.charAt(i) == mask) {
-                // if the mask says to read, shift the output left and add substitute bit i
-                out = (out << 1) | ((binaryStatement >> (31 - i)) & 1);
-            }
-        }
-        return out;
-    }
-
     /**
      * Given operand (register or integer) and mask character ('f', 's', or 't'),
      * generate the correct sequence of bits and replace the mask with them.
@@ -9,6 +9,7 @@ import java.io.BufferedReader;
 import java.io.FileReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.stream.IntStream;
 
 /*
 Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
@@ -61,8 +62,17 @@ public class RISCVprogram {
     private SymbolTable localSymbolTable;
     private MacroPool macroPool;
     private ArrayList<SourceLine> sourceLineList;
+    private ArrayList<String> includedFiles;
     private Tokenizer tokenizer;
 
+    public RISCVprogram() {
+    }
+
+    // A source file known only by name, referred to by statements read back by AssemblyCache
+    RISCVprogram(String filename) {
+        this.filename = filename;
+    }
+
     /**
      * Produces list of source statements that comprise the program.
      *
@@ -70,11 +80,18 @@ public class RISCVprogram {
      **/
 
     public ArrayList<String> getSourceList() {
+        if (sourceList == null && sourceLineList != null) {
+            sourceList = new ArrayList<>();
+            for (SourceLine sl : sourceLineList) {
+                sourceList.add(sl.getSource());
+            }
+        }
         return sourceList;
     }
 
     /**
-     * Set list of source statements that comprise the program.
+     * Set list of source statements that comprise the program.  The source statements are taken from
+     * it when next asked for, so the list may still be filled in after it is set.
      *
      * @param sourceLineList ArrayList of SourceLine.
      *                       Each SourceLine represents one line of RISCV source code.
@@ -82,10 +99,7 @@ public class RISCVprogram {
 
     public void setSourceLineList(ArrayList<SourceLine> sourceLineList) {
         this.sourceLineList = sourceLineList;
-        sourceList = new ArrayList<>();
-        for (SourceLine sl : sourceLineList) {
-            sourceList.add(sl.getSource());
-        }
+        sourceList = null;
     }
 
     /**
@@ -99,6 +113,27 @@ public class RISCVprogram {
         return this.sourceLineList;
     }
 
+    /**
+     * Set list of files read by .include directives while tokenizing the program.
+     *
+     * @param includedFiles ArrayList of canonical path names, in the order the files were opened.
+     **/
+
+    public void setIncludedFiles(ArrayList<String> includedFiles) {
+        this.includedFiles = includedFiles;
+    }
+
+    /**
+     * Retrieve list of files read by .include directives while tokenizing the program, including files
+     * that are empty or hold nothing but comments.
+     *
+     * @return ArrayList of canonical path names, null if the program has not been tokenized.
+     **/
+
+    public ArrayList<String> getIncludedFiles() {
+        return this.includedFiles;
+    }
+
     /**
      * Produces name of associated source code file.
      *
@@ -205,8 +240,9 @@ public class RISCVprogram {
      **/
 
     public String getSourceLine(int i) {
-        if ((i >= 1) && (i <= sourceList.size()))
-            return sourceList.get(i - 1);
+        ArrayList<String> lines = getSourceList();
+        if ((i >= 1) && (i <= lines.size()))
+            return lines.get(i - 1);
         else
             return null;
     }
@@ -286,10 +322,24 @@ public class RISCVprogram {
             filenames.add(0, exceptionHandler);
             leadFilePosition = 1;
         }
+        ArrayList<RISCVprogram> preparees = new ArrayList<>();
         for (String filename : filenames) {
-            RISCVprogram preparee = (filename.equals(leadFilename)) ? this : new RISCVprogram();
-            preparee.readSource(filename);
-            preparee.tokenize();
+            preparees.add((filename.equals(leadFilename)) ? this : new RISCVprogram());
+        }
+        // Files are read and tokenized independently, so several are done at once (unless the lead file is
+        // listed twice).  The first failure in list order is reported, as if they had been done one at a time.
+        AssemblyException[] failures = new AssemblyException[preparees.size()];
+        IntStream files = IntStream.range(0, preparees.size());
+        if (preparees.indexOf(this) == preparees.lastIndexOf(this)) {
+            files = files.parallel();
+        }
+        files.forEach(i -> failures[i] = prepare(preparees.get(i), filenames.get(i)));
+        for (AssemblyException failure : failures) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        for (RISCVprogram preparee : preparees) {
             // I want "this" RISCVprogram to be the first in the list...except for exception handler
             if (preparee == this && programsToAssemble.size() > 0) {
                 programsToAssemble.add(leadFilePosition, preparee);
@@ -300,6 +350,17 @@ public class RISCVprogram {
         return programsToAssemble;
     }
 
+    // Reads and tokenizes one file, returning the exception instead of throwing it
+    private static AssemblyException prepare(RISCVprogram preparee, String filename) {
+        try {
+            preparee.readSource(filename);
+            preparee.tokenize();
+            return null;
+        } catch (AssemblyException e) {
+            return e;
+        }
+    }
+
     /**
      * Assembles the RISCV source program. All files comprising the program must have
      * already been tokenized.  Assembler warnings are not considered errors.
@@ -349,8 +410,22 @@ public class RISCVprogram {
      * @throws SimulationException Will throw exception if errors occurred while simulating.
      */
     public Simulator.Reason simulate(int maxSteps) throws SimulationException {
+        return simulate(maxSteps, null);
+    }
+
+    /**
+     * Simulates execution of the program (in this thread). Program must have already been assembled.
+     * Begins simulation at current program counter address and continues until stopped,
+     * paused, maximum steps exceeded, a breakpoint reached, or exception occurs.
+     *
+     * @param maxSteps    the maximum maximum number of steps to simulate.
+     * @param breakPoints int array of breakpoints (PC addresses).  Can be null.
+     * @return the reason simulation stopped
+     * @throws SimulationException Will throw exception if errors occurred while simulating.
+     */
+    public Simulator.Reason simulate(int maxSteps, int[] breakPoints) throws SimulationException {
         Simulator sim = Simulator.getInstance();
-        return sim.simulate(RegisterFile.getProgramCounter(), maxSteps, null);
+        return sim.simulate(RegisterFile.getProgramCounter(), maxSteps, breakPoints);
     }
 
     /**
@@ -366,6 +441,25 @@ public class RISCVprogram {
         sim.startSimulation(RegisterFile.getProgramCounter(), maxSteps, breakPoints);
     }
 
+    /**
+     * Gives this program the result of an earlier assembly, read back by {@link AssemblyCache}, in place of
+     * tokenizing and assembling its source.
+     *
+     * @param filename         name of the lead source file
+     * @param machineList      the assembled statements, sorted by address
+     * @param localSymbolTable labels local to the lead source file
+     */
+    void restoreAssembled(String filename, ArrayList<ProgramStatement> machineList, SymbolTable localSymbolTable) {
+        this.filename = filename;
+        this.sourceList = null;
+        this.tokenList = null;
+        this.sourceLineList = null;
+        this.includedFiles = null;
+        this.machineList = machineList;
+        this.localSymbolTable = localSymbolTable;
+        this.backStepper = new BackStepper();
+    }
+
     /**
      * Instantiates a new {@link MacroPool} and sends reference of this
      * {@link RISCVprogram} to it
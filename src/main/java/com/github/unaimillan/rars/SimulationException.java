@@ -69,6 +69,11 @@ public class SimulationException extends Exception {
         this.cause = cause;
     }
 
+    public SimulationException(String m, int cause, int value) {
+        this(m, cause);
+        this.value = value;
+    }
+
     /**
      * Produce the list of error messages.
      *
@@ -0,0 +1,353 @@
+package com.github.unaimillan.rars.api;
+
+import com.github.unaimillan.rars.AssemblyException;
+import com.github.unaimillan.rars.SimulationException;
+import com.github.unaimillan.rars.simulator.Simulator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs many programs, each against any number of inputs, on a pool of worker threads in one JVM, and
+ * reports one JSON object per run.
+ * <p>
+ * The manifest has one job per line, with tab separated fields:
+ * <ol>
+ * <li> the source files, separated by spaces; the first is the main file
+ * <li> the file to use as standard input
+ * <li> the file holding the expected standard output
+ * <li> the maximum number of steps to simulate
+ * <li> the expected exit code
+ * </ol>
+ * Only the sources are required; a missing field or "-" means no input, no expected output, the step limit
+ * of the options and any exit code.  Relative paths are relative to the directory of the manifest.  Blank
+ * lines and lines starting with # are ignored.
+ * <p>
+ * Jobs with the same sources are assembled once, and their inputs spread over the workers, each running its
+ * share on a machine of its own that shares the assembled code.  Results are written as they complete, so
+ * they are not in manifest order; the "job" field of each result is the line of the manifest it came from.
+ * Its "status" is one of passed, failed (output or exit code differ), completed (terminated with nothing to
+ * compare against), step-limit, breakpoint, runtime-error, assembly-error or io-error.
+ */
+public class Batch {
+
+    /**
+     * One line of the manifest.
+     */
+    public static class Job {
+        public final int line;
+        public final ArrayList<String> sources;
+        public final String stdin;     // file name or null
+        public final String expected;  // file name or null
+        public final int maxSteps;     // or 0 to use the step limit of the options
+        public final Integer exitCode; // or null to accept any
+
+        public Job(int line, ArrayList<String> sources, String stdin, String expected, int maxSteps, Integer exitCode) {
+            this.line = line;
+            this.sources = sources;
+            this.stdin = stdin;
+            this.expected = expected;
+            this.maxSteps = maxSteps;
+            this.exitCode = exitCode;
+        }
+    }
+
+    private final Options options;
+    private final PrintStream out;
+
+    /**
+     * @param options settings shared by every job; the step limit applies to jobs that do not set their own
+     * @param out     where results are written, one line each
+     */
+    public Batch(Options options, PrintStream out) {
+        this.options = options;
+        this.out = out;
+    }
+
+    /**
+     * Reads a manifest in the format described above.
+     *
+     * @param manifest the file to read
+     * @return the jobs in manifest order
+     * @throws IOException if the manifest cannot be read or a line is malformed
+     */
+    public static ArrayList<Job> readManifest(File manifest) throws IOException {
+        File directory = manifest.getAbsoluteFile().getParentFile();
+        ArrayList<Job> jobs = new ArrayList<>();
+        List<String> lines = Files.readAllLines(manifest.toPath());
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.trim().isEmpty() || line.trim().startsWith("#")) continue;
+            String[] fields = line.split("\t");
+            ArrayList<String> sources = new ArrayList<>();
+            for (String source : fields[0].trim().split(" +")) {
+                if (!source.isEmpty()) sources.add(resolve(directory, source));
+            }
+            if (sources.isEmpty()) {
+                throw new IOException(manifest + " line " + (i + 1) + ": no source files");
+            }
+            try {
+                String steps = field(fields, 3);
+                String exitCode = field(fields, 4);
+                jobs.add(new Job(i + 1, sources,
+                        field(fields, 1) == null ? null : resolve(directory, field(fields, 1)),
+                        field(fields, 2) == null ? null : resolve(directory, field(fields, 2)),
+                        steps == null ? 0 : Integer.decode(steps),
+                        exitCode == null ? null : Integer.decode(exitCode)));
+            } catch (NumberFormatException e) {
+                throw new IOException(manifest + " line " + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        return jobs;
+    }
+
+    private static String field(String[] fields, int index) {
+        if (index >= fields.length) return null;
+        String field = fields[index].trim();
+        return field.isEmpty() || field.equals("-") ? null : field;
+    }
+
+    private static String resolve(File directory, String name) {
+        File file = new File(name);
+        return (file.isAbsolute() ? file : new File(directory, name)).getPath();
+    }
+
+    /**
+     * Runs the jobs and writes their results, returning once all are done.  The instruction set must have
+     * been populated for the register width to use.
+     *
+     * @param jobs    the jobs to run
+     * @param threads the number of workers
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public void run(List<Job> jobs, int threads) throws InterruptedException {
+        int workerCount = Math.max(1, threads);
+        LinkedHashMap<List<String>, ArrayList<Job>> programs = new LinkedHashMap<>();
+        for (Job job : jobs) {
+            programs.computeIfAbsent(job.sources, k -> new ArrayList<>()).add(job);
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(workerCount);
+        try {
+            // Assemble every program first, then spread the inputs of each over the workers
+            ArrayList<Callable<Program>> assemblies = new ArrayList<>();
+            for (ArrayList<Job> group : programs.values()) {
+                assemblies.add(() -> assemble(group));
+            }
+            HashMap<List<String>, Program> assembled = new HashMap<>();
+            ArrayList<ArrayList<Job>> slices = new ArrayList<>();
+            Iterator<ArrayList<Job>> groups = programs.values().iterator();
+            for (Future<Program> assembly : workers.invokeAll(assemblies)) {
+                ArrayList<Job> group = groups.next();
+                Program program = assembly.get();
+                if (program == null) continue;
+                assembled.put(group.get(0).sources, program);
+                int count = Math.min(workerCount, group.size());
+                for (int i = 0; i < count; i++) {
+                    ArrayList<Job> slice = new ArrayList<>();
+                    for (int j = i; j < group.size(); j += count) {
+                        slice.add(group.get(j));
+                    }
+                    slices.add(slice);
+                }
+            }
+            // Longest slices first, so a long tail does not end up on one worker.  Each slice sets up its machine
+            // from an image no thread writes any more: Program marked it shared before its assembly completed,
+            // and handing the slice to the executor publishes it to the worker.
+            slices.sort((a, b) -> b.size() - a.size());
+            for (ArrayList<Job> slice : slices) {
+                Program program = assembled.get(slice.get(0).sources);
+                workers.execute(() -> runJobs(program, slice));
+            }
+        } catch (ExecutionException e) {
+            // assemble reports its own failures
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+    }
+
+    // Assembles the sources the jobs share, or reports that every job failed and returns null
+    private Program assemble(ArrayList<Job> jobs) {
+        Program program = new Program(copy(options));
+        ArrayList<String> sources = jobs.get(0).sources;
+        try {
+            program.assemble(sources, sources.get(0));
+            return program;
+        } catch (AssemblyException e) {
+            for (Job job : jobs) {
+                Result result = new Result(job, "assembly-error");
+                result.message = e.errors().generateErrorReport();
+                report(result);
+            }
+        } catch (RuntimeException e) {
+            for (Job job : jobs) {
+                Result result = new Result(job, "assembly-error");
+                result.message = String.valueOf(e);
+                report(result);
+            }
+        }
+        return null;
+    }
+
+    // Runs jobs in turn on a machine of their own that shares the assembled code
+    private void runJobs(Program assembled, ArrayList<Job> jobs) {
+        Options set = copy(options);
+        Program program = new Program(assembled, set);
+        for (Job job : jobs) {
+            set.maxSteps = job.maxSteps != 0 ? job.maxSteps : options.maxSteps;
+            report(runJob(program, job));
+        }
+    }
+
+    private Result runJob(Program program, Job job) {
+        long start = System.nanoTime();
+        String stdin, expected;
+        try {
+            stdin = job.stdin == null ? "" : new String(Files.readAllBytes(new File(job.stdin).toPath()));
+            expected = job.expected == null ? null : new String(Files.readAllBytes(new File(job.expected).toPath()));
+        } catch (IOException e) {
+            Result result = new Result(job, "io-error");
+            result.message = String.valueOf(e);
+            return result;
+        }
+
+        Result result;
+        try {
+            program.setup(new ArrayList<>(), stdin);
+            Simulator.Reason reason = program.simulate();
+            result = new Result(job, status(reason, job, program, expected));
+            result.reason = reason.toString();
+        } catch (SimulationException e) {
+            result = new Result(job, "runtime-error");
+            result.message = e.error() == null ? String.valueOf(e) : e.error().generateReport();
+        } catch (RuntimeException e) {
+            result = new Result(job, "runtime-error");
+            result.message = String.valueOf(e);
+        }
+        result.exitCode = program.getExitCode();
+        result.instructions = program.getRegisterValueLong("instret");
+        result.stdout = program.getSTDOUT();
+        result.stderr = program.getSTDERR();
+        result.millis = (System.nanoTime() - start) / 1000000;
+        return result;
+    }
+
+    private static String status(Simulator.Reason reason, Job job, Program program, String expected) {
+        switch (reason) {
+            case MAX_STEPS:
+                return "step-limit";
+            case BREAKPOINT:
+                return "breakpoint";
+            default:
+                if (expected == null && job.exitCode == null) return "completed";
+                boolean output = expected == null || expected.equals(program.getSTDOUT());
+                boolean exit = job.exitCode == null || job.exitCode == program.getExitCode();
+                return output && exit ? "passed" : "failed";
+        }
+    }
+
+    private static Options copy(Options options) {
+        Options copy = new Options();
+        copy.pseudo = options.pseudo;
+        copy.warningsAreErrors = options.warningsAreErrors;
+        copy.startAtMain = options.startAtMain;
+        copy.selfModifyingCode = options.selfModifyingCode;
+        copy.maxSteps = options.maxSteps;
+        copy.instructionsPerMillisecond = options.instructionsPerMillisecond;
+        copy.assemblyCache = options.assemblyCache;
+        return copy;
+    }
+
+    private void report(Result result) {
+        String line = result.toJSON();
+        synchronized (out) {
+            out.println(line);
+            out.flush();
+        }
+    }
+
+    private static class Result {
+        final Job job;
+        final String status;
+        String reason, message, stdout, stderr;
+        Integer exitCode;
+        Long instructions;
+        long millis;
+
+        Result(Job job, String status) {
+            this.job = job;
+            this.status = status;
+        }
+
+        String toJSON() {
+            StringBuilder json = new StringBuilder("{\"job\":").append(job.line).append(",\"sources\":[");
+            for (int i = 0; i < job.sources.size(); i++) {
+                if (i > 0) json.append(',');
+                quote(json, job.sources.get(i));
+            }
+            json.append("],\"stdin\":");
+            quote(json, job.stdin);
+            json.append(",\"status\":");
+            quote(json, status);
+            if (reason != null) {
+                json.append(",\"reason\":");
+                quote(json, reason);
+            }
+            if (exitCode != null) json.append(",\"exitCode\":").append(exitCode);
+            if (instructions != null) json.append(",\"instructions\":").append(instructions);
+            if (stdout != null) {
+                json.append(",\"stdout\":");
+                quote(json, stdout);
+                json.append(",\"stderr\":");
+                quote(json, stderr);
+                json.append(",\"millis\":").append(millis);
+            }
+            if (message != null) {
+                json.append(",\"message\":");
+                quote(json, message);
+            }
+            return json.append('}').toString();
+        }
+
+        private static void quote(StringBuilder json, String value) {
+            if (value == null) {
+                json.append("null");
+                return;
+            }
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        json.append("\\\"");
+                        break;
+                    case '\\':
+                        json.append("\\\\");
+                        break;
+                    case '\n':
+                        json.append("\\n");
+                        break;
+                    case '\r':
+                        json.append("\\r");
+                        break;
+                    case '\t':
+                        json.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            json.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            json.append(c);
+                        }
+                }
+            }
+            json.append('"');
+        }
+    }
+}
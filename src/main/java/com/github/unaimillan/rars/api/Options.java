@@ -6,11 +6,15 @@ public class Options {
     public boolean startAtMain;       // Whether to start execution at statement labeled 'main'
     public boolean selfModifyingCode; // Whether to allow self-modifying code (e.g. write to text segment)
     public int maxSteps;
+    public int instructionsPerMillisecond; // If positive, time advances with retired instructions instead of the wall clock
+    public String assemblyCache;      // Directory of cached assembled images used when assembling files, or null for none
     public Options(){
         pseudo = true;
         warningsAreErrors = false;
         startAtMain = false;
         selfModifyingCode = false;
         maxSteps = -1;
+        instructionsPerMillisecond = 0;
+        assemblyCache = null;
     }
 }
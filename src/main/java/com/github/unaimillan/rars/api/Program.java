@@ -8,6 +8,8 @@ import com.github.unaimillan.rars.util.SystemIO;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 
 /**
@@ -28,25 +30,29 @@ import java.util.ArrayList;
  * </ol>
  *
  * <p>
- * Importantly, only one instance of Program can be setup at a time (this may
- * change in the future). Only the most recent program to be setup is valid to
- * call simulate on. Additionally, reading registers or memory is also only valid
- * once setup has been called and before another setup is called.
+ * Each instance owns its own registers, memory, open files and interrupt state
+ * (see {@link MachineContext}), so several instances may be set up and simulated
+ * at the same time, each from its own thread. Reading registers or memory is only
+ * valid once setup has been called.
  * </p>
  *
  * <p>
- * Also, it is not threadsafe, calling assemble in another thread could invalidate
- * a concurrent simulation.
+ * Assembly still goes through global state (symbol table, macro pools), so calls to
+ * assemble are serialized across all instances. A single instance must not be used
+ * from several threads at once.
  * </p>
  */
 public class Program {
 
+    private static final Object assemblerLock = new Object();
+
+    private final MachineContext context = new MachineContext();
     private Options set;
     private RISCVprogram code;
     private SystemIO.Data fds;
     private ByteArrayOutputStream stdout, stderr;
     private Memory assembled, simulation;
-    private int startPC, exitCode;
+    private int startPC;
 
     public Program() {
         this(new Options());
@@ -57,7 +63,27 @@ public class Program {
         this.set = set;
         code = new RISCVprogram();
         assembled = new Memory();
-        simulation = new Memory();
+        simulation = context.getMemory();
+    }
+
+    /**
+     * Makes a program that runs the code another one assembled, with its own registers, memory and files, so
+     * that the same code can be run on several inputs at once without assembling it again.  The assembled
+     * image is shared, and each page or block of it is only copied when a run writes to it.
+     * <p>
+     * The assembled RISCVprogram is shared as well.  Simulating only reads it, and the statements it holds decode
+     * themselves under their own lock, so instances made from the same program may run on different threads.
+     * Nothing may change the source program, its statements or its image while they do.
+     *
+     * @param other an assembled program; it must not be assembled again while this one is in use
+     * @param set   the options to run with; the assembler options are ignored
+     */
+    public Program(Program other, Options set){
+        this.set = set;
+        code = other.code;
+        assembled = other.assembled;
+        startPC = other.startPC;
+        simulation = context.getMemory();
     }
 
     /**
@@ -69,8 +95,14 @@ public class Program {
      * @throws AssemblyException thrown if any errors are found in the code
      */
     public ErrorList assemble(ArrayList<String> files, String main) throws AssemblyException {
-        ArrayList<RISCVprogram> programs = code.prepareFilesForAssembly(files,main, null);
-        return assemble(programs);
+        synchronized (assemblerLock) {
+            if (set.assemblyCache != null) {
+                AssemblyCache cache = new AssemblyCache(new File(set.assemblyCache));
+                return assemble(() -> cache.assemble(code, files, main, set.pseudo, set.warningsAreErrors));
+            }
+            ArrayList<RISCVprogram> programs = code.prepareFilesForAssembly(files, main, null);
+            return assemble(programs);
+        }
     }
 
     /**
@@ -84,8 +116,7 @@ public class Program {
         // TODO: potentially inline prepareForAssembly
         ArrayList<String> files = new ArrayList<>();
         files.add(file);
-        ArrayList<RISCVprogram> programs = code.prepareFilesForAssembly(files,file, null);
-        return assemble(programs);
+        return assemble(files, file);
     }
 
     /**
@@ -97,28 +128,38 @@ public class Program {
      */
     public ErrorList assembleString(String source) throws AssemblyException {
         ArrayList<RISCVprogram> programs = new ArrayList<>();
-        code.fromString(source);
-        code.tokenize();
-        programs.add(code);
-        return assemble(programs);
+        synchronized (assemblerLock) {
+            code.fromString(source);
+            code.tokenize();
+            programs.add(code);
+            return assemble(programs);
+        }
     }
 
     private ErrorList assemble(ArrayList<RISCVprogram> programs) throws AssemblyException {
+        return assemble(() -> code.assemble(programs, set.pseudo, set.warningsAreErrors));
+    }
+
+    private interface Assembly {
+        ErrorList run() throws AssemblyException;
+    }
+
+    private ErrorList assemble(Assembly assembly) throws AssemblyException {
+        MachineContext previous = MachineContext.bind(context);
         Memory temp = Memory.swapInstance(assembled); // Assembling changes memory so we need to swap to capture that.
-        ErrorList warnings = null;
-        AssemblyException e = null;
         try {
-            warnings = code.assemble(programs,set.pseudo,set.warningsAreErrors);
-        }catch(AssemblyException ae){
-            e = ae;
-        }
-        Memory.swapInstance(temp);
-        if(e != null)throw e;
+            ErrorList warnings = assembly.run();
+            // Machines set up from the image only read it, so they can copy it from any thread
+            assembled.markShared();
 
-        RegisterFile.initializeProgramCounter(set.startAtMain);
-        startPC = RegisterFile.getProgramCounter();
+            RegisterFile.initializeProgramCounter(set.startAtMain);
+            startPC = RegisterFile.getProgramCounter();
 
-        return warnings;
+            return warnings;
+        } finally {
+            Memory.swapInstance(temp);
+            MachineContext.bind(previous);
+        }
     }
 
     /**
@@ -129,28 +170,32 @@ public class Program {
      * @param STDIN A string that can be read in the program like its stdin or null to allow IO passthrough
      */
     public void setup(ArrayList<String> args, String STDIN){
-        RegisterFile.resetRegisters();
-        FloatingPointRegisterFile.resetRegisters();
-        ControlAndStatusRegisterFile.resetRegisters();
-        InterruptController.reset();
-        RegisterFile.initializeProgramCounter(startPC);
-        Globals.exitCode = 0;
+        MachineContext previous = MachineContext.bind(context);
+        try {
+            RegisterFile.resetRegisters(startPC);
+            FloatingPointRegisterFile.resetRegisters();
+            ControlAndStatusRegisterFile.resetRegisters();
+            InterruptController.reset();
+            context.setExitCode(0);
+            context.setVirtualTime(set.instructionsPerMillisecond);
 
-        // Copy in assembled code and arguments
-        simulation.copyFrom(assembled);
-        Memory tmpMem = Memory.swapInstance(simulation);
-        new ProgramArgumentList(args).storeProgramArguments();
-        Memory.swapInstance(tmpMem);
+            // Copy in assembled code and arguments
+            simulation.copyFrom(assembled);
+            new ProgramArgumentList(args).storeProgramArguments();
 
-        // To capture the IO we need to replace stdin and friends
-        if (STDIN != null){
-            stdout = new ByteArrayOutputStream();
-            stderr = new ByteArrayOutputStream();
-            fds = new SystemIO.Data(
-                new ByteArrayInputStream(STDIN.getBytes()),stdout,stderr
-            );
-        } else {
-            fds = new SystemIO.Data(true);
+            // To capture the IO we need to replace stdin and friends
+            if (STDIN != null){
+                stdout = new ByteArrayOutputStream();
+                stderr = new ByteArrayOutputStream();
+                fds = new SystemIO.Data(
+                    new ByteArrayInputStream(STDIN.getBytes()),stdout,stderr
+                );
+            } else {
+                fds = new SystemIO.Data(true);
+            }
+            context.setFiles(fds);
+        } finally {
+            MachineContext.bind(previous);
         }
     }
 
@@ -167,28 +212,54 @@ public class Program {
      * @throws SimulationException thrown if there is an uncaught interrupt. The program cannot be simulated further.
      */
     public Simulator.Reason simulate() throws SimulationException {
-        Simulator.Reason ret = null;
-        SimulationException e = null;
-
-        // Swap out global state for local state.
-        boolean selfMod = Globals.getSettings().getBooleanSetting(Settings.Bool.SELF_MODIFYING_CODE_ENABLED);
-        Globals.getSettings().setBooleanSettingNonPersistent(Settings.Bool.SELF_MODIFYING_CODE_ENABLED, set.selfModifyingCode);
-        SystemIO.Data tmpFiles = SystemIO.swapData(fds);
-        Memory tmpMem = Memory.swapInstance(simulation);
+        return simulate(null);
+    }
 
+    /**
+     * Simulates a processor executing the machine code, stopping with BREAKPOINT before any instruction at one
+     * of the given addresses executes.  Simulating further runs that instruction and continues.
+     *
+     * @param breakPoints addresses of instructions to stop at, or null for none
+     * @return the reason why simulation was paused or terminated, as for {@link #simulate()}
+     * @throws SimulationException thrown if there is an uncaught interrupt. The program cannot be simulated further.
+     */
+    public Simulator.Reason simulate(int[] breakPoints) throws SimulationException {
+        // All machine state lives in our context; binding it is all that is needed to run here.
+        context.setSelfModifyingCodeEnabled(set.selfModifyingCode);
+        MachineContext previous = MachineContext.bind(context);
         try {
-            ret = code.simulate(set.maxSteps);
-        }catch(SimulationException se){
-            e = se;
+            return code.simulate(set.maxSteps, breakPoints);
+        } finally {
+            MachineContext.bind(previous);
         }
-        exitCode = Globals.exitCode;
+    }
 
-        Globals.getSettings().setBooleanSettingNonPersistent(Settings.Bool.SELF_MODIFYING_CODE_ENABLED, selfMod);
-        SystemIO.swapData(tmpFiles);
-        Memory.swapInstance(tmpMem);
+    /**
+     * Saves registers, memory, open files and interrupt state so a later run can continue from here.
+     *
+     * @param file where to write the checkpoint
+     * @throws IOException if the file cannot be written
+     * @see Checkpoint
+     */
+    public void saveCheckpoint(String file) throws IOException {
+        Checkpoint.save(context, new File(file));
+    }
 
-        if(e != null)throw e;
-        return ret;
+    /**
+     * Continues from a state saved with {@link #saveCheckpoint}, by this or another instance that assembled
+     * the same program.  Call it after setup, which chooses stdin and resets what the checkpoint does not cover.
+     *
+     * @param file the checkpoint to load
+     * @throws IOException if the file cannot be read or does not fit this memory configuration
+     * @see Checkpoint
+     */
+    public void restoreCheckpoint(String file) throws IOException {
+        MachineContext previous = MachineContext.bind(context);
+        try {
+            Checkpoint.restore(context, new File(file));
+        } finally {
+            MachineContext.bind(previous);
+        }
     }
 
     /**
@@ -213,14 +284,50 @@ public class Program {
      * @throws NullPointerException if name is invalid; only needs to be checked if code accesses arbitrary names
      */
     public int getRegisterValue(String name){
-        Register r = RegisterFile.getRegister(name);
-        if(r == null){
-            r = FloatingPointRegisterFile.getRegister(name);
+        MachineContext previous = MachineContext.bind(context);
+        // Registers are written without synchronization, so a read from another thread takes the machine lock
+        context.getLock().lock();
+        try {
+            Register r = RegisterFile.getRegister(name);
+            if(r == null){
+                r = FloatingPointRegisterFile.getRegister(name);
+            }
+            if(r == null){
+                return ControlAndStatusRegisterFile.getValue(name);
+            }else{
+                return (int)r.getValue();
+            }
+        } finally {
+            context.getLock().unlock();
+            MachineContext.bind(previous);
         }
-        if(r == null){
-            return ControlAndStatusRegisterFile.getValue(name);
-        }else{
-            return (int)r.getValue();
+    }
+
+    /**
+     * Gets the full value of a normal, floating-point or control and status register, such as the 64 bit
+     * instret and cycle counters on a 32 bit machine.
+     *
+     * @param name Either the common usage (t0, a0, ft0), explicit numbering (x2, x3, f0), or CSR name (instret)
+     * @return The value of the register as a long
+     * @throws NullPointerException if name is invalid; only needs to be checked if code accesses arbitrary names
+     */
+    public long getRegisterValueLong(String name){
+        MachineContext previous = MachineContext.bind(context);
+        // Registers are written without synchronization, so a read from another thread takes the machine lock
+        context.getLock().lock();
+        try {
+            Register r = RegisterFile.getRegister(name);
+            if(r == null){
+                r = FloatingPointRegisterFile.getRegister(name);
+            }
+            if(r == null){
+                return ControlAndStatusRegisterFile.getValueLong(name);
+            }else{
+                return r.getValue();
+            }
+        } finally {
+            context.getLock().unlock();
+            MachineContext.bind(previous);
         }
     }
 
@@ -232,14 +339,19 @@ public class Program {
      * @throws NullPointerException if name is invalid; only needs to be checked if code accesses arbitrary names
      */
     public void setRegisterValue(String name, int value){
-        Register r = RegisterFile.getRegister(name);
-        if(r == null){
-            r = FloatingPointRegisterFile.getRegister(name);
-        }
-        if(r == null){
-            ControlAndStatusRegisterFile.updateRegister(name,value);
-        }else{
-            r.setValue(value);
+        MachineContext previous = MachineContext.bind(context);
+        try {
+            Register r = RegisterFile.getRegister(name);
+            if(r == null){
+                r = FloatingPointRegisterFile.getRegister(name);
+            }
+            if(r == null){
+                ControlAndStatusRegisterFile.updateRegister(name,value);
+            }else{
+                r.setValue(value);
+            }
+        } finally {
+            MachineContext.bind(previous);
         }
     }
 
@@ -247,7 +359,7 @@ public class Program {
      * Returns the exit code passed to the exit syscall if it was called, otherwise returns 0
      */
     public int getExitCode(){
-        return exitCode;
+        return context.getExitCode();
     }
 
     /**
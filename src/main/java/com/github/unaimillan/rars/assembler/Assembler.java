@@ -2,6 +2,7 @@ package com.github.unaimillan.rars.assembler;
 
 import com.github.unaimillan.rars.*;
 import com.github.unaimillan.rars.riscv.BasicInstruction;
+import com.github.unaimillan.rars.riscv.CompiledTemplate;
 import com.github.unaimillan.rars.riscv.ExtendedInstruction;
 import com.github.unaimillan.rars.riscv.Instruction;
 import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
@@ -13,6 +14,10 @@ import com.github.unaimillan.rars.venus.NumberDisplayBaseChooser;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 
 /*
@@ -53,6 +58,9 @@ import java.util.Collections;
  **/
 
 public class Assembler {
+    // Fewest statements for each thread encoding machine code
+    private static final int CODE_GENERATION_RANGE = 2048;
+
     private ErrorList errors;
     private boolean inDataSegment; // status maintained by parser
     private boolean inMacroSegment; // status maintained by parser, true if in
@@ -66,6 +74,7 @@ public class Assembler {
     private AddressSpace dataAddress;
     private DataSegmentForwardReferences currentFileDataSegmentForwardReferences,
             accumulatedDataSegmentForwardReferences;
+    private ParsedFile recording; // first pass of the current file for later assemblies, null if it cannot be kept
 
     /**
      * Get list of assembler errors and warnings
@@ -106,7 +115,7 @@ public class Assembler {
         currentFileDataSegmentForwardReferences = new DataSegmentForwardReferences();
         accumulatedDataSegmentForwardReferences = new DataSegmentForwardReferences();
         Globals.symbolTable.clear();
-        Globals.memory.clear();
+        Memory.getInstance().clear();
         ArrayList<ProgramStatement> machineList = new ArrayList<>();
         this.errors = new ErrorList();
         if (Globals.debug)
@@ -141,23 +150,39 @@ public class Assembler {
             ArrayList<ProgramStatement> parsedList = fileCurrentlyBeingAssembled.createParsedList();
             // each file keeps its own macro definitions
             MacroPool macroPool = fileCurrentlyBeingAssembled.createMacroPool();
-            // FIRST PASS OF ASSEMBLER VERIFIES SYNTAX, GENERATES SYMBOL TABLE,
-            // INITIALIZES DATA SEGMENT
-            ArrayList<ProgramStatement> statements;
-            for (int i = 0; i < tokenList.size(); i++) {
-                if (errors.errorLimitExceeded())
-                    break;
-                for (Token t : tokenList.get(i)) {
-                    // record this token's original source program and line #. Differs from final, if .include used
-                    t.setOriginal(sourceLineList.get(i).getRISCVprogram(), sourceLineList.get(i).getLineNumber());
+            // A file with the same tokens as when an earlier assembly parsed it repeats that first pass, moved to
+            // where its text and data start now.  Otherwise it is parsed, and the pass kept if it went without
+            // messages.
+            Tokenizer.TokenizedFile tokenized = Globals.debug || fileCurrentlyBeingAssembled.getTokenizer() == null
+                    ? null : fileCurrentlyBeingAssembled.getTokenizer().getTokenizedFile();
+            if (tokenized == null || !reuseFirstPass(tokenized.parsed, extendedAssemblerEnabled)) {
+                int messages = errors.getErrorMessages().size();
+                recording = tokenized == null ? null : new ParsedFile(tokenList, extendedAssemblerEnabled,
+                        textAddress.get(), dataAddress.get());
+                // FIRST PASS OF ASSEMBLER VERIFIES SYNTAX, GENERATES SYMBOL TABLE,
+                // INITIALIZES DATA SEGMENT
+                ArrayList<ProgramStatement> statements;
+                for (int i = 0; i < tokenList.size(); i++) {
+                    if (errors.errorLimitExceeded())
+                        break;
+                    for (Token t : tokenList.get(i)) {
+                        // record this token's original source program and line #. Differs from final, if .include used
+                        t.setOriginal(sourceLineList.get(i).getRISCVprogram(), sourceLineList.get(i).getLineNumber());
+                    }
+                    statements = this.parseLine(tokenList.get(i),
+                            sourceLineList.get(i).getSource(),
+                            sourceLineList.get(i).getLineNumber(),
+                            extendedAssemblerEnabled);
+                    if (statements != null) {
+                        parsedList.addAll(statements);
+                    }
                 }
-                statements = this.parseLine(tokenList.get(i),
-                        sourceLineList.get(i).getSource(),
-                        sourceLineList.get(i).getLineNumber(),
-                        extendedAssemblerEnabled);
-                if (statements != null) {
-                    parsedList.addAll(statements);
+                if (recording != null && errors.getErrorMessages().size() == messages && !inMacroSegment
+                        && recording.finish(tokenized, textAddress.get(), dataAddress.get(), globalDeclarationList,
+                        fileCurrentlyBeingAssembled.getLocalSymbolTable())) {
+                    tokenized.parsed = recording;
                 }
+                recording = null;
             }
             if (inMacroSegment) {
                 errors.add(new ErrorMessage(fileCurrentlyBeingAssembled,
@@ -230,8 +255,8 @@ public class Assembler {
                     ExtendedInstruction inst = (ExtendedInstruction) statement.getInstruction();
                     String basicAssembly = statement.getBasicAssemblyStatement();
                     int sourceLine = statement.getSourceLine();
-                    TokenList theTokenList = new Tokenizer().tokenizeLine(sourceLine,
-                            basicAssembly, errors, false);
+                    // Only needed for templates that have to be expanded as text
+                    TokenList theTokenList = null;
 
                     // ////////////////////////////////////////////////////////////////////////////
                     // If we are using compact memory config and there is a compact expansion, use it
@@ -244,19 +269,31 @@ public class Assembler {
                     // Will generate one basic instruction for each template in the list.
                     int PC = textAddress.get(); // Save the starting PC so that it can be used for PC relative stuff
                     for (int instrNumber = 0; instrNumber < templateList.size(); instrNumber++) {
-                        String instruction = ExtendedInstruction.makeTemplateSubstitutions(
-                                this.fileCurrentlyBeingAssembled,
-                                templateList.get(instrNumber), theTokenList, PC);
-
-                        // All substitutions have been made so we have generated
-                        // a valid basic instruction!
-                        if (Globals.debug)
-                            System.out.println("PSEUDO generated: " + instruction);
-                        // For generated instruction: tokenize, build program
-                        // statement, add to list.
-                        TokenList newTokenList = new Tokenizer().tokenizeLine(sourceLine,
-                                instruction, errors, false);
-                        ArrayList<Instruction> instrMatches = this.matchInstruction(newTokenList.get(0));
+                        // Fill in the template compiled when the instruction set was populated, if possible
+                        CompiledTemplate compiled = Globals.debug ? null : inst.getCompiledTemplate(instrNumber);
+                        TokenList newTokenList = compiled == null ? null : compiled.expand(
+                                this.fileCurrentlyBeingAssembled, statement.getBasicOperands(), PC, sourceLine);
+                        List<Instruction> instrMatches;
+                        if (newTokenList != null) {
+                            instrMatches = compiled.getInstructions();
+                        } else {
+                            if (theTokenList == null) {
+                                theTokenList = new Tokenizer().tokenizeLine(sourceLine, basicAssembly, errors, false);
+                            }
+                            String instruction = ExtendedInstruction.makeTemplateSubstitutions(
+                                    this.fileCurrentlyBeingAssembled,
+                                    templateList.get(instrNumber), theTokenList, PC);
+
+                            // All substitutions have been made so we have generated
+                            // a valid basic instruction!
+                            if (Globals.debug)
+                                System.out.println("PSEUDO generated: " + instruction);
+                            // For generated instruction: tokenize, build program
+                            // statement, add to list.
+                            newTokenList = new Tokenizer().tokenizeLine(sourceLine,
+                                    instruction, errors, false);
+                            instrMatches = this.matchInstruction(newTokenList.get(0));
+                        }
                         Instruction instr = OperandFormat.bestOperandMatch(newTokenList,
                                 instrMatches);
                         // Only first generated instruction is linked to original source
@@ -278,14 +315,46 @@ public class Assembler {
         // Generates machine code statements from the list of basic assembler statements
         // and writes the statement to memory.
 
-        for (ProgramStatement statement : machineList) {
+        // Statements are independent once their addresses are fixed, so those of a large program are
+        // encoded in parallel, each range into its own error list.  Messages are then added to errors
+        // in statement order, together with those from storing the statements, as if done one at a time.
+        int size = machineList.size();
+        int ranges = Globals.debug ? 1 : Math.min(ForkJoinPool.getCommonPoolParallelism(), size / CODE_GENERATION_RANGE);
+        ErrorList[] rangeErrors = new ErrorList[Math.max(ranges, 0)];
+        int[] messageEnds = new int[ranges > 1 ? size : 0]; // messages in the range's list once encoded
+        if (ranges > 1) {
+            IntStream.range(0, ranges).parallel().forEach(r -> {
+                ErrorList encodingErrors = rangeErrors[r] = new ErrorList();
+                for (int i = (int) ((long) size * r / ranges); i < (long) size * (r + 1) / ranges; i++) {
+                    machineList.get(i).buildMachineStatementFromBasicStatement(encodingErrors);
+                    messageEnds[i] = encodingErrors.getErrorMessages().size();
+                }
+            });
+        }
+        int range = 0, rangeEnd = 0, messageStart = 0;
+        for (int i = 0; i < size; i++) {
             if (errors.errorLimitExceeded())
                 break;
-            statement.buildMachineStatementFromBasicStatement(errors);
+            ProgramStatement statement = machineList.get(i);
+            if (ranges > 1) {
+                if (i == rangeEnd) {
+                    // first statement of the next range
+                    rangeEnd = (int) ((long) size * (range + 1) / ranges);
+                    range++;
+                    messageStart = 0;
+                }
+                ArrayList<ErrorMessage> messages = rangeErrors[range - 1].getErrorMessages();
+                for (int m = messageStart; m < messageEnds[i]; m++) {
+                    errors.add(messages.get(m));
+                }
+                messageStart = messageEnds[i];
+            } else {
+                statement.buildMachineStatementFromBasicStatement(errors);
+            }
             if (Globals.debug)
                 System.out.println(statement);
             try {
-                Globals.memory.setStatement(statement.getAddress(), statement);
+                Memory.getInstance().setStatement(statement.getAddress(), statement);
             } catch (AddressErrorException e) {
                 Token t = statement.getOriginalTokenList().get(0);
                 errors.add(new ErrorMessage(t.getSourceProgram(), t.getSourceLine(), t
@@ -334,6 +403,99 @@ public class Assembler {
         }
     }
 
+    // Repeats the first pass an earlier assembly made of the current file, with the file's text and data moved to
+    // where they start now: changes the token types the parser changed, writes the data, adds the .extern labels,
+    // local symbols and statements and lists the .globl labels.  Returns false, having changed nothing, if the
+    // pass cannot be reused here.
+    private boolean reuseFirstPass(ParsedFile parsed, boolean extendedAssemblerEnabled) {
+        if (parsed == null) {
+            return false;
+        }
+        int textShift = textAddress.get() - parsed.textStart;
+        int dataShift = dataAddress.get() - parsed.dataStart;
+        if (!parsed.fits(extendedAssemblerEnabled, textShift, dataShift)) {
+            return false;
+        }
+        ArrayList<SourceLine> sourceLineList = fileCurrentlyBeingAssembled.getSourceLineList();
+        ArrayList<TokenList> tokenList = fileCurrentlyBeingAssembled.getTokenList();
+        for (int i = 0; i < tokenList.size(); i++) {
+            for (Token t : tokenList.get(i)) {
+                t.setOriginal(sourceLineList.get(i).getRISCVprogram(), sourceLineList.get(i).getLineNumber());
+            }
+        }
+        for (ParsedFile.Retyped token : parsed.retyped) {
+            tokenList.get(token.line).get(token.index).setType(token.type);
+        }
+        for (ParsedFile.Write write : parsed.writes) {
+            int address = write.address + dataShift;
+            try {
+                switch (write.kind) {
+                    case ParsedFile.VALUE:
+                        Memory.getInstance().set(address, (int) write.value, write.length);
+                        break;
+                    case ParsedFile.DOUBLE:
+                        Memory.getInstance().setDouble(address, Double.longBitsToDouble(write.value));
+                        break;
+                    case ParsedFile.TEXT_LABEL:
+                        Memory.getInstance().set(address, (int) write.value + textShift, write.length);
+                        break;
+                    case ParsedFile.DATA_LABEL:
+                        Memory.getInstance().set(address, (int) write.value + dataShift, write.length);
+                        break;
+                    case ParsedFile.GLOBAL_LABEL:
+                        Memory.getInstance().set(address, Globals.symbolTable.getAddress(write.name), write.length);
+                        break;
+                    case ParsedFile.FORWARD_LABEL:
+                        Memory.getInstance().set(address, 0, write.length);
+                        currentFileDataSegmentForwardReferences.add(address, write.length,
+                                tokenList.get(write.line).get(write.index));
+                        break;
+                    case ParsedFile.EXTERN:
+                        Globals.symbolTable.addSymbol(write.name, externAddress, true);
+                        externAddress += write.length;
+                        break;
+                    default: // a label .extern found defined
+                        break;
+                }
+            } catch (AddressErrorException e) {
+                // Not expected: fits checked the data stays in the data segment
+                errors.add(new ErrorMessage(fileCurrentlyBeingAssembled, 0, 0, "\"" + address
+                        + "\" is not a valid data segment address"));
+            }
+        }
+        SymbolTable localSymbolTable = fileCurrentlyBeingAssembled.getLocalSymbolTable();
+        for (Symbol symbol : parsed.symbols) {
+            localSymbolTable.addSymbol(symbol.getName(),
+                    symbol.getAddress() + (symbol.getType() ? dataShift : textShift), symbol.getType());
+        }
+        ArrayList<ProgramStatement> parsedList = fileCurrentlyBeingAssembled.getParsedList();
+        for (ParsedFile.Statement statement : parsed.statements) {
+            TokenList original = tokenList.get(statement.line);
+            // As stripComment and stripLabels left it
+            TokenList tokens = (TokenList) original.clone();
+            for (int k = tokens.size() - 1; k >= statement.to; k--) {
+                tokens.remove(k);
+            }
+            for (int k = 0; k < statement.from; k++) {
+                tokens.remove(0);
+            }
+            for (ParsedFile.Retyped operand : statement.operands) {
+                Token t = tokens.get(operand.index);
+                tokens.set(operand.index, new Token(operand.type, t.getValue(), t.getSourceProgram(),
+                        t.getSourceLine(), t.getStartPos()));
+            }
+            SourceLine line = sourceLineList.get(statement.line);
+            parsedList.add(new ProgramStatement(fileCurrentlyBeingAssembled, line.getSource(), original, tokens,
+                    statement.instruction, statement.address + textShift, line.getLineNumber()));
+        }
+        for (ParsedFile.Retyped label : parsed.globals) {
+            globalDeclarationList.add(tokenList.get(label.line).get(label.index));
+        }
+        textAddress.set(parsed.textEnd + textShift);
+        dataAddress.set(parsed.dataEnd + dataShift);
+        return true;
+    }
+
     /**
      * This method parses one line of RISCV source code. It works with the list
      * of tokens, but original source is also provided. It also carries out
@@ -476,7 +638,7 @@ public class Assembler {
         // is not
         // yet implemented.
         if (!this.inDataSegment) {
-            ArrayList<Instruction> instrMatches = this.matchInstruction(token);
+            List<Instruction> instrMatches = this.matchInstruction(token);
             if (instrMatches == null)
                 return ret;
             // OK, we've got an operator match, let's check the operands.
@@ -497,6 +659,9 @@ public class Assembler {
                 int instLength = inst.getInstructionLength();
                 textAddress.increment(instLength);
                 ret.add(programStatement);
+                if (recording != null && !recording.statement(programStatement)) {
+                    recording = null;
+                }
                 return ret;
             }
         }
@@ -602,6 +767,8 @@ public class Assembler {
                 return;
             }
             inMacroSegment = true;
+            // Expansions are tokenized and parsed as they are met, so a file with macros is always parsed
+            recording = null;
             MacroPool pool = fileCurrentlyBeingAssembled.getLocalMacroPool();
             pool.beginMacro(tokens.get(1));
             for (int i = 2; i < tokens.size(); i++) {
@@ -637,11 +804,13 @@ public class Assembler {
             this.autoAlign = true;
             if (tokens.size() > 1 && TokenTypes.isIntegerTokenType(tokens.get(1).getType())) {
                 this.dataAddress.set(Binary.stringToInt(tokens.get(1).getValue())); // KENV 1/6/05
+                if (recording != null) recording.absolute = true;
             }
         } else if (direct == Directives.TEXT) {
             this.inDataSegment = false;
             if (tokens.size() > 1 && TokenTypes.isIntegerTokenType(tokens.get(1).getType())) {
                 this.textAddress.set(Binary.stringToInt(tokens.get(1).getValue())); // KENV 1/6/05
+                if (recording != null) recording.absolute = true;
             }
         } else if (direct == Directives.SECTION){
             if(tokens.size() >= 2){
@@ -741,6 +910,9 @@ public class Assembler {
                 Globals.symbolTable.addSymbol(tokens.get(1), this.externAddress,
                         true, errors);
                 this.externAddress += size;
+                if (recording != null) recording.extern(tokens.get(1).getValue(), size);
+            } else if (recording != null) {
+                recording.global(tokens.get(1).getValue());
             }
         } else if (direct == Directives.GLOBL || direct == Directives.GLOBAL) {
             if (tokens.size() < 2) {
@@ -819,7 +991,7 @@ public class Assembler {
     // //////////////////////////////////////////////////////////////////////////////////
     // Given token, find the corresponding Instruction object. If token was not
     // recognized as OPERATOR, there is a problem.
-    private ArrayList<Instruction> matchInstruction(Token token) {
+    private List<Instruction> matchInstruction(Token token) {
         if (token.getType() != TokenTypes.OPERATOR) {
             if (token.getSourceProgram().getLocalMacroPool()
                     .matchesAnyMacroName(token.getValue()))
@@ -832,7 +1004,7 @@ public class Assembler {
                         + "\" is not a recognized operator"));
             return null;
         }
-        ArrayList<Instruction> inst = Globals.instructionSet.matchOperator(token.getValue());
+        List<Instruction> inst = Globals.instructionSet.matchOperator(token.getValue());
         if (inst == null) { // This should NEVER happen...
             this.errors.add(new ErrorMessage(token.getSourceProgram(), token.getSourceLine(),
                     token.getStartPos(), "Internal Assembler error: \"" + token.getValue()
@@ -975,7 +1147,7 @@ public class Assembler {
              */
             else {
                 try {
-                    Globals.memory.set(this.textAddress.get(), value, lengthInBytes);
+                    Memory.getInstance().set(this.textAddress.get(), value, lengthInBytes);
                 } catch (AddressErrorException e) {
                     errors.add(new ErrorMessage(token.getSourceProgram(),
                             token.getSourceLine(), token.getStartPos(), "\""
@@ -997,6 +1169,10 @@ public class Assembler {
                 } else { // label already defined, so write its address
                     writeToDataSegment(value, lengthInBytes, token, errors);
                 }
+                if (recording != null && !recording.labelAddress(token,
+                        fileCurrentlyBeingAssembled.getLocalSymbolTable().getSymbol(token.getValue()), value)) {
+                    recording = null;
+                }
             } // Data segment check done previously, so this "else" will not be.
             // See 11/20/06 note above.
             else {
@@ -1136,8 +1312,9 @@ public class Assembler {
                     byte[] bytesOfChar = String.valueOf(theChar).getBytes(StandardCharsets.UTF_8);
                     try {
                         for (byte b : bytesOfChar) {
-                            Globals.memory.set(this.dataAddress.get(), b,
+                            Memory.getInstance().set(this.dataAddress.get(), b,
                                     DataTypes.CHAR_SIZE);
+                            if (recording != null) recording.write(this.dataAddress.get(), b, DataTypes.CHAR_SIZE);
                             this.dataAddress.increment(DataTypes.CHAR_SIZE);
                         }
                     } catch (AddressErrorException e) {
@@ -1149,7 +1326,8 @@ public class Assembler {
                 }
                 if (direct == Directives.ASCIZ || direct == Directives.STRING) {
                     try {
-                        Globals.memory.set(this.dataAddress.get(), 0, DataTypes.CHAR_SIZE);
+                        Memory.getInstance().set(this.dataAddress.get(), 0, DataTypes.CHAR_SIZE);
+                        if (recording != null) recording.write(this.dataAddress.get(), 0, DataTypes.CHAR_SIZE);
                     } catch (AddressErrorException e) {
                         errors.add(new ErrorMessage(token.getSourceProgram(), token
                                 .getSourceLine(), token.getStartPos(), "\""
@@ -1183,7 +1361,7 @@ public class Assembler {
             this.dataAddress.set(this.alignToBoundary(this.dataAddress.get(), lengthInBytes));
         }
         try {
-            Globals.memory.set(this.dataAddress.get(), value, lengthInBytes);
+            Memory.getInstance().set(this.dataAddress.get(), value, lengthInBytes);
         } catch (AddressErrorException e) {
             errors.add(new ErrorMessage(token.getSourceProgram(), token.getSourceLine(), token
                     .getStartPos(), "\"" + this.dataAddress.get()
@@ -1191,6 +1369,7 @@ public class Assembler {
             return this.dataAddress.get();
         }
         int address = this.dataAddress.get();
+        if (recording != null) recording.write(address, value, lengthInBytes);
         this.dataAddress.increment(lengthInBytes);
         return address;
     }
@@ -1206,13 +1385,14 @@ public class Assembler {
             this.dataAddress.set(this.alignToBoundary(this.dataAddress.get(), lengthInBytes));
         }
         try {
-            Globals.memory.setDouble(this.dataAddress.get(), value);
+            Memory.getInstance().setDouble(this.dataAddress.get(), value);
         } catch (AddressErrorException e) {
             errors.add(new ErrorMessage(token.getSourceProgram(), token.getSourceLine(), token
                     .getStartPos(), "\"" + this.dataAddress.get()
                     + "\" is not a valid data segment address"));
             return;
         }
+        if (recording != null) recording.writeDouble(this.dataAddress.get(), value);
         this.dataAddress.increment(lengthInBytes);
     }
 
@@ -1222,6 +1402,7 @@ public class Assembler {
     // For instance if args are 6 and 4, returns 8 (next multiple of 4 higher than 6).
     // NOTE: it will fix any symbol table entries for this address too. See else part.
     private int alignToBoundary(int address, int byteBoundary) {
+        if (recording != null) recording.align(byteBoundary);
         int remainder = address % byteBoundary;
         if (remainder == 0) {
             return address;
@@ -1318,7 +1499,7 @@ public class Assembler {
                 if (labelAddress != SymbolTable.NOT_FOUND) {
                     // patch address has to be valid b/c we already stored there...
                     try {
-                        Globals.memory.set(entry.patchAddress, labelAddress, entry.length);
+                        Memory.getInstance().set(entry.patchAddress, labelAddress, entry.length);
                     } catch (AddressErrorException aee) {
                     }
                     forwardReferenceList.remove(i);
@@ -1351,4 +1532,262 @@ public class Assembler {
         }
 
     }
+
+    /**
+     * The first pass over one source file, kept with the file's tokens so that a later assembly of the same tokens
+     * can repeat it rather than parse the file again: the statements, the local symbols, the data written and the
+     * labels looked up for it, and the tokens the parser changed.  Text and data addresses are those of that
+     * assembly; they are moved to where the file's text and data start when the pass is repeated.
+     * <p>
+     * Only a pass that went without errors or warnings is kept, and none of a file that defines macros.  It is not
+     * repeated when the extended instruction setting or the instruction set differ, when the file gave .text or
+     * .data an address and would move, when moving the data would change its alignment or take it out of the data
+     * segment, or when a global label the file looked up would now be found where it was not, or the other way round.
+     */
+    static final class ParsedFile {
+        // Kinds of write
+        static final int VALUE = 0;         // a value as given
+        static final int DOUBLE = 1;        // a .double
+        static final int TEXT_LABEL = 2;    // the address of a text label of the file
+        static final int DATA_LABEL = 3;    // the address of a data label of the file
+        static final int GLOBAL_LABEL = 4;  // the address of a global label
+        static final int FORWARD_LABEL = 5; // 0, until a label not defined yet is
+        static final int EXTERN = 6;        // not a write: .extern of a label, with its size for length
+        static final int DEFINED = 7;       // not a write: .extern of a label already defined
+
+        private ArrayList<TokenList> tokenList; // the file's tokens while recording
+        private final boolean extendedAssemblerEnabled;
+        private final Instruction instructions; // the first of the instruction set; populate makes new ones
+        final int textStart, dataStart;
+        int textEnd, dataEnd;
+        boolean absolute;           // .text or .data gave an address
+        private int alignment = 1;  // largest boundary the data was aligned to or written at
+        private int lowestData = Integer.MAX_VALUE, highestData = Integer.MIN_VALUE; // bytes written
+        final ArrayList<Write> writes = new ArrayList<>();
+        final ArrayList<Statement> statements = new ArrayList<>();
+        final ArrayList<Symbol> symbols = new ArrayList<>(); // local, before .globl moved any
+        final ArrayList<Retyped> retyped = new ArrayList<>();
+        final ArrayList<Retyped> globals = new ArrayList<>(); // the .globl labels
+
+        ParsedFile(ArrayList<TokenList> tokenList, boolean extendedAssemblerEnabled, int textStart, int dataStart) {
+            this.tokenList = tokenList;
+            this.extendedAssemblerEnabled = extendedAssemblerEnabled;
+            this.instructions = firstInstruction();
+            this.textStart = textStart;
+            this.dataStart = dataStart;
+        }
+
+        private static Instruction firstInstruction() {
+            ArrayList<Instruction> list = Globals.instructionSet.getInstructionList();
+            return list.isEmpty() ? null : list.get(0);
+        }
+
+        void align(int boundary) {
+            if (boundary > 0 && (boundary & (boundary - 1)) == 0) {
+                alignment = Math.max(alignment, boundary);
+            } else {
+                absolute = true;
+            }
+        }
+
+        void write(int address, int value, int length) {
+            add(new Write(VALUE, address, value, length, null, -1, -1));
+        }
+
+        void writeDouble(int address, double value) {
+            add(new Write(DOUBLE, address, Double.doubleToRawLongBits(value), DataTypes.DOUBLE_SIZE, null, -1, -1));
+        }
+
+        private void add(Write write) {
+            align(write.length);
+            lowestData = Math.min(lowestData, write.address);
+            highestData = Math.max(highestData, write.address + write.length - 1);
+            writes.add(write);
+        }
+
+        // The value just written was the address of the label, found as the local symbol or in the global symbol
+        // table, or not found.  Returns false if that write was not recorded or the label is not among the tokens.
+        boolean labelAddress(Token label, Symbol local, int value) {
+            if (writes.isEmpty() || writes.get(writes.size() - 1).kind != VALUE) {
+                return false;
+            }
+            Write write = writes.get(writes.size() - 1);
+            int kind = value == SymbolTable.NOT_FOUND ? FORWARD_LABEL
+                    : local == null ? GLOBAL_LABEL : local.getType() ? DATA_LABEL : TEXT_LABEL;
+            Retyped position = position(label);
+            if (position == null) {
+                return false;
+            }
+            writes.set(writes.size() - 1, new Write(kind, write.address, write.value, write.length,
+                    label.getValue(), position.line, position.index));
+            return true;
+        }
+
+        void extern(String name, int size) {
+            writes.add(new Write(EXTERN, 0, 0, size, name, -1, -1));
+        }
+
+        void global(String name) {
+            writes.add(new Write(DEFINED, 0, 0, 0, name, -1, -1));
+        }
+
+        // Returns false if the statement's tokens are not those of a line of the file, less its label and comment
+        boolean statement(ProgramStatement statement) {
+            TokenList original = statement.getOriginalTokenList();
+            TokenList tokens = statement.getStrippedTokenList();
+            int line = tokens.get(0).getSourceLine() - 1;
+            if (line < 0 || line >= tokenList.size() || tokenList.get(line) != original) {
+                return false;
+            }
+            int to = original.size() - (original.get(original.size() - 1).getType() == TokenTypes.COMMENT ? 1 : 0);
+            int from = to - tokens.size();
+            if (from < 0) {
+                return false;
+            }
+            ArrayList<Retyped> operands = new ArrayList<>(0);
+            for (int k = 0; k < tokens.size(); k++) {
+                Token t = tokens.get(k);
+                Token o = original.get(from + k);
+                if (t == o) {
+                    continue;
+                }
+                // An operator name used as a label operand, replaced by bestOperandMatch
+                if (!t.getValue().equals(o.getValue()) || t.getSourceProgram() != o.getSourceProgram()
+                        || t.getSourceLine() != o.getSourceLine() || t.getStartPos() != o.getStartPos()
+                        || t.getOriginalProgram() != t.getSourceProgram()
+                        || t.getOriginalSourceLine() != t.getSourceLine()) {
+                    return false;
+                }
+                operands.add(new Retyped(line, k, t.getType()));
+            }
+            statements.add(new Statement(line, from, to, operands, statement.getInstruction(),
+                    statement.getAddress()));
+            return true;
+        }
+
+        // Completes the pass once every line is parsed.  Returns false if it cannot be kept.
+        boolean finish(Tokenizer.TokenizedFile tokenized, int textEnd, int dataEnd, TokenList globalDeclarations,
+                       SymbolTable localSymbolTable) {
+            this.textEnd = textEnd;
+            this.dataEnd = dataEnd;
+            for (Symbol symbol : localSymbolTable.getAllSymbols()) {
+                symbols.add(new Symbol(symbol.getName(), symbol.getAddress(), symbol.getType()));
+            }
+            for (Token label : globalDeclarations) {
+                Retyped position = position(label);
+                if (position == null) {
+                    return false;
+                }
+                globals.add(position);
+            }
+            // Token types the parser changed, against the tokens as cached
+            if (tokenized.tokens.length != tokenList.size()) {
+                return false;
+            }
+            for (int i = 0; i < tokenList.size(); i++) {
+                TokenList tokens = tokenList.get(i);
+                TokenList cached = tokenized.tokens[i];
+                if (tokens.size() != cached.size()) {
+                    return false;
+                }
+                for (int k = 0; k < tokens.size(); k++) {
+                    if (tokens.get(k).getType() != cached.get(k).getType()) {
+                        retyped.add(new Retyped(i, k, tokens.get(k).getType()));
+                    }
+                }
+            }
+            tokenList = null;
+            return true;
+        }
+
+        // Where the token is among the file's tokens, or null if it is not one of them
+        private Retyped position(Token token) {
+            int line = token.getSourceLine() - 1;
+            if (line >= 0 && line < tokenList.size()) {
+                TokenList tokens = tokenList.get(line);
+                for (int k = 0; k < tokens.size(); k++) {
+                    if (tokens.get(k) == token) {
+                        return new Retyped(line, k, token.getType());
+                    }
+                }
+            }
+            return null;
+        }
+
+        // True if the pass can be repeated with the text and data moved by these amounts
+        boolean fits(boolean extendedAssemblerEnabled, int textShift, int dataShift) {
+            if (extendedAssemblerEnabled != this.extendedAssemblerEnabled || instructions != firstInstruction()
+                    || absolute && (textShift != 0 || dataShift != 0) || dataShift % alignment != 0) {
+                return false;
+            }
+            if (lowestData <= highestData && !(Memory.inDataSegment(lowestData + dataShift)
+                    && Memory.inDataSegment(highestData + dataShift))) {
+                return false;
+            }
+            // Global labels have to be found, or not, as they were
+            HashSet<String> externs = new HashSet<>();
+            for (Write write : writes) {
+                if (write.name == null || write.kind == TEXT_LABEL || write.kind == DATA_LABEL) {
+                    continue;
+                }
+                boolean defined = externs.contains(write.name)
+                        || Globals.symbolTable.getAddress(write.name) != SymbolTable.NOT_FOUND;
+                if (defined != (write.kind == GLOBAL_LABEL || write.kind == DEFINED)) {
+                    return false;
+                }
+                if (write.kind == EXTERN) {
+                    externs.add(write.name);
+                }
+            }
+            return true;
+        }
+
+        static final class Write {
+            final int kind;
+            final int address;
+            final long value;
+            final int length;
+            final String name;     // the label, if any
+            final int line, index; // where the label of a FORWARD_LABEL is among the tokens
+
+            Write(int kind, int address, long value, int length, String name, int line, int index) {
+                this.kind = kind;
+                this.address = address;
+                this.value = value;
+                this.length = length;
+                this.name = name;
+                this.line = line;
+                this.index = index;
+            }
+        }
+
+        // A token by its line and position in the line, and a type
+        static final class Retyped {
+            final int line, index;
+            final TokenTypes type;
+
+            Retyped(int line, int index, TokenTypes type) {
+                this.line = line;
+                this.index = index;
+                this.type = type;
+            }
+        }
+
+        // A statement as the tokens from..to of a line, with any operands replaced by tokens of another type
+        static final class Statement {
+            final int line, from, to;
+            final ArrayList<Retyped> operands;
+            final Instruction instruction;
+            final int address;
+
+            Statement(int line, int from, int to, ArrayList<Retyped> operands, Instruction instruction, int address) {
+                this.line = line;
+                this.from = from;
+                this.to = to;
+                this.operands = operands;
+                this.instruction = instruction;
+                this.address = address;
+            }
+        }
+    }
 }
@@ -4,7 +4,7 @@ import com.github.unaimillan.rars.ErrorList;
 import com.github.unaimillan.rars.ErrorMessage;
 import com.github.unaimillan.rars.riscv.Instruction;
 
-import java.util.ArrayList;
+import java.util.List;
 
 /*
 Copyright (c) 2003-2008,  Pete Sanderson and Kenneth Vollmar
@@ -63,7 +63,7 @@ public class OperandFormat {
      * first such Instruction that has an exact operand match.  If none match,
      * return the first Instruction and let client deal with operand mismatches.
      */
-    static Instruction bestOperandMatch(TokenList tokenList, ArrayList<Instruction> instrMatches) {
+    static Instruction bestOperandMatch(TokenList tokenList, List<Instruction> instrMatches) {
         if (instrMatches == null)
             return null;
         if (instrMatches.size() == 1)
@@ -6,6 +6,8 @@ import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.util.Binary;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeMap;
 
 /*
 Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
@@ -37,6 +39,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 /**
  * Creats a table of Symbol objects.
+ * <p>
+ * Symbols are kept in insertion order, with a name index and an address index beside the list so
+ * lookups do not scan it.  Symbol addresses must therefore only be changed through
+ * {@link #fixSymbolTableAddress(int, int)}.
  *
  * @author Jason Bumgarner, Jason Shrewsbury
  * @version June 2003
@@ -46,6 +52,9 @@ public class SymbolTable {
     private static String startLabel = "main";
     private String filename;
     private ArrayList<Symbol> table;
+    private HashMap<String, Symbol> byName;
+    // Symbols sharing an address, in table order
+    private TreeMap<Integer, ArrayList<Symbol>> byAddress;
     // Note -1 is legal 32 bit address (0xFFFFFFFF) but it is the high address in
     // kernel address space so highly unlikely that any symbol will have this as
     // its associated address!
@@ -59,7 +68,7 @@ public class SymbolTable {
      */
     public SymbolTable(String filename) {
         this.filename = filename;
-        this.table = new ArrayList<>();
+        clear();
     }
 
     /**
@@ -76,13 +85,32 @@ public class SymbolTable {
         if (getSymbol(label) != null) {
             errors.add(new ErrorMessage(token.getSourceProgram(), token.getSourceLine(), token.getStartPos(), "label \"" + label + "\" already defined"));
         } else {
-            table.add(new Symbol(label, address, b));
+            Symbol symbol = new Symbol(label, address, b);
+            table.add(symbol);
+            byName.put(label, symbol);
+            byAddress.computeIfAbsent(address, k -> new ArrayList<>(1)).add(symbol);
             if (Globals.debug)
                 System.out.println("The symbol " + label + " with address " + address + " has been added to the " + this.filename + " symbol table.");
         }
     }
 
 
+    /**
+     * Adds a symbol that is known not to be defined yet, such as one read back from a cached assembly.
+     *
+     * @param name    The label of the Symbol.
+     * @param address The address of the Symbol.
+     * @param data    The type of Symbol, true for data, false for text.
+     **/
+
+    public void addSymbol(String name, int address, boolean data) {
+        Symbol symbol = new Symbol(name, address, data);
+        table.add(symbol);
+        byName.put(name, symbol);
+        byAddress.computeIfAbsent(address, k -> new ArrayList<>(1)).add(symbol);
+    }
+
+
     /**
      * Removes a symbol from the Symbol table.  If not found, it does nothing.
      * This will rarely happen (only when variable is declared .globl after already
@@ -93,13 +121,16 @@ public class SymbolTable {
 
     public void removeSymbol(Token token) {
         String label = token.getValue();
-        for (int i = 0; i < table.size(); i++) {
-            if (table.get(i).getName().equals(label)) {
-                table.remove(i);
-                if (Globals.debug)
-                    System.out.println("The symbol " + label + " has been removed from the " + this.filename + " symbol table.");
-                break;
+        Symbol symbol = byName.remove(label);
+        if (symbol != null) {
+            table.remove(symbol);
+            ArrayList<Symbol> sameAddress = byAddress.get(symbol.getAddress());
+            sameAddress.remove(symbol);
+            if (sameAddress.isEmpty()) {
+                byAddress.remove(symbol.getAddress());
             }
+            if (Globals.debug)
+                System.out.println("The symbol " + label + " has been removed from the " + this.filename + " symbol table.");
         }
     }
 
@@ -111,12 +142,8 @@ public class SymbolTable {
      * @return The memory address of the label given, or NOT_FOUND if not found in symbol table.
      **/
     public int getAddress(String s) {
-        for (Symbol sym : table) {
-            if (sym.getName().equals(s)) {
-                return sym.getAddress();
-            }
-        }
-        return NOT_FOUND;
+        Symbol sym = byName.get(s);
+        return (sym == null) ? NOT_FOUND : sym.getAddress();
     }
 
     /**
@@ -141,12 +168,7 @@ public class SymbolTable {
      **/
 
     public Symbol getSymbol(String s) {
-        for (Symbol sym : table) {
-            if (sym.getName().equals(s)) {
-                return sym;
-            }
-        }
-        return null;
+        return byName.get(s);
     }
 
     /**
@@ -163,12 +185,8 @@ public class SymbolTable {
         } catch (NumberFormatException e) {
             return null;
         }
-        for (Symbol sym : table) {
-            if (sym.getAddress() == address) {
-                return sym;
-            }
-        }
-        return null;
+        ArrayList<Symbol> sameAddress = byAddress.get(address);
+        return (sameAddress == null) ? null : sameAddress.get(0);
     }
 
     /**
@@ -246,6 +264,8 @@ public class SymbolTable {
 
     public void clear() {
         table = new ArrayList<>();
+        byName = new HashMap<>();
+        byAddress = new TreeMap<>();
     }
 
     /**
@@ -259,11 +279,22 @@ public class SymbolTable {
      */
 
     public void fixSymbolTableAddress(int originalAddress, int replacementAddress) {
-        Symbol label = getSymbolGivenAddress(Integer.toString(originalAddress));
-        while (label != null) {
+        if (originalAddress == replacementAddress) return;
+        ArrayList<Symbol> moved = byAddress.remove(originalAddress);
+        if (moved == null) return;
+        for (Symbol label : moved) {
             label.setAddress(replacementAddress);
-            label = getSymbolGivenAddress(Integer.toString(originalAddress));
         }
+        if (byAddress.containsKey(replacementAddress)) {
+            // Rare: both groups now share an address, so rebuild that entry in table order
+            moved = new ArrayList<>();
+            for (Symbol sym : table) {
+                if (sym.getAddress() == replacementAddress) {
+                    moved.add(sym);
+                }
+            }
+        }
+        byAddress.put(replacementAddress, moved);
     }
 
     /**
@@ -2,9 +2,13 @@ package com.github.unaimillan.rars.assembler;
 
 import com.github.unaimillan.rars.*;
 
+import com.github.unaimillan.rars.riscv.InstructionSet;
+
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /*
@@ -61,6 +65,25 @@ public class Tokenizer {
     // TODO: potentially make this automatic
     private static final String escapedCharacters = "'\"\\ntbrf0";
     private static final String[] escapedCharactersValues = {"39", "34", "92", "10", "9", "8", "13", "12", "0"};
+    // Included files by canonical path and tokenized source files by name, shared by all assemblies in this
+    // JVM; least recently used dropped first
+    private static final int CACHE_SIZE = 64;
+    private static final LinkedHashMap<String, IncludedFile> includeCache =
+            new LinkedHashMap<String, IncludedFile>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, IncludedFile> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+    private static final LinkedHashMap<String, TokenizedFile> tokenizedCache =
+            new LinkedHashMap<String, TokenizedFile>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, TokenizedFile> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+    private ArrayList<IncludedFile> includedFiles; // read while tokenizing a program
+    private TokenizedFile tokenized; // the cached tokens of the program, if it is a file
 
     /**
      * Simple constructor. Initializes empty error list.
@@ -82,6 +105,10 @@ public class Tokenizer {
 
     /**
      * Will tokenize a complete soure program.
+     * <p>
+     * The tokens of a source file are kept, and given back without reading the source again, when a later
+     * assembly tokenizes the file with the same contents and its included files unchanged.  The assembler keeps
+     * the file's first pass with them, so that it does not have to parse the file's statements again either.
      *
      * @param p The RISCVprogram to be tokenized.
      * @return An ArrayList representing the tokenized program.  Each list member is a TokenList
@@ -90,85 +117,299 @@ public class Tokenizer {
 
     public ArrayList<TokenList> tokenize(RISCVprogram p) throws AssemblyException {
         sourceRISCVprogram = p;
+        tokenized = null;
+        // A file that is unchanged since it was last assembled, as are the files it includes, is not
+        // tokenized again.  Only files are cached; a program made from a string is named by its source.
+        boolean isFile = new File(p.getFilename()).isFile();
+        if (isFile) {
+            TokenizedFile cached;
+            synchronized (tokenizedCache) {
+                cached = tokenizedCache.get(p.getFilename());
+            }
+            if (cached != null && cached.matches(p)) {
+                // Macro expansions are tokenized later with the file's .eqv substitutions
+                equivalents = new HashMap<>(cached.equivalents);
+                tokenized = cached;
+                return cached.copyFor(p);
+            }
+        }
         equivalents = new HashMap<>(); // DPS 11-July-2012
+        includedFiles = new ArrayList<>();
         ArrayList<TokenList> tokenList = new ArrayList<>();
-        //ArrayList source = p.getSourceList();
-        ArrayList<SourceLine> source = processIncludes(p, new HashMap<>()); // DPS 9-Jan-2013
+        ArrayList<String> lines = p.getSourceList();
+        // Set before tokenizing so error messages can map lines back to included files; filled in as lines
+        // are tokenized
+        ArrayList<SourceLine> source = new ArrayList<>();
         p.setSourceLineList(source);
-        TokenList currentLineTokens;
-        String sourceLine;
-        for (int i = 0; i < source.size(); i++) {
-            sourceLine = source.get(i).getSource();
-            currentLineTokens = this.tokenizeLine(i + 1, sourceLine);
-            tokenList.add(currentLineTokens);
-            // DPS 03-Jan-2013. Related to 11-July-2012. If source code substitution was made
-            // based on .eqv directive during tokenizing, the processed line, a String, is
-            // not the same object as the original line.  Thus I can use != instead of !equals()
-            // This IF statement will replace original source with source modified by .eqv substitution.
-            // Not needed by assembler, but looks better in the Text Segment Display.
-            if (sourceLine.length() > 0 && sourceLine != currentLineTokens.getProcessedLine()) {
-                source.set(i, new SourceLine(currentLineTokens.getProcessedLine(), source.get(i).getRISCVprogram(), source.get(i).getLineNumber()));
-            }
+        Map<String, String> inclFiles = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            source.add(new SourceLine(line, p, i + 1));
+            addLine(line, tokenizeLine(p, source.size(), line, false), inclFiles, source, tokenList);
         }
+        p.setIncludedFiles(paths(includedFiles));
         if (errors.errorsOccurred()) {
             throw new AssemblyException(errors);
         }
+        if (isFile) {
+            tokenized = new TokenizedFile(p, lines, source, tokenList, includedFiles, equivalents);
+            synchronized (tokenizedCache) {
+                tokenizedCache.put(p.getFilename(), tokenized);
+            }
+        }
         return tokenList;
     }
 
-
-    // pre-pre-processing pass through source code to process any ".include" directives.
-    // When one is encountered, the contents of the included file are inserted at that
-    // point.  If no .include statements, the return value is a new array list but
-    // with the same lines of source code.  Uses recursion to correctly process included
-    // files that themselves have .include.  Plus it will detect and report recursive
+    // Finishes a line of source code, already added to source and tokenized without .eqv substitution:
+    // either replaces it by the contents of the file it includes, or makes the substitutions and adds its tokens.
+    //
+    // The tokenizer used to make a pass through the source code to process any ".include" directives
+    // (DPS 9-Jan-2013) before tokenizing the result, so every line was tokenized twice.  Now each line is
+    // tokenized once, in order, and included files are expanded as they are reached.  When one is encountered,
+    // the contents of the included file are inserted at that point.  Uses recursion to correctly process
+    // included files that themselves have .include.  Plus it will detect and report recursive
     // includes both direct and indirect.
-    // DPS 11-Jan-2013
-    private ArrayList<SourceLine> processIncludes(RISCVprogram program, Map<String, String> inclFiles) throws AssemblyException {
-        ArrayList<String> source = program.getSourceList();
-        ArrayList<SourceLine> result = new ArrayList<>(source.size());
-        for (int i = 0; i < source.size(); i++) {
-            String line = source.get(i);
-            TokenList tl = tokenizeLine(program, i + 1, line, false);
-            boolean hasInclude = false;
-            for (int ii = 0; ii < tl.size(); ii++) {
-                if (tl.get(ii).getValue().equalsIgnoreCase(Directives.INCLUDE.getName())
-                        && (tl.size() > ii + 1)
-                        && tl.get(ii + 1).getType() == TokenTypes.QUOTED_STRING) {
-                    String filename = tl.get(ii + 1).getValue();
-                    filename = filename.substring(1, filename.length() - 1); // get rid of quotes
-                    // Handle either absolute or relative pathname for .include file
-                    if (!new File(filename).isAbsolute()) {
-                        filename = new File(program.getFilename()).getParent() + File.separator + filename;
-                    }
-                    if (inclFiles.containsKey(filename)) {
-                        // This is a recursive include.  Generate error message and return immediately.
-                        Token t = tl.get(ii + 1);
-                        errors.add(new ErrorMessage(program, t.getSourceLine(), t.getStartPos(),
-                                "Recursive include of file " + filename));
-                        throw new AssemblyException(errors);
-                    }
-                    inclFiles.put(filename, filename);
-                    RISCVprogram incl = new RISCVprogram();
-                    try {
-                        incl.readSource(filename);
-                    } catch (AssemblyException p) {
-                        Token t = tl.get(ii + 1);
-                        errors.add(new ErrorMessage(program, t.getSourceLine(), t.getStartPos(),
-                                "Error reading include file " + filename));
-                        throw new AssemblyException(errors);
+    private void addLine(String line, TokenList tl, Map<String, String> inclFiles, ArrayList<SourceLine> source,
+                         ArrayList<TokenList> tokenList) throws AssemblyException {
+        RISCVprogram program = source.get(source.size() - 1).getRISCVprogram();
+        for (int ii = 0; ii < tl.size(); ii++) {
+            if (tl.get(ii).getValue().equalsIgnoreCase(Directives.INCLUDE.getName())
+                    && (tl.size() > ii + 1)
+                    && tl.get(ii + 1).getType() == TokenTypes.QUOTED_STRING) {
+                String filename = tl.get(ii + 1).getValue();
+                filename = filename.substring(1, filename.length() - 1); // get rid of quotes
+                // Handle either absolute or relative pathname for .include file
+                if (!new File(filename).isAbsolute()) {
+                    filename = new File(program.getFilename()).getParent() + File.separator + filename;
+                }
+                if (inclFiles.containsKey(filename)) {
+                    // This is a recursive include.  Generate error message and return immediately.
+                    Token t = tl.get(ii + 1);
+                    errors.add(new ErrorMessage(sourceRISCVprogram, t.getSourceLine(), t.getStartPos(),
+                            "Recursive include of file " + filename));
+                    throw new AssemblyException(errors);
+                }
+                IncludedFile incl = readInclude(filename);
+                if (incl == null) {
+                    Token t = tl.get(ii + 1);
+                    errors.add(new ErrorMessage(sourceRISCVprogram, t.getSourceLine(), t.getStartPos(),
+                            "Error reading include file " + filename));
+                    throw new AssemblyException(errors);
+                }
+                if (includedFiles != null) {
+                    includedFiles.add(incl);
+                }
+                // The include directive itself is replaced
+                source.remove(source.size() - 1);
+                inclFiles.put(filename, filename);
+                ArrayList<String> lines = incl.program.getSourceList();
+                for (int i = 0; i < lines.size(); i++) {
+                    String included = lines.get(i);
+                    source.add(new SourceLine(included, incl.program, i + 1));
+                    int lineNum = source.size();
+                    TokenList tokens;
+                    if (incl.tokens != null) {
+                        // Tokenized earlier; only the program and line number differ
+                        tokens = new TokenList();
+                        for (Token t : incl.tokens[i]) {
+                            tokens.add(new Token(t.getType(), t.getValue(), sourceRISCVprogram, lineNum, t.getStartPos()));
+                        }
+                    } else {
+                        tokens = tokenizeLine(sourceRISCVprogram, lineNum, included, false);
                     }
-                    ArrayList<SourceLine> allLines = processIncludes(incl, inclFiles);
-                    result.addAll(allLines);
-                    hasInclude = true;
-                    break;
+                    addLine(included, tokens, inclFiles, source, tokenList);
                 }
+                return;
             }
-            if (!hasInclude) {
-                result.add(new SourceLine(line, program, i + 1));//line);
+        }
+        int lineNum = source.size();
+        TokenList currentLineTokens = processEqv(sourceRISCVprogram, lineNum, line, tl);
+        tokenList.add(currentLineTokens);
+        // DPS 03-Jan-2013. Related to 11-July-2012. If source code substitution was made
+        // based on .eqv directive during tokenizing, the processed line, a String, is
+        // not the same object as the original line.  Thus I can use != instead of !equals()
+        // This IF statement will replace original source with source modified by .eqv substitution.
+        // Not needed by assembler, but looks better in the Text Segment Display.
+        if (line.length() > 0 && line != currentLineTokens.getProcessedLine()) {
+            SourceLine original = source.get(lineNum - 1);
+            source.set(lineNum - 1, new SourceLine(currentLineTokens.getProcessedLine(), original.getRISCVprogram(),
+                    original.getLineNumber()));
+        }
+    }
+
+    // Reads an included file, with its tokens if they are cached or it tokenizes without errors.
+    // Returns null if the file cannot be read.
+    private static IncludedFile readInclude(String filename) {
+        String key;
+        try {
+            key = new File(filename).getCanonicalPath();
+        } catch (IOException | SecurityException e) {
+            key = null;
+        }
+        RISCVprogram program = readSource(filename);
+        if (program == null) {
+            return null;
+        }
+        // Cached tokens are used only for the same contents; a modification time or length can stay the same
+        // across an edit
+        ArrayList<String> lines = program.getSourceList();
+        if (key != null) {
+            synchronized (includeCache) {
+                IncludedFile cached = includeCache.get(key);
+                if (cached != null && cached.instructionSet == Globals.instructionSet && cached.rv64 == InstructionSet.rv64
+                        && cached.program.getFilename().equals(filename) && cached.program.getSourceList().equals(lines)) {
+                    return cached;
+                }
             }
         }
-        return result;
+        // Tokens are only kept if there are no errors, which have to be reported for each include
+        TokenList[] tokens = new TokenList[lines.size()];
+        Tokenizer tokenizer = new Tokenizer();
+        for (int i = 0; i < tokens.length && !tokenizer.errors.errorsOccurred(); i++) {
+            tokens[i] = tokenizer.tokenizeLine(null, i + 1, lines.get(i), false);
+        }
+        if (tokenizer.errors.errorsOccurred() || tokenizer.errors.warningsOccurred()) {
+            return new IncludedFile(program, key, null);
+        }
+        IncludedFile incl = new IncludedFile(program, key, tokens);
+        if (key != null) {
+            synchronized (includeCache) {
+                includeCache.put(key, incl);
+            }
+        }
+        return incl;
+    }
+
+    // Reads a source file, or returns null if it cannot be read
+    private static RISCVprogram readSource(String filename) {
+        RISCVprogram program = new RISCVprogram();
+        try {
+            program.readSource(filename);
+        } catch (AssemblyException e) {
+            return null;
+        }
+        return program;
+    }
+
+    /**
+     * Forgets the source and included files tokenized by earlier assemblies.  A source or included file is also
+     * tokenized again whenever its contents change.
+     */
+    public static void clearCache() {
+        synchronized (includeCache) {
+            includeCache.clear();
+        }
+        synchronized (tokenizedCache) {
+            tokenizedCache.clear();
+        }
+    }
+
+    // The cached tokens the last program given to tokenize was made from, or null if it was not a file
+    TokenizedFile getTokenizedFile() {
+        return tokenized;
+    }
+
+    // The tokens kept for a source file, or null if there are none; a new entry means the file was tokenized again
+    static TokenizedFile cachedTokens(String filename) {
+        synchronized (tokenizedCache) {
+            return tokenizedCache.get(filename);
+        }
+    }
+
+    // The files opened by .include, in order, whether or not they added any lines
+    private static ArrayList<String> paths(ArrayList<IncludedFile> includes) {
+        ArrayList<String> paths = new ArrayList<>(includes.size());
+        for (IncludedFile incl : includes) {
+            paths.add(incl.path);
+        }
+        return paths;
+    }
+
+    // Copies tokens for another program (null when stored in the cache)
+    private static TokenList copy(TokenList tokens, RISCVprogram program) {
+        TokenList copy = new TokenList();
+        for (Token t : tokens) {
+            copy.add(new Token(t.getType(), t.getValue(), program, t.getSourceLine(), t.getStartPos()));
+        }
+        copy.setProcessedLine(tokens.getProcessedLine());
+        return copy;
+    }
+
+    // A source file as tokenized by an earlier assembly.  Its tokens and lines are kept apart from those given to
+    // the assembler, which may change them, and are copied again for each program they are used for.
+    static final class TokenizedFile {
+        final ArrayList<String> lines;        // as read from the file
+        final SourceLine[] source;            // with a null program for lines of the file itself
+        final TokenList[] tokens;
+        final ArrayList<IncludedFile> includes;
+        final HashMap<String, String> equivalents; // .eqv symbols defined by the end of the file
+        final InstructionSet instructionSet = Globals.instructionSet; // decides which names are operators
+        final boolean rv64 = InstructionSet.rv64;
+        volatile Assembler.ParsedFile parsed; // the first pass of the last assembly that parsed these tokens
+
+        TokenizedFile(RISCVprogram program, ArrayList<String> lines, ArrayList<SourceLine> source,
+                      ArrayList<TokenList> tokens, ArrayList<IncludedFile> includes,
+                      HashMap<String, String> equivalents) {
+            this.lines = new ArrayList<>(lines);
+            this.source = new SourceLine[source.size()];
+            for (int i = 0; i < this.source.length; i++) {
+                SourceLine line = source.get(i);
+                this.source[i] = new SourceLine(line.getSource(),
+                        line.getRISCVprogram() == program ? null : line.getRISCVprogram(), line.getLineNumber());
+            }
+            this.tokens = new TokenList[tokens.size()];
+            for (int i = 0; i < this.tokens.length; i++) {
+                this.tokens[i] = copy(tokens.get(i), null);
+            }
+            this.includes = includes;
+            this.equivalents = new HashMap<>(equivalents);
+        }
+
+        // True if the program's source is the same, and the files it included have not changed since
+        boolean matches(RISCVprogram program) {
+            if (instructionSet != Globals.instructionSet || rv64 != InstructionSet.rv64
+                    || !lines.equals(program.getSourceList())) {
+                return false;
+            }
+            for (IncludedFile incl : includes) {
+                RISCVprogram current = readSource(incl.program.getFilename());
+                if (incl.tokens == null || current == null
+                        || !current.getSourceList().equals(incl.program.getSourceList())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        ArrayList<TokenList> copyFor(RISCVprogram program) {
+            ArrayList<SourceLine> sourceLines = new ArrayList<>(source.length);
+            for (SourceLine line : source) {
+                sourceLines.add(new SourceLine(line.getSource(),
+                        line.getRISCVprogram() == null ? program : line.getRISCVprogram(), line.getLineNumber()));
+            }
+            program.setSourceLineList(sourceLines);
+            program.setIncludedFiles(paths(includes));
+            ArrayList<TokenList> tokenList = new ArrayList<>(tokens.length);
+            for (TokenList t : tokens) {
+                tokenList.add(copy(t, program));
+            }
+            return tokenList;
+        }
+    }
+
+    // An included file and its tokens, before .eqv substitution and with line numbers within the file
+    private static final class IncludedFile {
+        final RISCVprogram program; // holds the file name and source lines
+        final String path;          // canonical, or as named if that cannot be found
+        final TokenList[] tokens;   // null if the file has to be tokenized in place
+        final InstructionSet instructionSet = Globals.instructionSet; // decides which names are operators
+        final boolean rv64 = InstructionSet.rv64;
+
+        IncludedFile(RISCVprogram program, String path, TokenList[] tokens) {
+            this.program = program;
+            this.path = path == null ? program.getFilename() : path;
+            this.tokens = tokens;
+        }
     }
 
     /**
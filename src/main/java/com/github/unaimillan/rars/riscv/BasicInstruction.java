@@ -31,6 +31,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.SimulationException;
 
+import java.util.Arrays;
+
 /**
  * Class to represent a basic instruction in the MIPS instruction set.
  * Basic instruction means it translates directly to a 32-bit binary machine
@@ -47,6 +49,9 @@ public abstract class BasicInstruction extends Instruction {
 
     private int opcodeMask;  // integer with 1's where constants required (0/1 become 1, f/s/t become 0)
     private int opcodeMatch; // integer matching constants required (0/1 become 0/1, f/s/t become 0)
+    // For each operand in Instruction.operandMask order, the contiguous runs of its bits from most to least
+    // significant, packed as (shift << 8 | width); null if the operand does not appear in the mask
+    private int[][] operandFields;
 
     /**
      * BasicInstruction constructor.
@@ -82,6 +87,24 @@ public abstract class BasicInstruction extends Instruction {
 
         this.opcodeMask = (int) Long.parseLong(this.operationMask.replaceAll("[01]", "1").replaceAll("[^01]", "0"), 2);
         this.opcodeMatch = (int) Long.parseLong(this.operationMask.replaceAll("[^1]", "0"), 2);
+        this.operandFields = new int[Instruction.operandMask.length][];
+        for (int i = 0; i < operandFields.length; i++) {
+            operandFields[i] = findOperandFields(Instruction.operandMask[i]);
+        }
+    }
+
+    private int[] findOperandFields(char operand) {
+        int[] fields = new int[Instruction.INSTRUCTION_LENGTH_BITS];
+        int count = 0;
+        for (int i = 0; i < operationMask.length(); i++) {
+            if (operationMask.charAt(i) != operand) continue;
+            int start = i;
+            while (i + 1 < operationMask.length() && operationMask.charAt(i + 1) == operand) i++;
+            int width = i - start + 1;
+            int shift = Instruction.INSTRUCTION_LENGTH_BITS - 1 - i;
+            fields[count++] = shift << 8 | width;
+        }
+        return count == 0 ? null : Arrays.copyOf(fields, count);
     }
 
     public BasicInstruction(String example, String description, BasicInstructionFormat instrFormat,
@@ -135,6 +158,34 @@ public abstract class BasicInstruction extends Instruction {
         return this.opcodeMatch;
     }
 
+    /**
+     * @param operand index into {@link Instruction#operandMask}
+     * @return true if the operation mask has bits for that operand
+     */
+    public boolean hasOperand(int operand) {
+        return operandFields[operand] != null;
+    }
+
+    /**
+     * Pulls one operand out of a machine instruction of this kind.  The bits marked for the operand
+     * in the operation mask are concatenated from most to least significant; no sign extension or
+     * scaling is done.
+     *
+     * @param operand         index into {@link Instruction#operandMask}
+     * @param binaryStatement the 32 bit machine instruction
+     * @return the operand bits pushed to the right, or 0 if the operand does not appear in the mask
+     */
+    public int readOperand(int operand, int binaryStatement) {
+        int[] fields = operandFields[operand];
+        if (fields == null) return 0;
+        int out = 0;
+        for (int field : fields) {
+            int width = field & 0xFF;
+            out = (out << width) | ((binaryStatement >>> (field >>> 8)) & (-1 >>> (32 - width)));
+        }
+        return out;
+    }
+
     /**
      * Method to simulate the execution of a specific MIPS basic instruction.
      *
@@ -0,0 +1,218 @@
+package com.github.unaimillan.rars.riscv;
+
+import com.github.unaimillan.rars.RISCVprogram;
+import com.github.unaimillan.rars.assembler.Symbol;
+import com.github.unaimillan.rars.assembler.Token;
+import com.github.unaimillan.rars.assembler.TokenList;
+import com.github.unaimillan.rars.assembler.TokenTypes;
+import com.github.unaimillan.rars.util.Binary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One basic instruction template of a pseudo-instruction, split into tokens once when the instruction set is
+ * populated, so expanding a pseudo-instruction fills in operand values instead of substituting them into the
+ * template text and tokenizing the result.
+ * <p>
+ * Expansion produces exactly the tokens (types, values and positions) that tokenizing the text built by
+ * {@link ExtendedInstruction#makeTemplateSubstitutions} would.  Where that is not certain, because the template
+ * uses syntax the tokenizer treats specially or a substituted value might not come out as a single token,
+ * {@link #compile} or {@link #expand} returns null and the caller takes the text route instead.
+ */
+public final class CompiledTemplate {
+    // Marker kinds, see ExtendedInstruction.makeTemplateSubstitutions
+    private static final String[] MARKERS = {"RG", "PCH", "PCL", "LH", "LL", "VH", "VL", "LIA", "LIB", "LIC", "LID", "LIE"};
+    private static final int LITERAL = -1, RG = 0, LIA = 7, LAB = MARKERS.length;
+
+    private final List<Instruction> instructions;
+    private final Token operator;
+    private final String[] text;       // template text of each operand token
+    private final TokenTypes[] types;  // type of each literal operand token
+    private final int[] kinds;         // marker kind of each operand token, or LITERAL
+    private final int[] operands;      // source operand each marker refers to
+    private final int[] starts;        // position of each operand token in the template
+    // For each source operand, the one long immediate marker that is substituted (the first present)
+    private final int[] longMarkers;
+
+    private CompiledTemplate(List<Instruction> instructions, Token operator, String[] text, TokenTypes[] types,
+                             int[] kinds, int[] operands, int[] starts, int[] longMarkers) {
+        this.instructions = instructions;
+        this.operator = operator;
+        this.text = text;
+        this.types = types;
+        this.kinds = kinds;
+        this.operands = operands;
+        this.starts = starts;
+        this.longMarkers = longMarkers;
+    }
+
+    /**
+     * @param template a basic instruction template from PseudoOps.txt
+     * @param set      the instruction set, already holding every instruction
+     * @return the compiled template, or null if it can only be expanded as text
+     */
+    static CompiledTemplate compile(String template, InstructionSet set) {
+        ArrayList<String> tokens = new ArrayList<>();
+        ArrayList<Integer> positions = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= template.length(); i++) {
+            char c = i < template.length() ? template.charAt(i) : ' ';
+            boolean delimiter = c == ' ' || c == '\t' || c == ',';
+            boolean paren = c == '(' || c == ')';
+            if ((delimiter || paren) && start >= 0) {
+                tokens.add(template.substring(start, i));
+                positions.add(start + 1);
+                start = -1;
+            }
+            if (paren) {
+                tokens.add(String.valueOf(c));
+                positions.add(i + 1);
+            } else if (!delimiter) {
+                // Other characters the tokenizer treats specially are not used in templates
+                if ("#:\"'".indexOf(c) >= 0 || (c == '+' || c == '-') && start >= 0) return null;
+                if (start < 0) start = i;
+            }
+        }
+        if (tokens.isEmpty() || TokenTypes.matchTokenType(tokens.get(0)) != TokenTypes.OPERATOR) return null;
+        List<Instruction> instructions = set.matchOperator(tokens.get(0));
+        if (instructions == null) return null;
+
+        int count = tokens.size() - 1;
+        String[] text = new String[count];
+        TokenTypes[] types = new TokenTypes[count];
+        int[] kinds = new int[count];
+        int[] operands = new int[count];
+        int[] starts = new int[count];
+        int[] longMarkers = new int[10];
+        Arrays.fill(longMarkers, LITERAL);
+        for (int i = 0; i < count; i++) {
+            text[i] = tokens.get(i + 1);
+            starts[i] = positions.get(i + 1);
+            kinds[i] = LITERAL;
+            if (text[i].equals("LAB")) {
+                kinds[i] = LAB;
+                continue;
+            }
+            for (int kind = 0; kind < MARKERS.length; kind++) {
+                String marker = MARKERS[kind];
+                if (text[i].length() == marker.length() + 1 && text[i].startsWith(marker)
+                        && text[i].charAt(marker.length()) >= '1' && text[i].charAt(marker.length()) <= '9') {
+                    kinds[i] = kind;
+                    operands[i] = text[i].charAt(marker.length()) - '0';
+                }
+            }
+            if (kinds[i] == LITERAL) {
+                // A marker run into other text is substituted by the text route but not here
+                for (String marker : MARKERS) {
+                    if (text[i].contains(marker)) return null;
+                }
+                if (text[i].contains("LAB")) return null;
+                char first = text[i].charAt(0);
+                if ((first == '+' || first == '-') && (text[i].length() == 1 || !Character.isDigit(text[i].charAt(1)))) {
+                    return null;
+                }
+                types[i] = TokenTypes.matchTokenType(text[i]);
+            } else if (kinds[i] >= LIA && kinds[i] < LAB) {
+                int operand = operands[i];
+                if (longMarkers[operand] == LITERAL || kinds[i] < longMarkers[operand]) {
+                    longMarkers[operand] = kinds[i];
+                }
+            }
+        }
+        Token operator = new Token(TokenTypes.OPERATOR, tokens.get(0), null, 0, positions.get(0));
+        return new CompiledTemplate(instructions, operator, text, types, kinds, operands, starts, longMarkers);
+    }
+
+    /**
+     * @return the instructions named by the template's operator, to choose from by operands
+     */
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    /**
+     * Builds the tokens of the basic statement for one pseudo-instruction statement.
+     *
+     * @param program  the program being assembled, to look up labels in
+     * @param sourceOperands the operands of the pseudo-instruction statement in basic assembly form, including
+     *                 parentheses (see {@link com.github.unaimillan.rars.ProgramStatement#getBasicOperands})
+     * @param PC       the address of the pseudo-instruction, for PC relative markers
+     * @param line     the source line of the statement
+     * @return the tokens, or null if they have to be built by tokenizing the substituted text
+     */
+    public TokenList expand(RISCVprogram program, ArrayList<String> sourceOperands, int PC, int line) {
+        int count = sourceOperands.size();
+        TokenList tokens = new TokenList();
+        tokens.add(new Token(TokenTypes.OPERATOR, operator.getValue(), null, line, operator.getStartPos()));
+        TokenTypes previous = TokenTypes.OPERATOR;
+        int shift = 0; // how far substitutions so far have moved the rest of the text
+        boolean labelDone = false;
+        for (int i = 0; i < text.length; i++) {
+            String value = null;
+            int kind = kinds[i];
+            if (kind == LAB) {
+                if (!labelDone) {
+                    labelDone = true;
+                    String label = count == 0 ? operator.getValue() : sourceOperands.get(count - 1);
+                    Symbol symbol = program.getLocalSymbolTable().getSymbolGivenAddressLocalOrGlobal(label);
+                    if (symbol != null) value = symbol.getName();
+                }
+            } else if (kind != LITERAL && operands[i] <= count) {
+                String operand = sourceOperands.get(operands[i] - 1);
+                value = kind == RG ? operand : markerValue(kind, operands[i], operand, PC);
+            }
+
+            TokenTypes type;
+            if (value == null) {
+                value = text[i];
+                type = kind == LITERAL ? types[i] : TokenTypes.matchTokenType(value);
+            } else {
+                if (!isSingleToken(value)) return null;
+                type = TokenTypes.matchTokenType(value);
+            }
+            // A sign after an identifier is a separate token
+            if ((value.charAt(0) == '-' || value.charAt(0) == '+') && previous == TokenTypes.IDENTIFIER) return null;
+            tokens.add(new Token(type, value, null, line, starts[i] + shift));
+            shift += value.length() - text[i].length();
+            previous = type;
+        }
+        return tokens;
+    }
+
+    // Returns the value substituted for a PC, label, value or long immediate marker, or null if the operand is
+    // not a number of the right size and the marker stays as it is
+    private String markerValue(int kind, int operand, String value, int PC) {
+        if (kind >= LIA) {
+            long longValue;
+            try {
+                Binary.stringToInt(value);
+                return null;
+            } catch (NumberFormatException e) {
+                try {
+                    longValue = Binary.stringToLong(value);
+                } catch (NumberFormatException e2) {
+                    return null;
+                }
+            }
+            return kind == longMarkers[operand] ? ExtendedInstruction.longMarkerValue(MARKERS[kind], longValue) : null;
+        }
+        try {
+            return ExtendedInstruction.markerValue(MARKERS[kind], Binary.stringToInt(value), PC);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // True if the tokenizer would read the value as one token (apart from a leading sign, checked by the caller)
+    private static boolean isSingleToken(String value) {
+        if (value.isEmpty()) return false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (" \t,#():\"'".indexOf(c) >= 0 || (c == '+' || c == '-') && i > 0) return false;
+        }
+        char first = value.charAt(0);
+        return !((first == '+' || first == '-') && (value.length() == 1 || !Character.isDigit(value.charAt(1))));
+    }
+}
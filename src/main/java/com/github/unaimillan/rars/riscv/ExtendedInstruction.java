@@ -48,6 +48,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 public class ExtendedInstruction extends Instruction {
 
     private ArrayList<String> translationStrings;
+    private CompiledTemplate[] compiledTemplates;
 
     /**
      * Constructor for ExtendedInstruction.  No compact translation is provided.
@@ -102,6 +103,29 @@ public class ExtendedInstruction extends Instruction {
     public ArrayList<String> getBasicIntructionTemplateList() {
         return translationStrings;
     }
+
+    /**
+     * Get the template at the same position in {@link #getBasicIntructionTemplateList()}, split into tokens
+     * when the instruction set was populated.
+     *
+     * @param index position of the template in the list
+     * @return the compiled template, or null if the template has to be expanded with
+     * {@link #makeTemplateSubstitutions} and tokenized
+     */
+    public CompiledTemplate getCompiledTemplate(int index) {
+        return compiledTemplates == null ? null : compiledTemplates[index];
+    }
+
+    /**
+     * Compiles the templates, once every instruction they may refer to is in the instruction set.
+     */
+    void compileTemplates(InstructionSet set) {
+        if (translationStrings == null) return;
+        compiledTemplates = new CompiledTemplate[translationStrings.size()];
+        for (int i = 0; i < compiledTemplates.length; i++) {
+            compiledTemplates[i] = CompiledTemplate.compile(translationStrings.get(i), set);
+        }
+    }
     
     /**
      * Given a basic instruction template and the list of tokens from an extended
@@ -146,47 +170,20 @@ public class ExtendedInstruction extends Instruction {
                 }catch(NumberFormatException nfe){
                     continue;
                 }
-                val = (int)(lval >> 32);
-                int vall = (int)lval;
                 // this shouldn't happen if is is for LL .. VH
-                if (instruction.contains("LIA" + op)) {
-                    int extra = Binary.bitValue(val, 11); // add extra to compesate for sign extension
-                    instruction = substitute(instruction, "LIA" + op, String.valueOf((val >> 12) + extra));
-                }else if (instruction.contains("LIB" + op)) {
-                    instruction = substitute(instruction, "LIB" + op, String.valueOf(val << 20 >> 20));
-                }else if (instruction.contains("LIC" + op)) {
-                    instruction = substitute(instruction, "LIC" + op, String.valueOf((vall >> 21) & 0x7FF));
-                }else if (instruction.contains("LID" + op)) {
-                    instruction = substitute(instruction, "LID" + op, String.valueOf((vall >> 10) & 0x7FF));
-                }else if (instruction.contains("LIE" + op)) {
-                    instruction = substitute(instruction, "LIE" + op, String.valueOf(vall & 0x3FF));
+                for (String marker : new String[]{"LIA", "LIB", "LIC", "LID", "LIE"}) {
+                    if (instruction.contains(marker + op)) {
+                        instruction = substitute(instruction, marker + op, longMarkerValue(marker, lval));
+                        break;
+                    }
                 }
                 continue;
             }
 
-            int relative = val - PC;
-            if (instruction.contains("PCH" + op)) {
-                int extra = Binary.bitValue(relative, 11);// add extra to compesate for sign extension
-                instruction = substitute(instruction, "PCH" + op, String.valueOf((relative >> 12) + extra));
-            }
-            if (instruction.contains("PCL" + op)) {
-                instruction = substitute(instruction, "PCL" + op, String.valueOf(relative << 20 >> 20));
-            }
-
-            if (instruction.contains("LH" + op)) {
-                int extra = Binary.bitValue(val, 11);// add extra to compesate for sign extension
-                instruction = substitute(instruction, "LH" + op, String.valueOf((val >> 12) + extra));
-            }
-            if (instruction.contains("LL" + op)) {
-                instruction = substitute(instruction, "LL" + op, String.valueOf(val << 20 >> 20));
-            }
-
-            if (instruction.contains("VH" + op)) {
-                int extra = Binary.bitValue(val, 11); // add extra to compesate for sign extension
-                instruction = substitute(instruction, "VH" + op, String.valueOf((val >> 12) + extra));
-            }
-            if (instruction.contains("VL" + op)) {
-                instruction = substitute(instruction, "VL" + op, String.valueOf(val << 20 >> 20));
+            for (String marker : new String[]{"PCH", "PCL", "LH", "LL", "VH", "VL"}) {
+                if (instruction.contains(marker + op)) {
+                    instruction = substitute(instruction, marker + op, markerValue(marker, val, PC));
+                }
             }
         }
         // substitute label if necessary
@@ -208,6 +205,42 @@ public class ExtendedInstruction extends Instruction {
         return instruction;
     }
 
+    // The value substituted for a PCH, PCL, LH, LL, VH or VL marker whose operand is val
+    static String markerValue(String marker, int val, int PC) {
+        int relative = val - PC;
+        switch (marker) {
+            case "PCH":
+                // add extra to compesate for sign extension
+                return String.valueOf((relative >> 12) + Binary.bitValue(relative, 11));
+            case "PCL":
+                return String.valueOf(relative << 20 >> 20);
+            case "LH":
+            case "VH":
+                return String.valueOf((val >> 12) + Binary.bitValue(val, 11));
+            default: // LL, VL
+                return String.valueOf(val << 20 >> 20);
+        }
+    }
+
+    // The value substituted for a LIA, LIB, LIC, LID or LIE marker whose operand is the 64 bit lval
+    static String longMarkerValue(String marker, long lval) {
+        int val = (int) (lval >> 32);
+        int vall = (int) lval;
+        switch (marker) {
+            case "LIA":
+                // add extra to compesate for sign extension
+                return String.valueOf((val >> 12) + Binary.bitValue(val, 11));
+            case "LIB":
+                return String.valueOf(val << 20 >> 20);
+            case "LIC":
+                return String.valueOf((vall >> 21) & 0x7FF);
+            case "LID":
+                return String.valueOf((vall >> 10) & 0x7FF);
+            default: // LIE
+                return String.valueOf(vall & 0x3FF);
+        }
+    }
+
     // TODO: update these two methods to Java 1.8
     // Performs a String substitution.  Java 1.5 adds an overloaded String.replace method to
     // do this directly but I wanted to stay 1.4 compatible.
@@ -0,0 +1,101 @@
+package com.github.unaimillan.rars.riscv;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decision table that maps a 32 bit machine instruction to its {@link BasicInstruction}.
+ * <p>
+ * The first level is indexed by the 7 bit major opcode.  Any bucket still holding more than a few
+ * candidates is split again on funct3, then funct7, then the rs2/funct5 field, so a lookup is a handful
+ * of array loads followed by a short linear check of (instruction &amp; mask) == match.  Candidates
+ * are checked most specific mask first, which gives the same answer the per-mask hash maps did.
+ */
+final class InstructionDecoder {
+    // Fields to split on, as {shift, width}: opcode, funct3, funct7, rs2 (funct5 for conversions)
+    private static final int[][] FIELDS = {{0, 7}, {12, 3}, {25, 7}, {20, 5}};
+    // Buckets this small are searched linearly rather than split further
+    private static final int LEAF_SIZE = 4;
+
+    private final Node root;
+
+    /**
+     * @param instructions the basic instructions, most specific mask first
+     */
+    InstructionDecoder(List<BasicInstruction> instructions) {
+        root = build(instructions, 0);
+    }
+
+    /**
+     * @param binaryInstr a machine instruction
+     * @return the matching instruction, or null if none matches
+     */
+    BasicInstruction decode(int binaryInstr) {
+        Node node = root;
+        while (node.children != null) {
+            node = node.children[(binaryInstr >>> node.shift) & (node.children.length - 1)];
+        }
+        BasicInstruction[] candidates = node.candidates;
+        for (int i = 0; i < candidates.length; i++) {
+            if ((binaryInstr & node.masks[i]) == node.matches[i]) {
+                return candidates[i];
+            }
+        }
+        return null;
+    }
+
+    private static Node build(List<BasicInstruction> instructions, int field) {
+        if (instructions.size() > LEAF_SIZE) {
+            for (; field < FIELDS.length; field++) {
+                int shift = FIELDS[field][0];
+                Node[] children = new Node[1 << FIELDS[field][1]];
+                List<List<BasicInstruction>> split = new ArrayList<>(children.length);
+                boolean narrows = false;
+                for (int value = 0; value < children.length; value++) {
+                    List<BasicInstruction> bucket = new ArrayList<>();
+                    for (BasicInstruction instr : instructions) {
+                        // keep instr if the field bits it fixes agree with value
+                        if ((((instr.getOpcodeMatch() >>> shift) ^ value) & (instr.getOpcodeMask() >>> shift)
+                                & (children.length - 1)) == 0) {
+                            bucket.add(instr);
+                        }
+                    }
+                    narrows |= bucket.size() < instructions.size();
+                    split.add(bucket);
+                }
+                if (!narrows) continue;
+                for (int value = 0; value < children.length; value++) {
+                    children[value] = build(split.get(value), field + 1);
+                }
+                return new Node(shift, children);
+            }
+        }
+        return new Node(instructions);
+    }
+
+    private static final class Node {
+        final int shift;
+        final Node[] children;
+        final BasicInstruction[] candidates;
+        final int[] masks, matches;
+
+        Node(int shift, Node[] children) {
+            this.shift = shift;
+            this.children = children;
+            this.candidates = null;
+            this.masks = this.matches = null;
+        }
+
+        Node(List<BasicInstruction> instructions) {
+            this.shift = 0;
+            this.children = null;
+            this.candidates = instructions.toArray(new BasicInstruction[0]);
+            this.masks = new int[candidates.length];
+            this.matches = new int[candidates.length];
+            for (int i = 0; i < candidates.length; i++) {
+                masks[i] = candidates[i].getOpcodeMask();
+                matches[i] = candidates[i].getOpcodeMatch();
+            }
+        }
+    }
+}
@@ -6,19 +6,15 @@ import com.github.unaimillan.rars.Settings;
 import com.github.unaimillan.rars.SimulationException;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 import com.github.unaimillan.rars.riscv.syscalls.*;
-import com.github.unaimillan.rars.util.FilenameFinder;
+import com.github.unaimillan.rars.util.ClassRegistry;
 import com.github.unaimillan.rars.util.SystemIO;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.lang.reflect.Modifier;
 import java.util.*;
 
-import static com.github.unaimillan.rars.Globals.GLOBAL_CLASS_PREFIX;
-import static com.github.unaimillan.rars.Globals.GLOBAL_DIRECTORY_PATH;
-
 	/*
 Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
 
@@ -57,13 +53,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 
 public class InstructionSet {
-    private static final String CLASS_PREFIX = GLOBAL_CLASS_PREFIX + "rars.riscv.instructions.";
-    private static final String INSTRUCTIONS_DIRECTORY_PATH = GLOBAL_DIRECTORY_PATH + "rars/riscv/instructions";
-    private static final String CLASS_EXTENSION = "class";
+    private static final String INSTRUCTIONS_DIRECTORY = "rars/riscv/instructions";
     public static boolean rv64 = Globals.getSettings().getBooleanSetting(Settings.Bool.RV64_ENABLED);
 
     private ArrayList<Instruction> instructionList;
-    private ArrayList<MatchMap> opcodeMatchMaps;
+    // Instructions by lower case operator mnemonic, in instruction list order; null until populated
+    private HashMap<String, List<Instruction>> operatorIndex;
+    private InstructionDecoder decoder;
 
     /**
      * Creates a new InstructionSet object.
@@ -92,6 +88,7 @@ public class InstructionSet {
     public void populate() {
         /* Here is where the parade begins.  Every instruction is added to the set here.*/
         instructionList.clear();
+        operatorIndex = null;
         // ////////////////////////////////////   BASIC INSTRUCTIONS START HERE ////////////////////////////////
 
         addBasicInstructions();
@@ -102,61 +99,59 @@ public class InstructionSet {
         }
 
         addPseudoInstructions("/PseudoOps.txt");
+
+        // Index by mnemonic for matchOperator, which the tokenizer and assembler call for every line
+        HashMap<String, List<Instruction>> index = new HashMap<>();
+        for (Instruction inst : instructionList) {
+            index.computeIfAbsent(inst.getName().toLowerCase(Locale.ROOT), k -> new ArrayList<>()).add(inst);
+        }
+        // Every caller shares these lists
+        index.replaceAll((name, instructions) -> Collections.unmodifiableList(instructions));
+        operatorIndex = index;
+
         // Initialization step.  Create token list for each instruction example.  This is
         // used by parser to determine user program correct syntax.
         for (Instruction inst : instructionList) {
             inst.createExampleTokenList();
         }
+        // Split each pseudo-instruction template into tokens once, rather than on every use
+        for (Instruction inst : instructionList) {
+            if (inst instanceof ExtendedInstruction) {
+                ((ExtendedInstruction) inst).compileTemplates(this);
+            }
+        }
 
-        HashMap<Integer, HashMap<Integer, BasicInstruction>> maskMap = new HashMap<>();
-        ArrayList<MatchMap> matchMaps = new ArrayList<>();
+        // One instruction per distinct mask and match (a later one replaces an earlier one),
+        // tried most specific mask first when decoding.
+        HashMap<Long, BasicInstruction> byOpcode = new HashMap<>();
         for (Instruction inst : instructionList) {
             if (inst instanceof BasicInstruction) {
                 BasicInstruction basic = (BasicInstruction) inst;
-                Integer mask = basic.getOpcodeMask();
-                Integer match = basic.getOpcodeMatch();
-                HashMap<Integer, BasicInstruction> matchMap = maskMap.get(mask);
-                if (matchMap == null) {
-                    matchMap = new HashMap<>();
-                    maskMap.put(mask, matchMap);
-                    matchMaps.add(new MatchMap(mask, matchMap));
-                }
-                matchMap.put(match, basic);
+                byOpcode.put((long) basic.getOpcodeMask() << 32 | (basic.getOpcodeMatch() & 0xFFFFFFFFL), basic);
             }
         }
-        Collections.sort(matchMaps);
-        this.opcodeMatchMaps = matchMaps;
+        ArrayList<BasicInstruction> basics = new ArrayList<>(byOpcode.values());
+        basics.sort(Comparator.comparingInt((BasicInstruction b) -> -Integer.bitCount(b.getOpcodeMask()))
+                .thenComparingInt(BasicInstruction::getOpcodeMask)
+                .thenComparingInt(BasicInstruction::getOpcodeMatch));
+        this.decoder = new InstructionDecoder(basics);
     }
 
+    /**
+     * Finds the basic instruction a 32 bit machine instruction encodes.
+     *
+     * @param binaryInstr the machine instruction
+     * @return the instruction, or null if it is not a valid encoding
+     */
     public BasicInstruction findByBinaryCode(int binaryInstr) {
-        for (MatchMap map : this.opcodeMatchMaps) {
-            BasicInstruction ret = map.find(binaryInstr);
-            if (ret != null) return ret;
-        }
-        return null;
+        return decoder.decode(binaryInstr);
     }
 
     private void addBasicInstructions() {
-        // grab all class files in the same directory as Syscall
-        ArrayList<String> candidates = FilenameFinder.getFilenameList(this.getClass().getClassLoader(),
-                INSTRUCTIONS_DIRECTORY_PATH, CLASS_EXTENSION);
-        HashSet<String> insts = new HashSet<>();
-        for (String file : candidates) {
-            // Do not add class if already encountered (happens if run in MARS development directory)
-            if (insts.contains(file)) {
-                continue;
-            } else {
-                insts.add(file);
-            }
+        // all concrete instruction classes, as listed at build time
+        for (String className : ClassRegistry.getClassNames(INSTRUCTIONS_DIRECTORY, BasicInstruction.class)) {
             try {
-                // grab the class, make sure it implements Syscall, instantiate, add to list
-                String syscallClassName = CLASS_PREFIX + file.substring(0, file.indexOf(CLASS_EXTENSION) - 1);
-                Class clas = Class.forName(syscallClassName);
-                if (!BasicInstruction.class.isAssignableFrom(clas) ||
-                        Modifier.isAbstract(clas.getModifiers()) ||
-                        Modifier.isInterface(clas.getModifiers())) {
-                    continue;
-                }
+                Class clas = Class.forName(className);
                 try {
                     instructionList.add((BasicInstruction) clas.newInstance());
                 }catch (NullPointerException ne){
@@ -164,7 +159,7 @@ public class InstructionSet {
                     throw ne;
                 }
             } catch (Exception e) {
-                System.out.println("Error instantiating Instruction from file " + file + ": " + e);
+                System.out.println("Error instantiating Instruction " + className + ": " + e);
                 System.exit(0);
             }
         }
@@ -226,14 +221,27 @@ public class InstructionSet {
 
     /**
      * Given an operator mnemonic, will return the corresponding Instruction object(s)
-     * from the instruction set.  Uses straight linear search technique.
+     * from the instruction set.  Case-insensitive.  Once the set is populated this is
+     * a hash lookup, and the list returned is shared by every caller.
      *
      * @param name operator mnemonic (e.g. addi, sw,...)
-     * @return list of corresponding Instruction object(s), or null if not found.
+     * @return unmodifiable list of corresponding Instruction object(s), or null if not found.
      */
-    public ArrayList<Instruction> matchOperator(String name) {
+    public List<Instruction> matchOperator(String name) {
+        HashMap<String, List<Instruction>> index = operatorIndex;
+        if (index != null) {
+            // Source code is nearly always lower case already; only convert if that misses
+            List<Instruction> matchingInstructions = index.get(name);
+            if (matchingInstructions == null) {
+                String lower = name.toLowerCase(Locale.ROOT);
+                if (!lower.equals(name)) {
+                    matchingInstructions = index.get(lower);
+                }
+            }
+            return matchingInstructions;
+        }
         ArrayList<Instruction> matchingInstructions = null;
-        // Linear search for now....
+        // Linear search until populated
         for (Instruction inst : instructionList) {
             if (inst.getName().equalsIgnoreCase(name)) {
                 if (matchingInstructions == null)
@@ -241,7 +249,7 @@ public class InstructionSet {
                 matchingInstructions.add(inst);
             }
         }
-        return matchingInstructions;
+        return matchingInstructions == null ? null : Collections.unmodifiableList(matchingInstructions);
     }
 
 
@@ -336,39 +344,4 @@ public class InstructionSet {
     public static void processReturnAddress(int register) {
         RegisterFile.updateRegister(register, RegisterFile.getProgramCounter());
     }
-
-    private static class MatchMap implements Comparable<MatchMap> {
-        private int mask;
-        private int maskLength; // number of 1 bits in mask
-        private HashMap<Integer, BasicInstruction> matchMap;
-
-        public MatchMap(int mask, HashMap<Integer, BasicInstruction> matchMap) {
-            this.mask = mask;
-            this.matchMap = matchMap;
-
-            int k = 0;
-            int n = mask;
-            while (n != 0) {
-                k++;
-                n &= n - 1;
-            }
-            this.maskLength = k;
-        }
-
-        public boolean equals(Object o) {
-            return o instanceof MatchMap && mask == ((MatchMap) o).mask;
-        }
-
-        public int compareTo(MatchMap other) {
-            int d = other.maskLength - this.maskLength;
-            if (d == 0) d = this.mask - other.mask;
-            return d;
-        }
-
-        public BasicInstruction find(int instr) {
-            int match = instr & mask;
-            return matchMap.get(match);
-        }
-    }
 }
-
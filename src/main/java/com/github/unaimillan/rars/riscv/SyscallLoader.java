@@ -1,13 +1,9 @@
 package com.github.unaimillan.rars.riscv;
 
 import com.github.unaimillan.rars.Globals;
-import com.github.unaimillan.rars.util.FilenameFinder;
+import com.github.unaimillan.rars.util.ClassRegistry;
 
 import java.util.ArrayList;
-import java.util.HashSet;
-
-import static com.github.unaimillan.rars.Globals.GLOBAL_CLASS_PREFIX;
-import static com.github.unaimillan.rars.Globals.GLOBAL_DIRECTORY_PATH;
 
 /*
 Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
@@ -49,9 +45,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 public class SyscallLoader {
 
-    private static final String CLASS_PREFIX = GLOBAL_CLASS_PREFIX + "rars.riscv.syscalls.";
-    private static final String SYSCALLS_DIRECTORY_PATH = GLOBAL_DIRECTORY_PATH + "rars/riscv/syscalls";
-    private static final String CLASS_EXTENSION = "class";
+    private static final String SYSCALLS_DIRECTORY = "rars/riscv/syscalls";
 
     private static ArrayList<AbstractSyscall> syscallList;
 
@@ -63,24 +57,10 @@ public class SyscallLoader {
        */
     static {
         syscallList = new ArrayList<>();
-        // grab all class files in the same directory as Syscall
-        ArrayList<String> candidates = FilenameFinder.getFilenameList(SyscallLoader.class.getClassLoader(),
-                SYSCALLS_DIRECTORY_PATH, CLASS_EXTENSION);
-        HashSet<String> syscalls = new HashSet<>();
-        for (String file : candidates) {
-            // Do not add class if already encountered (happens if run in MARS development directory)
-            if (syscalls.contains(file)) {
-                continue;
-            } else {
-                syscalls.add(file);
-            }
+        // all syscall classes in the syscalls package, as listed at build time
+        for (String className : ClassRegistry.getClassNames(SYSCALLS_DIRECTORY, AbstractSyscall.class)) {
             try {
-                // grab the class, make sure it implements Syscall, instantiate, add to list
-                String syscallClassName = CLASS_PREFIX + file.substring(0, file.indexOf(CLASS_EXTENSION) - 1);
-                Class clas = Class.forName(syscallClassName);
-                if (!AbstractSyscall.class.isAssignableFrom(clas)) {
-                    continue;
-                }
+                Class clas = Class.forName(className);
                 AbstractSyscall syscall = (AbstractSyscall) clas.newInstance();
                 if (syscall.getNumber() == -1) {
                     syscallList.add(syscall);
@@ -88,7 +68,7 @@ public class SyscallLoader {
                     throw new Exception("Syscalls must assign -1 for number");
                 }
             } catch (Exception e) {
-                System.out.println("Error instantiating Syscall from file " + file + ": " + e);
+                System.out.println("Error instantiating Syscall " + className + ": " + e);
                 System.exit(0);
             }
         }
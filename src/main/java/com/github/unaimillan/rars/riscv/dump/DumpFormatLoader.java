@@ -1,13 +1,9 @@
 package com.github.unaimillan.rars.riscv.dump;
 
-import com.github.unaimillan.rars.util.FilenameFinder;
+import com.github.unaimillan.rars.util.ClassRegistry;
 
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 
-import static com.github.unaimillan.rars.Globals.GLOBAL_CLASS_PREFIX;
-import static com.github.unaimillan.rars.Globals.GLOBAL_DIRECTORY_PATH;
-
 /*
 Copyright (c) 2003-2008,  Pete Sanderson and Kenneth Vollmar
 
@@ -44,29 +40,19 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 public class DumpFormatLoader {
 
-    private static final String CLASS_PREFIX = GLOBAL_CLASS_PREFIX + "rars.riscv.dump.";
-    private static final String DUMP_DIRECTORY_PATH = GLOBAL_DIRECTORY_PATH + "rars/riscv/dump";
-    private static final String CLASS_EXTENSION = "class";
+    private static final String DUMP_DIRECTORY = "rars/riscv/dump";
 
     private static ArrayList<DumpFormat> formatList = null;
 
     static {
         formatList = new ArrayList<>();
-        // grab all class files in the dump directory
-        ArrayList<String> candidates = FilenameFinder.getFilenameList(DumpFormatLoader.class.getClassLoader(),
-                DUMP_DIRECTORY_PATH, CLASS_EXTENSION);
-        for (String file : candidates) {
+        // all dump format classes in the dump package, as listed at build time
+        for (String formatClassName : ClassRegistry.getClassNames(DUMP_DIRECTORY, DumpFormat.class)) {
             try {
-                // grab the class, make sure it implements DumpFormat, instantiate, add to list
-                String formatClassName = CLASS_PREFIX + file.substring(0, file.indexOf(CLASS_EXTENSION) - 1);
                 Class clas = Class.forName(formatClassName);
-                if (DumpFormat.class.isAssignableFrom(clas) &&
-                        !Modifier.isAbstract(clas.getModifiers()) &&
-                        !Modifier.isInterface(clas.getModifiers())) {
-                    formatList.add((DumpFormat) clas.newInstance());
-                }
+                formatList.add((DumpFormat) clas.newInstance());
             } catch (Exception e) {
-                System.out.println("Error instantiating DumpFormat from file " + file + ": " + e);
+                System.out.println("Error instantiating DumpFormat " + formatClassName + ": " + e);
             }
         }
     }
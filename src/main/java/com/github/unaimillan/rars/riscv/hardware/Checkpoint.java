@@ -0,0 +1,298 @@
+package com.github.unaimillan.rars.riscv.hardware;
+
+import com.github.unaimillan.rars.ProgramStatement;
+import com.github.unaimillan.rars.riscv.InstructionSet;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Saves the complete state of a simulated machine to a file and loads it back.
+ * <p>
+ * A checkpoint holds the integer, floating point and control and status registers, the program counter,
+ * pending interrupts, the exit code and clock, the random number streams, the heap pointer, the files the
+ * program has open, the text segment and every data, stack and memory mapped I/O page that was written.
+ * The file starts with a header holding everything but the pages, followed by the pages themselves, 4K
+ * aligned.  Restoring maps the file and reads each page the first time the program touches it, so loading
+ * a large image costs about as much as loading a small one.
+ * <p>
+ * Open files are reopened by name at their saved positions; standard input and output are left as they
+ * are.  The text segment is saved as binary instructions, so restored statements have no source lines.
+ * A checkpoint can only be restored with the memory configuration and register width it was saved with.
+ */
+public final class Checkpoint {
+    private static final long MAGIC = 0x524152534348504BL; // "RARSCHPK"
+    private static final int VERSION = 1;
+    // Magic number, version and header length
+    private static final int PREAMBLE_LENGTH = 16;
+    private static final int PAGE_SIZE = PagedRegion.PAGE_SIZE;
+    private static final int TEXT_BLOCK_WORDS = 1024;
+    // Random streams are stored with Java serialization; nothing else may be deserialized from a checkpoint
+    private static final ObjectInputFilter RANDOM_ONLY =
+            ObjectInputFilter.Config.createFilter("maxdepth=1;maxrefs=8;maxbytes=1024;java.util.Random;!*");
+
+    private Checkpoint() {
+    }
+
+    /**
+     * Writes the state of a machine to a file, replacing the file if it exists.
+     *
+     * @param context the machine to save; it must not be running
+     * @param file    the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(MachineContext context, File file) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(header);
+        ArrayList<byte[]> pages = new ArrayList<>();
+        context.getLock().lock();
+        try {
+            Memory memory = context.getMemory();
+            writeLayout(out);
+            writeValues(out, context.registers.values());
+            out.writeLong(context.programCounter.getValueNoNotify());
+            writeValues(out, context.floatingPointRegisters.values());
+            writeValues(out, context.controlAndStatusRegisters.values());
+            ByteArrayOutputStream interruptState = new ByteArrayOutputStream();
+            context.interrupts.writeState(new DataOutputStream(interruptState));
+            writeBytes(out, interruptState);
+            out.writeInt(context.getExitCode());
+            out.writeLong(context.getInstructionsPerMillisecond());
+            out.writeLong(context.getSleptMillis());
+            HashMap<Integer, Random> randomStreams = context.getRandomStreams();
+            out.writeInt(randomStreams.size());
+            for (Map.Entry<Integer, Random> stream : randomStreams.entrySet()) {
+                out.writeInt(stream.getKey());
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+                    objects.writeObject(stream.getValue());
+                }
+                writeBytes(out, bytes);
+            }
+            out.writeInt(memory.getHeapAddress());
+            ByteArrayOutputStream openFiles = new ByteArrayOutputStream();
+            context.getFiles().writeOpenFiles(new DataOutputStream(openFiles));
+            writeBytes(out, openFiles);
+
+            ProgramStatement[][] text = memory.textBlocks();
+            for (int block = 0; block < text.length; block++) {
+                if (text[block] == null) continue;
+                out.writeInt(block);
+                for (int word = 0; word < TEXT_BLOCK_WORDS; word++) {
+                    ProgramStatement statement = text[block][word];
+                    if (statement != null) {
+                        out.writeInt(word);
+                        out.writeInt(statement.getBinaryStatement());
+                    }
+                }
+                out.writeInt(-1);
+            }
+            out.writeInt(-1);
+
+            // Pages are numbered here; their position in the file is known once the header is complete
+            for (PagedRegion region : memory.regions()) {
+                out.writeInt(region.pageCount());
+                for (int i = 0; i < region.pageCount(); i++) {
+                    byte[] page = region.page(i);
+                    if (page == null) continue;
+                    out.writeInt(i);
+                    out.writeInt(pages.size());
+                    pages.add(page.clone());
+                }
+                out.writeInt(-1);
+            }
+        } finally {
+            context.getLock().unlock();
+        }
+        out.flush();
+
+        int pagesStart = alignToPage(PREAMBLE_LENGTH + header.size());
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            stream.writeLong(MAGIC);
+            stream.writeInt(VERSION);
+            stream.writeInt(header.size());
+            header.writeTo(stream);
+            stream.write(new byte[pagesStart - PREAMBLE_LENGTH - header.size()]);
+            for (byte[] page : pages) {
+                stream.write(page);
+            }
+        }
+    }
+
+    /**
+     * Replaces the state of a machine with one saved by {@link #save}.  Memory pages are read from the file
+     * as the program touches them, so the file must not be modified while the machine uses it.
+     *
+     * @param context the machine to restore; it must not be running
+     * @param file    the checkpoint to read
+     * @throws IOException if the file cannot be read, is not a checkpoint, or was saved with a different
+     *                     memory configuration or register width.  The machine is unchanged unless the
+     *                     error is in reopening one of the program's files.
+     */
+    public static void restore(MachineContext context, File file) throws IOException {
+        MappedByteBuffer image;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            image = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (image.capacity() < PREAMBLE_LENGTH || image.getLong(0) != MAGIC) {
+            throw new IOException(file + " is not a checkpoint");
+        }
+        if (image.getInt(8) != VERSION) {
+            throw new IOException(file + " is a version " + image.getInt(8) + " checkpoint, expected version " + VERSION);
+        }
+        int headerLength = image.getInt(12);
+        if (headerLength < 0 || headerLength > image.capacity() - PREAMBLE_LENGTH) {
+            throw new IOException(file + " is truncated");
+        }
+        byte[] header = new byte[headerLength];
+        image.duplicate().position(PREAMBLE_LENGTH).get(header);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+        int pagesStart = alignToPage(PREAMBLE_LENGTH + headerLength);
+
+        // Read everything before changing the machine, so a bad file leaves it as it was
+        if (!readLayout(in)) {
+            throw new IOException(file + " was saved with a different memory configuration or register width");
+        }
+        long[] registers = readValues(in, context.registers.values().length);
+        long programCounter = in.readLong();
+        long[] floatingPointRegisters = readValues(in, context.floatingPointRegisters.values().length);
+        long[] controlAndStatusRegisters = readValues(in, context.controlAndStatusRegisters.values().length);
+        byte[] interruptState = readBytes(in);
+        int exitCode = in.readInt();
+        long instructionsPerMillisecond = in.readLong();
+        long sleptMillis = in.readLong();
+        HashMap<Integer, Random> randomStreams = new HashMap<>();
+        for (int count = in.readInt(); count > 0; count--) {
+            int id = in.readInt();
+            try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)))) {
+                objects.setObjectInputFilter(RANDOM_ONLY);
+                randomStreams.put(id, (Random) objects.readObject());
+            } catch (ClassNotFoundException | ClassCastException | InvalidClassException e) {
+                throw new IOException(file + " holds an invalid random number stream", e);
+            }
+        }
+        int heapAddress = in.readInt();
+        byte[] openFiles = readBytes(in);
+
+        ArrayList<int[]> text = new ArrayList<>(); // address and binary statement
+        for (int block = in.readInt(); block >= 0; block = in.readInt()) {
+            for (int word = in.readInt(); word >= 0; word = in.readInt()) {
+                long address = Memory.textBaseAddress + ((long) block * TEXT_BLOCK_WORDS + word) * Memory.WORD_LENGTH_BYTES;
+                if (word >= TEXT_BLOCK_WORDS || address > Integer.MAX_VALUE || !Memory.inTextSegment((int) address)) {
+                    throw new IOException(file + " holds a statement outside the text segment");
+                }
+                text.add(new int[]{(int) address, in.readInt()});
+            }
+        }
+
+        Memory memory = context.getMemory();
+        PagedRegion[] regions = memory.regions();
+        int[][] offsets = new int[regions.length][];
+        for (int r = 0; r < regions.length; r++) {
+            if (in.readInt() != regions[r].pageCount()) {
+                throw new IOException(file + " was saved with a different memory configuration or register width");
+            }
+            offsets[r] = new int[regions[r].pageCount()];
+            Arrays.fill(offsets[r], -1);
+            for (int page = in.readInt(); page >= 0; page = in.readInt()) {
+                long offset = pagesStart + (long) in.readInt() * PAGE_SIZE;
+                if (page >= offsets[r].length || offset + PAGE_SIZE > image.capacity()) {
+                    throw new IOException(file + " is truncated");
+                }
+                offsets[r][page] = (int) offset;
+            }
+        }
+
+        context.getLock().lock();
+        try {
+            // First, as it is the only part still to be parsed; it leaves the controller as it was if it fails
+            context.interrupts.readState(new DataInputStream(new ByteArrayInputStream(interruptState)));
+            System.arraycopy(registers, 0, context.registers.values(), 0, registers.length);
+            context.programCounter.setValue(programCounter);
+            System.arraycopy(floatingPointRegisters, 0, context.floatingPointRegisters.values(), 0,
+                    floatingPointRegisters.length);
+            System.arraycopy(controlAndStatusRegisters, 0, context.controlAndStatusRegisters.values(), 0,
+                    controlAndStatusRegisters.length);
+            context.setExitCode(exitCode);
+            context.restoreClock(instructionsPerMillisecond, sleptMillis);
+            context.getRandomStreams().clear();
+            context.getRandomStreams().putAll(randomStreams);
+
+            memory.setHeapAddress(heapAddress);
+            memory.clearText();
+            for (int[] statement : text) {
+                memory.setStatement(statement[0], new ProgramStatement(statement[1], statement[0]));
+            }
+            for (int r = 0; r < regions.length; r++) {
+                regions[r].restore(image, offsets[r]);
+            }
+            context.getFiles().readOpenFiles(new DataInputStream(new ByteArrayInputStream(openFiles)));
+        } catch (AddressErrorException e) {
+            // Every address was checked against the text segment above
+            throw new IOException(file + " holds a statement outside the text segment", e);
+        } finally {
+            context.getLock().unlock();
+        }
+    }
+
+    private static int alignToPage(int length) {
+        return (length + PAGE_SIZE - 1) & -PAGE_SIZE;
+    }
+
+    // State saved by other classes is kept as a length and the bytes they wrote
+    private static void writeBytes(DataOutputStream out, ByteArrayOutputStream bytes) throws IOException {
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("checkpoint header is truncated");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeLayout(DataOutputStream out) throws IOException {
+        out.writeBoolean(InstructionSet.rv64);
+        out.writeInt(Memory.textBaseAddress);
+        out.writeInt(Memory.dataSegmentBaseAddress);
+        out.writeInt(Memory.stackBaseAddress);
+        out.writeInt(Memory.memoryMapBaseAddress);
+    }
+
+    private static boolean readLayout(DataInputStream in) throws IOException {
+        boolean rv64 = in.readBoolean();
+        boolean sameLayout = in.readInt() == Memory.textBaseAddress & in.readInt() == Memory.dataSegmentBaseAddress
+                & in.readInt() == Memory.stackBaseAddress & in.readInt() == Memory.memoryMapBaseAddress;
+        return rv64 == InstructionSet.rv64 && sameLayout;
+    }
+
+    private static void writeValues(DataOutputStream out, long[] values) throws IOException {
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    private static long[] readValues(DataInputStream in, int expected) throws IOException {
+        int length = in.readInt();
+        if (length != expected) {
+            throw new IOException("checkpoint has " + length + " registers where " + expected + " were expected");
+        }
+        long[] values = new long[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readLong();
+        }
+        return values;
+    }
+}
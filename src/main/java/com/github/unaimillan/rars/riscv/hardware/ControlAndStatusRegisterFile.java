@@ -46,38 +46,59 @@ public class ControlAndStatusRegisterFile {
 
 
     public static final int INTERRUPT_ENABLE = 0x1;
-    
-    private static final RegisterBlock instance;
 
-    static {
+    // CSR numbers; use these instead of names on hot paths, lookups by number are a single array index
+    public static final int USTATUS = 0x000;
+    public static final int FFLAGS = 0x001;
+    public static final int FRM = 0x002;
+    public static final int FCSR = 0x003;
+    public static final int UIE = 0x004;
+    public static final int UTVEC = 0x005;
+    public static final int USCRATCH = 0x040;
+    public static final int UEPC = 0x041;
+    public static final int UCAUSE = 0x042;
+    public static final int UTVAL = 0x043;
+    public static final int UIP = 0x044;
+    public static final int CYCLE = 0xC00;
+    public static final int TIME = 0xC01;
+    public static final int INSTRET = 0xC02;
+    public static final int CYCLEH = 0xC80;
+    public static final int TIMEH = 0xC81;
+    public static final int INSTRETH = 0xC82;
+
+    static RegisterBlock createRegisterBlock() {
         // TODO: consider making time, cycle and instret 64 bit registers which then are linked to by *h
         // Remember to update the window tooltips when adding a CSR
         Register[] tmp = {
-                new MaskedRegister("ustatus", 0x000, 0,~0x11),
+                new MaskedRegister("ustatus", USTATUS, 0,~0x11),
                 null, // fflags
                 null, // frm
-                new MaskedRegister("fcsr", 0x003, 0, ~0xFF),
-                new Register("uie", 0x004, 0),
-                new Register("utvec", 0x005, 0),
-                new Register("uscratch", 0x040, 0),
-                new Register("uepc", 0x041, 0),
-                new Register("ucause", 0x042, 0),
-                new Register("utval", 0x043, 0),
-                new Register("uip", 0x044, 0),
-                new ReadOnlyRegister("cycle", 0xC00, 0),
-                new ReadOnlyRegister("time", 0xC01, 0),
-                new ReadOnlyRegister("instret",0xC02, 0),
+                new MaskedRegister("fcsr", FCSR, 0, ~0xFF),
+                new Register("uie", UIE, 0),
+                new Register("utvec", UTVEC, 0),
+                new Register("uscratch", USCRATCH, 0),
+                new Register("uepc", UEPC, 0),
+                new Register("ucause", UCAUSE, 0),
+                new Register("utval", UTVAL, 0),
+                new Register("uip", UIP, 0),
+                new ReadOnlyRegister("cycle", CYCLE, 0),
+                new ReadOnlyRegister("time", TIME, 0),
+                new ReadOnlyRegister("instret",INSTRET, 0),
                 null, // cycleh
                 null, // timeh
                 null, // instreth
         };
-        tmp[1] = new LinkedRegister("fflags", 0x001, tmp[3], 0x1F);
-        tmp[2] = new LinkedRegister("frm", 0x002, tmp[3], 0xE0);
+        tmp[1] = new LinkedRegister("fflags", FFLAGS, tmp[3], 0x1F);
+        tmp[2] = new LinkedRegister("frm", FRM, tmp[3], 0xE0);
+
+        tmp[14] = new LinkedRegister("cycleh", CYCLEH,tmp[11], 0xFFFFFFFF_00000000L);
+        tmp[15] = new LinkedRegister("timeh", TIMEH, tmp[12],0xFFFFFFFF_00000000L);
+        tmp[16] = new LinkedRegister("instreth",INSTRETH, tmp[13],0xFFFFFFFF_00000000L);
+        return new RegisterBlock('_', tmp); // prefix not used
+    }
 
-        tmp[14] = new LinkedRegister("cycleh", 0xC80,tmp[11], 0xFFFFFFFF_00000000L);
-        tmp[15] = new LinkedRegister("timeh", 0xC81, tmp[12],0xFFFFFFFF_00000000L);
-        tmp[16] = new LinkedRegister("instreth",0xC82, tmp[13],0xFFFFFFFF_00000000L);
-        instance = new RegisterBlock('_', tmp); // prefix not used
+    private static RegisterBlock instance() {
+        return MachineContext.current().controlAndStatusRegisters;
     }
 
     /**
@@ -88,17 +109,17 @@ public class ControlAndStatusRegisterFile {
      * @return old value in register prior to update
      **/
     public static boolean updateRegister(int num, long val) {
-        if (instance.getRegister(num) instanceof ReadOnlyRegister) {
+        if (instance().getRegister(num) instanceof ReadOnlyRegister) {
             return true;
         }
         // TODO: do something to better handle the h csrs
-        if (num >= 0xC80 && num <= 0xC82) {
+        if (num >= CYCLEH && num <= INSTRETH) {
             return true;
         }
         if ((Globals.getSettings().getBackSteppingEnabled())) {
-            Globals.program.getBackStepper().addControlAndStatusRestore(num, instance.updateRegister(num, val));
+            Globals.program.getBackStepper().addControlAndStatusRestore(num, instance().updateRegister(num, val));
         } else {
-            instance.updateRegister(num, val);
+            instance().updateRegister(num, val);
         }
         return false;
     }
@@ -111,7 +132,7 @@ public class ControlAndStatusRegisterFile {
      * @return old value in register prior to update
      **/
     public static void updateRegister(String name, long val) {
-        updateRegister(instance.getRegister(name).getNumber(), val);
+        updateRegister(instance().getRegister(name).getNumber(), val);
     }
 
     /**
@@ -123,9 +144,9 @@ public class ControlAndStatusRegisterFile {
      **/
     public static void updateRegisterBackdoor(int num, long val) {
         if ((Globals.getSettings().getBackSteppingEnabled())) {
-            Globals.program.getBackStepper().addControlAndStatusBackdoor(num, instance.getRegister(num).setValueBackdoor(val));
+            Globals.program.getBackStepper().addControlAndStatusBackdoor(num, instance().getRegister(num).setValueBackdoor(val));
         } else {
-            instance.getRegister(num).setValueBackdoor(val);
+            instance().getRegister(num).setValueBackdoor(val);
         }
     }
 
@@ -137,7 +158,7 @@ public class ControlAndStatusRegisterFile {
      * @return old value in register prior to update
      **/
     public static void updateRegisterBackdoor(String name, long val) {
-        updateRegisterBackdoor(instance.getRegister(name).getNumber(), val);
+        updateRegisterBackdoor(instance().getRegister(name).getNumber(), val);
     }
 
     /**
@@ -147,7 +168,7 @@ public class ControlAndStatusRegisterFile {
      * @param val The value to OR with
      **/
     public static boolean orRegister(int num, long val) {
-        return updateRegister(num, instance.getValue(num) | val);
+        return updateRegister(num, instance().getValue(num) | val);
     }
 
     /**
@@ -157,7 +178,7 @@ public class ControlAndStatusRegisterFile {
      * @param val  The value to OR with
      **/
     public static void orRegister(String name, long val) {
-        updateRegister(name, instance.getValue(name) | val);
+        updateRegister(name, instance().getValue(name) | val);
     }
 
     /**
@@ -167,7 +188,7 @@ public class ControlAndStatusRegisterFile {
      * @param val The value to clear by
      **/
     public static boolean clearRegister(int num, long val) {
-        return updateRegister(num, instance.getValue(num) & ~val);
+        return updateRegister(num, instance().getValue(num) & ~val);
     }
 
     /**
@@ -177,7 +198,7 @@ public class ControlAndStatusRegisterFile {
      * @param val  The value to clear by
      **/
     public static void clearRegister(String name, long val) {
-        updateRegister(name, instance.getValue(name) & ~val);
+        updateRegister(name, instance().getValue(name) & ~val);
     }
 
     /**
@@ -188,7 +209,7 @@ public class ControlAndStatusRegisterFile {
      **/
 
     public static int getValue(int num) {
-        return (int)instance.getValue(num);
+        return (int)instance().getValue(num);
     }
 
     /**
@@ -199,7 +220,7 @@ public class ControlAndStatusRegisterFile {
      **/
 
     public static long getValueLong(int num) {
-        return instance.getValue(num);
+        return instance().getValue(num);
     }
     /**
      * Returns the value of the register
@@ -209,7 +230,18 @@ public class ControlAndStatusRegisterFile {
      **/
 
     public static int getValue(String name) {
-        return (int)instance.getValue(name);
+        return (int)instance().getValue(name);
+    }
+
+    /**
+     * Returns the full value of the register
+     *
+     * @param name The register's name
+     * @return The value of the given register.  0 for non-implemented registers
+     **/
+
+    public static long getValueLong(String name) {
+        return instance().getValue(name);
     }
 
     /**
@@ -220,7 +252,18 @@ public class ControlAndStatusRegisterFile {
      **/
 
     public static long getValueNoNotify(String name) {
-        return instance.getRegister(name).getValueNoNotify();
+        return instance().getRegister(name).getValueNoNotify();
+    }
+
+    /**
+     * Returns the value of the register without notifying observers
+     *
+     * @param num The register number.
+     * @return The value of the given register.
+     **/
+
+    public static long getValueNoNotify(int num) {
+        return instance().getRegister(num).getValueNoNotify();
     }
 
     /**
@@ -230,7 +273,22 @@ public class ControlAndStatusRegisterFile {
      **/
 
     public static Register[] getRegisters() {
-        return instance.getRegisters();
+        return instance().getRegisters();
+    }
+
+    /**
+     * Copies the register values under the machine lock, for use from threads other than the simulation thread.
+     *
+     * @return the values, in the same order as {@link #getRegisters()}
+     */
+    public static long[] snapshot() {
+        MachineContext context = MachineContext.current();
+        context.getLock().lock();
+        try {
+            return instance().snapshot();
+        } finally {
+            context.getLock().unlock();
+        }
     }
 
 
@@ -242,18 +300,22 @@ public class ControlAndStatusRegisterFile {
      **/
 
     public static int getRegisterPosition(Register r) {
-        Register[] registers = instance.getRegisters();
-        for (int i = 0; i < registers.length; i++) {
-            if (registers[i] == r) {
-                return i;
-            }
-        }
-        return -1;
+        RegisterBlock block = instance();
+        int position = block.getPosition(r.getNumber());
+        return position >= 0 && block.getRegisters()[position] == r ? position : -1;
     }
 
     
     public static Register getRegister(String name) {
-        return instance.getRegister(name);
+        return instance().getRegister(name);
+    }
+
+    /**
+     * @param num the CSR number, see the constants in this class
+     * @return the register with that number, or null if it is not implemented
+     */
+    public static Register getRegister(int num) {
+        return instance().getRegister(num);
     }
 
     /**
@@ -261,7 +323,7 @@ public class ControlAndStatusRegisterFile {
      **/
 
     public static void resetRegisters() {
-        instance.resetRegisters();
+        instance().resetRegisters();
     }
 
     /**
@@ -269,7 +331,7 @@ public class ControlAndStatusRegisterFile {
      * will add the given Observer to each one.
      */
     public static void addRegistersObserver(Observer observer) {
-        instance.addRegistersObserver(observer);
+        instance().addRegistersObserver(observer);
     }
 
     /**
@@ -277,7 +339,7 @@ public class ControlAndStatusRegisterFile {
      * will delete the given Observer from each one.
      */
     public static void deleteRegistersObserver(Observer observer) {
-        instance.deleteRegistersObserver(observer);
+        instance().deleteRegistersObserver(observer);
     }
 
 }
@@ -46,24 +46,30 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 // Float.intBitsToFloat() to bring it back.
 
 public class FloatingPointRegisterFile {
-    private static final RegisterBlock instance = new RegisterBlock('f', new Register[]{
-            new Register("ft0", 0, 0), new Register("ft1", 1, 0),
-            new Register("ft2", 2, 0), new Register("ft3", 3, 0),
-            new Register("ft4", 4, 0), new Register("ft5", 5, 0),
-            new Register("ft6", 6, 0), new Register("ft7", 7, 0),
-            new Register("fs0", 8, 0), new Register("fs1", 9, 0),
-            new Register("fa0", 10, 0), new Register("fa1", 11, 0),
-            new Register("fa2", 12, 0), new Register("fa3", 13, 0),
-            new Register("fa4", 14, 0), new Register("fa5", 15, 0),
-            new Register("fa6", 16, 0), new Register("fa7", 17, 0),
-            new Register("fs2", 18, 0), new Register("fs3", 19, 0),
-            new Register("fs4", 20, 0), new Register("fs5", 21, 0),
-            new Register("fs6", 22, 0), new Register("fs7", 23, 0),
-            new Register("fs8", 24, 0), new Register("fs9", 25, 0),
-            new Register("fs10", 26, 0), new Register("fs11", 27, 0),
-            new Register("ft8", 28, 0), new Register("ft9", 29, 0),
-            new Register("ft10", 30, 0), new Register("ft11", 31, 0)
-    });
+    static RegisterBlock createRegisterBlock() {
+        return new RegisterBlock('f', new Register[]{
+                new Register("ft0", 0, 0), new Register("ft1", 1, 0),
+                new Register("ft2", 2, 0), new Register("ft3", 3, 0),
+                new Register("ft4", 4, 0), new Register("ft5", 5, 0),
+                new Register("ft6", 6, 0), new Register("ft7", 7, 0),
+                new Register("fs0", 8, 0), new Register("fs1", 9, 0),
+                new Register("fa0", 10, 0), new Register("fa1", 11, 0),
+                new Register("fa2", 12, 0), new Register("fa3", 13, 0),
+                new Register("fa4", 14, 0), new Register("fa5", 15, 0),
+                new Register("fa6", 16, 0), new Register("fa7", 17, 0),
+                new Register("fs2", 18, 0), new Register("fs3", 19, 0),
+                new Register("fs4", 20, 0), new Register("fs5", 21, 0),
+                new Register("fs6", 22, 0), new Register("fs7", 23, 0),
+                new Register("fs8", 24, 0), new Register("fs9", 25, 0),
+                new Register("fs10", 26, 0), new Register("fs11", 27, 0),
+                new Register("ft8", 28, 0), new Register("ft9", 29, 0),
+                new Register("ft10", 30, 0), new Register("ft11", 31, 0)
+        });
+    }
+
+    private static RegisterBlock instance() {
+        return MachineContext.current().floatingPointRegisters;
+    }
 
     /**
      * Sets the value of the FPU register given to the value given.
@@ -99,17 +105,17 @@ public class FloatingPointRegisterFile {
     public static void updateRegister(int num, int val) {
         long lval = val | 0xFFFFFFFF_00000000L; // NAN box if used as float
         if ((Globals.getSettings().getBackSteppingEnabled())) {
-            Globals.program.getBackStepper().addFloatingPointRestore(num, instance.updateRegister(num, lval));
+            Globals.program.getBackStepper().addFloatingPointRestore(num, instance().updateRegister(num, lval));
         } else {
-            instance.updateRegister(num, lval);
+            instance().updateRegister(num, lval);
         }
     }
 
     public static void updateRegisterLong(int num, long val) {
         if ((Globals.getSettings().getBackSteppingEnabled())) {
-            Globals.program.getBackStepper().addFloatingPointRestore(num, instance.updateRegister(num, val));
+            Globals.program.getBackStepper().addFloatingPointRestore(num, instance().updateRegister(num, val));
         } else {
-            instance.updateRegister(num, val);
+            instance().updateRegister(num, val);
         }
     }
     /**
@@ -121,7 +127,7 @@ public class FloatingPointRegisterFile {
      **/
 
     public static int getValue(int num) {
-        long lval = instance.getValue(num);
+        long lval = instance().getValue(num);
         if((lval & 0xFFFFFFFF_00000000L) == 0xFFFFFFFF_00000000L){
             return (int)lval; // If NaN-Boxed return value
         }else{
@@ -130,7 +136,7 @@ public class FloatingPointRegisterFile {
     }
 
     public static long getValueLong(int num) {
-        return instance.getValue(num);
+        return instance().getValue(num);
     }
 
     /**
@@ -142,7 +148,7 @@ public class FloatingPointRegisterFile {
      **/
 
     public static int getValue(String name) {
-        long lval = instance.getValue(name);
+        long lval = instance().getValue(name);
         if((lval & 0xFFFFFFFF_00000000L) == 0xFFFFFFFF_00000000L){
             return (int)lval;
         }else{
@@ -157,7 +163,22 @@ public class FloatingPointRegisterFile {
      **/
 
     public static Register[] getRegisters() {
-        return instance.getRegisters();
+        return instance().getRegisters();
+    }
+
+    /**
+     * Copies the register values under the machine lock, for use from threads other than the simulation thread.
+     *
+     * @return the values, in the same order as {@link #getRegisters()}
+     */
+    public static long[] snapshot() {
+        MachineContext context = MachineContext.current();
+        context.getLock().lock();
+        try {
+            return instance().snapshot();
+        } finally {
+            context.getLock().unlock();
+        }
     }
 
     /**
@@ -168,7 +189,7 @@ public class FloatingPointRegisterFile {
      **/
 
     public static Register getRegister(String name) {
-        return instance.getRegister(name);
+        return instance().getRegister(name);
     }
 
 
@@ -177,7 +198,7 @@ public class FloatingPointRegisterFile {
      **/
 
     public static void resetRegisters() {
-        instance.resetRegisters();
+        instance().resetRegisters();
     }
 
 
@@ -186,7 +207,7 @@ public class FloatingPointRegisterFile {
      * will add the given Observer to each one.
      */
     public static void addRegistersObserver(Observer observer) {
-        instance.addRegistersObserver(observer);
+        instance().addRegistersObserver(observer);
     }
 
     /**
@@ -194,6 +215,6 @@ public class FloatingPointRegisterFile {
      * will delete the given Observer from each one.
      */
     public static void deleteRegistersObserver(Observer observer) {
-        instance.deleteRegistersObserver(observer);
+        instance().deleteRegistersObserver(observer);
     }
 }
@@ -4,105 +4,205 @@ import com.github.unaimillan.rars.SimulationException;
 import com.github.unaimillan.rars.riscv.Instruction;
 import com.github.unaimillan.rars.simulator.Simulator;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * Manages the flow of interrupts to the processor
  * <p>
  * Roughly corresponds to PLIC in the spec, but it additionally (kindof) handles
+ * <p>
+ * Each {@link MachineContext} has its own interrupt state; the static methods act on the context
+ * bound to the calling thread.
  */
 // TODO: add backstepper support
 public class InterruptController {
-    // Lock for synchronizing as this is a static class
-    public static final Object lock = new Object();
+    // Lock for synchronizing access to this machine's interrupt state
+    private final Object lock = new Object();
 
     // Status for the interrupt state
-    private static boolean externalPending = false;
-    private static int externalValue;
-    private static boolean timerPending = false;
-    private static int timerValue;
+    private boolean externalPending = false;
+    private int externalValue;
+    private boolean timerPending = false;
+    private int timerValue;
 
     //Status for trap state
-    private static boolean trapPending = false;
-    private static SimulationException trapSE;
-    private static int trapPC;
+    private boolean trapPending = false;
+    private SimulationException trapSE;
+    private int trapPC;
 
-    public static void reset() {
+    // Mirrors (externalPending || timerPending || trapPending) so it can be polled without the lock
+    private volatile boolean anyPending = false;
+
+    InterruptController() {
+    }
+
+    private static InterruptController instance() {
+        return MachineContext.current().interrupts;
+    }
+
+    /**
+     * @return the object to synchronize on while inspecting and claiming several pending interrupts at once
+     */
+    public static Object getLock() {
+        return instance().lock;
+    }
+
+    // Saves the pending interrupts and trap for a Checkpoint
+    void writeState(DataOutputStream out) throws IOException {
+        synchronized (lock) {
+            out.writeBoolean(externalPending);
+            out.writeInt(externalValue);
+            out.writeBoolean(timerPending);
+            out.writeInt(timerValue);
+            out.writeBoolean(trapPending);
+            if (trapPending) {
+                out.writeUTF(trapSE.error() == null ? "" : trapSE.error().getMessage());
+                out.writeInt(trapSE.cause());
+                out.writeInt(trapSE.value());
+                out.writeInt(trapPC);
+            }
+        }
+    }
+
+    // Counterpart of writeState
+    void readState(DataInputStream in) throws IOException {
+        synchronized (lock) {
+            // Everything is read before anything is set, so a truncated state leaves the controller unchanged
+            boolean newExternalPending = in.readBoolean();
+            int newExternalValue = in.readInt();
+            boolean newTimerPending = in.readBoolean();
+            int newTimerValue = in.readInt();
+            boolean newTrapPending = in.readBoolean();
+            if (newTrapPending) {
+                String message = in.readUTF();
+                int cause = in.readInt();
+                int value = in.readInt();
+                int pc = in.readInt();
+                trapSE = new SimulationException(message, cause, value);
+                trapPC = pc;
+            }
+            externalPending = newExternalPending;
+            externalValue = newExternalValue;
+            timerPending = newTimerPending;
+            timerValue = newTimerValue;
+            trapPending = newTrapPending;
+            updateAnyPending();
+        }
+    }
+
+    void resetState() {
         synchronized (lock) {
             externalPending = false;
             timerPending = false;
             trapPending = false;
+            anyPending = false;
         }
     }
 
+    public static void reset() {
+        instance().resetState();
+    }
+
     public static boolean registerExternalInterrupt(int value) {
-        synchronized (lock) {
-            if (externalPending) return false;
-            externalValue = value;
-            externalPending = true;
+        InterruptController ic = instance();
+        synchronized (ic.lock) {
+            if (ic.externalPending) return false;
+            ic.externalValue = value;
+            ic.externalPending = true;
+            ic.anyPending = true;
             Simulator.getInstance().interrupt();
             return true;
         }
     }
 
     public static boolean registerTimerInterrupt(int value) {
-        synchronized (lock) {
-            if (timerPending) return false;
-            timerValue = value;
-            timerPending = true;
+        InterruptController ic = instance();
+        synchronized (ic.lock) {
+            if (ic.timerPending) return false;
+            ic.timerValue = value;
+            ic.timerPending = true;
+            ic.anyPending = true;
             Simulator.getInstance().interrupt();
             return true;
         }
     }
 
     public static boolean registerSynchronousTrap(SimulationException se, int pc) {
-        synchronized (lock) {
-            if (trapPending) return false;
-            trapSE = se;
-            trapPC = pc;
-            trapPending = true;
+        InterruptController ic = instance();
+        synchronized (ic.lock) {
+            if (ic.trapPending) return false;
+            ic.trapSE = se;
+            ic.trapPC = pc;
+            ic.trapPending = true;
+            ic.anyPending = true;
             return true;
         }
     }
 
+    private void updateAnyPending() {
+        anyPending = externalPending || timerPending || trapPending;
+    }
+
+    /**
+     * Cheap check for the simulator's fast path; does not take the lock.
+     *
+     * @return true if any interrupt or trap may be pending
+     */
+    public static boolean anyPending() {
+        return instance().anyPending;
+    }
+
     public static boolean externalPending() {
-        synchronized (lock) {
-            return externalPending;
+        InterruptController ic = instance();
+        synchronized (ic.lock) {
+            return ic.externalPending;
         }
     }
 
     public static boolean timerPending() {
-        synchronized (lock) {
-            return timerPending;
+        InterruptController ic = instance();
+        synchronized (ic.lock) {
+            return ic.timerPending;
         }
     }
 
     public static boolean trapPending() {
-        synchronized (lock) {
-            return trapPending;
+        InterruptController ic = instance();
+        synchronized (ic.lock) {
+            return ic.trapPending;
         }
     }
 
     public static int claimExternal() {
-        synchronized (lock) {
-            assert externalPending : "Cannot claim, no external interrupt pending";
-            externalPending = false;
-            return externalValue;
+        InterruptController ic = instance();
+        synchronized (ic.lock) {
+            assert ic.externalPending : "Cannot claim, no external interrupt pending";
+            ic.externalPending = false;
+            ic.updateAnyPending();
+            return ic.externalValue;
         }
     }
 
     public static int claimTimer() {
-        synchronized (lock) {
-            assert timerPending : "Cannot claim, no timer interrupt pending";
-            timerPending = false;
-            return timerValue;
+        InterruptController ic = instance();
+        synchronized (ic.lock) {
+            assert ic.timerPending : "Cannot claim, no timer interrupt pending";
+            ic.timerPending = false;
+            ic.updateAnyPending();
+            return ic.timerValue;
         }
     }
 
     public static SimulationException claimTrap() {
-        synchronized (lock) {
-            assert trapPending : "Cannot claim, no trap pending";
-            assert trapPC == RegisterFile.getProgramCounter() - Instruction.INSTRUCTION_LENGTH : "trapPC doesn't match current pc";
-            trapPending = false;
-            return trapSE;
+        InterruptController ic = instance();
+        synchronized (ic.lock) {
+            assert ic.trapPending : "Cannot claim, no trap pending";
+            assert ic.trapPC == RegisterFile.getProgramCounter() - Instruction.INSTRUCTION_LENGTH : "trapPC doesn't match current pc";
+            ic.trapPending = false;
+            ic.updateAnyPending();
+            return ic.trapSE;
         }
     }
 }
@@ -0,0 +1,235 @@
+package com.github.unaimillan.rars.riscv.hardware;
+
+import com.github.unaimillan.rars.Globals;
+import com.github.unaimillan.rars.Settings;
+import com.github.unaimillan.rars.simulator.Simulator;
+import com.github.unaimillan.rars.util.SystemIO;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Holds the complete state of one simulated machine: the integer, floating point and
+ * control and status registers, memory, interrupt state, open file descriptors and the
+ * exit code.
+ * <p>
+ * The static facades ({@link RegisterFile}, {@link FloatingPointRegisterFile},
+ * {@link ControlAndStatusRegisterFile}, {@link InterruptController}, {@link Memory#getInstance()},
+ * {@link SystemIO} and {@link Simulator#getInstance()}) operate on the context bound to the
+ * calling thread. Threads without a binding share the global context, which is what the GUI
+ * and the command line use. Binding a separate context to each worker thread lets several
+ * programs be simulated at the same time in one JVM.
+ */
+public class MachineContext {
+    private static final MachineContext global = new MachineContext(Globals.memoryAndRegistersLock);
+    private static final ThreadLocal<MachineContext> bound = new ThreadLocal<>();
+
+    final RegisterBlock registers = RegisterFile.createRegisterBlock();
+    final Register programCounter = RegisterFile.createProgramCounter();
+    final RegisterBlock floatingPointRegisters = FloatingPointRegisterFile.createRegisterBlock();
+    final RegisterBlock controlAndStatusRegisters = ControlAndStatusRegisterFile.createRegisterBlock();
+    final InterruptController interrupts = new InterruptController();
+
+    private final ReentrantLock lock;
+    private final HashMap<Integer, Random> randomStreams = new HashMap<>();
+    private Memory memory = new Memory();
+    private SystemIO.Data files = new SystemIO.Data(false);
+    private Simulator simulator;
+    private Boolean selfModifyingCode;
+    private int exitCode;
+    // 0 means the clock follows the wall clock; otherwise time advances with retired instructions
+    private long instructionsPerMillisecond;
+    private long sleptMillis;
+
+    /**
+     * Creates a fresh machine with reset registers, empty memory and no open files.
+     * It is not visible to the static facades until it is bound with {@link #bind(MachineContext)}.
+     */
+    public MachineContext() {
+        this(new ReentrantLock());
+    }
+
+    private MachineContext(ReentrantLock lock) {
+        this.lock = lock;
+    }
+
+    /**
+     * @return the context bound to the calling thread, or the global context if there is none
+     */
+    public static MachineContext current() {
+        MachineContext context = bound.get();
+        return context == null ? global : context;
+    }
+
+    /**
+     * @return the context used by the GUI, the command line and any thread without its own binding
+     */
+    public static MachineContext getGlobal() {
+        return global;
+    }
+
+    /**
+     * Binds a context to the calling thread.
+     *
+     * @param context the context to use from now on, or null to fall back to the global context
+     * @return the previously bound context (possibly null) so callers can restore it
+     */
+    public static MachineContext bind(MachineContext context) {
+        MachineContext previous = bound.get();
+        if (context == null || context == global) {
+            bound.remove();
+        } else {
+            bound.set(context);
+        }
+        return previous;
+    }
+
+    /**
+     * @return the lock that guards memory and registers of this machine against concurrent GUI access
+     */
+    public ReentrantLock getLock() {
+        return lock;
+    }
+
+    public Memory getMemory() {
+        return memory;
+    }
+
+    /**
+     * Replaces the memory of this machine.
+     *
+     * @param mem the new memory
+     * @return the memory that was replaced
+     */
+    public Memory setMemory(Memory mem) {
+        Memory old = memory;
+        memory = mem;
+        if (this == global) {
+            Globals.memory = mem;
+        }
+        return old;
+    }
+
+    public SystemIO.Data getFiles() {
+        return files;
+    }
+
+    /**
+     * Replaces the file descriptor table of this machine.
+     *
+     * @param data the new file descriptor table
+     * @return the table that was replaced
+     */
+    public SystemIO.Data setFiles(SystemIO.Data data) {
+        SystemIO.Data old = files;
+        files = data;
+        return old;
+    }
+
+    /**
+     * @return the streams used by the random number syscalls, indexed by stream id
+     */
+    public HashMap<Integer, Random> getRandomStreams() {
+        return randomStreams;
+    }
+
+    public Simulator getSimulator() {
+        return simulator;
+    }
+
+    public void setSimulator(Simulator simulator) {
+        this.simulator = simulator;
+    }
+
+    /**
+     * @return whether loads, stores and instruction fetches may touch the text segment
+     */
+    public boolean isSelfModifyingCodeEnabled() {
+        Boolean enabled = selfModifyingCode;
+        if (enabled != null) return enabled;
+        return Globals.getSettings().getBooleanSetting(Settings.Bool.SELF_MODIFYING_CODE_ENABLED);
+    }
+
+    /**
+     * Overrides the self-modifying code setting for this machine only.
+     *
+     * @param enabled the value to use, or null to follow the global setting
+     */
+    public void setSelfModifyingCodeEnabled(Boolean enabled) {
+        selfModifyingCode = enabled;
+    }
+
+    /**
+     * Chooses the clock seen through the time CSR and the Time and Sleep system calls, and restarts it.
+     * A virtual clock starts at 0 and advances one millisecond for every instructionsPerMillisecond
+     * retired instructions, plus whatever the program sleeps, so repeated runs see the same times
+     * and sleeping takes no real time.
+     *
+     * @param instructionsPerMillisecond instructions per virtual millisecond, or 0 to use the wall clock
+     */
+    public void setVirtualTime(long instructionsPerMillisecond) {
+        this.instructionsPerMillisecond = Math.max(0, instructionsPerMillisecond);
+        sleptMillis = 0;
+    }
+
+    /**
+     * @return true if this machine runs on a virtual clock
+     */
+    public boolean isVirtualTime() {
+        return instructionsPerMillisecond != 0;
+    }
+
+    /**
+     * @return the current time in milliseconds: since 1 January 1970 on the wall clock, or since the
+     * clock was restarted on a virtual one
+     */
+    public long currentTimeMillis() {
+        if (instructionsPerMillisecond == 0) {
+            return System.currentTimeMillis();
+        }
+        long retired = controlAndStatusRegisters.getRegister(ControlAndStatusRegisterFile.INSTRET).getValueNoNotify();
+        return retired / instructionsPerMillisecond + sleptMillis;
+    }
+
+    // Clock state saved by Checkpoint
+    long getInstructionsPerMillisecond() {
+        return instructionsPerMillisecond;
+    }
+
+    long getSleptMillis() {
+        return sleptMillis;
+    }
+
+    void restoreClock(long instructionsPerMillisecond, long sleptMillis) {
+        this.instructionsPerMillisecond = instructionsPerMillisecond;
+        this.sleptMillis = sleptMillis;
+    }
+
+    /**
+     * Suspends the program for the given time; a virtual clock just jumps ahead.
+     *
+     * @param millis the time to sleep in milliseconds
+     */
+    public void sleep(long millis) {
+        if (instructionsPerMillisecond != 0) {
+            sleptMillis += Math.max(0, millis);
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+        }
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public void setExitCode(int code) {
+        exitCode = code;
+        if (this == global) {
+            Globals.exitCode = code;
+        }
+    }
+}
@@ -2,15 +2,17 @@ package com.github.unaimillan.rars.riscv.hardware;
 
 import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.ProgramStatement;
-import com.github.unaimillan.rars.Settings;
 import com.github.unaimillan.rars.SimulationException;
 import com.github.unaimillan.rars.riscv.Instruction;
 import com.github.unaimillan.rars.util.Binary;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Observable;
 import java.util.Observer;
-import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 	/*
 Copyright (c) 2003-2009,  Pete Sanderson and Kenneth Vollmar
@@ -110,12 +112,8 @@ public class Memory extends Observable {
      * numbered byte is right most [3][2][1][0].
      */
     public static final boolean LITTLE_ENDIAN = true;
-    /**
-     * Current setting for endian (default LITTLE_ENDIAN)
-     **/
-    private static boolean byteOrder = LITTLE_ENDIAN;
 
-    public static int heapAddress;
+    private int heapAddress;
 
     // Memory will maintain a collection of observables.  Each one is associated
     // with a specific memory address or address range, and each will have at least
@@ -124,12 +122,14 @@ public class Memory extends Observable {
     // This assures that observers are not bombarded with notices from memory
     // addresses they do not care about.
     //
-    // Would like a tree-like implementation, but that is complicated by this fact:
-    // key for insertion into the tree would be based on Comparable using both low 
-    // and high end of address range, but retrieval from the tree has to be based
-    // on target address being ANYWHERE IN THE RANGE (not an exact key match).
+    // Rather than a tree keyed on address ranges, watchedPages records which 4K pages
+    // any range touches.  An access to an unwatched page is rejected with two array
+    // loads; only accesses to a watched page walk the (short) list of observables.
 
     private Collection<MemoryObservable> observables = getNewMemoryObserversCollection();
+    private volatile WatchedPages watchedPages = WatchedPages.EMPTY;
+    // Serializes changes to the two fields above
+    private final Object observerLock = new Object();
 
     // The data segment is allocated in blocks of 1024 ints (4096 bytes).  Each block is
     // referenced by a "block table" entry, and the table has 1024 entries.  The capacity
@@ -155,9 +155,13 @@ public class Memory extends Observable {
     // the start of the 65'th block -- table entry 64.  That leaves (1024-64) * 4096 = 3,932,160
     // bytes of space available without going indirect.
 
+    //
+    // The blocks are now the 4K byte pages of a PagedRegion, which stores bytes little-endian so
+    // word, halfword and byte accesses are each a single array access.
+
     private static final int BLOCK_LENGTH_WORDS = 1024;  // allocated blocksize 1024 ints == 4K bytes
     private static final int BLOCK_TABLE_LENGTH = 1024; // Each entry of table points to a block.
-    private int[][] dataBlockTable;
+    private PagedRegion dataRegion;
 
     // The stack is modeled similarly to the data segment.  It cannot share the same
     // data structure because the stack base address is very large.  To store it in the
@@ -173,8 +177,13 @@ public class Memory extends Observable {
     // from desired address).  Thus as the address gets smaller the offset gets larger.
     // Everything else works the same, so it shares some private helper methods with
     // data segment algorithms.
+    //
+    // With byte addressed pages there is no need to turn the addressing around: the stack region
+    // simply starts far enough below the stack base that every stack address maps to a positive
+    // offset, and its last page ends with the word at the stack base just like block 0 used to.
 
-    private int[][] stackBlockTable;
+    private static final int STACK_TABLE_LENGTH = BLOCK_TABLE_LENGTH + 1;
+    private PagedRegion stackRegion;
 
     // Memory mapped I/O is simulated with a separate table using the same structure and
     // logic as data segment.  Memory is allocated in 4K byte blocks.  But since MMIO
@@ -187,7 +196,7 @@ public class Memory extends Observable {
     // into a table offset, this is of no concern.
 
     private static final int MMIO_TABLE_LENGTH = 16; // Each entry of table points to a 4K block.
-    private int[][] memoryMapBlockTable;
+    private PagedRegion memoryMapRegion;
 
     // I use a similar scheme for storing instructions.  MIPS text segment ranges from
     // 0x00400000 all the way to data segment (0x10000000) a range of about 250 MB!  So
@@ -198,6 +207,8 @@ public class Memory extends Observable {
     private static final int TEXT_BLOCK_LENGTH_WORDS = 1024;  // allocated blocksize 1024 ints == 4K bytes
     private static final int TEXT_BLOCK_TABLE_LENGTH = 1024; // Each entry of table points to a block.
     private ProgramStatement[][] textBlockTable;
+    // Text blocks that another Memory may also reference; copied before the first store
+    private boolean[] textBlockShared;
 
     // Set "top" address boundary to go with each "base" address.  This determines permissable
     // address range for user program.  Currently limit is 4MB, or 1024 * 1024 * 4 bytes based
@@ -211,13 +222,6 @@ public class Memory extends Observable {
             BLOCK_LENGTH_WORDS * BLOCK_TABLE_LENGTH * WORD_LENGTH_BYTES;
     public static int memoryMapLimitAddress = memoryMapBaseAddress +
             BLOCK_LENGTH_WORDS * MMIO_TABLE_LENGTH * WORD_LENGTH_BYTES;
-    // This will be a Singleton class, only one instance is ever created.  Since I know the 
-    // Memory object is always needed, I'll go ahead and create it at the time of class loading.
-    // (greedy rather than lazy instantiation).  The constructor is private and getInstance()
-    // always returns this instance.
-
-    private static Memory uniqueMemoryInstance = new Memory();
-
 
     /*
      * Private constructor for Memory.  Separate data structures for text and data segments. 
@@ -226,59 +230,127 @@ public class Memory extends Observable {
         initialize();
     }
 
+    /**
+     * Marks every text block and page written so far as shared, so this memory copies it before the next
+     * store to it.  Call this once when the memory is complete and before any {@link #copyFrom} of it.
+     */
+    public void markShared(){
+        for(int i = 0; i < textBlockTable.length; i++){
+            textBlockShared[i] = textBlockTable[i] != null;
+        }
+        dataRegion.markShared();
+        stackRegion.markShared();
+        memoryMapRegion.markShared();
+    }
+
+    /**
+     * Replaces the contents of this memory with those of another.  Blocks and pages are shared with other and
+     * copied on first write, so this only costs a reference per block.  Other is only read, so several memories
+     * may copy it at once from different threads, but it must have been marked with {@link #markShared} since
+     * it was last written.
+     *
+     * @param other the memory to copy
+     * @return false if the memory configurations differ and nothing was copied
+     */
     public boolean copyFrom(Memory other){
         if(textBlockTable.length != other.textBlockTable.length ||
-                dataBlockTable.length != other.dataBlockTable.length ||
-                stackBlockTable.length != other.stackBlockTable.length ||
-                memoryMapBlockTable.length != other.memoryMapBlockTable.length){
+                !dataRegion.sameSize(other.dataRegion) ||
+                !stackRegion.sameSize(other.stackRegion) ||
+                !memoryMapRegion.sameSize(other.memoryMapRegion)){
             // The memory configurations don't match up
             return false;
         }
 
         for(int i = 0; i < textBlockTable.length; i++){
-            if(other.textBlockTable[i] != null){
-                textBlockTable[i] = other.textBlockTable[i].clone(); // TODO: potentially make ProgramStatement clonable
-            }else{
-                textBlockTable[i] = null;
-            }
-        }
-        for(int i = 0; i < dataBlockTable.length; i++){
-            if(other.dataBlockTable[i] != null){
-                dataBlockTable[i] = other.dataBlockTable[i].clone();
-            }else{
-                dataBlockTable[i] = null;
-            }
+            textBlockTable[i] = other.textBlockTable[i];
+            textBlockShared[i] = textBlockTable[i] != null;
         }
-        for(int i = 0; i < stackBlockTable.length; i++){
-            if(other.stackBlockTable[i] != null){
-                stackBlockTable[i] = other.stackBlockTable[i].clone();
-            }else{
-                stackBlockTable[i] = null;
+        dataRegion.copyFrom(other.dataRegion);
+        stackRegion.copyFrom(other.stackRegion);
+        memoryMapRegion.copyFrom(other.memoryMapRegion);
+        return true;
+    }
+
+    /**
+     * Writes the contents of every data, stack and memory mapped I/O page that was written, so an
+     * assembled image can be saved and read back with {@link #readPages}.
+     *
+     * @param out where to write the pages
+     * @throws IOException if writing fails
+     */
+    public void writePages(DataOutputStream out) throws IOException {
+        for (PagedRegion region : regions()) {
+            for (int i = 0; i < region.pageCount(); i++) {
+                byte[] page = region.page(i);
+                if (page == null) continue;
+                out.writeInt(i);
+                out.write(page);
             }
+            out.writeInt(-1);
         }
-        for(int i = 0; i < memoryMapBlockTable.length; i++){
-            if(other.memoryMapBlockTable[i] != null){
-                memoryMapBlockTable[i] = other.memoryMapBlockTable[i].clone();
-            }else{
-                memoryMapBlockTable[i] = null;
+    }
+
+    /**
+     * Reads pages saved by {@link #writePages} into this memory, replacing whatever those pages held.
+     *
+     * @param in where to read the pages from
+     * @throws IOException if reading fails or the pages do not fit the current memory configuration
+     */
+    public void readPages(DataInputStream in) throws IOException {
+        for (PagedRegion region : regions()) {
+            for (int i = in.readInt(); i >= 0; i = in.readInt()) {
+                if (i >= region.pageCount()) {
+                    throw new IOException("page " + i + " is outside the memory configuration");
+                }
+                byte[] page = new byte[PagedRegion.PAGE_SIZE];
+                in.readFully(page);
+                region.setPage(i, page);
             }
         }
-        return true;
     }
 
+    // The data, stack and memory mapped I/O segments, in that order; used by Checkpoint
+    PagedRegion[] regions() {
+        return new PagedRegion[]{dataRegion, stackRegion, memoryMapRegion};
+    }
+
+    // Text segment statements in blocks of 1024 words; blocks may be null and must not be modified
+    ProgramStatement[][] textBlocks() {
+        return textBlockTable;
+    }
+
+    // Drops every statement in the text segment, leaving the blocks of any copy untouched
+    void clearText() {
+        textBlockTable = new ProgramStatement[TEXT_BLOCK_TABLE_LENGTH][];
+        textBlockShared = new boolean[TEXT_BLOCK_TABLE_LENGTH];
+    }
+
+    int getHeapAddress() {
+        return heapAddress;
+    }
+
+    void setHeapAddress(int address) {
+        heapAddress = address;
+    }
+
+    /**
+     * Replaces the memory of the machine bound to the calling thread.
+     *
+     * @param mem the memory to use from now on
+     * @return the memory that was replaced
+     * @see MachineContext
+     */
     public static Memory swapInstance(Memory mem){
-        Memory temp = uniqueMemoryInstance;
-        uniqueMemoryInstance = mem;
-        Globals.memory = mem;
-        return temp;
+        return MachineContext.current().setMemory(mem);
     }
 
     /**
-     * Returns the unique Memory instance, which becomes in essence global.
+     * Returns the Memory instance of the machine bound to the calling thread.  Without a
+     * binding this is the global memory, the same object as Globals.memory.
      */
 
     public static Memory getInstance() {
-        return uniqueMemoryInstance;
+        return MachineContext.current().getMemory();
     }
 
     /**
@@ -326,10 +398,15 @@ public class Memory extends Observable {
     private void initialize() {
         heapAddress = heapBaseAddress;
         textBlockTable = new ProgramStatement[TEXT_BLOCK_TABLE_LENGTH][];
-        dataBlockTable = new int[BLOCK_TABLE_LENGTH][]; // array of null int[] references
-        stackBlockTable = new int[BLOCK_TABLE_LENGTH][];
-        memoryMapBlockTable = new int[MMIO_TABLE_LENGTH][];
-        System.gc(); // call garbage collector on any Table memory just deallocated.
+        textBlockShared = new boolean[TEXT_BLOCK_TABLE_LENGTH];
+        dataRegion = new PagedRegion(BLOCK_TABLE_LENGTH); // pages are allocated on first write
+        stackRegion = new PagedRegion(STACK_TABLE_LENGTH);
+        memoryMapRegion = new PagedRegion(MMIO_TABLE_LENGTH);
+    }
+
+    // Offset into stackRegion of the given stack address
+    private static int stackOffset(int address) {
+        return address - (stackBaseAddress + WORD_LENGTH_BYTES - STACK_TABLE_LENGTH * PagedRegion.PAGE_SIZE);
     }
 
     // TODO: add some heap managment so programs can malloc and free
@@ -381,17 +458,15 @@ public class Memory extends Observable {
         if (inDataSegment(address)) {
             // in data segment.  Will write one byte at a time, w/o regard to boundaries.
             relativeByteAddress = address - dataSegmentBaseAddress; // relative to data segment start, in bytes
-            oldValue = storeBytesInTable(dataBlockTable, relativeByteAddress, length, value);
+            oldValue = dataRegion.store(relativeByteAddress, value, length);
         } else if (address > stackLimitAddress && address <= stackBaseAddress) {
-            // in stack.  Handle similarly to data segment write, except relative byte
-            // address calculated "backward" because stack addresses grow down from base.
-            relativeByteAddress = stackBaseAddress - address;
-            oldValue = storeBytesInTable(stackBlockTable, relativeByteAddress, length, value);
+            // in stack.  Handle similarly to data segment write.
+            oldValue = stackRegion.store(stackOffset(address), value, length);
         } else if (inTextSegment(address)) {
             // Burch Mod (Jan 2013): replace throw with call to setStatement
             // DPS adaptation 5-Jul-2013: either throw or call, depending on setting
 
-            if (Globals.getSettings().getBooleanSetting(Settings.Bool.SELF_MODIFYING_CODE_ENABLED)) {
+            if (MachineContext.current().isSelfModifyingCodeEnabled()) {
                 if(address%4+length > 4){
                     // TODO: add checks for halfword load not aligned to halfword boundary
                     throw new AddressErrorException(
@@ -419,7 +494,7 @@ public class Memory extends Observable {
         } else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
             // memory mapped I/O.
             relativeByteAddress = address - memoryMapBaseAddress;
-            oldValue = storeBytesInTable(memoryMapBlockTable, relativeByteAddress, length, value);
+            oldValue = memoryMapRegion.store(relativeByteAddress, value, length);
         } else {
             // falls outside addressing range
             throw new AddressErrorException("address out of range ",
@@ -446,17 +521,15 @@ public class Memory extends Observable {
         checkStoreWordAligned(address);
         if (inDataSegment(address)) {
             // in data segment
-            relative = (address - dataSegmentBaseAddress) >> 2; // convert byte address to words
-            oldValue = storeWordInTable(dataBlockTable, relative, value);
+            relative = address - dataSegmentBaseAddress;
+            oldValue = dataRegion.store(relative, value, WORD_LENGTH_BYTES);
         } else if (address > stackLimitAddress && address <= stackBaseAddress) {
-            // in stack.  Handle similarly to data segment write, except relative
-            // address calculated "backward" because stack addresses grow down from base.
-            relative = (stackBaseAddress - address) >> 2; // convert byte address to words
-            oldValue = storeWordInTable(stackBlockTable, relative, value);
+            // in stack.  Handle similarly to data segment write.
+            oldValue = stackRegion.store(stackOffset(address), value, WORD_LENGTH_BYTES);
         } else if (inTextSegment(address)) {
             // Burch Mod (Jan 2013): replace throw with call to setStatement
             // DPS adaptation 5-Jul-2013: either throw or call, depending on setting
-            if (Globals.getSettings().getBooleanSetting(Settings.Bool.SELF_MODIFYING_CODE_ENABLED)) {
+            if (MachineContext.current().isSelfModifyingCodeEnabled()) {
                 ProgramStatement oldStatement = getStatementNoNotify(address);
                 if (oldStatement != null) {
                     oldValue = oldStatement.getBinaryStatement();
@@ -469,8 +542,8 @@ public class Memory extends Observable {
             }
         } else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
             // memory mapped I/O.
-            relative = (address - memoryMapBaseAddress) >> 2; // convert byte address to word
-            oldValue = storeWordInTable(memoryMapBlockTable, relative, value);
+            relative = address - memoryMapBaseAddress;
+            oldValue = memoryMapRegion.store(relative, value, WORD_LENGTH_BYTES);
         } else {
             // falls outside addressing range
             throw new AddressErrorException("store address out of range ",
@@ -550,10 +623,17 @@ public class Memory extends Observable {
      * @return old value that was replaced by setDouble operation.
      **/
     public long setDoubleWord(int address, long value) throws AddressErrorException {
-        int oldHighOrder, oldLowOrder;
-        oldHighOrder = set(address + 4, (int) (value >> 32), 4);
-        oldLowOrder = set(address, (int) value, 4);
-        long old = ((long)oldHighOrder << 32) | (oldLowOrder & 0xFFFFFFFFL);
+        long old;
+        PagedRegion region = isWatched(address) ? null : doubleWordRegion(address);
+        if (region != null) {
+            // Nobody is watching, so the two word notices can be skipped and this becomes one store
+            old = region.storeLong(doubleWordOffset(region, address), value);
+        } else {
+            int oldHighOrder, oldLowOrder;
+            oldHighOrder = set(address + 4, (int) (value >> 32), 4);
+            oldLowOrder = set(address, (int) value, 4);
+            old = ((long) oldHighOrder << 32) | (oldLowOrder & 0xFFFFFFFFL);
+        }
         return (Globals.getSettings().getBackSteppingEnabled())
                 ? Globals.program.getBackStepper().addMemoryRestoreDoubleWord(address, old)
                 : old;
@@ -626,19 +706,18 @@ public class Memory extends Observable {
         if (inDataSegment(address)) {
             // in data segment.  Will read one byte at a time, w/o regard to boundaries.
             relativeByteAddress = address - dataSegmentBaseAddress; // relative to data segment start, in bytes
-            value = fetchBytesFromTable(dataBlockTable, relativeByteAddress, length);
+            value = dataRegion.load(relativeByteAddress, length);
         } else if (address > stackLimitAddress && address <= stackBaseAddress) {
-            // in stack. Similar to data, except relative address computed "backward"
-            relativeByteAddress = stackBaseAddress - address;
-            value = fetchBytesFromTable(stackBlockTable, relativeByteAddress, length);
+            // in stack. Similar to data.
+            value = stackRegion.load(stackOffset(address), length);
         } else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
             // memory mapped I/O.
             relativeByteAddress = address - memoryMapBaseAddress;
-            value = fetchBytesFromTable(memoryMapBlockTable, relativeByteAddress, length);
+            value = memoryMapRegion.load(relativeByteAddress, length);
         } else if (inTextSegment(address)) {
             // Burch Mod (Jan 2013): replace throw with calls to getStatementNoNotify & getBinaryStatement
             // DPS adaptation 5-Jul-2013: either throw or call, depending on setting
-            if (Globals.getSettings().getBooleanSetting(Settings.Bool.SELF_MODIFYING_CODE_ENABLED)) {
+            if (MachineContext.current().isSelfModifyingCodeEnabled()) {
                 if(address%4+length > 4){
                     // TODO: add checks for halfword load not aligned to halfword boundary
                     throw new AddressErrorException(
@@ -687,20 +766,19 @@ public class Memory extends Observable {
         checkLoadWordAligned(address);
         if (inDataSegment(address)) {
             // in data segment
-            relative = (address - dataSegmentBaseAddress) >> 2; // convert byte address to words
-            value = fetchWordFromTable(dataBlockTable, relative);
+            relative = address - dataSegmentBaseAddress;
+            value = dataRegion.load(relative, WORD_LENGTH_BYTES);
         } else if (address > stackLimitAddress && address <= stackBaseAddress) {
-            // in stack. Similar to data, except relative address computed "backward"
-            relative = (stackBaseAddress - address) >> 2; // convert byte address to words
-            value = fetchWordFromTable(stackBlockTable, relative);
+            // in stack. Similar to data.
+            value = stackRegion.load(stackOffset(address), WORD_LENGTH_BYTES);
         } else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
             // memory mapped I/O.
-            relative = (address - memoryMapBaseAddress) >> 2;
-            value = fetchWordFromTable(memoryMapBlockTable, relative);
+            relative = address - memoryMapBaseAddress;
+            value = memoryMapRegion.load(relative, WORD_LENGTH_BYTES);
         } else if (inTextSegment(address)) {
             // Burch Mod (Jan 2013): replace throw with calls to getStatementNoNotify & getBinaryStatement
             // DPS adaptation 5-Jul-2013: either throw or call, depending on setting
-            if (Globals.getSettings().getBooleanSetting(Settings.Bool.SELF_MODIFYING_CODE_ENABLED)) {
+            if (MachineContext.current().isSelfModifyingCodeEnabled()) {
                 ProgramStatement stmt = getStatementNoNotify(address);
                 value = stmt == null ? 0 : stmt.getBinaryStatement();
             } else {
@@ -745,12 +823,11 @@ public class Memory extends Observable {
         checkLoadWordAligned(address);
         if (inDataSegment(address)) {
             // in data segment
-            relative = (address - dataSegmentBaseAddress) >> 2; // convert byte address to words
-            value = fetchWordOrNullFromTable(dataBlockTable, relative);
+            relative = address - dataSegmentBaseAddress;
+            value = dataRegion.loadWordOrNull(relative);
         } else if (address > stackLimitAddress && address <= stackBaseAddress) {
-            // in stack. Similar to data, except relative address computed "backward"
-            relative = (stackBaseAddress - address) >> 2; // convert byte address to words
-            value = fetchWordOrNullFromTable(stackBlockTable, relative);
+            // in stack. Similar to data.
+            value = stackRegion.loadWordOrNull(stackOffset(address));
         } else if (inTextSegment(address)) {
             try {
                 value = (getStatementNoNotify(address) == null) ? null : getStatementNoNotify(address).getBinaryStatement();
@@ -797,6 +874,10 @@ public class Memory extends Observable {
      **/
     public long getDoubleWord(int address) throws AddressErrorException {
         checkLoadWordAligned(address);
+        PagedRegion region = isWatched(address) ? null : doubleWordRegion(address);
+        if (region != null) {
+            return region.loadLong(doubleWordOffset(region, address));
+        }
         int oldHighOrder, oldLowOrder;
         oldHighOrder = get(address + 4,4);
         oldLowOrder = get(address,  4);
@@ -898,7 +979,7 @@ public class Memory extends Observable {
 
     private ProgramStatement getStatement(int address, boolean notify) throws AddressErrorException {
         checkLoadWordAligned(address);
-        if (!Globals.getSettings().getBooleanSetting(Settings.Bool.SELF_MODIFYING_CODE_ENABLED)
+        if (!MachineContext.current().isSelfModifyingCodeEnabled()
                 && !inTextSegment(address)) {
             throw new AddressErrorException(
                     "fetch address for text segment out of range ",
@@ -906,8 +987,17 @@ public class Memory extends Observable {
         }
         if (inTextSegment(address))
             return readProgramStatement(address, textBaseAddress, textBlockTable, notify);
-        else
+        // Code in the data segment or stack is decoded once and cached until overwritten
+        ProgramStatement statement;
+        if (inDataSegment(address)) {
+            statement = dataRegion.getStatement(address - dataSegmentBaseAddress, address);
+        } else if (address > stackLimitAddress && address <= stackBaseAddress) {
+            statement = stackRegion.getStatement(stackOffset(address), address);
+        } else {
             return new ProgramStatement(get(address, WORD_LENGTH_BYTES), address);
+        }
+        notifyAnyObservers(AccessNotice.READ, address, WORD_LENGTH_BYTES, statement.getBinaryStatement());
+        return statement;
     }
 
 
@@ -1049,7 +1139,10 @@ public class Memory extends Observable {
             throw new AddressErrorException("end address of range < start address of range ",
                     SimulationException.LOAD_ACCESS_FAULT, startAddr);
         }
-        observables.add(new MemoryObservable(obs, startAddr, endAddr));
+        synchronized (observerLock) {
+            observables.add(new MemoryObservable(obs, startAddr, endAddr));
+            watchedPages = watchedPages.with(startAddr, endAddr - 1 + WORD_LENGTH_BYTES);
+        }
     }
 
     /**
@@ -1065,8 +1158,17 @@ public class Memory extends Observable {
      * @param obs Observer to be removed
      */
     public void deleteObserver(Observer obs) {
-        for (MemoryObservable o : observables) {
-            o.deleteObserver(obs);
+        synchronized (observerLock) {
+            WatchedPages remaining = WatchedPages.EMPTY;
+            for (MemoryObservable o : observables) {
+                o.deleteObserver(obs);
+                if (o.countObservers() == 0) {
+                    observables.remove(o);
+                } else {
+                    remaining = remaining.with(o.lowAddress, o.highAddress - 1 + WORD_LENGTH_BYTES);
+                }
+            }
+            watchedPages = remaining;
         }
     }
 
@@ -1074,8 +1176,10 @@ public class Memory extends Observable {
      * Remove all memory observers
      */
     public void deleteObservers() {
-        // just drop the collection
-        observables = getNewMemoryObserversCollection();
+        synchronized (observerLock) { // just drop the collection
+            observables = getNewMemoryObserversCollection();
+            watchedPages = WatchedPages.EMPTY;
+        }
     }
 
     /**
@@ -1102,7 +1206,7 @@ public class Memory extends Observable {
 
 
     private Collection<MemoryObservable> getNewMemoryObserversCollection() {
-        return new Vector<>();  // Vectors are thread-safe
+        return new CopyOnWriteArrayList<>();  // thread-safe, and iterating takes no lock
     }
 
     /////////////////////////////////////////////////////////////////////////
@@ -1126,8 +1230,6 @@ public class Memory extends Observable {
             this.notifyObservers(notice);
         }
 
-        // Useful to have for future refactoring, if it actually becomes worthwhile to sort
-        // these or put 'em in a tree (rather than sequential search through list).
         public int compareTo(MemoryObservable mo) {
             if (this.lowAddress < mo.lowAddress || this.lowAddress == mo.lowAddress && this.highAddress < mo.highAddress) {
                 return -1;
@@ -1149,161 +1251,44 @@ public class Memory extends Observable {
     //
     // The "|| Globals.getGui()==null" is a hack added 19 July 2012 DPS.  IF simulation
     // is from command mode, Globals.program is null but still want ability to observe.
+    //
+    // All observers of one access share a single notice; it is only created once a match is found.
     private void notifyAnyObservers(int type, int address, int length, int value) {
-        if ((Globals.program != null || Globals.getGui() == null) && this.observables.size() > 0) {
+        if (watchedPages.contains(address) && (Globals.program != null || Globals.getGui() == null)) {
+            MemoryAccessNotice notice = null;
             for (MemoryObservable mo : observables) {
                 if (mo.match(address)) {
-                    mo.notifyObserver(new MemoryAccessNotice(type, address, length, value));
+                    if (notice == null) {
+                        notice = new MemoryAccessNotice(type, address, length, value);
+                    }
+                    mo.notifyObserver(notice);
                 }
             }
         }
     }
 
-    ////////////////////////////////////////////////////////////////////////////////
-    //
-    // Helper method to store 1, 2 or 4 byte value in table that represents
-    // memory. Originally used just for data segment, but now also used for stack.
-    // Both use different tables but same storage method and same table size
-    // and block size.
-    // Modified 29 Dec 2005 to return old value of replaced bytes.
-    //
-    private static final boolean STORE = true;
-    private static final boolean FETCH = false;
-
-    private int storeBytesInTable(int[][] blockTable,
-                                  int relativeByteAddress, int length, int value) {
-        return storeOrFetchBytesInTable(blockTable, relativeByteAddress, length, value, STORE);
-    }
-
-    ////////////////////////////////////////////////////////////////////////////////
-    //
-    // Helper method to fetch 1, 2 or 4 byte value from table that represents
-    // memory.  Originally used just for data segment, but now also used for stack.
-    // Both use different tables but same storage method and same table size
-    // and block size.
-    //
-
-    private int fetchBytesFromTable(int[][] blockTable, int relativeByteAddress, int length) {
-        return storeOrFetchBytesInTable(blockTable, relativeByteAddress, length, 0, FETCH);
+    // True if an observer watches any page touched by the doubleword at address
+    private boolean isWatched(int address) {
+        WatchedPages pages = watchedPages;
+        return pages.contains(address) || pages.contains(address + 7);
     }
 
     ////////////////////////////////////////////////////////////////////////////////
     //
-    // The helper's helper.  Works for either storing or fetching, little or big endian.
-    // When storing/fetching bytes, most of the work is calculating the correct array element(s)
-    // and element byte(s).  This method performs either store or fetch, as directed by its
-    // client using STORE or FETCH in last arg.
-    // Modified 29 Dec 2005 to return old value of replaced bytes, for STORE.
-    //
-    private synchronized int storeOrFetchBytesInTable(int[][] blockTable,
-                                                      int relativeByteAddress, int length, int value, boolean op) {
-        int relativeWordAddress, block, offset, bytePositionInMemory, bytePositionInValue;
-        int oldValue = 0; // for STORE, return old values of replaced bytes
-        int loopStopper = 3 - length;
-        // IF added DPS 22-Dec-2008. NOTE: has NOT been tested with Big-Endian.
-        // Fix provided by Saul Spatz; comments that follow are his.
-        // If address in stack segment is 4k + m, with 0 < m < 4, then the
-        // relativeByteAddress we want is stackBaseAddress - 4k + m, but the
-        // address actually passed in is stackBaseAddress - (4k + m), so we
-        // need to add 2m.  Because of the change in sign, we get the
-        // expression 4-delta below in place of m.
-        if (blockTable == stackBlockTable) {
-            int delta = relativeByteAddress % 4;
-            if (delta != 0) {
-                relativeByteAddress += (4 - delta) << 1;
-            }
-        }
-        for (bytePositionInValue = 3; bytePositionInValue > loopStopper; bytePositionInValue--) {
-            bytePositionInMemory = relativeByteAddress % 4;
-            relativeWordAddress = relativeByteAddress >> 2;
-            block = relativeWordAddress / BLOCK_LENGTH_WORDS;  // Block number
-            offset = relativeWordAddress % BLOCK_LENGTH_WORDS; // Word within that block
-            if (blockTable[block] == null) {
-                if (op == STORE)
-                    blockTable[block] = new int[BLOCK_LENGTH_WORDS];
-                else
-                    return 0;
-            }
-            if (byteOrder == LITTLE_ENDIAN) bytePositionInMemory = 3 - bytePositionInMemory;
-            if (op == STORE) {
-                oldValue = replaceByte(blockTable[block][offset], bytePositionInMemory,
-                        oldValue, bytePositionInValue);
-                blockTable[block][offset] = replaceByte(value, bytePositionInValue,
-                        blockTable[block][offset], bytePositionInMemory);
-            } else {// op == FETCH
-                value = replaceByte(blockTable[block][offset], bytePositionInMemory,
-                        value, bytePositionInValue);
-            }
-            relativeByteAddress++;
+    // Helpers for the single access doubleword fast path.  Returns the region holding all 8 bytes
+    // starting at address, or null if they are not all in the data segment or all in the stack.
+    private PagedRegion doubleWordRegion(int address) {
+        if (inDataSegment(address) && inDataSegment(address + 7)) {
+            return dataRegion;
         }
-        return (op == STORE) ? oldValue : value;
-    }
-
-    ////////////////////////////////////////////////////////////////////////////////
-    //
-    // Helper method to store 4 byte value in table that represents memory.
-    // Originally used just for data segment, but now also used for stack.
-    // Both use different tables but same storage method and same table size
-    // and block size.  Assumes address is word aligned, no endian processing.
-    // Modified 29 Dec 2005 to return overwritten value.
-
-    private synchronized int storeWordInTable(int[][] blockTable, int relative, int value) {
-        int block, offset, oldValue;
-        block = relative / BLOCK_LENGTH_WORDS;
-        offset = relative % BLOCK_LENGTH_WORDS;
-        if (blockTable[block] == null) {
-            // First time writing to this block, so allocate the space.
-            blockTable[block] = new int[BLOCK_LENGTH_WORDS];
+        if (address > stackLimitAddress && address + 4 <= stackBaseAddress) {
+            return stackRegion;
         }
-        oldValue = blockTable[block][offset];
-        blockTable[block][offset] = value;
-        return oldValue;
-    }
-
-    // Same as above, but doesn't set, just gets
-    private synchronized int fetchWordFromTable(int[][] blockTable, int relative) {
-        int value = 0;
-        int block, offset;
-        block = relative / BLOCK_LENGTH_WORDS;
-        offset = relative % BLOCK_LENGTH_WORDS;
-        if (blockTable[block] == null) {
-            // first reference to an address in this block.  Assume initialized to 0.
-            value = 0;
-        } else {
-            value = blockTable[block][offset];
-        }
-        return value;
-    }
-
-    // Same as above, but if it hasn't been allocated returns null.
-    // Developed by Greg Gibeling of UC Berkeley, fall 2007.
-    private synchronized Integer fetchWordOrNullFromTable(int[][] blockTable, int relative) {
-        int value = 0;
-        int block, offset;
-        block = relative / BLOCK_LENGTH_WORDS;
-        offset = relative % BLOCK_LENGTH_WORDS;
-        if (blockTable[block] == null) {
-            // first reference to an address in this block.  Assume initialized to 0.
-            return null;
-        } else {
-            value = blockTable[block][offset];
-        }
-        return value;
+        return null;
     }
 
-    ////////////////////////////////////////////////////////////////////////////////////
-    // Returns result of substituting specified byte of source value into specified byte
-    // of destination value. Byte positions are 0-1-2-3, listed from most to least
-    // significant.  No endian issues.  This is a private helper method used by get() & set().
-    private int replaceByte(int sourceValue, int bytePosInSource, int destValue, int bytePosInDest) {
-        return
-                // Set source byte value into destination byte position; set other 24 bits to 0's...
-                ((sourceValue >> (24 - (bytePosInSource << 3)) & 0xFF)
-                        << (24 - (bytePosInDest << 3)))
-                        // and bitwise-OR it with...
-                        |
-                        // Set 8 bits in destination byte position to 0's, other 24 bits are unchanged.
-                        (destValue & ~(0xFF << (24 - (bytePosInDest << 3))));
+    private int doubleWordOffset(PagedRegion region, int address) {
+        return region == dataRegion ? address - dataSegmentBaseAddress : stackOffset(address);
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -1317,6 +1302,10 @@ public class Memory extends Observable {
             if (blockTable[block] == null) {
                 // No instructions are stored in this block, so allocate the block.
                 blockTable[block] = new ProgramStatement[BLOCK_LENGTH_WORDS];
+            } else if (blockTable == textBlockTable && textBlockShared[block]) {
+                // Still shared with the Memory this was copied from
+                blockTable[block] = blockTable[block].clone();
+                textBlockShared[block] = false;
             }
             blockTable[block][offset] = statement;
         }
@@ -199,7 +199,7 @@ public class MemoryConfigurations {
             return false;
         if (config != currentConfiguration) {
             currentConfiguration = config;
-            Globals.memory.clear();
+            Memory.getInstance().clear();
             RegisterFile.getRegister("gp").changeResetValue(config.getGlobalPointer());
             RegisterFile.getRegister("sp").changeResetValue(config.getStackPointer());
             RegisterFile.getProgramCounterRegister().changeResetValue(config.getTextBaseAddress());
@@ -0,0 +1,320 @@
+package com.github.unaimillan.rars.riscv.hardware;
+
+import com.github.unaimillan.rars.ProgramStatement;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Backing store for one contiguous segment of simulated memory (data, stack or memory mapped I/O).
+ * <p>
+ * The segment is split into 4K byte pages that are allocated on first write; reads from a page that
+ * was never written return 0.  Values are kept little-endian in plain byte arrays and accessed with
+ * {@link VarHandle}s, so an aligned word is a single load or store.  There is no locking: only the
+ * simulation thread writes, and other threads are expected to coordinate through the machine lock.
+ * <p>
+ * When code is executed from the region (self-modifying code), the statements decoded for each
+ * word are cached per page, and a store to a word drops its cached statement.
+ * <p>
+ * Copying a region shares its pages instead of cloning them.  A shared page is copied the first time
+ * either region writes to it, so a copy costs one reference per page until the pages are actually used.
+ * The region copied from is marked once beforehand rather than by each copy, so it can be copied from
+ * several threads.
+ * <p>
+ * A region restored from a {@link Checkpoint} reads each page from the (memory mapped) checkpoint image
+ * the first time it is touched.
+ */
+final class PagedRegion {
+    static final int PAGE_SHIFT = 12;
+    static final int PAGE_SIZE = 1 << PAGE_SHIFT; // same as the old 1024 word blocks
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[][] pages;
+    // Pages that another region may also reference; copied before the first write
+    private final boolean[] shared;
+    // Checkpoint image that pages are still to be read from, and the position of each page in it
+    // (-1 if absent or already read); both null unless the region was restored from a checkpoint
+    private ByteBuffer image;
+    private int[] imageOffsets;
+    // Statements fetched for execution, per page and word; null until the first fetch from the region
+    private ProgramStatement[][] statements;
+
+    /**
+     * @param pageCount the size of the segment in 4K byte pages
+     */
+    PagedRegion(int pageCount) {
+        pages = new byte[pageCount][];
+        shared = new boolean[pageCount];
+    }
+
+    /**
+     * @param other the region to compare with
+     * @return true if both regions span the same number of pages
+     */
+    boolean sameSize(PagedRegion other) {
+        return pages.length == other.pages.length;
+    }
+
+    /**
+     * @return the size of the segment in 4K byte pages
+     */
+    int pageCount() {
+        return pages.length;
+    }
+
+    /**
+     * @param page the page number within the region
+     * @return the contents of the page, or null if it was never written; callers must not modify it
+     */
+    byte[] page(int page) {
+        byte[] p = pages[page];
+        if (p == null && image != null) {
+            p = pageFromImage(page);
+        }
+        return p;
+    }
+
+    private byte[] pageFromImage(int page) {
+        int offset = imageOffsets[page];
+        if (offset < 0) return null;
+        byte[] p = new byte[PAGE_SIZE];
+        image.duplicate().position(offset).get(p);
+        imageOffsets[page] = -1;
+        return pages[page] = p;
+    }
+
+    /**
+     * @param page     the page number within the region
+     * @param contents the new contents of the page, which the region takes ownership of
+     */
+    void setPage(int page, byte[] contents) {
+        pages[page] = contents;
+        shared[page] = false;
+        statements = null;
+    }
+
+    /**
+     * Replaces the contents of this region with pages stored in a checkpoint image.  Nothing is read
+     * until a page is first accessed.
+     *
+     * @param image   the checkpoint image, which must not change while the region uses it
+     * @param offsets the position of each page in the image, or -1 for pages that were never written
+     */
+    void restore(ByteBuffer image, int[] offsets) {
+        Arrays.fill(pages, null);
+        Arrays.fill(shared, false);
+        this.image = image;
+        this.imageOffsets = offsets;
+        statements = null;
+    }
+
+    /**
+     * Marks every page written so far as shared, so this region copies a page before writing to it.  A region
+     * has to be marked before it is copied, and not written between the mark and the copy.
+     */
+    void markShared() {
+        for (int i = 0; i < pages.length; i++) {
+            shared[i] = pages[i] != null;
+        }
+    }
+
+    /**
+     * Replaces the contents of this region with a copy of another of the same size.  The pages themselves
+     * are shared until this region writes to them.  The other region is only read, so several regions may
+     * copy it at once, but it must have been marked with {@link #markShared} since it was last written.
+     *
+     * @param other the region to copy
+     */
+    void copyFrom(PagedRegion other) {
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = other.pages[i];
+            shared[i] = pages[i] != null;
+        }
+        // Pages other has yet to read from a checkpoint image are read from the same image
+        image = other.image;
+        imageOffsets = other.imageOffsets == null ? null : other.imageOffsets.clone();
+        statements = null;
+    }
+
+    /**
+     * Returns the statement for the word at offset, decoding it only if the word was written since
+     * the last fetch.
+     *
+     * @param offset  byte offset from the start of the region, must be word aligned
+     * @param address the memory address of the word, recorded in a newly made statement
+     * @return the statement for the word
+     */
+    ProgramStatement getStatement(int offset, int address) {
+        if (statements == null) {
+            statements = new ProgramStatement[pages.length][];
+        }
+        ProgramStatement[] cached = statements[offset >>> PAGE_SHIFT];
+        if (cached == null) {
+            cached = statements[offset >>> PAGE_SHIFT] = new ProgramStatement[PAGE_SIZE >> 2];
+        }
+        int slot = (offset & PAGE_MASK) >>> 2;
+        ProgramStatement statement = cached[slot];
+        if (statement == null) {
+            statement = cached[slot] = new ProgramStatement(load(offset, 4), address);
+        }
+        return statement;
+    }
+
+    // Drops cached statements for the words touched by a store
+    private void invalidate(int offset, int length) {
+        ProgramStatement[][] all = statements;
+        if (all == null) return;
+        for (int word = offset >>> 2; word <= (offset + length - 1) >>> 2; word++) {
+            ProgramStatement[] cached = all[word >>> (PAGE_SHIFT - 2)];
+            if (cached != null) {
+                cached[word & (PAGE_MASK >>> 2)] = null;
+            }
+        }
+    }
+
+    private byte[] pageForWrite(int page) {
+        byte[] p = page(page);
+        if (p == null) {
+            p = pages[page] = new byte[PAGE_SIZE];
+        } else if (shared[page]) {
+            p = pages[page] = p.clone();
+            shared[page] = false;
+        }
+        return p;
+    }
+
+    /**
+     * Reads 1, 2 or 4 bytes starting at the given offset, with no alignment requirement.
+     *
+     * @param offset byte offset from the start of the region
+     * @param length number of bytes to read
+     * @return the value, zero extended
+     */
+    int load(int offset, int length) {
+        int within = offset & PAGE_MASK;
+        if (within + length > PAGE_SIZE) {
+            return loadBytes(offset, length);
+        }
+        byte[] p = page(offset >>> PAGE_SHIFT);
+        if (p == null) return 0;
+        switch (length) {
+            case 1:
+                return p[within] & 0xFF;
+            case 2:
+                return (short) SHORT.get(p, within) & 0xFFFF;
+            case 4:
+                return (int) INT.get(p, within);
+            default:
+                return loadBytes(offset, length);
+        }
+    }
+
+    /**
+     * Writes the low 1, 2 or 4 bytes of a value starting at the given offset, with no alignment requirement.
+     *
+     * @param offset byte offset from the start of the region
+     * @param value  the value to store
+     * @param length number of bytes to write
+     * @return the bytes that were replaced, zero extended
+     */
+    int store(int offset, int value, int length) {
+        invalidate(offset, length);
+        int within = offset & PAGE_MASK;
+        if (within + length > PAGE_SIZE) {
+            return storeBytes(offset, value, length);
+        }
+        byte[] p = pageForWrite(offset >>> PAGE_SHIFT);
+        int old;
+        switch (length) {
+            case 1:
+                old = p[within] & 0xFF;
+                p[within] = (byte) value;
+                return old;
+            case 2:
+                old = (short) SHORT.get(p, within) & 0xFFFF;
+                SHORT.set(p, within, (short) value);
+                return old;
+            case 4:
+                old = (int) INT.get(p, within);
+                INT.set(p, within, value);
+                return old;
+            default:
+                return storeBytes(offset, value, length);
+        }
+    }
+
+    /**
+     * @param offset byte offset from the start of the region, must be word aligned
+     * @return the word at offset, or null if its page was never written
+     */
+    Integer loadWordOrNull(int offset) {
+        byte[] p = page(offset >>> PAGE_SHIFT);
+        if (p == null) return null;
+        return (int) INT.get(p, offset & PAGE_MASK);
+    }
+
+    /**
+     * Reads 8 bytes as a single access when they share a page.
+     *
+     * @param offset byte offset from the start of the region
+     * @return the doubleword at offset
+     */
+    long loadLong(int offset) {
+        int within = offset & PAGE_MASK;
+        if (within + 8 > PAGE_SIZE) {
+            return ((long) load(offset + 4, 4) << 32) | (load(offset, 4) & 0xFFFFFFFFL);
+        }
+        byte[] p = page(offset >>> PAGE_SHIFT);
+        return p == null ? 0 : (long) LONG.get(p, within);
+    }
+
+    /**
+     * Writes 8 bytes as a single access when they share a page.
+     *
+     * @param offset byte offset from the start of the region
+     * @param value  the doubleword to store
+     * @return the doubleword that was replaced
+     */
+    long storeLong(int offset, long value) {
+        invalidate(offset, 8);
+        int within = offset & PAGE_MASK;
+        if (within + 8 > PAGE_SIZE) {
+            int high = store(offset + 4, (int) (value >> 32), 4);
+            int low = store(offset, (int) value, 4);
+            return ((long) high << 32) | (low & 0xFFFFFFFFL);
+        }
+        byte[] p = pageForWrite(offset >>> PAGE_SHIFT);
+        long old = (long) LONG.get(p, within);
+        LONG.set(p, within, value);
+        return old;
+    }
+
+    // Slow path for accesses that straddle a page boundary
+    private int loadBytes(int offset, int length) {
+        int value = 0;
+        for (int i = 0; i < length; i++) {
+            byte[] p = page((offset + i) >>> PAGE_SHIFT);
+            int b = p == null ? 0 : p[(offset + i) & PAGE_MASK] & 0xFF;
+            value |= b << (8 * i);
+        }
+        return value;
+    }
+
+    private int storeBytes(int offset, int value, int length) {
+        int old = 0;
+        for (int i = 0; i < length; i++) {
+            byte[] p = pageForWrite((offset + i) >>> PAGE_SHIFT);
+            int within = (offset + i) & PAGE_MASK;
+            old |= (p[within] & 0xFF) << (8 * i);
+            p[within] = (byte) (value >> (8 * i));
+        }
+        return old;
+    }
+}
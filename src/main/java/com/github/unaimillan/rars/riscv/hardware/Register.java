@@ -1,6 +1,7 @@
 package com.github.unaimillan.rars.riscv.hardware;
 
 import java.util.Observable;
+import java.util.Observer;
 
 /*
 Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
@@ -41,11 +42,16 @@ public class Register extends Observable {
     private String name;
     private int number;
     private long resetValue;
-    // volatile should be enough to allow safe multi-threaded access
-    // w/o the use of synchronized methods.  getValue and setValue
-    // are the only methods here used by the register collection
-    // (RegisterFile, ControlAndStatusRegisterFile, FloatingPointRegisterFile) methods.
-    private volatile long value;
+    // The value lives in a slot of a plain long[] owned by the RegisterBlock this register belongs to
+    // (or a private one-element array for stand-alone registers like the program counter).  Only the
+    // simulation thread writes it; other threads should use RegisterBlock.snapshot() or hold the
+    // machine lock.  The block tracks whether any observer is attached, so the common case costs
+    // neither a monitor nor a volatile write.
+    private long[] storage = new long[1];
+    private int slot = 0;
+    private RegisterBlock block;
+    // Observer flag for stand-alone registers; registers in a block use the block's flag
+    private volatile boolean observed = false;
 
     /**
      * Creates a new register with specified name, number, and value.
@@ -58,10 +64,20 @@ public class Register extends Observable {
     public Register(String n, int num, long val) {
         name = n;
         number = num;
-        value = val;
+        storage[slot] = val;
         resetValue = val;
     }
 
+    /**
+     * Moves this register's value into a slot of its block's backing array.
+     */
+    void attach(RegisterBlock block, long[] storage, int slot) {
+        storage[slot] = this.storage[this.slot];
+        this.block = block;
+        this.storage = storage;
+        this.slot = slot;
+    }
+
     /**
      * Returns the name of the Register.
      *
@@ -79,9 +95,9 @@ public class Register extends Observable {
      * @return value The value of the Register.
      */
 
-    public synchronized long getValue() {
+    public long getValue() {
         notifyAnyObservers(AccessNotice.READ);
-        return value;
+        return storage[slot];
     }
 
 
@@ -92,8 +108,8 @@ public class Register extends Observable {
      * @return value The value of the Register.
      */
 
-    public synchronized long getValueNoNotify() {
-        return value;
+    public long getValueNoNotify() {
+        return storage[slot];
     }
 
 
@@ -125,9 +141,9 @@ public class Register extends Observable {
      * @return previous value of register
      */
 
-    public synchronized long setValue(long val) {
-        long old = value;
-        value = val;
+    public long setValue(long val) {
+        long old = storage[slot];
+        storage[slot] = val;
         notifyAnyObservers(AccessNotice.WRITE);
         return old;
     }
@@ -140,9 +156,9 @@ public class Register extends Observable {
      * @return previous value of register
      */
 
-    public synchronized long setValueBackdoor(long val) {
-        long old = value;
-        value = val;
+    public long setValueBackdoor(long val) {
+        long old = storage[slot];
+        storage[slot] = val;
         return old;
     }
 
@@ -152,8 +168,8 @@ public class Register extends Observable {
      * Observers are not notified.
      */
 
-    public synchronized void resetValue() {
-        value = resetValue;
+    public void resetValue() {
+        storage[slot] = resetValue;
     }
 
     /**
@@ -161,14 +177,37 @@ public class Register extends Observable {
      * set when <tt>resetValue()</tt> is called.
      */
 
-    public synchronized void changeResetValue(long reset) {
+    public void changeResetValue(long reset) {
         resetValue = reset;
     }
 
+    @SuppressWarnings("deprecation")
+    public void addObserver(Observer o) {
+        super.addObserver(o);
+        observersChanged();
+    }
+
+    @SuppressWarnings("deprecation")
+    public void deleteObserver(Observer o) {
+        super.deleteObserver(o);
+        observersChanged();
+    }
+
+    public void deleteObservers() {
+        super.deleteObservers();
+        observersChanged();
+    }
+
+    private void observersChanged() {
+        observed = countObservers() > 0;
+        if (block != null) block.observersChanged();
+    }
+
     //
     // Method to notify any observers of register operation that has just occurred.
     //
     private void notifyAnyObservers(int type) {
+        if (!(block != null ? block.isObserved() : observed)) return; // one flag check in the common, unobserved case
         if (this.countObservers() > 0) {// && Globals.program != null) && Globals.program.inSteppedExecution()) {
             this.setChanged();
             this.notifyObservers(new RegisterAccessNotice(type, this.name));
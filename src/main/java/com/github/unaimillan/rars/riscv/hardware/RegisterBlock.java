@@ -2,6 +2,8 @@ package com.github.unaimillan.rars.riscv.hardware;
 
 import com.github.unaimillan.rars.util.Binary;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Observer;
 
 /*
@@ -44,10 +46,70 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 public class RegisterBlock {
     private final Register[] regFile;
     private final char prefix;
+    // Register numbers may be sparse (CSRs go up to 0xC82), so map each number to its position in regFile
+    private final short[] positions;
+    private final HashMap<String, Register> byName;
+    // Backing store for the register values, indexed by position in regFile
+    private final long[] values;
+    private volatile boolean observed = false;
 
     protected RegisterBlock(char prefix, Register[] registers) {
         this.prefix = prefix;
         this.regFile = registers;
+        int max = -1;
+        for (Register r : registers) {
+            max = Math.max(max, r.getNumber());
+        }
+        positions = new short[max + 1];
+        Arrays.fill(positions, (short) -1);
+        byName = new HashMap<>(registers.length * 2);
+        for (int i = 0; i < registers.length; i++) {
+            Register r = registers[i];
+            if (r.getNumber() >= 0 && positions[r.getNumber()] < 0) {
+                positions[r.getNumber()] = (short) i;
+            }
+            byName.putIfAbsent(r.getName(), r);
+        }
+        values = new long[registers.length];
+        for (int i = 0; i < registers.length; i++) {
+            registers[i].attach(this, values, i);
+        }
+    }
+
+    /**
+     * @return true if an observer is attached to any register in this block
+     */
+    boolean isObserved() {
+        return observed;
+    }
+
+    /**
+     * @return the array backing the register values, indexed by position
+     */
+    long[] values() {
+        return values;
+    }
+
+    synchronized void observersChanged() {
+        boolean any = false;
+        for (Register r : regFile) {
+            any |= r.countObservers() > 0;
+        }
+        observed = any;
+    }
+
+    /**
+     * Copies the current register values.  Intended for threads other than the simulation thread,
+     * which should hold the machine lock (see {@link MachineContext#getLock()}) for a consistent view.
+     *
+     * @return the values, in the same order as {@link #getRegisters()}
+     */
+    public long[] snapshot() {
+        long[] copy = new long[regFile.length];
+        for (int i = 0; i < regFile.length; i++) {
+            copy[i] = regFile[i].getValueNoNotify();
+        }
+        return copy;
     }
 
     /**
@@ -108,12 +170,19 @@ public class RegisterBlock {
      * @return the register for num or null if none exists
      */
     public Register getRegister(int num) {
-        for (Register r : regFile) {
-            if (r.getNumber() == num) {
-                return r;
-            }
-        }
-        return null;
+        int position = getPosition(num);
+        return position < 0 ? null : regFile[position];
+    }
+
+    /**
+     * Get the position of a register in the array returned by {@link #getRegisters()}
+     *
+     * @param num the register number
+     * @return the position, or -1 if no register has that number
+     */
+    public int getPosition(int num) {
+        if (num < 0 || num >= positions.length) return -1;
+        return positions[num];
     }
 
     /**
@@ -126,10 +195,9 @@ public class RegisterBlock {
         if(name.length() < 2) return null;
 
         // Handle a direct name
-        for (Register r : regFile) {
-            if (r.getName().equals(name)) {
-                return r;
-            }
+        Register named = byName.get(name);
+        if (named != null) {
+            return named;
         }
         // Handle prefix case
         if (name.charAt(0) == prefix) {
@@ -5,6 +5,7 @@ import com.github.unaimillan.rars.Settings;
 import com.github.unaimillan.rars.assembler.SymbolTable;
 import com.github.unaimillan.rars.riscv.Instruction;
 
+import java.util.Arrays;
 import java.util.Observer;
 
 /*
@@ -46,27 +47,40 @@ public class RegisterFile {
 
     public static final int GLOBAL_POINTER_REGISTER = 3;
     public static final int STACK_POINTER_REGISTER = 2;
-    private static final RegisterBlock instance = new RegisterBlock('x', new Register[]{
-            new Register("zero", 0, 0), new Register("ra", 1, 0),
-            new Register("sp", STACK_POINTER_REGISTER, Memory.stackPointer),
-            new Register("gp", GLOBAL_POINTER_REGISTER, Memory.globalPointer),
-            new Register("tp", 4, 0), new Register("t0", 5, 0),
-            new Register("t1", 6, 0), new Register("t2", 7, 0),
-            new Register("s0", 8, 0), new Register("s1", 9, 0),
-            new Register("a0", 10, 0), new Register("a1", 11, 0),
-            new Register("a2", 12, 0), new Register("a3", 13, 0),
-            new Register("a4", 14, 0), new Register("a5", 15, 0),
-            new Register("a6", 16, 0), new Register("a7", 17, 0),
-            new Register("s2", 18, 0), new Register("s3", 19, 0),
-            new Register("s4", 20, 0), new Register("s5", 21, 0),
-            new Register("s6", 22, 0), new Register("s7", 23, 0),
-            new Register("s8", 24, 0), new Register("s9", 25, 0),
-            new Register("s10", 26, 0), new Register("s11", 27, 0),
-            new Register("t3", 28, 0), new Register("t4", 29, 0),
-            new Register("t5", 30, 0), new Register("t6", 31, 0)
-    });
-
-    private static Register programCounter = new Register("pc", -1, Memory.textBaseAddress);
+
+    static RegisterBlock createRegisterBlock() {
+        return new RegisterBlock('x', new Register[]{
+                new Register("zero", 0, 0), new Register("ra", 1, 0),
+                new Register("sp", STACK_POINTER_REGISTER, Memory.stackPointer),
+                new Register("gp", GLOBAL_POINTER_REGISTER, Memory.globalPointer),
+                new Register("tp", 4, 0), new Register("t0", 5, 0),
+                new Register("t1", 6, 0), new Register("t2", 7, 0),
+                new Register("s0", 8, 0), new Register("s1", 9, 0),
+                new Register("a0", 10, 0), new Register("a1", 11, 0),
+                new Register("a2", 12, 0), new Register("a3", 13, 0),
+                new Register("a4", 14, 0), new Register("a5", 15, 0),
+                new Register("a6", 16, 0), new Register("a7", 17, 0),
+                new Register("s2", 18, 0), new Register("s3", 19, 0),
+                new Register("s4", 20, 0), new Register("s5", 21, 0),
+                new Register("s6", 22, 0), new Register("s7", 23, 0),
+                new Register("s8", 24, 0), new Register("s9", 25, 0),
+                new Register("s10", 26, 0), new Register("s11", 27, 0),
+                new Register("t3", 28, 0), new Register("t4", 29, 0),
+                new Register("t5", 30, 0), new Register("t6", 31, 0)
+        });
+    }
+
+    static Register createProgramCounter() {
+        return new Register("pc", -1, Memory.textBaseAddress);
+    }
+
+    private static RegisterBlock instance() {
+        return MachineContext.current().registers;
+    }
+
+    private static Register programCounter() {
+        return MachineContext.current().programCounter;
+    }
 
     /**
      * This method updates the register value who's number is num.  Also handles the lo and hi registers
@@ -80,9 +94,9 @@ public class RegisterFile {
             ;
         } else {
             if ((Globals.getSettings().getBackSteppingEnabled())) {
-                Globals.program.getBackStepper().addRegisterFileRestore(num, instance.updateRegister(num, val));
+                Globals.program.getBackStepper().addRegisterFileRestore(num, instance().updateRegister(num, val));
             } else {
-                instance.updateRegister(num, val);
+                instance().updateRegister(num, val);
             }
         }
     }
@@ -95,7 +109,7 @@ public class RegisterFile {
      **/
 
     public static void updateRegister(String name, long val) {
-        updateRegister(instance.getRegister(name).getNumber(), val);
+        updateRegister(instance().getRegister(name).getNumber(), val);
     }
 
     /**
@@ -106,7 +120,7 @@ public class RegisterFile {
      **/
 
     public static int getValue(int num) {
-        return (int) instance.getValue(num);
+        return (int) instance().getValue(num);
 
     }
 
@@ -118,7 +132,7 @@ public class RegisterFile {
      **/
 
     public static long getValueLong(int num) {
-        return instance.getValue(num);
+        return instance().getValue(num);
 
     }
 
@@ -130,7 +144,7 @@ public class RegisterFile {
      **/
 
     public static int getValue(String name) {
-        return (int) instance.getValue(name);
+        return (int) instance().getValue(name);
     }
 
     /**
@@ -140,7 +154,36 @@ public class RegisterFile {
      **/
 
     public static Register[] getRegisters() {
-        return instance.getRegisters();
+        return instance().getRegisters();
+    }
+
+    /**
+     * Copies the register values under the machine lock, for use from threads other than the simulation thread.
+     *
+     * @return the values, in the same order as {@link #getRegisters()}, followed by the program counter
+     */
+    public static long[] snapshot() {
+        MachineContext context = MachineContext.current();
+        context.getLock().lock();
+        try {
+            long[] values = instance().snapshot();
+            values = Arrays.copyOf(values, values.length + 1);
+            values[values.length - 1] = context.programCounter.getValueNoNotify();
+            return values;
+        } finally {
+            context.getLock().unlock();
+        }
+    }
+
+    /**
+     * Gives the simulator's compiled blocks direct access to the register values.  Writes to the array
+     * bypass observers and back stepping, so it is only handed out while no register is observed.
+     *
+     * @return the register values indexed by register number, or null if any register is observed
+     */
+    public static long[] getValuesIfUnobserved() {
+        RegisterBlock registers = instance();
+        return registers.isObserved() ? null : registers.values();
     }
 
     /**
@@ -152,9 +195,9 @@ public class RegisterFile {
 
     public static Register getRegister(String name) {
         if(name.equals("fp")){
-            return instance.getRegister("s0");
+            return instance().getRegister("s0");
         }
-        return instance.getRegister(name);
+        return instance().getRegister(name);
     }
 
     /**
@@ -166,7 +209,7 @@ public class RegisterFile {
      **/
 
     public static void initializeProgramCounter(int value) {
-        programCounter.setValue((long)value);
+        programCounter().setValue((long)value);
     }
 
     /**
@@ -184,7 +227,7 @@ public class RegisterFile {
         if (startAtMain && mainAddr != SymbolTable.NOT_FOUND && Memory.inTextSegment(mainAddr)) {
             initializeProgramCounter(mainAddr);
         } else {
-            initializeProgramCounter((int)programCounter.getResetValue());
+            initializeProgramCounter((int)programCounter().getResetValue());
         }
     }
 
@@ -197,6 +240,7 @@ public class RegisterFile {
      **/
 
     public static int setProgramCounter(int value) {
+        Register programCounter = programCounter();
         int old = (int)programCounter.getValue();
         programCounter.setValue(value);
         if (Globals.getSettings().getBackSteppingEnabled()) {
@@ -212,7 +256,7 @@ public class RegisterFile {
      **/
 
     public static int getProgramCounter() {
-        return (int)programCounter.getValue();
+        return (int)programCounter().getValue();
     }
 
     /**
@@ -221,7 +265,7 @@ public class RegisterFile {
      * @return program counter's Register object.
      */
     public static Register getProgramCounterRegister() {
-        return programCounter;
+        return programCounter();
     }
 
     /**
@@ -231,7 +275,7 @@ public class RegisterFile {
      **/
 
     public static int getInitialProgramCounter() {
-        return (int)programCounter.getResetValue();
+        return (int)programCounter().getResetValue();
     }
 
     /**
@@ -244,15 +288,29 @@ public class RegisterFile {
      **/
 
     public static void resetRegisters() {
-        instance.resetRegisters();
+        instance().resetRegisters();
         initializeProgramCounter(Globals.getSettings().getBooleanSetting(Settings.Bool.START_AT_MAIN));// replaces "programCounter.resetValue()", DPS 3/3/09
     }
 
+    /**
+     * Method to reinitialize the values of the registers and start the program counter at the
+     * given address.  Unlike <code>resetRegisters()</code> this reads neither the settings nor
+     * the global symbol table, so it is safe while another thread assembles.
+     *
+     * @param startPC The value to set the Program Counter to.
+     **/
+
+    public static void resetRegisters(int startPC) {
+        instance().resetRegisters();
+        initializeProgramCounter(startPC);
+    }
+
     /**
      * Method to increment the Program counter in the general case (not a jump or branch).
      **/
 
     public static void incrementPC() {
+        Register programCounter = programCounter();
         programCounter.setValue(programCounter.getValue() + Instruction.INSTRUCTION_LENGTH);
     }
 
@@ -262,7 +320,7 @@ public class RegisterFile {
      * Counter.
      */
     public static void addRegistersObserver(Observer observer) {
-        instance.addRegistersObserver(observer);
+        instance().addRegistersObserver(observer);
     }
 
     /**
@@ -271,6 +329,6 @@ public class RegisterFile {
      * Counter.
      */
     public static void deleteRegistersObserver(Observer observer) {
-        instance.deleteRegistersObserver(observer);
+        instance().deleteRegistersObserver(observer);
     }
 }
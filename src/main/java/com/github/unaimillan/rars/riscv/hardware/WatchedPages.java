@@ -0,0 +1,59 @@
+package com.github.unaimillan.rars.riscv.hardware;
+
+/**
+ * Immutable set of the 4K byte pages of the 32 bit address space that have at least one memory observer.
+ * <p>
+ * Answers "could anyone be watching this address" with two array loads, so loads and stores to pages
+ * nobody watches (typically the stack while a tool watches memory mapped I/O) skip the observer list
+ * entirely.  The bitmap is split into 256 chunks of 4096 pages each and a chunk is only allocated once
+ * a page in it is watched.  Instances are replaced rather than modified, so the simulation thread can
+ * read one without locking while the GUI adds or removes observers.
+ */
+final class WatchedPages {
+    private static final int PAGE_SHIFT = PagedRegion.PAGE_SHIFT;
+    private static final int CHUNK_SHIFT = 24; // 16M bytes, 4096 pages, per chunk
+    private static final int PAGES_PER_CHUNK = 1 << (CHUNK_SHIFT - PAGE_SHIFT);
+
+    static final WatchedPages EMPTY = new WatchedPages(new long[1 << (32 - CHUNK_SHIFT)][]);
+
+    private final long[][] chunks;
+
+    private WatchedPages(long[][] chunks) {
+        this.chunks = chunks;
+    }
+
+    /**
+     * @param address any byte address
+     * @return true if the page holding address is watched
+     */
+    boolean contains(int address) {
+        long[] chunk = chunks[address >>> CHUNK_SHIFT];
+        if (chunk == null) return false;
+        int page = (address >>> PAGE_SHIFT) & (PAGES_PER_CHUNK - 1);
+        return (chunk[page >>> 6] & (1L << page)) != 0;
+    }
+
+    /**
+     * Returns a copy of this set with every page overlapping the given byte range added.
+     *
+     * @param lowAddress  first byte of the range
+     * @param highAddress last byte of the range, not below lowAddress when both are treated as unsigned
+     * @return the new set; this one is unchanged
+     */
+    WatchedPages with(int lowAddress, int highAddress) {
+        long[][] copy = chunks.clone();
+        boolean[] copied = new boolean[copy.length];
+        long first = Integer.toUnsignedLong(lowAddress) >>> PAGE_SHIFT;
+        long last = Integer.toUnsignedLong(highAddress) >>> PAGE_SHIFT;
+        for (long page = first; page <= last; page++) {
+            int chunkIndex = (int) (page >>> (CHUNK_SHIFT - PAGE_SHIFT));
+            if (!copied[chunkIndex]) {
+                copy[chunkIndex] = copy[chunkIndex] == null ? new long[PAGES_PER_CHUNK / 64] : copy[chunkIndex].clone();
+                copied[chunkIndex] = true;
+            }
+            int within = (int) page & (PAGES_PER_CHUNK - 1);
+            copy[chunkIndex][within >>> 6] |= 1L << within;
+        }
+        return new WatchedPages(copy);
+    }
+}
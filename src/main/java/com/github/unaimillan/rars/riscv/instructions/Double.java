@@ -18,6 +18,17 @@ public abstract class Double extends BasicInstruction {
     }
     public void simulate(ProgramStatement statement) throws SimulationException{
         int[] operands = statement.getOperands();
+        if (HardwareFloat.isDefaultRounding(operands[3])) {
+            double f1 = java.lang.Double.longBitsToDouble(FloatingPointRegisterFile.getValueLong(operands[1]));
+            double f2 = java.lang.Double.longBitsToDouble(FloatingPointRegisterFile.getValueLong(operands[2]));
+            double result = computeHardware(f1, f2);
+            int flags = java.lang.Double.isNaN(result) ? HardwareFloat.SOFT : hardwareFlags(f1, f2, result, HardwareFloat.inexactRaised());
+            if (flags != HardwareFloat.SOFT) {
+                HardwareFloat.setfflags(flags);
+                FloatingPointRegisterFile.updateRegisterLong(operands[0], java.lang.Double.doubleToRawLongBits(result));
+                return;
+            }
+        }
         Environment e = new Environment();
         e.mode = Floating.getRoundingMode(operands[3],statement);
         Float64 result = compute(new Float64(FloatingPointRegisterFile.getValueLong(operands[1])),new Float64(FloatingPointRegisterFile.getValueLong(operands[2])),e);
@@ -27,6 +38,25 @@ public abstract class Double extends BasicInstruction {
 
     public abstract Float64 compute(Float64 f1, Float64 f2, Environment e);
 
+    /**
+     * Computes the operation with Java double arithmetic, which rounds to nearest, ties to even.
+     * Instructions without a hardware version keep this default, which always uses {@link #compute}.
+     *
+     * @return the result, or NaN to compute it with JSoftFloat instead
+     */
+    protected double computeHardware(double f1, double f2) {
+        return java.lang.Double.NaN;
+    }
+
+    /**
+     * @param result       the non NaN result of {@link #computeHardware}
+     * @param inexactKnown true if fflags already has the inexact bit set
+     * @return the flags raised, or HardwareFloat.SOFT to compute the result with JSoftFloat instead
+     */
+    protected int hardwareFlags(double f1, double f2, double result, boolean inexactKnown) {
+        return HardwareFloat.SOFT;
+    }
+
     public static Float64 getDouble(int num){
         return new Float64(FloatingPointRegisterFile.getValueLong(num));
     }
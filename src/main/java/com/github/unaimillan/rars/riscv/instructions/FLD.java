@@ -1,12 +1,12 @@
 package com.github.unaimillan.rars.riscv.instructions;
 
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.SimulationException;
 import com.github.unaimillan.rars.riscv.BasicInstruction;
 import com.github.unaimillan.rars.riscv.BasicInstructionFormat;
 import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
 import com.github.unaimillan.rars.riscv.hardware.FloatingPointRegisterFile;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 
 public class FLD extends BasicInstruction {
@@ -19,8 +19,8 @@ public class FLD extends BasicInstruction {
         int[] operands = statement.getOperands();
         operands[1] = (operands[1] << 20) >> 20;
         try {
-            long low = Globals.memory.getWord(RegisterFile.getValue(operands[2]) + operands[1]);
-            long high = Globals.memory.getWord(RegisterFile.getValue(operands[2]) + operands[1]+4);
+            long low = Memory.getInstance().getWord(RegisterFile.getValue(operands[2]) + operands[1]);
+            long high = Memory.getInstance().getWord(RegisterFile.getValue(operands[2]) + operands[1]+4);
             FloatingPointRegisterFile.updateRegisterLong(operands[0], (high << 32) | (low & 0xFFFFFFFFL));
         } catch (AddressErrorException e) {
             throw new SimulationException(statement, e);
@@ -1,10 +1,10 @@
 package com.github.unaimillan.rars.riscv.instructions;
 
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.SimulationException;
 import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
 import com.github.unaimillan.rars.riscv.hardware.FloatingPointRegisterFile;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 import com.github.unaimillan.rars.riscv.BasicInstruction;
 import com.github.unaimillan.rars.riscv.BasicInstructionFormat;
@@ -46,7 +46,7 @@ public class FLW extends BasicInstruction {
         int[] operands = statement.getOperands();
         operands[1] = (operands[1] << 20) >> 20;
         try {
-            FloatingPointRegisterFile.updateRegister(operands[0], Globals.memory.getWord(RegisterFile.getValue(operands[2]) + operands[1]));
+            FloatingPointRegisterFile.updateRegister(operands[0], Memory.getInstance().getWord(RegisterFile.getValue(operands[2]) + operands[1]));
         } catch (AddressErrorException e) {
             throw new SimulationException(statement, e);
         }
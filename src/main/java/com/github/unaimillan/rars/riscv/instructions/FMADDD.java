@@ -11,4 +11,14 @@ public class FMADDD extends FusedDouble {
     public Float64 compute(Float64 f1, Float64 f2, Float64 f3, Environment e){
         return com.github.unaimillan.jsoftfloat.operations.Arithmetic.fusedMultiplyAdd(f1,f2,f3,e);
     }
+
+    @Override
+    protected double computeHardware(double r1, double r2, double r3) {
+        return Math.fma(r1, r2, r3);
+    }
+
+    @Override
+    protected int hardwareFlags(double r1, double r2, double r3, double result, boolean inexactKnown) {
+        return HardwareFloat.fusedMultiplyAdd(r1, r2, r3, result, inexactKnown);
+    }
 }
@@ -38,4 +38,14 @@ public class FMAXS extends Floating {
     public Float32 compute(Float32 f1, Float32 f2, Environment env) {
         return com.github.unaimillan.jsoftfloat.operations.Comparisons.maximumNumber(f1,f2,env);
     }
+
+    @Override
+    protected float computeHardware(float f1, float f2) {
+        return Math.max(f1, f2);
+    }
+
+    @Override
+    protected int hardwareFlags(float f1, float f2, float result, boolean inexactKnown) {
+        return 0;
+    }
 }
@@ -11,4 +11,14 @@ public class FMIND extends Double {
     public Float64 compute(Float64 f1, Float64 f2, Environment env) {
         return com.github.unaimillan.jsoftfloat.operations.Comparisons.minimumNumber(f1,f2,env);
     }
+
+    @Override
+    protected double computeHardware(double f1, double f2) {
+        return Math.min(f1, f2);
+    }
+
+    @Override
+    protected int hardwareFlags(double f1, double f2, double result, boolean inexactKnown) {
+        return 0;
+    }
 }
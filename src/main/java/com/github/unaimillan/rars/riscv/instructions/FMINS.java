@@ -38,4 +38,14 @@ public class FMINS extends Floating {
     public Float32 compute(Float32 f1, Float32 f2, Environment env) {
         return com.github.unaimillan.jsoftfloat.operations.Comparisons.minimumNumber(f1,f2,env);
     }
+
+    @Override
+    protected float computeHardware(float f1, float f2) {
+        return Math.min(f1, f2);
+    }
+
+    @Override
+    protected int hardwareFlags(float f1, float f2, float result, boolean inexactKnown) {
+        return 0;
+    }
 }
@@ -38,4 +38,14 @@ public class FMSUBS extends FusedFloat {
     public Float32 compute(Float32 f1, Float32 f2, Float32 f3, Environment e){
         return com.github.unaimillan.jsoftfloat.operations.Arithmetic.fusedMultiplyAdd(f1,f2,f3.negate(),e);
     }
+
+    @Override
+    protected float computeHardware(float r1, float r2, float r3) {
+        return Math.fma(r1, r2, -r3);
+    }
+
+    @Override
+    protected int hardwareFlags(float r1, float r2, float r3, float result, boolean inexactKnown) {
+        return HardwareFloat.fusedMultiplyAdd(r1, r2, -r3, result, inexactKnown);
+    }
 }
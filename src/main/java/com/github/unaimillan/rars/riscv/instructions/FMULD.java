@@ -12,4 +12,14 @@ public class FMULD extends Double {
     public Float64 compute(Float64 f1, Float64 f2, Environment e) {
         return com.github.unaimillan.jsoftfloat.operations.Arithmetic.multiplication(f1,f2,e);
     }
+
+    @Override
+    protected double computeHardware(double f1, double f2) {
+        return f1 * f2;
+    }
+
+    @Override
+    protected int hardwareFlags(double f1, double f2, double result, boolean inexactKnown) {
+        return HardwareFloat.multiply(f1, f2, result, inexactKnown);
+    }
 }
@@ -39,4 +39,14 @@ public class FMULS extends Floating {
     public Float32 compute(Float32 f1, Float32 f2, Environment e) {
         return com.github.unaimillan.jsoftfloat.operations.Arithmetic.multiplication(f1,f2,e);
     }
+
+    @Override
+    protected float computeHardware(float f1, float f2) {
+        return f1 * f2;
+    }
+
+    @Override
+    protected int hardwareFlags(float f1, float f2, float result, boolean inexactKnown) {
+        return HardwareFloat.multiply(f1, f2, result, inexactKnown);
+    }
 }
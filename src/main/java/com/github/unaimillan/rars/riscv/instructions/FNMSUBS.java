@@ -36,7 +36,17 @@ public class FNMSUBS extends FusedFloat {
     }
 
     public Float32 compute(Float32 f1, Float32 f2, Float32 f3, Environment e){
-        flipRounding(e);
-        return com.github.unaimillan.jsoftfloat.operations.Arithmetic.fusedMultiplyAdd(f1,f2,f3.negate(),e).negate();
+        // Negating the operands rather than the result keeps the sign of exact zeros right
+        return com.github.unaimillan.jsoftfloat.operations.Arithmetic.fusedMultiplyAdd(f1.negate(),f2,f3,e);
+    }
+
+    @Override
+    protected float computeHardware(float r1, float r2, float r3) {
+        return Math.fma(-r1, r2, r3);
+    }
+
+    @Override
+    protected int hardwareFlags(float r1, float r2, float r3, float result, boolean inexactKnown) {
+        return HardwareFloat.fusedMultiplyAdd(-r1, r2, r3, result, inexactKnown);
     }
 }
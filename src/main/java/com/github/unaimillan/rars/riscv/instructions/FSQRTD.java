@@ -16,6 +16,16 @@ public class FSQRTD extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
+        if (HardwareFloat.isDefaultRounding(operands[2])) {
+            double f = java.lang.Double.longBitsToDouble(FloatingPointRegisterFile.getValueLong(operands[1]));
+            double result = Math.sqrt(f);
+            int flags = java.lang.Double.isNaN(result) ? HardwareFloat.SOFT : HardwareFloat.squareRoot(f, result, HardwareFloat.inexactRaised());
+            if (flags != HardwareFloat.SOFT) {
+                HardwareFloat.setfflags(flags);
+                FloatingPointRegisterFile.updateRegisterLong(operands[0], java.lang.Double.doubleToRawLongBits(result));
+                return;
+            }
+        }
         Environment e = new Environment();
         e.mode = Floating.getRoundingMode(operands[2],statement);
         Float64 result = com.github.unaimillan.jsoftfloat.operations.Arithmetic.squareRoot(new Float64(FloatingPointRegisterFile.getValueLong(operands[1])),e);
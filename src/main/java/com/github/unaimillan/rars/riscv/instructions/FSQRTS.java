@@ -43,6 +43,17 @@ public class FSQRTS extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
+        if (HardwareFloat.isDefaultRounding(operands[2])) {
+            float f = Float.intBitsToFloat(FloatingPointRegisterFile.getValue(operands[1]));
+            // Rounding the double square root to float gives the correctly rounded float one
+            float result = (float) Math.sqrt(f);
+            int flags = Float.isNaN(result) ? HardwareFloat.SOFT : HardwareFloat.squareRoot(f, result, HardwareFloat.inexactRaised());
+            if (flags != HardwareFloat.SOFT) {
+                HardwareFloat.setfflags(flags);
+                FloatingPointRegisterFile.updateRegister(operands[0], Float.floatToRawIntBits(result));
+                return;
+            }
+        }
         Environment e = new Environment();
         e.mode = Floating.getRoundingMode(operands[2],statement);
         Float32 result = com.github.unaimillan.jsoftfloat.operations.Arithmetic.squareRoot(new Float32(FloatingPointRegisterFile.getValue(operands[1])),e);
@@ -54,6 +54,17 @@ public abstract class Floating extends BasicInstruction {
     }
     public void simulate(ProgramStatement statement) throws SimulationException{
         int[] operands = statement.getOperands();
+        if (HardwareFloat.isDefaultRounding(operands[3])) {
+            float f1 = Float.intBitsToFloat(FloatingPointRegisterFile.getValue(operands[1]));
+            float f2 = Float.intBitsToFloat(FloatingPointRegisterFile.getValue(operands[2]));
+            float result = computeHardware(f1, f2);
+            int flags = Float.isNaN(result) ? HardwareFloat.SOFT : hardwareFlags(f1, f2, result, HardwareFloat.inexactRaised());
+            if (flags != HardwareFloat.SOFT) {
+                HardwareFloat.setfflags(flags);
+                FloatingPointRegisterFile.updateRegister(operands[0], Float.floatToRawIntBits(result));
+                return;
+            }
+        }
         Environment e = new Environment();
         e.mode = getRoundingMode(operands[3],statement);
         Float32 result = compute(new Float32(FloatingPointRegisterFile.getValue(operands[1])),new Float32(FloatingPointRegisterFile.getValue(operands[2])),e);
@@ -67,12 +78,12 @@ public abstract class Floating extends BasicInstruction {
                 (e.flags.contains(Flags.overflow)?4:0)+
                 (e.flags.contains(Flags.divByZero)?8:0)+
                 (e.flags.contains(Flags.invalid)?16:0);
-        if(fflags != 0) ControlAndStatusRegisterFile.orRegister("fflags",fflags);
+        if(fflags != 0) ControlAndStatusRegisterFile.orRegister(ControlAndStatusRegisterFile.FFLAGS, fflags);
     }
 
     public static RoundingMode getRoundingMode(int RM, ProgramStatement statement) throws SimulationException {
         int rm = RM;
-        int frm = ControlAndStatusRegisterFile.getValue("frm");
+        int frm = ControlAndStatusRegisterFile.getValue(ControlAndStatusRegisterFile.FRM);
         if (rm == 7) rm = frm;
         switch (rm){
             case 0: // RNE
@@ -92,6 +103,25 @@ public abstract class Floating extends BasicInstruction {
 
     public abstract Float32 compute(Float32 f1, Float32 f2, Environment e);
 
+    /**
+     * Computes the operation with Java float arithmetic, which rounds to nearest, ties to even.
+     * Instructions without a hardware version keep this default, which always uses {@link #compute}.
+     *
+     * @return the result, or NaN to compute it with JSoftFloat instead
+     */
+    protected float computeHardware(float f1, float f2) {
+        return Float.NaN;
+    }
+
+    /**
+     * @param result       the non NaN result of {@link #computeHardware}
+     * @param inexactKnown true if fflags already has the inexact bit set
+     * @return the flags raised, or HardwareFloat.SOFT to compute the result with JSoftFloat instead
+     */
+    protected int hardwareFlags(float f1, float f2, float result, boolean inexactKnown) {
+        return HardwareFloat.SOFT;
+    }
+
     public static Float32 getFloat(int num){
         return new Float32(FloatingPointRegisterFile.getValue(num));
     }
@@ -19,6 +19,18 @@ public abstract class FusedDouble extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
+        if (HardwareFloat.isDefaultRounding(operands[4])) {
+            double f1 = java.lang.Double.longBitsToDouble(FloatingPointRegisterFile.getValueLong(operands[1]));
+            double f2 = java.lang.Double.longBitsToDouble(FloatingPointRegisterFile.getValueLong(operands[2]));
+            double f3 = java.lang.Double.longBitsToDouble(FloatingPointRegisterFile.getValueLong(operands[3]));
+            double result = computeHardware(f1, f2, f3);
+            int flags = java.lang.Double.isNaN(result) ? HardwareFloat.SOFT : hardwareFlags(f1, f2, f3, result, HardwareFloat.inexactRaised());
+            if (flags != HardwareFloat.SOFT) {
+                HardwareFloat.setfflags(flags);
+                FloatingPointRegisterFile.updateRegisterLong(operands[0], java.lang.Double.doubleToRawLongBits(result));
+                return;
+            }
+        }
         Environment e = new Environment();
         e.mode = Floating.getRoundingMode(operands[4],statement);
         Float64 result = compute(new Float64(FloatingPointRegisterFile.getValueLong(operands[1])),
@@ -35,4 +47,22 @@ public abstract class FusedDouble extends BasicInstruction {
      * @return The value to store to the destination
      */
     protected abstract Float64 compute(Float64 r1, Float64 r2, Float64 r3,Environment e);
+
+    /**
+     * Computes the operation with Java double arithmetic, which rounds to nearest, ties to even.
+     *
+     * @return the result, or NaN to compute it with JSoftFloat instead
+     */
+    protected double computeHardware(double r1, double r2, double r3) {
+        return java.lang.Double.NaN;
+    }
+
+    /**
+     * @param result       the non NaN result of {@link #computeHardware}
+     * @param inexactKnown true if fflags already has the inexact bit set
+     * @return the flags raised, or HardwareFloat.SOFT to compute the result with JSoftFloat instead
+     */
+    protected int hardwareFlags(double r1, double r2, double r3, double result, boolean inexactKnown) {
+        return HardwareFloat.SOFT;
+    }
 }
@@ -1,7 +1,6 @@
 package com.github.unaimillan.rars.riscv.instructions;
 
 import com.github.unaimillan.jsoftfloat.Environment;
-import com.github.unaimillan.jsoftfloat.RoundingMode;
 import com.github.unaimillan.jsoftfloat.types.Float32;
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.SimulationException;
@@ -48,6 +47,18 @@ public abstract class FusedFloat extends BasicInstruction {
 
     public void simulate(ProgramStatement statement) throws SimulationException {
         int[] operands = statement.getOperands();
+        if (HardwareFloat.isDefaultRounding(operands[4])) {
+            float f1 = Float.intBitsToFloat(FloatingPointRegisterFile.getValue(operands[1]));
+            float f2 = Float.intBitsToFloat(FloatingPointRegisterFile.getValue(operands[2]));
+            float f3 = Float.intBitsToFloat(FloatingPointRegisterFile.getValue(operands[3]));
+            float result = computeHardware(f1, f2, f3);
+            int flags = Float.isNaN(result) ? HardwareFloat.SOFT : hardwareFlags(f1, f2, f3, result, HardwareFloat.inexactRaised());
+            if (flags != HardwareFloat.SOFT) {
+                HardwareFloat.setfflags(flags);
+                FloatingPointRegisterFile.updateRegister(operands[0], Float.floatToRawIntBits(result));
+                return;
+            }
+        }
         Environment e = new Environment();
         e.mode = Floating.getRoundingMode(operands[4],statement);
         Float32 result = compute(new Float32(FloatingPointRegisterFile.getValue(operands[1])),
@@ -57,13 +68,6 @@ public abstract class FusedFloat extends BasicInstruction {
         FloatingPointRegisterFile.updateRegister(operands[0],result.bits);
     }
 
-    public static void flipRounding(Environment e){
-        if(e.mode == RoundingMode.max){
-            e.mode = RoundingMode.min;
-        }else if(e.mode == RoundingMode.min){
-            e.mode = RoundingMode.max;
-        }
-    }
     /**
      * @param r1 The first register
      * @param r2 The second register
@@ -71,4 +75,22 @@ public abstract class FusedFloat extends BasicInstruction {
      * @return The value to store to the destination
      */
     protected abstract Float32 compute(Float32 r1, Float32 r2, Float32 r3,Environment e);
+
+    /**
+     * Computes the operation with Java float arithmetic, which rounds to nearest, ties to even.
+     *
+     * @return the result, or NaN to compute it with JSoftFloat instead
+     */
+    protected float computeHardware(float r1, float r2, float r3) {
+        return Float.NaN;
+    }
+
+    /**
+     * @param result       the non NaN result of {@link #computeHardware}
+     * @param inexactKnown true if fflags already has the inexact bit set
+     * @return the flags raised, or HardwareFloat.SOFT to compute the result with JSoftFloat instead
+     */
+    protected int hardwareFlags(float r1, float r2, float r3, float result, boolean inexactKnown) {
+        return HardwareFloat.SOFT;
+    }
 }
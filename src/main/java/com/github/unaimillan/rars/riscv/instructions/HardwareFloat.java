@@ -0,0 +1,139 @@
+package com.github.unaimillan.rars.riscv.instructions;
+
+import com.github.unaimillan.rars.riscv.hardware.ControlAndStatusRegisterFile;
+
+/**
+ * IEEE exception flags for results computed with Java float and double arithmetic.
+ * <p>
+ * Java arithmetic always rounds to nearest, ties to even, so when that is the rounding mode in effect the
+ * F and D instructions can compute on primitives instead of allocating JSoftFloat values.  The methods here
+ * work out which fflags bits the operation raised from its operands and its (non NaN) result, using
+ * error-free transformations to tell exact results from rounded ones.  Anything that would take more than
+ * a few primitive operations to get exactly right (NaN operands, division by zero, results that may have
+ * underflowed) returns {@link #SOFT} so the caller uses JSoftFloat instead.
+ * <p>
+ * Inexact is sticky, so once it is set in fflags the exactness checks are skipped.
+ */
+final class HardwareFloat {
+    static final int INEXACT = 1, OVERFLOW = 4;
+    /** Returned instead of flags when the result must be computed in software */
+    static final int SOFT = -1;
+
+    // Below this an error term of a double operation may itself round to zero
+    private static final double EXACT_LIMIT = 0x1p-968;
+
+    private HardwareFloat() {
+    }
+
+    /**
+     * @param rm the rounding mode field of the instruction
+     * @return true if rm selects round to nearest, ties to even, directly or through frm
+     */
+    static boolean isDefaultRounding(int rm) {
+        return rm == 0 || rm == 7 && ControlAndStatusRegisterFile.getValue(ControlAndStatusRegisterFile.FRM) == 0;
+    }
+
+    /**
+     * @return true if fflags already records an inexact result
+     */
+    static boolean inexactRaised() {
+        return (ControlAndStatusRegisterFile.getValue(ControlAndStatusRegisterFile.FFLAGS) & INEXACT) != 0;
+    }
+
+    /**
+     * @param flags flags from one of the methods below, other than SOFT
+     */
+    static void setfflags(int flags) {
+        if (flags != 0) ControlAndStatusRegisterFile.orRegister(ControlAndStatusRegisterFile.FFLAGS, flags);
+    }
+
+    // Rounding to infinity from finite operands
+    private static int overflow(boolean infiniteOperand) {
+        return infiniteOperand ? 0 : OVERFLOW | INEXACT;
+    }
+
+    static int add(float a, float b, float sum, boolean inexactKnown) {
+        if (Float.isInfinite(sum)) return overflow(Float.isInfinite(a) || Float.isInfinite(b));
+        if (inexactKnown) return 0;
+        // Knuth's TwoSum: err is exactly what rounding lost; sums never underflow inexactly
+        float bv = sum - a;
+        float err = (a - (sum - bv)) + (b - bv);
+        return err == 0 ? 0 : Float.isFinite(err) ? INEXACT : SOFT;
+    }
+
+    static int add(double a, double b, double sum, boolean inexactKnown) {
+        if (java.lang.Double.isInfinite(sum)) return overflow(java.lang.Double.isInfinite(a) || java.lang.Double.isInfinite(b));
+        if (inexactKnown) return 0;
+        double bv = sum - a;
+        double err = (a - (sum - bv)) + (b - bv);
+        return err == 0 ? 0 : java.lang.Double.isFinite(err) ? INEXACT : SOFT;
+    }
+
+    static int multiply(float a, float b, float product, boolean inexactKnown) {
+        if (Float.isInfinite(product)) return overflow(Float.isInfinite(a) || Float.isInfinite(b));
+        if (a == 0 || b == 0) return 0;
+        if (Math.abs(product) <= Float.MIN_NORMAL) return SOFT;
+        if (inexactKnown) return 0;
+        // The product of two floats is exact as a double
+        return (double) a * b == product ? 0 : INEXACT;
+    }
+
+    static int multiply(double a, double b, double product, boolean inexactKnown) {
+        if (java.lang.Double.isInfinite(product)) return overflow(java.lang.Double.isInfinite(a) || java.lang.Double.isInfinite(b));
+        if (a == 0 || b == 0) return 0;
+        if (Math.abs(product) <= (inexactKnown ? java.lang.Double.MIN_NORMAL : EXACT_LIMIT)) return SOFT;
+        if (inexactKnown) return 0;
+        return Math.fma(a, b, -product) == 0 ? 0 : INEXACT;
+    }
+
+    static int divide(float a, float b, float quotient, boolean inexactKnown) {
+        if (b == 0) return SOFT;
+        if (Float.isInfinite(quotient)) return overflow(Float.isInfinite(a));
+        if (a == 0 || Float.isInfinite(b)) return 0;
+        if (Math.abs(quotient) <= Float.MIN_NORMAL) return SOFT;
+        if (inexactKnown) return 0;
+        return (double) quotient * b == a ? 0 : INEXACT;
+    }
+
+    static int divide(double a, double b, double quotient, boolean inexactKnown) {
+        if (b == 0) return SOFT;
+        if (java.lang.Double.isInfinite(quotient)) return overflow(java.lang.Double.isInfinite(a));
+        if (a == 0 || java.lang.Double.isInfinite(b)) return 0;
+        if (Math.abs(quotient) <= java.lang.Double.MIN_NORMAL) return SOFT;
+        if (inexactKnown) return 0;
+        if (Math.abs(a) < EXACT_LIMIT) return SOFT;
+        return Math.fma(-quotient, b, a) == 0 ? 0 : INEXACT;
+    }
+
+    static int squareRoot(float a, float root, boolean inexactKnown) {
+        if (inexactKnown || a == 0 || Float.isInfinite(a)) return 0;
+        return (double) root * root == a ? 0 : INEXACT;
+    }
+
+    static int squareRoot(double a, double root, boolean inexactKnown) {
+        if (inexactKnown || a == 0 || java.lang.Double.isInfinite(a)) return 0;
+        if (a < EXACT_LIMIT) return SOFT;
+        return Math.fma(root, root, -a) == 0 ? 0 : INEXACT;
+    }
+
+    static int fusedMultiplyAdd(float a, float b, float c, float result, boolean inexactKnown) {
+        if (Float.isInfinite(result)) return overflow(Float.isInfinite(a) || Float.isInfinite(b) || Float.isInfinite(c));
+        if (a == 0 || b == 0) return 0;
+        if (Math.abs(result) <= Float.MIN_NORMAL) return SOFT;
+        if (inexactKnown) return 0;
+        // a * b is exact as a double, and TwoSum tells whether adding c was
+        double product = (double) a * b;
+        double sum = product + c;
+        double cv = sum - product;
+        double err = (product - (sum - cv)) + (c - cv);
+        return err == 0 && sum == result ? 0 : INEXACT;
+    }
+
+    static int fusedMultiplyAdd(double a, double b, double c, double result, boolean inexactKnown) {
+        if (java.lang.Double.isInfinite(result)) return overflow(java.lang.Double.isInfinite(a) || java.lang.Double.isInfinite(b) || java.lang.Double.isInfinite(c));
+        if (a == 0 || b == 0) return 0;
+        if (Math.abs(result) <= java.lang.Double.MIN_NORMAL) return SOFT;
+        // Telling whether a double fused multiply-add was exact is left to JSoftFloat
+        return inexactKnown ? 0 : SOFT;
+    }
+}
@@ -1,7 +1,7 @@
 package com.github.unaimillan.rars.riscv.instructions;
 
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 
 public class LD extends Load {
     public LD() {
@@ -9,6 +9,6 @@ public class LD extends Load {
     }
 
     public long load(int address) throws AddressErrorException {
-        return Globals.memory.getDoubleWord(address);
+        return Memory.getInstance().getDoubleWord(address);
     }
 }
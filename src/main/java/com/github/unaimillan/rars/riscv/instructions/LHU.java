@@ -1,7 +1,7 @@
 package com.github.unaimillan.rars.riscv.instructions;
 
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 
 /*
 Copyright (c) 2017,  Benjamin Landers
@@ -36,7 +36,7 @@ public class LHU extends Load {
     }
 
     public long load(int address) throws AddressErrorException {
-        return Globals.memory.getHalf(address) & 0x0000FFFF;
+        return Memory.getInstance().getHalf(address) & 0x0000FFFF;
     }
 }
 
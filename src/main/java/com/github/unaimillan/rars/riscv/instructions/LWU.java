@@ -1,7 +1,7 @@
 package com.github.unaimillan.rars.riscv.instructions;
 
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 
 public class LWU extends Load {
     public LWU() {
@@ -9,6 +9,6 @@ public class LWU extends Load {
     }
 
     public long load(int address) throws AddressErrorException {
-        return Globals.memory.getWord(address) & 0xFFFF_FFFFL;
+        return Memory.getInstance().getWord(address) & 0xFFFF_FFFFL;
     }
 }
@@ -1,7 +1,7 @@
 package com.github.unaimillan.rars.riscv.instructions;
 
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 
 public class SD extends Store {
     public SD() {
@@ -9,7 +9,7 @@ public class SD extends Store {
     }
 
     public void store(int address, long data) throws AddressErrorException {
-        Globals.memory.setDoubleWord(address, data);
+        Memory.getInstance().setDoubleWord(address, data);
     }
 }
 
@@ -1,7 +1,7 @@
 package com.github.unaimillan.rars.riscv.instructions;
 
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 
 /*
 Copyright (c) 2017,  Benjamin Landers
@@ -36,7 +36,7 @@ public class SH extends Store {
     }
 
     public void store(int address, long data) throws AddressErrorException {
-        Globals.memory.setHalf(address, (int)data & 0x0000FFFF);
+        Memory.getInstance().setHalf(address, (int)data & 0x0000FFFF);
     }
 }
 
@@ -39,13 +39,13 @@ public class URET extends BasicInstruction {
     }
 
     public void simulate(ProgramStatement statement) {
-        boolean upie = (ControlAndStatusRegisterFile.getValue("ustatus") & 0x10) == 0x10;
-        ControlAndStatusRegisterFile.clearRegister("ustatus", 0x10); // Clear UPIE
+        boolean upie = (ControlAndStatusRegisterFile.getValue(ControlAndStatusRegisterFile.USTATUS) & 0x10) == 0x10;
+        ControlAndStatusRegisterFile.clearRegister(ControlAndStatusRegisterFile.USTATUS, 0x10); // Clear UPIE
         if (upie) { // Set UIE to UPIE
-            ControlAndStatusRegisterFile.orRegister("ustatus", 0x1);
+            ControlAndStatusRegisterFile.orRegister(ControlAndStatusRegisterFile.USTATUS, 0x1);
         } else {
-            ControlAndStatusRegisterFile.clearRegister("ustatus", 0x1);
+            ControlAndStatusRegisterFile.clearRegister(ControlAndStatusRegisterFile.USTATUS, 0x1);
         }
-        RegisterFile.setProgramCounter(ControlAndStatusRegisterFile.getValue("uepc"));
+        RegisterFile.setProgramCounter(ControlAndStatusRegisterFile.getValue(ControlAndStatusRegisterFile.UEPC));
     }
 }
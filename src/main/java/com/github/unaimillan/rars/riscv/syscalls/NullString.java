@@ -1,9 +1,9 @@
 package com.github.unaimillan.rars.riscv.syscalls;
 
 import com.github.unaimillan.rars.ExitingException;
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 
 import java.nio.charset.StandardCharsets;
@@ -61,11 +61,11 @@ public class NullString {
         int byteAddress = RegisterFile.getValue(reg);
         ArrayList<Byte> utf8BytesList = new ArrayList<>(); // Need an array to hold bytes
         try {
-            utf8BytesList.add((byte) Globals.memory.getByte(byteAddress));
+            utf8BytesList.add((byte) Memory.getInstance().getByte(byteAddress));
             while (utf8BytesList.get(utf8BytesList.size() - 1) != 0) // until null terminator
             {
                 byteAddress++;
-                utf8BytesList.add((byte) Globals.memory.getByte(byteAddress));
+                utf8BytesList.add((byte) Memory.getInstance().getByte(byteAddress));
             }
         } catch (AddressErrorException e) {
             throw new ExitingException(statement, e);
@@ -1,5 +1,6 @@
 package com.github.unaimillan.rars.riscv.syscalls;
 
+import com.github.unaimillan.rars.riscv.hardware.MachineContext;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 
 import java.util.HashMap;
@@ -43,9 +44,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 public class RandomStreams {
     /**
      * Collection of pseudorandom number streams available for use in Rand-type syscalls.
-     * The streams are by default not seeded.
+     * The streams are by default not seeded. Each simulated machine has its own collection.
+     *
+     * @return the streams of the machine bound to the calling thread
      */
-    static final HashMap<Integer, Random> randomStreams = new HashMap<>();
+    static HashMap<Integer, Random> randomStreams() {
+        return MachineContext.current().getRandomStreams();
+    }
 
     /**
      * Just a little helper method to initialize streams on stream being empty
@@ -55,10 +60,11 @@ public class RandomStreams {
      */
     static Random get(String reg) {
         int index = RegisterFile.getValue(reg);
+        HashMap<Integer, Random> randomStreams = randomStreams();
         Random stream = randomStreams.get(index);
         if (stream == null) {
             stream = new Random(); // create a non-seeded stream
-            RandomStreams.randomStreams.put(index, stream);
+            randomStreams.put(index, stream);
         }
         return stream;
     }
@@ -1,9 +1,9 @@
 package com.github.unaimillan.rars.riscv.syscalls;
 
 import com.github.unaimillan.rars.ExitingException;
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.riscv.AbstractSyscall;
+import com.github.unaimillan.rars.riscv.hardware.MachineContext;
 
 /*
 Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
@@ -42,7 +42,7 @@ public class SyscallExit extends AbstractSyscall {
     }
 
     public void simulate(ProgramStatement statement) throws ExitingException {
-        Globals.exitCode = 0;
+        MachineContext.current().setExitCode(0);
         throw new ExitingException();  // empty exception list.
     }
 }
@@ -1,9 +1,9 @@
 package com.github.unaimillan.rars.riscv.syscalls;
 
 import com.github.unaimillan.rars.ExitingException;
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.riscv.AbstractSyscall;
+import com.github.unaimillan.rars.riscv.hardware.MachineContext;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 
 /*
@@ -40,7 +40,7 @@ public class SyscallExit2 extends AbstractSyscall {
     }
 
     public void simulate(ProgramStatement statement) throws ExitingException {
-        Globals.exitCode = RegisterFile.getValue("a0");
+        MachineContext.current().setExitCode(RegisterFile.getValue("a0"));
         throw new ExitingException(); // empty error list
     }
 }
\ No newline at end of file
@@ -1,10 +1,10 @@
 package com.github.unaimillan.rars.riscv.syscalls;
 
 import com.github.unaimillan.rars.ExitingException;
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.riscv.AbstractSyscall;
 import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 
 import java.nio.charset.StandardCharsets;
@@ -57,10 +57,10 @@ public class SyscallGetCWD extends AbstractSyscall {
         }
         try {
             for (int index = 0; index < utf8BytesList.length; index++) {
-                Globals.memory.setByte(buf + index,
+                Memory.getInstance().setByte(buf + index,
                         utf8BytesList[index]);
             }
-            Globals.memory.setByte(buf + utf8BytesList.length, 0);
+            Memory.getInstance().setByte(buf + utf8BytesList.length, 0);
         } catch (AddressErrorException e) {
             throw new ExitingException(statement, e);
         }
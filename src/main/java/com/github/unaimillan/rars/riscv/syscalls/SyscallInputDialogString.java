@@ -1,9 +1,9 @@
 package com.github.unaimillan.rars.riscv.syscalls;
 
 import com.github.unaimillan.rars.ExitingException;
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 import com.github.unaimillan.rars.riscv.AbstractSyscall;
 
@@ -87,14 +87,14 @@ public class SyscallInputDialogString extends AbstractSyscall {
                 // Copy the input data to buffer as space permits
                 int stringLength = Math.min(maxLength-1, utf8BytesList.length);
                 for (int index = 0; index < stringLength; index++) {
-                    Globals.memory.setByte(byteAddress+ index,
+                    Memory.getInstance().setByte(byteAddress+ index,
                             utf8BytesList[index]);
                 }
                 if (stringLength < maxLength-1) {
-                    Globals.memory.setByte(byteAddress + stringLength, '\n');
+                    Memory.getInstance().setByte(byteAddress + stringLength, '\n');
                     stringLength++;
                 }
-                Globals.memory.setByte(byteAddress + stringLength, 0);
+                Memory.getInstance().setByte(byteAddress + stringLength, 0);
 
                 if (utf8BytesList.length > maxLength - 1) {
                     //  length of the input string exceeded the specified maximum
@@ -1,10 +1,10 @@
 package com.github.unaimillan.rars.riscv.syscalls;
 
 import com.github.unaimillan.rars.ExitingException;
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
 import com.github.unaimillan.rars.riscv.hardware.FloatingPointRegisterFile;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 import com.github.unaimillan.rars.riscv.AbstractSyscall;
 
@@ -60,12 +60,12 @@ public class SyscallMessageDialogDouble extends AbstractSyscall {
         int byteAddress = RegisterFile.getValue("a0");
         char ch[] = {' '}; // Need an array to convert to String
         try {
-            ch[0] = (char) Globals.memory.getByte(byteAddress);
+            ch[0] = (char) Memory.getInstance().getByte(byteAddress);
             while (ch[0] != 0) // only uses single location ch[0]
             {
                 message = message.concat(new String(ch)); // parameter to String constructor is a char[] array
                 byteAddress++;
-                ch[0] = (char) Globals.memory.getByte(byteAddress);
+                ch[0] = (char) Memory.getInstance().getByte(byteAddress);
             }
         } catch (AddressErrorException e) {
             throw new ExitingException(statement, e);
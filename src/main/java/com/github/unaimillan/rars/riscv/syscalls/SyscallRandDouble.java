@@ -51,10 +51,10 @@ public class SyscallRandDouble extends AbstractSyscall {
     }
     public void simulate(ProgramStatement statement) throws ExitingException {
         Integer index = RegisterFile.getValue("a0");
-        Random stream = RandomStreams.randomStreams.get(index);
+        Random stream = RandomStreams.randomStreams().get(index);
         if (stream == null) {
             stream = new Random(); // create a non-seeded stream
-            RandomStreams.randomStreams.put(index, stream);
+            RandomStreams.randomStreams().put(index, stream);
         }
         FloatingPointRegisterFile.updateRegisterLong(10, Double.doubleToRawLongBits(stream.nextDouble()));
     }
@@ -42,9 +42,9 @@ public class SyscallRandSeed extends AbstractSyscall {
 
     public void simulate(ProgramStatement statement) {
         Integer index = RegisterFile.getValue("a0");
-        Random stream = RandomStreams.randomStreams.get(index);
+        Random stream = RandomStreams.randomStreams().get(index);
         if (stream == null) {
-            RandomStreams.randomStreams.put(index, new Random(RegisterFile.getValue("a1")));
+            RandomStreams.randomStreams().put(index, new Random(RegisterFile.getValue("a1")));
         } else {
             stream.setSeed(RegisterFile.getValue("a1"));
         }
@@ -1,10 +1,10 @@
 package com.github.unaimillan.rars.riscv.syscalls;
 
 import com.github.unaimillan.rars.ExitingException;
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.riscv.AbstractSyscall;
 import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 import com.github.unaimillan.rars.util.SystemIO;
 
@@ -58,7 +58,7 @@ public class SyscallRead extends AbstractSyscall {
         // copy bytes from returned buffer into memory
         try {
             while (index < retLength) {
-                Globals.memory.setByte(byteAddress++,
+                Memory.getInstance().setByte(byteAddress++,
                         myBuffer[index++]);
             }
         } catch (AddressErrorException e) {
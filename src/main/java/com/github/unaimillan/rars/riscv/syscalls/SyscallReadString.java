@@ -1,10 +1,10 @@
 package com.github.unaimillan.rars.riscv.syscalls;
 
 import com.github.unaimillan.rars.ExitingException;
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.riscv.AbstractSyscall;
 import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 import com.github.unaimillan.rars.util.SystemIO;
 
@@ -70,14 +70,14 @@ public class SyscallReadString extends AbstractSyscall {
         int stringLength = Math.min(maxLength, utf8BytesList.length);
         try {
             for (int index = 0; index < stringLength; index++) {
-                Globals.memory.setByte(buf + index,
+                Memory.getInstance().setByte(buf + index,
                         utf8BytesList[index]);
             }
             if (stringLength < maxLength) {
-                Globals.memory.setByte(buf + stringLength, '\n');
+                Memory.getInstance().setByte(buf + stringLength, '\n');
                 stringLength++;
             }
-            if (addNullByte) Globals.memory.setByte(buf + stringLength, 0);
+            if (addNullByte) Memory.getInstance().setByte(buf + stringLength, 0);
         } catch (AddressErrorException e) {
             throw new ExitingException(statement, e);
         }
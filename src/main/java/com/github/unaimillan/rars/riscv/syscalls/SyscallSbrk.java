@@ -1,9 +1,9 @@
 package com.github.unaimillan.rars.riscv.syscalls;
 
 import com.github.unaimillan.rars.ExitingException;
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.riscv.AbstractSyscall;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 
 /*
@@ -42,7 +42,7 @@ public class SyscallSbrk extends AbstractSyscall {
 
     public void simulate(ProgramStatement statement) throws ExitingException {
         try {
-            RegisterFile.updateRegister("a0", Globals.memory.allocateBytesFromHeap(RegisterFile.getValue("a0")));
+            RegisterFile.updateRegister("a0", Memory.getInstance().allocateBytesFromHeap(RegisterFile.getValue("a0")));
         } catch (IllegalArgumentException iae) {
             throw new ExitingException(statement,
                     iae.getMessage() + " (syscall " + this.getNumber() + ")");
@@ -2,6 +2,7 @@ package com.github.unaimillan.rars.riscv.syscalls;
 
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.riscv.AbstractSyscall;
+import com.github.unaimillan.rars.riscv.hardware.MachineContext;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 
 /*
@@ -38,10 +39,8 @@ public class SyscallSleep extends AbstractSyscall {
     }
 
     public void simulate(ProgramStatement statement) {
-        try {
-            Thread.sleep(RegisterFile.getValue("a0")); // units of milliseconds  1000 millisec = 1 sec.
-        } catch (InterruptedException e) {
-        }
+        // units of milliseconds  1000 millisec = 1 sec.  Instant when running on a virtual clock.
+        MachineContext.current().sleep(RegisterFile.getValue("a0"));
     }
 
 }
@@ -2,6 +2,7 @@ package com.github.unaimillan.rars.riscv.syscalls;
 
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.riscv.AbstractSyscall;
+import com.github.unaimillan.rars.riscv.hardware.MachineContext;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 import com.github.unaimillan.rars.util.Binary;
 
@@ -39,7 +40,7 @@ public class SyscallTime extends AbstractSyscall {
     }
 
     public void simulate(ProgramStatement statement) {
-        long value = new java.util.Date().getTime();
+        long value = MachineContext.current().currentTimeMillis();
         RegisterFile.updateRegister("a0", Binary.lowOrderLongToInt(value));
         RegisterFile.updateRegister("a1", Binary.highOrderLongToInt(value));
     }
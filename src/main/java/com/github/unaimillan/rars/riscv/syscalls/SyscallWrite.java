@@ -1,10 +1,10 @@
 package com.github.unaimillan.rars.riscv.syscalls;
 
 import com.github.unaimillan.rars.ExitingException;
-import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.riscv.AbstractSyscall;
 import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 import com.github.unaimillan.rars.util.SystemIO;
 
@@ -59,12 +59,12 @@ public class SyscallWrite extends AbstractSyscall {
         int index = 0;
         byte myBuffer[] = new byte[reqLength];
         try {
-            byte b = (byte) Globals.memory.getByte(byteAddress);
+            byte b = (byte) Memory.getInstance().getByte(byteAddress);
             while (index < reqLength) // Stop at requested length. Null bytes are included.
             {
                 myBuffer[index++] = b;
                 byteAddress++;
-                b = (byte) Globals.memory.getByte(byteAddress);
+                b = (byte) Memory.getInstance().getByte(byteAddress);
             }
         } catch (AddressErrorException e) {
             throw new ExitingException(statement, e);
@@ -4,6 +4,7 @@ import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.ProgramStatement;
 import com.github.unaimillan.rars.riscv.hardware.ControlAndStatusRegisterFile;
 import com.github.unaimillan.rars.riscv.hardware.FloatingPointRegisterFile;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
 import com.github.unaimillan.rars.riscv.hardware.RegisterFile;
 import com.github.unaimillan.rars.riscv.Instruction;
 
@@ -137,19 +138,19 @@ public class BackStepper {
                 try {
                     switch (step.action) {
                         case MEMORY_RESTORE_RAW_WORD:
-                            Globals.memory.setRawWord(step.param1, (int)step.param2);
+                            Memory.getInstance().setRawWord(step.param1, (int)step.param2);
                             break;
                         case MEMORY_RESTORE_DOUBLE_WORD:
-                            Globals.memory.setDoubleWord(step.param1, step.param2);
+                            Memory.getInstance().setDoubleWord(step.param1, step.param2);
                             break;
                         case MEMORY_RESTORE_WORD:
-                            Globals.memory.setWord(step.param1, (int)step.param2);
+                            Memory.getInstance().setWord(step.param1, (int)step.param2);
                             break;
                         case MEMORY_RESTORE_HALF:
-                            Globals.memory.setHalf(step.param1, (int)step.param2);
+                            Memory.getInstance().setHalf(step.param1, (int)step.param2);
                             break;
                         case MEMORY_RESTORE_BYTE:
-                            Globals.memory.setByte(step.param1, (int)step.param2);
+                            Memory.getInstance().setByte(step.param1, (int)step.param2);
                             break;
                         case REGISTER_RESTORE:
                             RegisterFile.updateRegister(step.param1, step.param2);
@@ -347,7 +348,7 @@ public class BackStepper {
                 // Client does not have direct access to program statement, and rather than making all
                 // of them go through the methods below to obtain it, we will do it here.
                 // Want the program statement but do not want observers notified.
-                ps = Globals.memory.getStatementNoNotify(programCounter);
+                ps = Memory.getInstance().getStatementNoNotify(programCounter);
             } catch (Exception e) {
                 // The only situation causing this so far: user modifies memory or register
                 // contents through direct manipulation on the GUI, after assembling the program but
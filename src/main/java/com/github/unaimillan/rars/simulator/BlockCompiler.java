@@ -0,0 +1,559 @@
+package com.github.unaimillan.rars.simulator;
+
+import com.github.unaimillan.rars.Globals;
+import com.github.unaimillan.rars.riscv.BasicInstruction;
+import com.github.unaimillan.rars.riscv.Instruction;
+import com.github.unaimillan.rars.riscv.instructions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Translates hot basic blocks of the pre-decoded text segment into JVM bytecode, loaded as hidden classes.
+ * <p>
+ * A block is a straight run of RV32I integer instructions (plus mul, loads and stores) ending with the
+ * first branch or jump, or just before any other instruction.  System calls, CSR accesses, floating point
+ * and everything else stay with the interpreter, as does any instruction with a breakpoint on it unless it
+ * starts the block.  Conditional branches are compiled without bytecode jumps (the taken flag masks the
+ * displacement), so each generated method is straight-line code and needs no stack map frames.
+ * <p>
+ * The translations mirror the RV32 behaviour of the instruction classes in riscv.instructions; they are
+ * only valid for 32 bit programs.  Hidden classes need Java 15.
+ */
+final class BlockCompiler {
+    private static final int MAX_LENGTH = 64;
+
+    private static final String SUPER = "com/github/unaimillan/rars/simulator/CompiledBlock";
+    private static final String NAME = SUPER + "$Generated";
+    private static final String MEMORY = "com/github/unaimillan/rars/riscv/hardware/Memory";
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    // Local of the generated execute method holding x0; x1 to x31 follow (this, registers, memory)
+    private static final int FIRST_REGISTER = 2;
+
+    private static volatile boolean failureReported;
+
+    private final PredecodedProgram program;
+    private final int[] breakPoints;
+
+    /**
+     * @param program     the program to compile blocks of
+     * @param breakPoints sorted breakpoint addresses, or null if there are none
+     */
+    BlockCompiler(PredecodedProgram program, int[] breakPoints) {
+        this.program = program;
+        this.breakPoints = breakPoints;
+    }
+
+    /**
+     * @param start index of the first statement of the block
+     * @return the compiled block, or null if the block would be too short to be worth it
+     */
+    CompiledBlock compile(int start) {
+        Translation translation = new Translation();
+        int index = start;
+        boolean ended = false;
+        while (!ended && index < program.size() && index - start < MAX_LENGTH) {
+            int address = program.addressOf(index);
+            if (index > start && breakPoints != null && Arrays.binarySearch(breakPoints, address) >= 0) break;
+            BasicInstruction instruction = program.getInstruction(index);
+            if (instruction == null || !translation.translate(instruction, program.getStatement(index).getOperands(),
+                    address, index - start)) {
+                break;
+            }
+            ended = endsBlock(instruction);
+            index++;
+        }
+        int length = index - start;
+        if (length < 2) return null;
+        if (!ended) {
+            translation.finish(program.addressOf(start) + length * Instruction.INSTRUCTION_LENGTH);
+        }
+        try {
+            Class<?> generated = LOOKUP.defineHiddenClass(translation.toClassFile(length), true).lookupClass();
+            return (CompiledBlock) generated.getDeclaredConstructor().newInstance();
+        } catch (LinkageError | ReflectiveOperationException e) {
+            // A bad translation or a JVM that rejects it; keep interpreting
+            if (Globals.debug && !failureReported) {
+                failureReported = true;
+                System.out.println("Block compilation failed, interpreting instead: " + e);
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // only written to memory
+        }
+    }
+
+    private static boolean endsBlock(BasicInstruction instruction) {
+        return instruction instanceof Branch || instruction instanceof JAL || instruction instanceof JALR;
+    }
+
+    /**
+     * Bytecode for one block: the body is generated instruction by instruction, and the register loads it
+     * turns out to need are collected in a separate prologue that goes in front of it.
+     */
+    private static final class Translation {
+        // Opcodes used
+        private static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13, LDC2_W = 0x14,
+                ILOAD = 0x15, ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ALOAD_2 = 0x2c, LALOAD = 0x2f, ISTORE = 0x36,
+                LASTORE = 0x50, POP = 0x57, DUP = 0x59, IADD = 0x60, ISUB = 0x64, LSUB = 0x65, IMUL = 0x68,
+                INEG = 0x74, ISHL = 0x78, ISHR = 0x7a, IUSHR = 0x7c, LUSHR = 0x7d, IAND = 0x7e, LAND = 0x7f,
+                IOR = 0x80, IXOR = 0x82, I2L = 0x85, L2I = 0x88, IRETURN = 0xac, RETURN = 0xb1, PUTFIELD = 0xb5,
+                INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7;
+        private static final long UNSIGNED = 0xFFFFFFFFL;
+
+        private final ByteArrayOutputStream prologue = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        // live: the local holds the register's current value; dirty: the register array does not
+        private final boolean[] live = new boolean[32], dirty = new boolean[32];
+
+        private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        private final DataOutputStream poolData = new DataOutputStream(pool);
+        private final HashMap<String, Integer> poolIndex = new HashMap<>();
+        private int poolCount = 1;
+
+        /**
+         * Appends one instruction to the block.
+         *
+         * @param position number of instructions before this one in the block
+         * @return false if the instruction cannot be compiled, in which case nothing was emitted
+         */
+        boolean translate(BasicInstruction instruction, int[] operands, int address, int position) {
+            Class<?> type = instruction.getClass();
+            int next = address + Instruction.INSTRUCTION_LENGTH;
+            if (type == ADD.class) return arithmetic(operands, IADD);
+            if (type == SUB.class) return arithmetic(operands, ISUB);
+            if (type == AND.class) return arithmetic(operands, IAND);
+            if (type == OR.class) return arithmetic(operands, IOR);
+            if (type == XOR.class) return arithmetic(operands, IXOR);
+            if (type == SLL.class) return arithmetic(operands, ISHL);
+            if (type == SRL.class) return arithmetic(operands, IUSHR);
+            if (type == SRA.class) return arithmetic(operands, ISHR);
+            if (type == MUL.class) return arithmetic(operands, IMUL);
+            if (type == SLT.class || type == SLTU.class) {
+                if (operands[0] == 0) return true;
+                boolean unsigned = type == SLTU.class;
+                read(operands[1]);
+                widen(unsigned);
+                read(operands[2]);
+                widen(unsigned);
+                lessThan();
+                write(operands[0]);
+                return true;
+            }
+            if (type == ADDI.class) return immediate(operands, IADD);
+            if (type == ANDI.class) return immediate(operands, IAND);
+            if (type == ORI.class) return immediate(operands, IOR);
+            if (type == XORI.class) return immediate(operands, IXOR);
+            if (type == SLTI.class || type == SLTIU.class) {
+                if (operands[0] == 0) return true;
+                boolean unsigned = type == SLTIU.class;
+                long immediate = (operands[2] << 20) >> 20;
+                read(operands[1]);
+                widen(unsigned);
+                pushLong(unsigned ? immediate & UNSIGNED : immediate);
+                lessThan();
+                write(operands[0]);
+                return true;
+            }
+            if (type == SLLI.class) return shift(operands, ISHL);
+            if (type == SRLI.class) return shift(operands, IUSHR);
+            if (type == SRAI.class) return shift(operands, ISHR);
+            if (type == LUI.class || type == AUIPC.class) {
+                if (operands[0] == 0) return true;
+                push((type == AUIPC.class ? address : 0) + (operands[1] << 12));
+                write(operands[0]);
+                return true;
+            }
+            if (type == LW.class) return load(operands, position, "getWord", 0, 0);
+            if (type == LH.class) return load(operands, position, "getHalf", 16, 0);
+            if (type == LHU.class) return load(operands, position, "getHalf", 0, 0xFFFF);
+            if (type == LB.class) return load(operands, position, "getByte", 24, 0);
+            if (type == LBU.class) return load(operands, position, "getByte", 0, 0xFF);
+            if (type == SW.class) return store(operands, position, "setWord", 0);
+            if (type == SH.class) return store(operands, position, "setHalf", 0xFFFF);
+            if (type == SB.class) return store(operands, position, "setByte", 0xFF);
+            if (instruction instanceof Branch) {
+                if (!branchCondition(type, operands)) return false;
+                // next + ((target - next) & -taken)
+                emit(body, INEG);
+                push(address + operands[2] - next);
+                emit(body, IAND);
+                push(next);
+                emit(body, IADD);
+                exit();
+                return true;
+            }
+            if (type == JAL.class) {
+                push(address + operands[1]);
+                link(operands[0], next);
+                exit();
+                return true;
+            }
+            if (type == JALR.class) {
+                // The target is computed before rd is written, as rd may be rs1
+                read(operands[1]);
+                push((operands[2] << 20) >> 20);
+                emit(body, IADD);
+                push(0xFFFFFFFE);
+                emit(body, IAND);
+                link(operands[0], next);
+                exit();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Ends a block that falls through to the instruction after its last one.
+         *
+         * @param next the address of that instruction
+         */
+        void finish(int next) {
+            push(next);
+            exit();
+        }
+
+        private boolean arithmetic(int[] operands, int opcode) {
+            if (operands[0] == 0) return true;
+            read(operands[1]);
+            read(operands[2]);
+            emit(body, opcode);
+            write(operands[0]);
+            return true;
+        }
+
+        private boolean immediate(int[] operands, int opcode) {
+            if (operands[0] == 0) return true;
+            read(operands[1]);
+            push((operands[2] << 20) >> 20);
+            emit(body, opcode);
+            write(operands[0]);
+            return true;
+        }
+
+        private boolean shift(int[] operands, int opcode) {
+            if (operands[0] == 0) return true;
+            read(operands[1]);
+            push(operands[2]);
+            emit(body, opcode);
+            write(operands[0]);
+            return true;
+        }
+
+        // Loads always happen, even into x0, since they can fault or have observers
+        private boolean load(int[] operands, int position, String method, int signShift, int zeroMask) {
+            beforeMemoryAccess(position);
+            emit(body, ALOAD_2);
+            address(operands[2], operands[1]);
+            invokeMemory(method, "(I)I");
+            if (signShift != 0) {
+                push(signShift);
+                emit(body, ISHL);
+                push(signShift);
+                emit(body, ISHR);
+            } else if (zeroMask != 0) {
+                push(zeroMask);
+                emit(body, IAND);
+            }
+            if (operands[0] == 0) {
+                emit(body, POP);
+            } else {
+                write(operands[0]);
+            }
+            return true;
+        }
+
+        private boolean store(int[] operands, int position, String method, int mask) {
+            beforeMemoryAccess(position);
+            emit(body, ALOAD_2);
+            address(operands[2], operands[1]);
+            read(operands[0]);
+            if (mask != 0) {
+                push(mask);
+                emit(body, IAND);
+            }
+            invokeMemory(method, "(II)I");
+            emit(body, POP);
+            return true;
+        }
+
+        private void address(int base, int offset) {
+            read(base);
+            push((offset << 20) >> 20);
+            emit(body, IADD);
+        }
+
+        // Leaves 1 if the branch is taken, else 0
+        private boolean branchCondition(Class<?> type, int[] operands) {
+            boolean negate;
+            if (type == BEQ.class || type == BNE.class) {
+                // (x | -x) >>> 31 is 1 exactly when x != 0
+                read(operands[0]);
+                read(operands[1]);
+                emit(body, IXOR);
+                emit(body, DUP);
+                emit(body, INEG);
+                emit(body, IOR);
+                push(31);
+                emit(body, IUSHR);
+                negate = type == BEQ.class;
+            } else if (type == BLT.class || type == BGE.class || type == BLTU.class || type == BGEU.class) {
+                boolean unsigned = type == BLTU.class || type == BGEU.class;
+                read(operands[0]);
+                widen(unsigned);
+                read(operands[1]);
+                widen(unsigned);
+                lessThan();
+                negate = type == BGE.class || type == BGEU.class;
+            } else {
+                return false;
+            }
+            if (negate) {
+                push(1);
+                emit(body, IXOR);
+            }
+            return true;
+        }
+
+        // int on the stack to long, zero extended if unsigned
+        private void widen(boolean unsigned) {
+            emit(body, I2L);
+            if (unsigned) {
+                pushLong(UNSIGNED);
+                emit(body, LAND);
+            }
+        }
+
+        // Two 33 bit values as longs on the stack to 1 if the first is smaller, else 0
+        private void lessThan() {
+            emit(body, LSUB);
+            push(63);
+            emit(body, LUSHR);
+            emit(body, L2I);
+        }
+
+        private void link(int register, int returnAddress) {
+            if (register == 0) return;
+            push(returnAddress);
+            write(register);
+        }
+
+        // With the next address on the stack
+        private void exit() {
+            spill();
+            emit(body, IRETURN);
+        }
+
+        private void beforeMemoryAccess(int position) {
+            spill();
+            emit(body, ALOAD_0);
+            push(position);
+            emit(body, PUTFIELD);
+            u2(body, fieldRef(SUPER, "completed", "I"));
+        }
+
+        private void invokeMemory(String name, String descriptor) {
+            emit(body, INVOKEVIRTUAL);
+            u2(body, methodRef(MEMORY, name, descriptor));
+        }
+
+        private void read(int register) {
+            if (register == 0) {
+                emit(body, ICONST_0);
+                return;
+            }
+            if (!live[register]) {
+                emit(prologue, ALOAD_1);
+                pushTo(prologue, register);
+                emit(prologue, LALOAD);
+                emit(prologue, L2I);
+                emit(prologue, ISTORE);
+                emit(prologue, FIRST_REGISTER + register);
+                live[register] = true;
+            }
+            emit(body, ILOAD);
+            emit(body, FIRST_REGISTER + register);
+        }
+
+        private void write(int register) {
+            emit(body, ISTORE);
+            emit(body, FIRST_REGISTER + register);
+            live[register] = dirty[register] = true;
+        }
+
+        // Stores every register written since the last spill back to the register array
+        private void spill() {
+            for (int register = 1; register < 32; register++) {
+                if (!dirty[register]) continue;
+                emit(body, ALOAD_1);
+                push(register);
+                emit(body, ILOAD);
+                emit(body, FIRST_REGISTER + register);
+                emit(body, I2L);
+                emit(body, LASTORE);
+                dirty[register] = false;
+            }
+        }
+
+        private void push(int value) {
+            pushTo(body, value);
+        }
+
+        private void pushTo(ByteArrayOutputStream code, int value) {
+            if (value >= -1 && value <= 5) {
+                emit(code, ICONST_0 + value);
+            } else if (value == (byte) value) {
+                emit(code, BIPUSH);
+                emit(code, value);
+            } else if (value == (short) value) {
+                emit(code, SIPUSH);
+                u2(code, value);
+            } else {
+                emit(code, LDC_W);
+                u2(code, constant("I" + value, 3, value));
+            }
+        }
+
+        private void pushLong(long value) {
+            emit(body, LDC2_W);
+            u2(body, constant("J" + value, 5, value));
+        }
+
+        private static void emit(ByteArrayOutputStream code, int b) {
+            code.write(b);
+        }
+
+        private static void u2(ByteArrayOutputStream code, int value) {
+            code.write(value >> 8);
+            code.write(value);
+        }
+
+        /**
+         * @param length number of instructions in the block
+         * @return the class file of a CompiledBlock subclass running the block
+         */
+        byte[] toClassFile(int length) throws IOException {
+            int thisClass = classRef(NAME), superClass = classRef(SUPER);
+            int code = utf8("Code");
+            int init = utf8("<init>"), initDescriptor = utf8("()V");
+            int superInit = methodRef(SUPER, "<init>", "(I)V");
+            int execute = utf8("execute"), executeDescriptor = utf8("([JL" + MEMORY + ";)I");
+            ByteArrayOutputStream constructor = new ByteArrayOutputStream();
+            emit(constructor, ALOAD_0);
+            pushTo(constructor, length);
+            emit(constructor, INVOKESPECIAL);
+            u2(constructor, superInit);
+            emit(constructor, RETURN);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(52);
+            out.writeShort(poolCount);
+            poolData.flush();
+            pool.writeTo(out);
+            out.writeShort(0x0030); // final, super
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0); // interfaces
+            out.writeShort(0); // fields
+            out.writeShort(2); // methods
+            method(out, init, initDescriptor, code, 2, 1, constructor.toByteArray());
+            ByteArrayOutputStream run = new ByteArrayOutputStream();
+            prologue.writeTo(run);
+            body.writeTo(run);
+            method(out, execute, executeDescriptor, code, 8, FIRST_REGISTER + 32, run.toByteArray());
+            out.writeShort(0); // attributes
+            return bytes.toByteArray();
+        }
+
+        private static void method(DataOutputStream out, int name, int descriptor, int codeAttribute,
+                                   int maxStack, int maxLocals, byte[] code) throws IOException {
+            out.writeShort(0); // package private
+            out.writeShort(name);
+            out.writeShort(descriptor);
+            out.writeShort(1);
+            out.writeShort(codeAttribute);
+            out.writeInt(12 + code.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0); // exception table
+            out.writeShort(0); // attributes
+        }
+
+        // Constant pool entries, each added once
+
+        private int utf8(String value) {
+            Integer index = poolIndex.get("U" + value);
+            if (index != null) return index;
+            try {
+                poolData.writeByte(1);
+                poolData.writeUTF(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            poolIndex.put("U" + value, poolCount);
+            return poolCount++;
+        }
+
+        private int classRef(String internalName) {
+            return entry("C" + internalName, 7, utf8(internalName), -1);
+        }
+
+        private int methodRef(String owner, String name, String descriptor) {
+            return entry("M" + owner + "." + name + descriptor, 10, classRef(owner), nameAndType(name, descriptor));
+        }
+
+        private int fieldRef(String owner, String name, String descriptor) {
+            return entry("F" + owner + "." + name + descriptor, 9, classRef(owner), nameAndType(name, descriptor));
+        }
+
+        private int nameAndType(String name, String descriptor) {
+            return entry("N" + name + descriptor, 12, utf8(name), utf8(descriptor));
+        }
+
+        // An entry of one or two u2 indexes
+        private int entry(String key, int tag, int first, int second) {
+            Integer index = poolIndex.get(key);
+            if (index != null) return index;
+            try {
+                poolData.writeByte(tag);
+                poolData.writeShort(first);
+                if (second >= 0) poolData.writeShort(second);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            poolIndex.put(key, poolCount);
+            return poolCount++;
+        }
+
+        // An int (tag 3) or long (tag 5) constant; longs take two pool slots
+        private int constant(String key, int tag, long value) {
+            Integer index = poolIndex.get(key);
+            if (index != null) return index;
+            try {
+                poolData.writeByte(tag);
+                if (tag == 5) {
+                    poolData.writeLong(value);
+                } else {
+                    poolData.writeInt((int) value);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            poolIndex.put(key, poolCount);
+            int result = poolCount;
+            poolCount += tag == 5 ? 2 : 1;
+            return result;
+        }
+    }
+}
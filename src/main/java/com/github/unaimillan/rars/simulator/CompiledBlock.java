@@ -0,0 +1,34 @@
+package com.github.unaimillan.rars.simulator;
+
+import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
+
+/**
+ * A basic block of the text segment translated to JVM bytecode by {@link BlockCompiler}.
+ * <p>
+ * Subclasses are generated as hidden classes.  They keep the registers the block uses in locals, loaded
+ * from the register array on entry and stored back on exit and before each memory access.
+ */
+abstract class CompiledBlock {
+    /** Number of instructions the block retires when it runs to the end */
+    final int length;
+    /**
+     * Number of instructions retired before the memory access that threw from {@link #execute}; the
+     * registers already hold their values at that point.
+     */
+    int completed;
+
+    CompiledBlock(int length) {
+        this.length = length;
+    }
+
+    /**
+     * Runs the whole block.
+     *
+     * @param registers the integer register values, indexed by register number
+     * @param memory    the memory loads and stores go to
+     * @return the address of the next instruction
+     * @throws AddressErrorException if a load or store faults; see {@link #completed}
+     */
+    abstract int execute(long[] registers, Memory memory) throws AddressErrorException;
+}
@@ -0,0 +1,147 @@
+package com.github.unaimillan.rars.simulator;
+
+import com.github.unaimillan.rars.riscv.BasicInstruction;
+import com.github.unaimillan.rars.riscv.Instruction;
+import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
+import com.github.unaimillan.rars.riscv.instructions.*;
+
+/**
+ * Two adjacent instructions the assembler commonly emits together, executed as one step.
+ * <p>
+ * Recognised idioms are lui/auipc followed by addi on the same register (li and la), auipc followed by
+ * jalr through the same register (call and tail), auipc followed by lw through the same register (loads
+ * from a global) and slt/sltu/slti/sltiu followed by beqz/bnez on the result.  Both instructions still
+ * write their destination registers, so the architectural state afterwards is exactly that of running
+ * them one at a time.  Like compiled blocks, pairs are only used for 32 bit programs while nothing
+ * observes the registers.
+ */
+abstract class FusedPair extends CompiledBlock {
+    // Address of the first instruction
+    final int address;
+
+    private FusedPair(int address) {
+        super(2);
+        this.address = address;
+    }
+
+    /**
+     * @param address the address of the first instruction
+     * @param first   the first instruction
+     * @param a       the operands of the first instruction
+     * @param second  the instruction after it
+     * @param b       the operands of the second instruction
+     * @return the pair as one step, or null if the two are not a recognised idiom
+     */
+    static FusedPair match(int address, BasicInstruction first, int[] a, BasicInstruction second, int[] b) {
+        if (first == null || second == null || a[0] == 0) return null;
+        Class<?> type = first.getClass(), next = second.getClass();
+        if (type == LUI.class || type == AUIPC.class) {
+            int upper = (type == AUIPC.class ? address : 0) + (a[1] << 12);
+            if (next == ADDI.class && b[0] == a[0] && b[1] == a[0]) {
+                return new LoadImmediate(address, a[0], upper, (b[2] << 20) >> 20);
+            }
+            if (type == AUIPC.class && next == JALR.class && b[1] == a[0]) {
+                return new Call(address, a[0], upper, b[0], (b[2] << 20) >> 20);
+            }
+            if (type == AUIPC.class && next == LW.class && b[2] == a[0]) {
+                return new GlobalLoad(address, a[0], upper, b[0], (b[1] << 20) >> 20);
+            }
+            return null;
+        }
+        boolean unsigned = type == SLTU.class || type == SLTIU.class;
+        boolean immediate = type == SLTI.class || type == SLTIU.class;
+        if (!unsigned && !immediate && type != SLT.class) return null;
+        if (next != BEQ.class && next != BNE.class) return null;
+        // beqz/bnez on the result, written either way round
+        if (!(b[0] == a[0] && b[1] == 0 || b[0] == 0 && b[1] == a[0])) return null;
+        return new CompareBranch(address, a[0], a[1], immediate ? (a[2] << 20) >> 20 : a[2], immediate, unsigned,
+                next == BNE.class, address + Instruction.INSTRUCTION_LENGTH + b[2]);
+    }
+
+    // lui or auipc, then addi
+    private static final class LoadImmediate extends FusedPair {
+        private final int register, value;
+
+        LoadImmediate(int address, int register, int upper, int lower) {
+            super(address);
+            this.register = register;
+            this.value = upper + lower;
+        }
+
+        @Override
+        int execute(long[] registers, Memory memory) {
+            registers[register] = value;
+            return address + 2 * Instruction.INSTRUCTION_LENGTH;
+        }
+    }
+
+    // auipc, then jalr through the same register
+    private static final class Call extends FusedPair {
+        private final int register, upper, link, offset;
+
+        Call(int address, int register, int upper, int link, int offset) {
+            super(address);
+            this.register = register;
+            this.upper = upper;
+            this.link = link;
+            this.offset = offset;
+        }
+
+        @Override
+        int execute(long[] registers, Memory memory) {
+            registers[register] = upper;
+            if (link != 0) registers[link] = address + 2 * Instruction.INSTRUCTION_LENGTH;
+            return (upper + offset) & 0xFFFFFFFE;
+        }
+    }
+
+    // auipc, then lw through the same register
+    private static final class GlobalLoad extends FusedPair {
+        private final int register, upper, destination, offset;
+
+        GlobalLoad(int address, int register, int upper, int destination, int offset) {
+            super(address);
+            this.register = register;
+            this.upper = upper;
+            this.destination = destination;
+            this.offset = offset;
+        }
+
+        @Override
+        int execute(long[] registers, Memory memory) throws AddressErrorException {
+            registers[register] = upper;
+            completed = 1;
+            int value = memory.getWord(upper + offset);
+            if (destination != 0) registers[destination] = value;
+            return address + 2 * Instruction.INSTRUCTION_LENGTH;
+        }
+    }
+
+    // slt, sltu, slti or sltiu, then beqz or bnez on the result
+    private static final class CompareBranch extends FusedPair {
+        private final int register, source, operand, target;
+        private final boolean immediate, unsigned, branchIfSet;
+
+        CompareBranch(int address, int register, int source, int operand, boolean immediate, boolean unsigned,
+                      boolean branchIfSet, int target) {
+            super(address);
+            this.register = register;
+            this.source = source;
+            this.operand = operand;
+            this.immediate = immediate;
+            this.unsigned = unsigned;
+            this.branchIfSet = branchIfSet;
+            this.target = target;
+        }
+
+        @Override
+        int execute(long[] registers, Memory memory) {
+            int left = (int) registers[source];
+            int right = immediate ? operand : (int) registers[operand];
+            boolean set = unsigned ? Integer.compareUnsigned(left, right) < 0 : left < right;
+            registers[register] = set ? 1 : 0;
+            return set == branchIfSet ? target : address + 2 * Instruction.INSTRUCTION_LENGTH;
+        }
+    }
+}
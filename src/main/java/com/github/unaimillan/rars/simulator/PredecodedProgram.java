@@ -0,0 +1,149 @@
+package com.github.unaimillan.rars.simulator;
+
+import com.github.unaimillan.rars.ProgramStatement;
+import com.github.unaimillan.rars.riscv.BasicInstruction;
+import com.github.unaimillan.rars.riscv.Instruction;
+import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
+
+import java.util.Arrays;
+
+/**
+ * The text segment of a program flattened into arrays indexed by word offset from the text base address,
+ * so the simulator can fetch the next statement and its instruction with two array loads instead of
+ * walking the memory block tables and casting on every step.
+ * <p>
+ * Only valid while the text segment cannot change, i.e. when self-modifying code is disabled.
+ * <p>
+ * Once compilation is enabled, the program also counts how often execution reaches each statement and
+ * compiles a block starting there (see {@link BlockCompiler}) when the count passes {@link #HOT}.  Until
+ * then, common two instruction idioms still run as one step (see {@link FusedPair}).
+ */
+final class PredecodedProgram {
+    // Executions of a statement before a block starting at it is compiled
+    private static final int HOT = 50;
+
+    private final int baseAddress;
+    private final ProgramStatement[] statements;
+    private final BasicInstruction[] instructions;
+
+    private BlockCompiler compiler;
+    private int[] heat;
+    private CompiledBlock[] blocks;
+    private FusedPair[] pairs;
+
+    private PredecodedProgram(int baseAddress, ProgramStatement[] statements, BasicInstruction[] instructions) {
+        this.baseAddress = baseAddress;
+        this.statements = statements;
+        this.instructions = instructions;
+    }
+
+    /**
+     * Decodes the contiguous run of statements starting at the text base address.
+     *
+     * @param memory the memory holding the assembled program
+     * @return the decoded program (possibly empty)
+     */
+    static PredecodedProgram decode(Memory memory) {
+        int base = Memory.textBaseAddress;
+        ProgramStatement[] statements = new ProgramStatement[1024];
+        int count = 0;
+        try {
+            for (int address = base; Memory.inTextSegment(address); address += Instruction.INSTRUCTION_LENGTH) {
+                ProgramStatement statement = memory.getStatementNoNotify(address);
+                if (statement == null) break;
+                if (count == statements.length) {
+                    statements = Arrays.copyOf(statements, count * 2);
+                }
+                statements[count++] = statement;
+            }
+        } catch (AddressErrorException e) {
+            // Ran off the end of the text segment; keep what we have
+        }
+        statements = Arrays.copyOf(statements, count);
+        BasicInstruction[] instructions = new BasicInstruction[count];
+        for (int i = 0; i < count; i++) {
+            Instruction instruction = statements[i].getInstruction();
+            // A null entry makes the simulator fall back to its regular error reporting
+            instructions[i] = instruction instanceof BasicInstruction ? (BasicInstruction) instruction : null;
+        }
+        return new PredecodedProgram(base, statements, instructions);
+    }
+
+    /**
+     * @param address a program counter value
+     * @return the index of the statement at address, or -1 if it was not decoded
+     */
+    int indexOf(int address) {
+        int offset = address - baseAddress;
+        if ((offset & (Instruction.INSTRUCTION_LENGTH - 1)) != 0) return -1;
+        int index = offset >>> 2;
+        return index < statements.length ? index : -1;
+    }
+
+    /**
+     * @param index a statement index
+     * @return the address of the statement
+     */
+    int addressOf(int index) {
+        return baseAddress + index * Instruction.INSTRUCTION_LENGTH;
+    }
+
+    /**
+     * @return the number of statements decoded
+     */
+    int size() {
+        return statements.length;
+    }
+
+    /**
+     * Starts counting executions so hot blocks get compiled.
+     *
+     * @param breakPoints sorted breakpoint addresses, or null if there are none
+     */
+    void enableCompilation(int[] breakPoints) {
+        compiler = new BlockCompiler(this, breakPoints);
+        heat = new int[statements.length];
+        blocks = new CompiledBlock[statements.length];
+        pairs = new FusedPair[statements.length];
+        for (int i = 0; i + 1 < statements.length; i++) {
+            // A breakpoint on the second instruction has to stop between the two
+            int second = addressOf(i + 1);
+            if (breakPoints != null && Arrays.binarySearch(breakPoints, second) >= 0) continue;
+            pairs[i] = FusedPair.match(addressOf(i), instructions[i], statements[i].getOperands(),
+                    instructions[i + 1], statements[i + 1].getOperands());
+        }
+    }
+
+    /**
+     * @return true if {@link #enableCompilation} was called
+     */
+    boolean isCompiling() {
+        return compiler != null;
+    }
+
+    /**
+     * Counts one execution reaching a statement.
+     *
+     * @param index the statement index
+     * @return the compiled block or fused pair starting at the statement, or null if there is neither (yet)
+     */
+    CompiledBlock getBlock(int index) {
+        CompiledBlock block = blocks[index];
+        if (block != null) return block;
+        // A block that cannot be compiled leaves heat above HOT, so it is not tried again
+        if (heat[index] <= HOT && ++heat[index] > HOT) {
+            block = blocks[index] = compiler.compile(index);
+            if (block != null) return block;
+        }
+        return pairs[index];
+    }
+
+    ProgramStatement getStatement(int index) {
+        return statements[index];
+    }
+
+    BasicInstruction getInstruction(int index) {
+        return instructions[index];
+    }
+}
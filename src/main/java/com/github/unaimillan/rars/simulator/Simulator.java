@@ -4,6 +4,8 @@ import com.github.unaimillan.rars.*;
 import com.github.unaimillan.rars.riscv.hardware.*;
 import com.github.unaimillan.rars.riscv.BasicInstruction;
 import com.github.unaimillan.rars.riscv.Instruction;
+import com.github.unaimillan.rars.riscv.InstructionSet;
+import com.github.unaimillan.rars.riscv.instructions.ECALL;
 import com.github.unaimillan.rars.util.Binary;
 import com.github.unaimillan.rars.util.SystemIO;
 import com.github.unaimillan.rars.venus.run.RunSpeedPanel;
@@ -50,8 +52,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 public class Simulator extends Observable {
     private SimThread simulatorThread;
-    private static Simulator simulator = null;  // Singleton object
     private static Runnable interactiveGUIUpdater = null;
+    // Most instructions the fast path runs per acquisition of the machine lock
+    private static final int QUANTUM = 1024;
 
     /**
      * various reasons for simulate to end...
@@ -67,7 +70,7 @@ public class Simulator extends Observable {
     }
 
     /**
-     * Returns the Simulator object
+     * Returns the Simulator object of the machine bound to the calling thread
      *
      * @return the Simulator object in use
      */
@@ -76,10 +79,15 @@ public class Simulator extends Observable {
         // Its constructor looks for the GUI, which at load time is not created yet,
         // and incorrectly leaves interactiveGUIUpdater null!  This causes runtime
         // exceptions while running in timed mode.
-        if (simulator == null) {
-            simulator = new Simulator();
+        MachineContext context = MachineContext.current();
+        synchronized (context) {
+            Simulator simulator = context.getSimulator();
+            if (simulator == null) {
+                simulator = new Simulator();
+                context.setSimulator(simulator);
+            }
+            return simulator;
         }
-        return simulator;
     }
 
     private Simulator() {
@@ -100,11 +108,13 @@ public class Simulator extends Observable {
      **/
 
     public Reason simulate(int pc, int maxSteps, int[] breakPoints) throws SimulationException {
-        simulatorThread = new SimThread(pc, maxSteps, breakPoints);
-        simulatorThread.run(); // Just call run, this is a blocking method
-        SimulationException pe = simulatorThread.pe;
-        boolean done = simulatorThread.done;
-        Reason out = simulatorThread.constructReturnReason;
+        // Keep our own reference: a stop request from another thread clears simulatorThread
+        SimThread thread = new SimThread(pc, maxSteps, breakPoints);
+        simulatorThread = thread;
+        thread.run(); // Just call run, this is a blocking method
+        SimulationException pe = thread.pe;
+        boolean done = thread.done;
+        Reason out = thread.constructReturnReason;
         if (done) SystemIO.resetFiles(); // close any files opened in the process of simulating
         this.simulatorThread = null;
         if (pe != null) {
@@ -196,11 +206,16 @@ public class Simulator extends Observable {
      */
 
     class SimThread implements Runnable {
-        private int pc, maxSteps;
+        private final MachineContext context;
+        private int pc, maxSteps, steps;
         private int[] breakPoints;
         private boolean done;
         private SimulationException pe;
         private volatile boolean stop = false;
+        // Raised by stop and pause requests and by newly registered interrupts; tells the fast path to
+        // hand control back to the general loop, which clears it before polling the interrupt controller.
+        // Starts raised so that interrupts registered before the run are seen.
+        private volatile boolean attention = true;
         private Reason constructReturnReason;
 
         /**
@@ -211,6 +226,7 @@ public class Simulator extends Observable {
          * @param breakPoints array of breakpoints (instruction addresses) specified by user
          */
         SimThread(int pc, int maxSteps, int[] breakPoints) {
+            this.context = MachineContext.current();
             this.pc = pc;
             this.maxSteps = maxSteps;
             this.breakPoints = breakPoints;
@@ -227,6 +243,7 @@ public class Simulator extends Observable {
          */
         public synchronized void setStop(Reason reason) {
             stop = true;
+            attention = true;
             constructReturnReason = reason;
             notify();
         }
@@ -248,36 +265,49 @@ public class Simulator extends Observable {
         }
 
         private synchronized void interrupt() {
+            attention = true;
             notify();
         }
 
+        private void waitForInterrupt() {
+            if (!(InterruptController.externalPending() || InterruptController.timerPending())) {
+                synchronized (this) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ie) {
+                        // Don't bother catching an interruption
+                    }
+                }
+            }
+        }
+
         private boolean handleTrap(SimulationException se, int pc) {
             assert se.cause() != -1 : "Unhandlable exception not thrown through ExitingEception";
             assert se.cause() >= 0 : "Interrupts cannot be handled by the trap handler";
 
             // set the relevant CSRs
-            ControlAndStatusRegisterFile.updateRegister("ucause", se.cause());
-            ControlAndStatusRegisterFile.updateRegister("uepc", pc);
-            ControlAndStatusRegisterFile.updateRegister("utval", se.value());
+            ControlAndStatusRegisterFile.updateRegister(ControlAndStatusRegisterFile.UCAUSE, se.cause());
+            ControlAndStatusRegisterFile.updateRegister(ControlAndStatusRegisterFile.UEPC, pc);
+            ControlAndStatusRegisterFile.updateRegister(ControlAndStatusRegisterFile.UTVAL, se.value());
 
             // Get the interrupt handler if it exists
-            int utvec = ControlAndStatusRegisterFile.getValue("utvec");
+            int utvec = ControlAndStatusRegisterFile.getValue(ControlAndStatusRegisterFile.UTVEC);
 
             // Mode can be ignored because we are only handling traps
             int base = utvec & 0xFFFFFFFC;
 
             ProgramStatement exceptionHandler = null;
-            if ((ControlAndStatusRegisterFile.getValue("ustatus") & 0x1) != 0) { // test user-interrupt enable (UIE)
+            if ((ControlAndStatusRegisterFile.getValue(ControlAndStatusRegisterFile.USTATUS) & 0x1) != 0) { // test user-interrupt enable (UIE)
                 try {
-                    exceptionHandler = Globals.memory.getStatement(base);
+                    exceptionHandler = context.getMemory().getStatement(base);
                 } catch (AddressErrorException aee) {
                     // Handled below
                 }
             }
 
             if (exceptionHandler != null) {
-                ControlAndStatusRegisterFile.orRegister("ustatus", 0x10); // Set UPIE
-                ControlAndStatusRegisterFile.clearRegister("ustatus", 0x1); // Clear UIE
+                ControlAndStatusRegisterFile.orRegister(ControlAndStatusRegisterFile.USTATUS, 0x10); // Set UPIE
+                ControlAndStatusRegisterFile.clearRegister(ControlAndStatusRegisterFile.USTATUS, 0x1); // Clear UIE
                 RegisterFile.setProgramCounter(base);
                 return true;
             } else {
@@ -294,15 +324,15 @@ public class Simulator extends Observable {
             int code = cause & 0x7FFFFFFF;
 
             // Don't handle cases where that interrupt isn't enabled
-            assert ((ControlAndStatusRegisterFile.getValue("ustatus") & 0x1) != 0 && (ControlAndStatusRegisterFile.getValue("uie") & (1 << code)) != 0) : "The interrupt handler must be enabled";
+            assert ((ControlAndStatusRegisterFile.getValue(ControlAndStatusRegisterFile.USTATUS) & 0x1) != 0 && (ControlAndStatusRegisterFile.getValue(ControlAndStatusRegisterFile.UIE) & (1 << code)) != 0) : "The interrupt handler must be enabled";
 
             // set the relevant CSRs
-            ControlAndStatusRegisterFile.updateRegister("ucause", cause);
-            ControlAndStatusRegisterFile.updateRegister("uepc", pc);
-            ControlAndStatusRegisterFile.updateRegister("utval", value);
+            ControlAndStatusRegisterFile.updateRegister(ControlAndStatusRegisterFile.UCAUSE, cause);
+            ControlAndStatusRegisterFile.updateRegister(ControlAndStatusRegisterFile.UEPC, pc);
+            ControlAndStatusRegisterFile.updateRegister(ControlAndStatusRegisterFile.UTVAL, value);
 
             // Get the interrupt handler if it exists
-            int utvec = ControlAndStatusRegisterFile.getValue("utvec");
+            int utvec = ControlAndStatusRegisterFile.getValue(ControlAndStatusRegisterFile.UTVEC);
 
             // Handle vectored mode
             int base = utvec & 0xFFFFFFFC, mode = utvec & 0x3;
@@ -312,13 +342,13 @@ public class Simulator extends Observable {
 
             ProgramStatement exceptionHandler = null;
             try {
-                exceptionHandler = Globals.memory.getStatement(base);
+                exceptionHandler = context.getMemory().getStatement(base);
             } catch (AddressErrorException aee) {
                 // handled below
             }
             if (exceptionHandler != null) {
-                ControlAndStatusRegisterFile.orRegister("ustatus", 0x10); // Set UPIE
-                ControlAndStatusRegisterFile.clearRegister("ustatus", ControlAndStatusRegisterFile.INTERRUPT_ENABLE);
+                ControlAndStatusRegisterFile.orRegister(ControlAndStatusRegisterFile.USTATUS, 0x10); // Set UPIE
+                ControlAndStatusRegisterFile.clearRegister(ControlAndStatusRegisterFile.USTATUS, ControlAndStatusRegisterFile.INTERRUPT_ENABLE);
                 RegisterFile.setProgramCounter(base);
                 return true;
             } else {
@@ -329,11 +359,172 @@ public class Simulator extends Observable {
             }
         }
 
+        /**
+         * The fast path records backstepping entries and stops at breakpoints like the general loop, but
+         * it cannot stop after one instruction for single stepping, cannot pause after each instruction
+         * for the run speed slider, and decodes the text segment once, so it is not used for a single
+         * step, while the slider is below unlimited speed, or when self-modifying code is enabled.
+         */
+        private boolean canRunPredecoded() {
+            return maxSteps != 1 && !pacedByGui()
+                    && !context.isSelfModifyingCodeEnabled();
+        }
+
+        // True if the run speed slider asks for a pause after every instruction
+        private boolean pacedByGui() {
+            return (Globals.getGui() != null || Globals.runSpeedPanelExists)
+                    && RunSpeedPanel.getInstance().getRunSpeed() < RunSpeedPanel.UNLIMITED_SPEED;
+        }
+
+        /**
+         * Executes instructions from the pre-decoded text segment until simulation ends or
+         * something (a pending interrupt or trap, a stop request, a fetch outside the decoded
+         * range) needs the general loop in {@link #execute()}.
+         * <p>
+         * The machine lock is taken once per quantum of up to {@link #QUANTUM} instructions rather than
+         * once per instruction.  A quantum ends early after a system call, or as soon as {@link #attention}
+         * is raised, so other threads waiting on the lock or wanting the simulator to stop are not held up.
+         * <p>
+         * Hot blocks of 32 bit programs run as compiled code (see {@link BlockCompiler}), and common instruction pairs
+         * as one step (see {@link FusedPair}), while back stepping is off and no register is observed.  A block or
+         * pair retires all its instructions at once, so interrupts, stop requests and the step limit are checked
+         * between them; one that would overrun the step limit is interpreted, and one that faults hands the
+         * faulting instruction to the general loop.
+         *
+         * @param program the pre-decoded text segment
+         * @return true if simulation has ended and stopExecution was called
+         */
+        private boolean runPredecoded(PredecodedProgram program) {
+            Register cycle = ControlAndStatusRegisterFile.getRegister(ControlAndStatusRegisterFile.CYCLE),
+                    instret = ControlAndStatusRegisterFile.getRegister(ControlAndStatusRegisterFile.INSTRET),
+                    time = ControlAndStatusRegisterFile.getRegister(ControlAndStatusRegisterFile.TIME),
+                    ustatus = ControlAndStatusRegisterFile.getRegister(ControlAndStatusRegisterFile.USTATUS),
+                    uip = ControlAndStatusRegisterFile.getRegister(ControlAndStatusRegisterFile.UIP),
+                    uie = ControlAndStatusRegisterFile.getRegister(ControlAndStatusRegisterFile.UIE);
+            BackStepper backStepper = Globals.getSettings().getBackSteppingEnabled() ? Globals.program.getBackStepper() : null;
+            boolean virtualTime = context.isVirtualTime();
+            Memory memory = context.getMemory();
+            while (!attention) {
+                if (pacedByGui()) return false; // the speed slider was moved down
+                boolean ebreak = false, waiting = false;
+                context.getLock().lock();
+                try {
+                    // Compiled blocks write registers directly, so they only run while nobody would notice
+                    long[] registers = program.isCompiling() && backStepper == null ? RegisterFile.getValuesIfUnobserved() : null;
+                    for (int n = 0; n < QUANTUM && !attention; n++) {
+                        if ((ustatus.getValueNoNotify() & ControlAndStatusRegisterFile.INTERRUPT_ENABLE) != 0
+                                && (uip.getValueNoNotify() & uie.getValueNoNotify()) != 0) {
+                            return false;
+                        }
+                        if (maxSteps > 0 && steps >= maxSteps) return false; // let the general loop report MAX_STEPS
+
+                        pc = RegisterFile.getProgramCounter();
+                        int index = program.indexOf(pc);
+                        if (index < 0) return false;
+                        CompiledBlock block = registers != null ? program.getBlock(index) : null;
+                        if (block != null && (maxSteps <= 0 || steps + block.length <= maxSteps)) {
+                            int retired = block.length;
+                            boolean fault = false;
+                            try {
+                                RegisterFile.setProgramCounter(block.execute(registers, memory));
+                            } catch (AddressErrorException e) {
+                                // Leave the faulting instruction to the general loop, which raises the trap
+                                retired = block.completed;
+                                RegisterFile.setProgramCounter(pc + retired * Instruction.INSTRUCTION_LENGTH);
+                                fault = true;
+                            }
+                            if (maxSteps > 0) steps += retired;
+                            n += retired - 1;
+                            cycle.setValueBackdoor(cycle.getValueNoNotify() + retired);
+                            instret.setValueBackdoor(instret.getValueNoNotify() + retired);
+                            if (virtualTime) time.setValueBackdoor(context.currentTimeMillis());
+                            if (fault) return false;
+                            if (breakPoints != null && Arrays.binarySearch(breakPoints, RegisterFile.getProgramCounter()) >= 0) {
+                                ebreak = true;
+                                break;
+                            }
+                            continue;
+                        }
+                        ProgramStatement statement = program.getStatement(index);
+                        BasicInstruction instruction = program.getInstruction(index);
+                        if (instruction == null) return false;
+
+                        try {
+                            if (maxSteps > 0) steps++;
+                            RegisterFile.incrementPC();
+                            // THIS IS WHERE THE INSTRUCTION EXECUTION IS ACTUALLY SIMULATED!
+                            instruction.simulate(statement);
+                        } catch (BreakpointException b) {
+                            ebreak = true;
+                        } catch (WaitException w) {
+                            waiting = true;
+                        } catch (ExitingException e) {
+                            if (e.error() == null) {
+                                this.constructReturnReason = Reason.NORMAL_TERMINATION;
+                            } else {
+                                this.constructReturnReason = Reason.EXCEPTION;
+                                this.pe = e;
+                            }
+                            stopExecution(true, constructReturnReason);
+                            return true;
+                        } catch (SimulationException se) {
+                            if (InterruptController.registerSynchronousTrap(se, pc)) {
+                                return false;
+                            }
+                            this.pe = se;
+                            stopExecution(true, Reason.EXCEPTION);
+                            return true;
+                        }
+                        if (backStepper != null) {
+                            backStepper.addDoNothing(pc);
+                        }
+
+                        // Update cycle(h) and instret(h).  Reading the wall clock every step would dominate, so
+                        // it is only read at the end of each quantum; a virtual clock is cheap enough to follow.
+                        cycle.setValueBackdoor(cycle.getValueNoNotify() + 1);
+                        instret.setValueBackdoor(instret.getValueNoNotify() + 1);
+                        if (virtualTime) time.setValueBackdoor(context.currentTimeMillis());
+
+                        if (ebreak || waiting || instruction instanceof ECALL) break;
+                        if (breakPoints != null && Arrays.binarySearch(breakPoints, RegisterFile.getProgramCounter()) >= 0) {
+                            ebreak = true;
+                            break;
+                        }
+                    }
+                } finally {
+                    context.getLock().unlock();
+                }
+                time.setValueBackdoor(context.currentTimeMillis());
+                SystemIO.flush(false);
+
+                if (ebreak) {
+                    stopExecution(false, Reason.BREAKPOINT);
+                    return true;
+                }
+                if (waiting) {
+                    waitForInterrupt();
+                    return false;
+                }
+            }
+            return false;
+        }
+
         /**
          * Implements Runnable
          */
 
         public void run() {
+            // The thread that runs us may not be the one that created us (e.g. the GUI starts a new
+            // thread), so make sure every facade call below reaches the right machine.
+            MachineContext previous = MachineContext.bind(context);
+            try {
+                execute();
+            } finally {
+                MachineContext.bind(previous);
+            }
+        }
+
+        private void execute() {
             // The next two statements are necessary for GUI to be consistently updated
             // before the simulation gets underway.  Without them, this happens only intermittently,
             // with a consequence that some simulations are interruptable using PAUSE/STOP and others
@@ -381,59 +572,73 @@ public class Simulator extends Observable {
 
             RegisterFile.initializeProgramCounter(pc);
             ProgramStatement statement = null;
-            int steps = 0;
             boolean ebreak = false, waiting = false;
+            PredecodedProgram predecoded = canRunPredecoded() ? PredecodedProgram.decode(context.getMemory()) : null;
+            if (predecoded != null && !InstructionSet.rv64) {
+                predecoded.enableCompilation(breakPoints);
+            }
 
             // Volatile variable initialized false but can be set true by the main thread.
             // Used to stop or pause a running program.  See stopSimulation() above.
             while (!stop) {
+                // Run as far as possible on the fast path; it hands back to this loop (for a single
+                // step at least) whenever something needs the full treatment below.  A trap raised by
+                // the step taken here has to be handled by this loop before the fast path goes on.
+                if (predecoded != null && !InterruptController.trapPending()) {
+                    if (runPredecoded(predecoded)) return;
+                    if (stop) break;
+                }
                 SystemIO.flush(false);
                 // Perform the RISCV instruction in synchronized block.  If external threads agree
                 // to access memory and registers only through synchronized blocks on same
                 // lock variable, then full (albeit heavy-handed) protection of memory and
                 // registers is assured.  Not as critical for reading from those resources.
-                Globals.memoryAndRegistersLock.lock();
+                context.getLock().lock();
                 try {
                     // Handle pending interupts and traps first
-                    long uip = ControlAndStatusRegisterFile.getValueNoNotify("uip"), uie = ControlAndStatusRegisterFile.getValueNoNotify("uie");
-                    boolean IE = (ControlAndStatusRegisterFile.getValueNoNotify("ustatus") & ControlAndStatusRegisterFile.INTERRUPT_ENABLE) != 0;
+                    long uip = ControlAndStatusRegisterFile.getValueNoNotify(ControlAndStatusRegisterFile.UIP), uie = ControlAndStatusRegisterFile.getValueNoNotify(ControlAndStatusRegisterFile.UIE);
+                    boolean IE = (ControlAndStatusRegisterFile.getValueNoNotify(ControlAndStatusRegisterFile.USTATUS) & ControlAndStatusRegisterFile.INTERRUPT_ENABLE) != 0;
                     // make sure no interrupts sneak in while we are processing them
                     pc = RegisterFile.getProgramCounter();
-                    synchronized (InterruptController.lock) {
-                        boolean pendingExternal = InterruptController.externalPending(),
-                                pendingTimer = InterruptController.timerPending(),
-                                pendingTrap = InterruptController.trapPending();
-                        // This is the explicit (in the spec) order that interrupts should be serviced
-                        if (IE && pendingExternal && (uie & ControlAndStatusRegisterFile.EXTERNAL_INTERRUPT) != 0) {
-                            if (handleInterrupt(InterruptController.claimExternal(), SimulationException.EXTERNAL_INTERRUPT, pc)) {
-                                pendingExternal = false;
-                                uip &= ~0x100;
-                            } else {
-                                return; // if the interrupt can't be handled, but the interrupt enable bit is high, thats an error
-                            }
-                        } else if (IE && (uip & 0x1) != 0 && (uie & ControlAndStatusRegisterFile.SOFTWARE_INTERRUPT) != 0) {
-                            if (handleInterrupt(0, SimulationException.SOFTWARE_INTERRUPT, pc)) {
-                                uip &= ~0x1;
-                            } else {
-                                return; // if the interrupt can't be handled, but the interrupt enable bit is high, thats an error
-                            }
-                        } else if (IE && pendingTimer && (uie & ControlAndStatusRegisterFile.TIMER_INTERRUPT) != 0) {
-                            if (handleInterrupt(InterruptController.claimTimer(), SimulationException.TIMER_INTERRUPT, pc)) {
-                                pendingTimer = false;
-                                uip &= ~0x10;
-                            } else {
-                                return; // if the interrupt can't be handled, but the interrupt enable bit is high, thats an error
-                            }
-                        } else if (pendingTrap) { // if we have a pending trap and aren't handling an interrupt it must be handled
-                            if (handleTrap(InterruptController.claimTrap(), pc - Instruction.INSTRUCTION_LENGTH)) { // account for that the PC has already been incremented
-                            } else {
-                                return;
+                    attention = false; // anything registered from here on raises it again
+                    // Nothing to service unless the controller has something or a software interrupt is enabled
+                    if (InterruptController.anyPending() || IE && (uip & uie) != 0) {
+                        synchronized (InterruptController.getLock()) {
+                            boolean pendingExternal = InterruptController.externalPending(),
+                                    pendingTimer = InterruptController.timerPending(),
+                                    pendingTrap = InterruptController.trapPending();
+                            // This is the explicit (in the spec) order that interrupts should be serviced
+                            if (IE && pendingExternal && (uie & ControlAndStatusRegisterFile.EXTERNAL_INTERRUPT) != 0) {
+                                if (handleInterrupt(InterruptController.claimExternal(), SimulationException.EXTERNAL_INTERRUPT, pc)) {
+                                    pendingExternal = false;
+                                    uip &= ~0x100;
+                                } else {
+                                    return; // if the interrupt can't be handled, but the interrupt enable bit is high, thats an error
+                                }
+                            } else if (IE && (uip & 0x1) != 0 && (uie & ControlAndStatusRegisterFile.SOFTWARE_INTERRUPT) != 0) {
+                                if (handleInterrupt(0, SimulationException.SOFTWARE_INTERRUPT, pc)) {
+                                    uip &= ~0x1;
+                                } else {
+                                    return; // if the interrupt can't be handled, but the interrupt enable bit is high, thats an error
+                                }
+                            } else if (IE && pendingTimer && (uie & ControlAndStatusRegisterFile.TIMER_INTERRUPT) != 0) {
+                                if (handleInterrupt(InterruptController.claimTimer(), SimulationException.TIMER_INTERRUPT, pc)) {
+                                    pendingTimer = false;
+                                    uip &= ~0x10;
+                                } else {
+                                    return; // if the interrupt can't be handled, but the interrupt enable bit is high, thats an error
+                                }
+                            } else if (pendingTrap) { // if we have a pending trap and aren't handling an interrupt it must be handled
+                                if (handleTrap(InterruptController.claimTrap(), pc - Instruction.INSTRUCTION_LENGTH)) { // account for that the PC has already been incremented
+                                } else {
+                                    return;
+                                }
                             }
+                            uip |= (pendingExternal ? ControlAndStatusRegisterFile.EXTERNAL_INTERRUPT : 0) | (pendingTimer ? ControlAndStatusRegisterFile.TIMER_INTERRUPT : 0);
                         }
-                        uip |= (pendingExternal ? ControlAndStatusRegisterFile.EXTERNAL_INTERRUPT : 0) | (pendingTimer ? ControlAndStatusRegisterFile.TIMER_INTERRUPT : 0);
                     }
-                    if (uip != ControlAndStatusRegisterFile.getValueNoNotify("uip")) {
-                        ControlAndStatusRegisterFile.updateRegister("uip", uip);
+                    if (uip != ControlAndStatusRegisterFile.getValueNoNotify(ControlAndStatusRegisterFile.UIP)) {
+                        ControlAndStatusRegisterFile.updateRegister(ControlAndStatusRegisterFile.UIP, uip);
                     }
 
                     // always handle interrupts and traps before quiting
@@ -450,7 +655,7 @@ public class Simulator extends Observable {
                     RegisterFile.incrementPC();
                     // Get instuction
                     try {
-                        statement = Globals.memory.getStatement(pc);
+                        statement = context.getMemory().getStatement(pc);
                     } catch (AddressErrorException e) {
                         SimulationException tmp;
                         if (e.getType() == SimulationException.LOAD_ACCESS_FAULT) {
@@ -460,7 +665,7 @@ public class Simulator extends Observable {
                         }
                         if (!InterruptController.registerSynchronousTrap(tmp, pc)) {
                             this.pe = tmp;
-                            ControlAndStatusRegisterFile.updateRegister("uepc", pc);
+                            ControlAndStatusRegisterFile.updateRegister(ControlAndStatusRegisterFile.UEPC, pc);
                             stopExecution(true, Reason.EXCEPTION);
                             return;
                         } else {
@@ -518,16 +723,15 @@ public class Simulator extends Observable {
                         }
                     }
                 } finally {
-                    Globals.memoryAndRegistersLock.unlock();
+                    context.getLock().unlock();
                 }
 
                 // Update cycle(h) and instret(h)
-                long cycle = ControlAndStatusRegisterFile.getValueNoNotify("cycle"),
-                         instret = ControlAndStatusRegisterFile.getValueNoNotify("instret"),
-                         time = System.currentTimeMillis();;
-                ControlAndStatusRegisterFile.updateRegisterBackdoor("cycle",cycle+1);
-                ControlAndStatusRegisterFile.updateRegisterBackdoor("instret",instret+1);
-                ControlAndStatusRegisterFile.updateRegisterBackdoor("time",time);
+                long cycle = ControlAndStatusRegisterFile.getValueNoNotify(ControlAndStatusRegisterFile.CYCLE),
+                         instret = ControlAndStatusRegisterFile.getValueNoNotify(ControlAndStatusRegisterFile.INSTRET);
+                ControlAndStatusRegisterFile.updateRegisterBackdoor(ControlAndStatusRegisterFile.CYCLE, cycle+1);
+                ControlAndStatusRegisterFile.updateRegisterBackdoor(ControlAndStatusRegisterFile.INSTRET, instret+1);
+                ControlAndStatusRegisterFile.updateRegisterBackdoor(ControlAndStatusRegisterFile.TIME, context.currentTimeMillis());
 
                 //     Return if we've reached a breakpoint.
                 if (ebreak || (breakPoints != null) &&
@@ -538,15 +742,7 @@ public class Simulator extends Observable {
 
                 // Wait if WFI ran
                 if (waiting) {
-                    if (!(InterruptController.externalPending() || InterruptController.timerPending())) {
-                        synchronized (this) {
-                            try {
-                                wait();
-                            } catch (InterruptedException ie) {
-                                // Don't bother catching an interruption
-                            }
-                        }
-                    }
+                    waitForInterrupt();
                     waiting = false;
                 }
 
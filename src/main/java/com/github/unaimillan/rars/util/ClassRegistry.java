@@ -0,0 +1,125 @@
+package com.github.unaimillan.rars.util;
+
+import java.io.*;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+import static com.github.unaimillan.rars.Globals.GLOBAL_CLASS_PREFIX;
+import static com.github.unaimillan.rars.Globals.GLOBAL_DIRECTORY_PATH;
+
+/**
+ * Finds the classes RARS discovers by package rather than by name: instructions, system calls, tools and
+ * dump formats.
+ * <p>
+ * The build lists them in {@value #RESOURCE} (by running {@link #main}), so starting RARS does not have to walk
+ * the jar or class directories and load every class file it finds to check its type.  When the list is
+ * missing, as when running straight from an IDE's output directory, the package is scanned as before.
+ * <p>
+ * Only classes are listed.  Pseudo-instructions are still read from PseudoOps.txt, and their examples and
+ * templates tokenized, each time the instruction set is populated.
+ */
+public final class ClassRegistry {
+    private static final String RESOURCE = "/ClassRegistry.txt";
+    private static final String CLASS_EXTENSION = "class";
+
+    // Directories listed at build time and the type their classes must have
+    private static final String[][] REGISTERED = {
+            {"rars/riscv/instructions", "rars.riscv.BasicInstruction"},
+            {"rars/riscv/syscalls", "rars.riscv.AbstractSyscall"},
+            {"rars/tools", "rars.tools.Tool"},
+            {"rars/riscv/dump", "rars.riscv.dump.DumpFormat"},
+    };
+
+    // Class names by directory, or null if the build did not list them
+    private static HashMap<String, ArrayList<String>> registry;
+    private static boolean loaded;
+
+    private ClassRegistry() {
+    }
+
+    /**
+     * Lists the concrete classes in a directory of RARS that are assignable to a type.
+     *
+     * @param directory the directory relative to {@link com.github.unaimillan.rars.Globals#GLOBAL_DIRECTORY_PATH},
+     *                  e.g. rars/riscv/syscalls
+     * @param type      the type the classes must have
+     * @return fully qualified class names, sorted
+     */
+    public static ArrayList<String> getClassNames(String directory, Class<?> type) {
+        HashMap<String, ArrayList<String>> listed = listed();
+        if (listed != null && listed.containsKey(directory)) {
+            return new ArrayList<>(listed.get(directory));
+        }
+        return scan(ClassRegistry.class.getClassLoader(), directory, type);
+    }
+
+    private static synchronized HashMap<String, ArrayList<String>> listed() {
+        if (!loaded) {
+            loaded = true;
+            InputStream stream = ClassRegistry.class.getResourceAsStream(RESOURCE);
+            if (stream != null) {
+                try (BufferedReader in = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+                    HashMap<String, ArrayList<String>> classes = new HashMap<>();
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        if (line.isEmpty() || line.startsWith("#")) continue;
+                        int space = line.indexOf(' ');
+                        classes.computeIfAbsent(line.substring(0, space), k -> new ArrayList<>())
+                                .add(line.substring(space + 1));
+                    }
+                    registry = classes;
+                } catch (IOException | RuntimeException e) {
+                    registry = null;
+                }
+            }
+        }
+        return registry;
+    }
+
+    // Loads (but does not initialize) every class file in the directory to check its type
+    private static ArrayList<String> scan(ClassLoader loader, String directory, Class<?> type) {
+        String prefix = GLOBAL_CLASS_PREFIX + directory.replace('/', '.') + ".";
+        // The same file may be found twice (happens if run in MARS development directory)
+        LinkedHashSet<String> files = new LinkedHashSet<>(
+                FilenameFinder.getFilenameList(loader, GLOBAL_DIRECTORY_PATH + directory, CLASS_EXTENSION));
+        ArrayList<String> names = new ArrayList<>();
+        for (String file : files) {
+            String name = prefix + file.substring(0, file.length() - CLASS_EXTENSION.length() - 1);
+            try {
+                Class<?> clas = Class.forName(name, false, loader);
+                if (type.isAssignableFrom(clas) && !Modifier.isAbstract(clas.getModifiers())
+                        && !Modifier.isInterface(clas.getModifiers())) {
+                    names.add(name);
+                }
+            } catch (ClassNotFoundException | LinkageError e) {
+                // Not a class that can be loaded here; leave it out
+            }
+        }
+        names.sort(null);
+        return names;
+    }
+
+    /**
+     * Writes the class list for the build.
+     *
+     * @param args the file to write
+     * @throws Exception if a registered type is missing or the file cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        ClassLoader loader = ClassRegistry.class.getClassLoader();
+        File file = new File(args[0]);
+        file.getAbsoluteFile().getParentFile().mkdirs();
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.println("# Generated by " + ClassRegistry.class.getName() + "; do not edit");
+            for (String[] registered : REGISTERED) {
+                Class<?> type = Class.forName(GLOBAL_CLASS_PREFIX + registered[1], false, loader);
+                for (String name : scan(loader, registered[0], type)) {
+                    out.println(registered[0] + " " + name);
+                }
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.github.unaimillan.rars.util;
 
 import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.Settings;
+import com.github.unaimillan.rars.riscv.hardware.MachineContext;
 
 import java.io.*;
 import java.nio.channels.FileChannel;
@@ -54,11 +55,6 @@ public class SystemIO {
      * Maximum number of files that can be open
      */
     public static final int SYSCALL_MAXFILES = 32;
-    /**
-     * String used for description of file error
-     */
-    public static String fileErrorString = new String("File operation OK");
-
     private static final int O_RDONLY = 0x00000000;
     private static final int O_WRONLY = 0x00000001;
     private static final int O_RDWR = 0x00000002;
@@ -218,13 +214,14 @@ public class SystemIO {
         ///////////////////////////////////////////////////////////////////////////////////
         //// When running in command mode, code below works for either regular file or STDOUT/STDERR
 
-        if (!FileIOData.fdInUse(fd, 1)) // Check the existence of the "write" fd
+        Data files = files();
+        if (!files.fdInUse(fd, 1)) // Check the existence of the "write" fd
         {
-            fileErrorString = "File descriptor " + fd + " is not open for writing";
+            files.fileErrorString = "File descriptor " + fd + " is not open for writing";
             return -1;
         }
         // retrieve FileOutputStream from storage
-        OutputStream outputStream = (OutputStream) FileIOData.getStreamInUse(fd);
+        OutputStream outputStream = (OutputStream) files.getStreamInUse(fd);
         try {
             // Oct. 9 2005 Ken Vollmar
             // Observation: made a call to outputStream.write(myBuffer, 0, lengthRequested)
@@ -243,10 +240,10 @@ public class SystemIO {
             }
             outputStream.flush();// DPS 7-Jan-2013
         } catch (IOException e) {
-            fileErrorString = "IO Exception on write of file with fd " + fd;
+            files.fileErrorString = "IO Exception on write of file with fd " + fd;
             return -1;
         } catch (IndexOutOfBoundsException e) {
-            fileErrorString = "IndexOutOfBoundsException on write of file with fd" + fd;
+            files.fileErrorString = "IndexOutOfBoundsException on write of file with fd" + fd;
             return -1;
         }
 
@@ -279,13 +276,14 @@ public class SystemIO {
         ////////////////////////////////////////////////////////////////////////////////////
         //// When running in command mode, code below works for either regular file or STDIN
 
-        if (!FileIOData.fdInUse(fd, 0)) // Check the existence of the "read" fd
+        Data files = files();
+        if (!files.fdInUse(fd, 0)) // Check the existence of the "read" fd
         {
-            fileErrorString = "File descriptor " + fd + " is not open for reading";
+            files.fileErrorString = "File descriptor " + fd + " is not open for reading";
             return -1;
         }
         // retrieve FileInputStream from storage
-        InputStream InputStream = (InputStream) FileIOData.getStreamInUse(fd);
+        InputStream InputStream = (InputStream) files.getStreamInUse(fd);
         try {
             // Reads up to lengthRequested bytes of data from this Input stream into an array of bytes.
             retValue = InputStream.read(myBuffer, 0, lengthRequested);
@@ -295,10 +293,10 @@ public class SystemIO {
                 retValue = 0;
             }
         } catch (IOException e) {
-            fileErrorString = "IO Exception on read of file with fd " + fd;
+            files.fileErrorString = "IO Exception on read of file with fd " + fd;
             return -1;
         } catch (IndexOutOfBoundsException e) {
-            fileErrorString = "IndexOutOfBoundsException on read of file with fd" + fd;
+            files.fileErrorString = "IndexOutOfBoundsException on read of file with fd" + fd;
             return -1;
         }
         return retValue;
@@ -315,13 +313,14 @@ public class SystemIO {
      * @return -1 on error
      */
     public static int seek(int fd, int offset, int base) {
-        if (!FileIOData.fdInUse(fd, 0)) // Check the existence of the "read" fd
+        Data files = files();
+        if (!files.fdInUse(fd, 0)) // Check the existence of the "read" fd
         {
-            fileErrorString = "File descriptor " + fd + " is not open for reading";
+            files.fileErrorString = "File descriptor " + fd + " is not open for reading";
             return -1;
         }
         if (fd < 0 || fd >= SYSCALL_MAXFILES) return -1;
-        Object stream = FileIOData.getStreamInUse(fd);
+        Object stream = files.getStreamInUse(fd);
         if (stream == null) return -1;
         FileChannel channel;
         try {
@@ -372,26 +371,22 @@ public class SystemIO {
         int fdToUse;
 
         // Check internal plausibility of opening this file
-        fdToUse = FileIOData.nowOpening(filename, flags);
+        Data files = files();
+        fdToUse = files.nowOpening(filename, flags);
         retValue = fdToUse; // return value is the fd
         if (fdToUse < 0) {
             return -1;
         }   // fileErrorString would have been set
 
-        File filepath = new File(filename);
-        if (!filepath.isAbsolute() && Globals.program != null && Globals.getSettings()
-                .getBooleanSetting(Settings.Bool.DERIVE_CURRENT_WORKING_DIRECTORY)) {
-            String parent = new File(Globals.program.getFilename()).getParent();
-            filepath = new File(parent, filename);
-        }
+        File filepath = resolve(filename);
         if (flags == O_RDONLY) // Open for reading only
         {
             try {
                 // Set up input stream from disk file
                 inputStream = new FileInputStream(filepath);
-                FileIOData.setStreamInUse(fdToUse, inputStream); // Save stream for later use
+                files.setStreamInUse(fdToUse, inputStream); // Save stream for later use
             } catch (FileNotFoundException e) {
-                fileErrorString = "File " + filename + " not found, open for input.";
+                files.fileErrorString = "File " + filename + " not found, open for input.";
                 retValue = -1;
             }
         } else if ((flags & O_WRONLY) != 0) // Open for writing only
@@ -399,9 +394,9 @@ public class SystemIO {
             // Set up output stream to disk file
             try {
                 outputStream = new FileOutputStream(filepath, ((flags & O_APPEND) != 0));
-                FileIOData.setStreamInUse(fdToUse, outputStream); // Save stream for later use
+                files.setStreamInUse(fdToUse, outputStream); // Save stream for later use
             } catch (FileNotFoundException e) {
-                fileErrorString = "File " + filename + " not found, open for output.";
+                files.fileErrorString = "File " + filename + " not found, open for output.";
                 retValue = -1;
             }
         }
@@ -409,20 +404,31 @@ public class SystemIO {
 
     }
 
+    // Relative names are taken from the program's directory when the setting asks for it
+    private static File resolve(String filename) {
+        File filepath = new File(filename);
+        if (!filepath.isAbsolute() && Globals.program != null && Globals.getSettings()
+                .getBooleanSetting(Settings.Bool.DERIVE_CURRENT_WORKING_DIRECTORY)) {
+            String parent = new File(Globals.program.getFilename()).getParent();
+            filepath = new File(parent, filename);
+        }
+        return filepath;
+    }
+
     /**
      * Close the file with specified file descriptor
      *
      * @param fd the file descriptor of an open file
      */
     public static void closeFile(int fd) {
-        FileIOData.close(fd);
+        files().close(fd);
     }
 
     /**
      * Reset all files -- clears out the file descriptor table.
      */
     public static void resetFiles() {
-        FileIOData.resetFiles();
+        files().resetFiles();
     }
 
     /**
@@ -431,7 +437,7 @@ public class SystemIO {
      * @return string containing message
      */
     public static String getFileErrorMessage() {
-        return fileErrorString;
+        return files().fileErrorString;
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -441,16 +447,18 @@ public class SystemIO {
     // transparent to it.  Lazy instantiation.  DPS.  28 Feb 2008
 
     private static BufferedReader getInputReader() {
-        if (FileIOData.inputReader == null) {
-            FileIOData.inputReader = new BufferedReader(new InputStreamReader(System.in));
+        Data files = files();
+        if (files.inputReader == null) {
+            files.inputReader = new BufferedReader(new InputStreamReader(System.in));
         }
-        return FileIOData.inputReader;
+        return files.inputReader;
     }
     private static BufferedWriter getOutputWriter(){
-        if (FileIOData.outputWriter==null){
-            FileIOData.outputWriter=new BufferedWriter(new OutputStreamWriter(System.out));
+        Data files = files();
+        if (files.outputWriter==null){
+            files.outputWriter=new BufferedWriter(new OutputStreamWriter(System.out));
         }
-        return FileIOData.outputWriter;
+        return files.outputWriter;
     }
 
     // The GUI doesn't handle lots of small messages well so I added this hacky way of buffering
@@ -472,43 +480,44 @@ public class SystemIO {
      * Makes sure that messages don't get stuck in the print2Gui buffer for too long.
      */
     public static void flush(boolean force) {
+        if (buffer == "") return; // nothing buffered; don't bother reading the clock
         long time = System.currentTimeMillis();
-        if (buffer != "" && (force || time > lasttime)){
+        if (force || time > lasttime){
             Globals.getGui().getMessagesPane().postRunMessage(buffer);
             buffer = "";
             lasttime = time + 100;
         }
     }
 
+    /**
+     * Replaces the file descriptor table of the machine bound to the calling thread.
+     *
+     * @param in the table to use from now on
+     * @return the table that was replaced
+     */
     public static Data swapData(Data in){
-        Data temp = new Data(false);
-        temp.fileNames = FileIOData.fileNames;
-        temp.fileFlags = FileIOData.fileFlags;
-        temp.streams = FileIOData.streams;
-        temp.inputReader = FileIOData.inputReader;
-        temp.outputWriter = FileIOData.outputWriter;
-        temp.errorWriter = FileIOData.errorWriter;
-        FileIOData.fileNames = in.fileNames;
-        FileIOData.fileFlags = in.fileFlags;
-        FileIOData.streams = in.streams;
-        FileIOData.inputReader = in.inputReader;
-        FileIOData.outputWriter = in.outputWriter;
-        FileIOData.errorWriter = in.errorWriter;
-        return temp;
+        return MachineContext.current().setFiles(in);
     }
 
+    private static Data files() {
+        return MachineContext.current().getFiles();
+    }
+
+    // //////////////////////////////////////////////////////////////////////////////
+    // Maintain information on files in use. The index to the arrays is the "file descriptor."
+    // Ken Vollmar, August 2005
+    // Each simulated machine owns one of these tables, see MachineContext.
+
     public static class Data {
-        private String[] fileNames; // The filenames in use. Null if file descriptor i is not in use.
-        private int[] fileFlags; // The flags of this file, 0=READ, 1=WRITE. Invalid if this file descriptor is not in use.
-        public Closeable[] streams;
+        private String[] fileNames = new String[SYSCALL_MAXFILES]; // The filenames in use. Null if file descriptor i is not in use.
+        private int[] fileFlags = new int[SYSCALL_MAXFILES]; // The flags of this file, 0=READ, 1=WRITE. Invalid if this file descriptor is not in use.
+        public Closeable[] streams = new Closeable[SYSCALL_MAXFILES]; // The streams in use, associated with the filenames
         public BufferedReader inputReader;
         public BufferedWriter outputWriter;
         public BufferedWriter errorWriter;
+        private String fileErrorString = "File operation OK"; // description of the last file error
         public Data(boolean generate){
             if(generate) {
-                fileNames = new String[SYSCALL_MAXFILES];
-                fileFlags = new int[SYSCALL_MAXFILES];
-                streams = new Closeable[SYSCALL_MAXFILES];
                 fileNames[STDIN] = "STDIN";
                 fileNames[STDOUT] = "STDOUT";
                 fileNames[STDERR] = "STDERR";
@@ -530,22 +539,68 @@ public class SystemIO {
             this.outputWriter=new BufferedWriter(new OutputStreamWriter(out));
             this.errorWriter=new BufferedWriter(new OutputStreamWriter(err));
         }
-    }
 
-    // //////////////////////////////////////////////////////////////////////////////
-    // Maintain information on files in use. The index to the arrays is the "file descriptor."
-    // Ken Vollmar, August 2005
+        /**
+         * Saves the name, flags and position of every file the program opened; standard input and
+         * output are left out.
+         *
+         * @param out where to write the descriptors
+         * @throws IOException if writing fails
+         */
+        public void writeOpenFiles(DataOutputStream out) throws IOException {
+            for (int fd = STDERR + 1; fd < SYSCALL_MAXFILES; fd++) {
+                Closeable stream = streams[fd];
+                if (fileNames[fd] == null || !(stream instanceof FileInputStream || stream instanceof FileOutputStream)) {
+                    continue;
+                }
+                FileChannel channel = stream instanceof FileInputStream ? ((FileInputStream) stream).getChannel()
+                        : ((FileOutputStream) stream).getChannel();
+                out.writeInt(fd);
+                out.writeUTF(fileNames[fd]);
+                out.writeInt(fileFlags[fd]);
+                out.writeLong(channel.position());
+            }
+            out.writeInt(-1);
+        }
 
-    private static class FileIOData {
-        private static String[] fileNames = new String[SYSCALL_MAXFILES]; // The filenames in use. Null if file descriptor i is not in use.
-        private static int[] fileFlags = new int[SYSCALL_MAXFILES]; // The flags of this file, 0=READ, 1=WRITE. Invalid if this file descriptor is not in use.
-        private static Closeable[] streams = new Closeable[SYSCALL_MAXFILES]; // The streams in use, associated with the filenames
-        public static BufferedReader inputReader;
-        public static BufferedWriter outputWriter;
-        public static BufferedWriter errorWriter;
+        /**
+         * Closes the files the program has open and reopens those saved by {@link #writeOpenFiles}, under the
+         * same descriptors and at the same positions.  Files opened for writing are not truncated.
+         *
+         * @param in where to read the descriptors from
+         * @throws IOException if reading fails or a file can no longer be opened
+         */
+        public void readOpenFiles(DataInputStream in) throws IOException {
+            for (int fd = STDERR + 1; fd < SYSCALL_MAXFILES; fd++) {
+                close(fd);
+            }
+            for (int fd = in.readInt(); fd >= 0; fd = in.readInt()) {
+                if (fd <= STDERR || fd >= SYSCALL_MAXFILES) {
+                    throw new IOException("invalid file descriptor " + fd);
+                }
+                String name = in.readUTF();
+                int flags = in.readInt();
+                long position = in.readLong();
+                File file = resolve(name);
+                FileChannel channel;
+                if (flags == O_RDONLY) {
+                    FileInputStream stream = new FileInputStream(file);
+                    streams[fd] = stream;
+                    channel = stream.getChannel();
+                } else {
+                    FileOutputStream stream = (flags & O_APPEND) != 0 ? new FileOutputStream(file, true)
+                            : RandomAccessOutputStream.open(file);
+                    streams[fd] = stream;
+                    channel = stream.getChannel();
+                }
+                fileNames[fd] = name;
+                fileFlags[fd] = flags;
+                channel.position(position);
+            }
+        }
 
         // Reset all file information. Closes any open files and resets the arrays
-        private static void resetFiles() {
+        private void resetFiles() {
             for (int i = 0; i < SYSCALL_MAXFILES; i++) {
                 close(i);
             }
@@ -567,7 +622,7 @@ public class SystemIO {
         }
 
         // DPS 8-Jan-2013
-        private static void setupStdio() {
+        private void setupStdio() {
             fileNames[STDIN] = "STDIN";
             fileNames[STDOUT] = "STDOUT";
             fileNames[STDERR] = "STDERR";
@@ -582,19 +637,19 @@ public class SystemIO {
         }
 
         // Preserve a stream that is in use
-        private static void setStreamInUse(int fd, Closeable s) {
+        private void setStreamInUse(int fd, Closeable s) {
             streams[fd] = s;
 
         }
 
         // Retrieve a stream for use
-        private static Closeable getStreamInUse(int fd) {
+        private Closeable getStreamInUse(int fd) {
             return streams[fd];
 
         }
 
         // Determine whether a given filename is already in use.
-        private static boolean filenameInUse(String requestedFilename) {
+        private boolean filenameInUse(String requestedFilename) {
             for (int i = 0; i < SYSCALL_MAXFILES; i++) {
                 if (fileNames[i] != null
                         && fileNames[i].equals(requestedFilename)) {
@@ -607,7 +662,7 @@ public class SystemIO {
         }
 
         // Determine whether a given fd is already in use with the given flag.
-        private static boolean fdInUse(int fd, int flag) {
+        private boolean fdInUse(int fd, int flag) {
             if (fd < 0 || fd >= SYSCALL_MAXFILES) {
                 return false;
             } else if (fileNames[fd] != null && fileFlags[fd] == 0 && flag == 0) {  // O_RDONLY read-only
@@ -621,7 +676,7 @@ public class SystemIO {
 
         // Close the file with file descriptor fd. No errors are recoverable -- if the user's
         // made an error in the call, it will come back to him.
-        private static void close(int fd) {
+        private void close(int fd) {
             // Can't close STDIN, STDOUT, STDERR, or invalid fd
             if (fd <= STDERR || fd >= SYSCALL_MAXFILES)
                 return;
@@ -649,7 +704,7 @@ public class SystemIO {
         // Attempt to open a new file with the given flag, using the lowest available file descriptor.
         // Check that filename is not in use, flag is reasonable, and there is an available file descriptor.
         // Return: file descriptor in 0...(SYSCALL_MAXFILES-1), or -1 if error
-        private static int nowOpening(String filename, int flag) {
+        private int nowOpening(String filename, int flag) {
             int i = 0;
             if (filenameInUse(filename)) {
                 fileErrorString = "File name " + filename + " is already open.";
@@ -679,5 +734,35 @@ public class SystemIO {
             return i;
         }
 
-    } // end private class FileIOData
+    } // end class Data
+
+    // A stream writing to a file opened without truncating it, which closes the file along with the stream.  Still
+    // a FileOutputStream, so seeking and checkpoints can reach its channel.
+    private static final class RandomAccessOutputStream extends FileOutputStream {
+        private final RandomAccessFile file;
+
+        private RandomAccessOutputStream(RandomAccessFile file) throws IOException {
+            super(file.getFD());
+            this.file = file;
+        }
+
+        static RandomAccessOutputStream open(File name) throws IOException {
+            RandomAccessFile file = new RandomAccessFile(name, "rw");
+            try {
+                return new RandomAccessOutputStream(file);
+            } catch (IOException e) {
+                file.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                file.close();
+            }
+        }
+    }
 }
@@ -1,16 +1,11 @@
 package com.github.unaimillan.rars.venus;
 
 import com.github.unaimillan.rars.tools.Tool;
-import com.github.unaimillan.rars.util.FilenameFinder;
+import com.github.unaimillan.rars.util.ClassRegistry;
 
 import javax.swing.*;
 import java.awt.event.KeyEvent;
-import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.HashSet;
-
-import static com.github.unaimillan.rars.Globals.GLOBAL_CLASS_PREFIX;
-import static com.github.unaimillan.rars.Globals.GLOBAL_DIRECTORY_PATH;
 
 	/*
 Copyright (c) 2003-2006,  Pete Sanderson and Kenneth Vollmar
@@ -55,11 +50,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 public class ToolLoader {
 
-    private static final String CLASS_PREFIX = GLOBAL_CLASS_PREFIX + "rars.tools.";
-    private static final String TOOLS_DIRECTORY_PATH = GLOBAL_DIRECTORY_PATH + "rars/tools";
+    private static final String TOOLS_DIRECTORY = "rars/tools";
     private static final String TOOLS_MENU_NAME = "Tools";
-    private static final String TOOL_INTERFACE = "Tool.class";
-    private static final String CLASS_EXTENSION = "class";
 
     /**
      * Called in VenusUI to build its Tools menu.  If there are no qualifying tools
@@ -105,8 +97,7 @@ public class ToolLoader {
      */
     private static ArrayList<Tool> loadTools() {
         ArrayList<Tool> toolList = new ArrayList<>();
-        ArrayList<String> candidates = FilenameFinder.getFilenameList(ToolLoader.class.getClassLoader(),
-                TOOLS_DIRECTORY_PATH, CLASS_EXTENSION);
+        ArrayList<String> candidates = ClassRegistry.getClassNames(TOOLS_DIRECTORY, Tool.class);
         // Add any tools stored externally, as listed in Config.properties file.
         // This needs some work, because rars.Globals.getExternalTools() returns
         // whatever is in the properties file entry.  Since the class file will
@@ -114,29 +105,13 @@ public class ToolLoader {
         // it correctly.  Not sure how to create a Class object given an absolute
         // pathname.
         //candidates.addAll(rars.Globals.getExternalTools());  // this by itself is not enough...
-        HashSet<String> tools = new HashSet<>();
-        for (String file : candidates) {
-            // Do not add class if already encountered (happens if run in MARS development directory)
-            if (tools.contains(file)) {
-                continue;
-            } else {
-                tools.add(file);
-            }
-            if (!file.equals(TOOL_INTERFACE)) {
-                try {
-                    // grab the class, make sure it implements Tool, instantiate, add to menu
-                    String toolClassName = CLASS_PREFIX + file.substring(0, file.indexOf(CLASS_EXTENSION) - 1);
-                    Class clas = Class.forName(toolClassName);
-                    if (!Tool.class.isAssignableFrom(clas) ||
-                            Modifier.isAbstract(clas.getModifiers()) ||
-                            Modifier.isInterface(clas.getModifiers())) {
-                        continue;
-                    }
-
-                    toolList.add((Tool) clas.newInstance());
-                } catch (Exception e) {
-                    System.out.println("Error instantiating Tool from file " + file + ": " + e);
-                }
+        for (String toolClassName : candidates) {
+            try {
+                // grab the class, instantiate, add to menu
+                Class clas = Class.forName(toolClassName);
+                toolList.add((Tool) clas.newInstance());
+            } catch (Exception e) {
+                System.out.println("Error instantiating Tool " + toolClassName + ": " + e);
             }
         }
         return toolList;
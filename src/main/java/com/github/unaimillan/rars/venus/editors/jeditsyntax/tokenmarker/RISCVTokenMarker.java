@@ -24,6 +24,7 @@ import com.github.unaimillan.rars.venus.editors.jeditsyntax.PopupHelpItem;
 import javax.swing.text.Segment;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.TreeSet;
 
 /**
@@ -207,7 +208,7 @@ public class RISCVTokenMarker extends TokenMarker {
     public ArrayList<PopupHelpItem> getTokenExactMatchHelp(Token token, String tokenText) {
         ArrayList<PopupHelpItem> matches = null;
         if (token != null && token.id == Token.KEYWORD1) {
-            ArrayList<Instruction> instrMatches = Globals.instructionSet.matchOperator(tokenText);
+            List<Instruction> instrMatches = Globals.instructionSet.matchOperator(tokenText);
             if (instrMatches.size() > 0) {
                 int realMatches = 0;
                 matches = new ArrayList<>();
@@ -374,7 +375,7 @@ public class RISCVTokenMarker extends TokenMarker {
     // do exact match.  If false, will do prefix match.   Text is returned as ArrayList
     // of PopupHelpItem objects. If no matches, returns null.
     private ArrayList<PopupHelpItem> getTextFromInstructionMatch(String tokenText, boolean exact) {
-        ArrayList<Instruction> matches;
+        List<Instruction> matches;
         ArrayList<PopupHelpItem> results = new ArrayList<>();
         if (exact) {
             matches = Globals.instructionSet.matchOperator(tokenText);
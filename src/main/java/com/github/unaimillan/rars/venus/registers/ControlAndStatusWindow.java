@@ -3,7 +3,6 @@ package com.github.unaimillan.rars.venus.registers;
 import com.github.unaimillan.rars.Globals;
 import com.github.unaimillan.rars.Settings;
 import com.github.unaimillan.rars.riscv.hardware.ControlAndStatusRegisterFile;
-import com.github.unaimillan.rars.riscv.hardware.Register;
 import com.github.unaimillan.rars.venus.NumberDisplayBaseChooser;
 
 public class ControlAndStatusWindow extends RegisterBlockWindow {
@@ -35,14 +34,18 @@ public class ControlAndStatusWindow extends RegisterBlockWindow {
         super(ControlAndStatusRegisterFile.getRegisters(), regToolTips, "Current 32 bit value");
     }
 
-    protected String formatRegister(Register value, int base) {
+    protected String formatRegister(long value, int base) {
         if (Globals.getSettings().getBooleanSetting(Settings.Bool.RV64_ENABLED)){
-            return NumberDisplayBaseChooser.formatNumber(value.getValue(), base);
+            return NumberDisplayBaseChooser.formatNumber(value, base);
         }else {
-            return NumberDisplayBaseChooser.formatNumber((int)value.getValue(), base);
+            return NumberDisplayBaseChooser.formatNumber((int)value, base);
         }
     }
 
+    protected long[] readValues() {
+        return ControlAndStatusRegisterFile.snapshot();
+    }
+
     protected void beginObserving() {
         ControlAndStatusRegisterFile.addRegistersObserver(this);
     }
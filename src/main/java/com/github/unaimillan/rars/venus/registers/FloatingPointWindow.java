@@ -1,7 +1,6 @@
 package com.github.unaimillan.rars.venus.registers;
 
 import com.github.unaimillan.rars.riscv.hardware.FloatingPointRegisterFile;
-import com.github.unaimillan.rars.riscv.hardware.Register;
 import com.github.unaimillan.rars.venus.NumberDisplayBaseChooser;
 
 public class FloatingPointWindow extends RegisterBlockWindow {
@@ -47,8 +46,7 @@ public class FloatingPointWindow extends RegisterBlockWindow {
         super(FloatingPointRegisterFile.getRegisters(), regToolTips, "32-bit single precision IEEE 754 floating point");
     }
 
-    protected String formatRegister(Register value, int base) {
-        long val = value.getValue();
+    protected String formatRegister(long val, int base) {
         if ((val & 0xFFFFFFFF_00000000L) == 0xFFFFFFFF_00000000L) {
             return NumberDisplayBaseChooser.formatFloatNumber((int) val, base);
         } else {
@@ -56,6 +54,10 @@ public class FloatingPointWindow extends RegisterBlockWindow {
         }
     }
 
+    protected long[] readValues() {
+        return FloatingPointRegisterFile.snapshot();
+    }
+
     protected void beginObserving() {
         FloatingPointRegisterFile.addRegistersObserver(this);
     }
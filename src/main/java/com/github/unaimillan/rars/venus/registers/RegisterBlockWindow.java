@@ -95,7 +95,14 @@ public abstract class RegisterBlockWindow extends JPanel implements Observer {
         this.add(new JScrollPane(table, JScrollPane.VERTICAL_SCROLLBAR_AS_NEEDED, JScrollPane.HORIZONTAL_SCROLLBAR_AS_NEEDED));
     }
 
-    protected abstract String formatRegister(Register value, int base);
+    protected abstract String formatRegister(long value, int base);
+
+    /**
+     * Reads every register shown, all at one point of the simulation.
+     *
+     * @return the values, in the same order as the registers passed to the constructor
+     */
+    protected abstract long[] readValues();
 
     protected abstract void beginObserving();
 
@@ -110,11 +117,12 @@ public abstract class RegisterBlockWindow extends JPanel implements Observer {
 
     private Object[][] setupWindow() {
         Object[][] tableData = new Object[registers.length][3];
+        long[] values = readValues();
         for (int i = 0; i < registers.length; i++) {
             tableData[i][0] = registers[i].getName();
             int temp = registers[i].getNumber();
             tableData[i][1] = temp == -1 ? "" : temp;
-            tableData[i][2] = formatRegister(registers[i],
+            tableData[i][2] = formatRegister(values[i],
                     NumberDisplayBaseChooser.getBase(settings.getBooleanSetting(Settings.Bool.DISPLAY_VALUES_IN_HEX)));
         }
         return tableData;
@@ -150,8 +158,10 @@ public abstract class RegisterBlockWindow extends JPanel implements Observer {
      * Update register display using specified display base
      */
     public void updateRegisters() {
+        // The simulation may still be running, so read the values in one go rather than register by register
+        long[] values = readValues();
         for (int i = 0; i < registers.length; i++) {
-            ((RegTableModel) table.getModel()).setDisplayAndModelValueAt(formatRegister(registers[i],
+            ((RegTableModel) table.getModel()).setDisplayAndModelValueAt(formatRegister(values[i],
                     Globals.getGui().getMainPane().getExecutePane().getValueDisplayBase()), i, 2);
         }
     }
@@ -62,14 +62,18 @@ public class RegistersWindow extends RegisterBlockWindow {
         return out;
     }
 
-    protected String formatRegister(Register value, int base) {
+    protected String formatRegister(long value, int base) {
         if (Globals.getSettings().getBooleanSetting(Settings.Bool.RV64_ENABLED)){
-            return NumberDisplayBaseChooser.formatNumber(value.getValue(), base);
+            return NumberDisplayBaseChooser.formatNumber(value, base);
         }else {
-            return NumberDisplayBaseChooser.formatNumber((int)value.getValue(), base);
+            return NumberDisplayBaseChooser.formatNumber((int)value, base);
         }
     }
 
+    protected long[] readValues() {
+        return RegisterFile.snapshot();
+    }
+
     protected void beginObserving() {
         RegisterFile.addRegistersObserver(this);
     }
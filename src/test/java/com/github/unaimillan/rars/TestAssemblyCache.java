@@ -0,0 +1,204 @@
+package com.github.unaimillan.rars;
+
+import com.github.unaimillan.rars.assembler.Symbol;
+import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Assembles a two file program with an .include through the assembly cache and checks that a hit restores
+ * exactly what assembling produced, that editing the included file is a miss, even one that was empty, and that
+ * a damaged image is assembled again from scratch.
+ */
+public class TestAssemblyCache {
+
+    private static final String MAIN = String.join("\n",
+            ".data",
+            "table: .word 1, 2, 3",
+            "small: .byte 300",              // warning: truncated
+            ".text",
+            ".globl main",
+            "main:",
+            "    la t0, table",
+            "    lw a0, 0(t0)",
+            "    call helper",
+            "local:",
+            "    li a7, 93",
+            "    ecall",
+            ".include \"lib.s\"",
+            "");
+
+    private static final String LIB = String.join("\n",
+            ".data",
+            "libdata: .word 0x1234",
+            ".text",
+            "helper:",
+            "    la t1, libdata",
+            "    lw t1, 0(t1)",
+            "    add a0, a0, t1",
+            "    ret",
+            "");
+
+    @Test
+    void HitMatchesAssembly() throws Exception {
+        withProject((main, lib, cache) -> {
+            String assembled = assemble(main, cache);
+            File image = onlyImage(cache);
+            assertTrue(assembled.contains("out-of-range"), "the warning should be reported");
+            assertTrue(image.setLastModified(1000));
+
+            assertEquals(assembled, assemble(main, cache));
+            assertEquals(1000, image.lastModified(), "the second assembly should load the image");
+            assertEquals(assembled, assemble(main, null), "the image should match an uncached assembly");
+        });
+    }
+
+    @Test
+    void EditingIncludedFileMisses() throws Exception {
+        withProject((main, lib, cache) -> {
+            String before = assemble(main, cache);
+            File image = onlyImage(cache);
+            assertTrue(image.setLastModified(1000));
+
+            Files.write(lib.toPath(), LIB.replace("0x1234", "0x5678").getBytes());
+            String after = assemble(main, cache);
+            assertNotEquals(1000, image.lastModified(), "the image should be replaced");
+            assertNotEquals(before, after);
+            assertEquals(assemble(main, null), after);
+            assertTrue(after.contains("5678"), after);
+        });
+    }
+
+    @Test
+    void EditingEmptyIncludedFileMisses() throws Exception {
+        withProject(MAIN + ".include \"empty.s\"\n", (main, lib, cache) -> {
+            TestSupport.write(main.getParentFile(), "empty.s", "");
+            String before = assemble(main, cache);
+            File image = onlyImage(cache);
+            assertTrue(image.setLastModified(1000));
+
+            // Adds no lines, so only the tokenizer knows the file was read
+            TestSupport.write(main.getParentFile(), "empty.s", ".text\nextra:\n    addi a0, a0, 1\n");
+            String after = assemble(main, cache);
+            assertNotEquals(1000, image.lastModified(), "the image should be replaced");
+            assertNotEquals(before, after);
+            assertEquals(assemble(main, null), after);
+            assertTrue(after.contains("extra="), after);
+        });
+    }
+
+    @Test
+    void DamagedImageIsAssembledAgain() throws Exception {
+        withProject((main, lib, cache) -> {
+            String expected = assemble(main, null);
+            assemble(main, cache);
+            File image = onlyImage(cache);
+            byte[] saved = Files.readAllBytes(image.toPath());
+
+            // Cut short in the pages, after the statements have been read and memory cleared, and in the header
+            for (int length : new int[]{saved.length - 100, saved.length / 2, 10}) {
+                Files.write(image.toPath(), Arrays.copyOf(saved, length));
+                assertEquals(expected, assemble(main, cache), "image cut to " + length + " bytes");
+                assertArrayEquals(saved, Files.readAllBytes(image.toPath()), "the image should be rewritten");
+            }
+            // Garbage after a valid format number
+            byte[] garbage = saved.clone();
+            Arrays.fill(garbage, 4, garbage.length, (byte) 0x7F);
+            Files.write(image.toPath(), garbage);
+            assertEquals(expected, assemble(main, cache));
+        });
+    }
+
+    private interface ProjectTest {
+        void run(File main, File lib, File cache) throws Exception;
+    }
+
+    private static void withProject(ProjectTest test) throws Exception {
+        withProject(MAIN, test);
+    }
+
+    private static void withProject(String mainSource, ProjectTest test) throws Exception {
+        File dir = TestSupport.temporaryDirectory("assemblycache");
+        try {
+            File main = TestSupport.write(dir, "main.s", mainSource);
+            File lib = TestSupport.write(dir, "lib.s", LIB);
+            test.run(main, lib, new File(dir, "cache"));
+        } finally {
+            TestSupport.delete(dir);
+        }
+    }
+
+    private static File onlyImage(File cache) {
+        File[] images = cache.listFiles();
+        assertNotNull(images);
+        assertEquals(1, images.length, Arrays.toString(images));
+        return images[0];
+    }
+
+    /**
+     * Assembles the file, through the cache if one is given, on top of memory and symbols left by an unrelated
+     * program, and describes the warnings, symbols, statements and memory pages that result.
+     */
+    private static String assemble(File main, File cache) throws Exception {
+        TestSupport.initialize(false);
+        RISCVprogram other = new RISCVprogram();
+        other.fromString(".data\n.space 8192\nleftover: .word 99\n.text\nother: nop\n");
+        other.tokenize();
+        ArrayList<RISCVprogram> otherPrograms = new ArrayList<>();
+        otherPrograms.add(other);
+        other.assemble(otherPrograms, true, false);
+
+        RISCVprogram program = new RISCVprogram();
+        ArrayList<String> files = new ArrayList<>();
+        files.add(main.getPath());
+        ErrorList warnings;
+        if (cache == null) {
+            warnings = program.assemble(program.prepareFilesForAssembly(files, main.getPath(), null), true, false);
+        } else {
+            warnings = new AssemblyCache(cache).assemble(program, files, main.getPath(), true, false);
+        }
+        return describe(warnings, program);
+    }
+
+    private static String describe(ErrorList warnings, RISCVprogram program) throws AddressErrorException, IOException {
+        StringBuilder state = new StringBuilder();
+        for (ErrorMessage message : warnings.getErrorMessages()) {
+            state.append(message.generateReport());
+        }
+        appendSymbols(state.append("globals "), Globals.symbolTable.getAllSymbols());
+        appendSymbols(state.append("locals "), program.getLocalSymbolTable().getAllSymbols());
+        for (ProgramStatement statement : program.getMachineList()) {
+            state.append(Integer.toHexString(statement.getAddress())).append(' ')
+                    .append(Integer.toHexString(statement.getBinaryStatement())).append(' ')
+                    .append(statement.getSourceLine()).append(' ').append(statement.getSource()).append('\n');
+        }
+        Memory memory = Memory.getInstance();
+        for (int address = Memory.textBaseAddress; memory.getStatement(address) != null; address += 4) {
+            state.append(Integer.toHexString(memory.getStatement(address).getBinaryStatement())).append(' ');
+        }
+        ByteArrayOutputStream pages = new ByteArrayOutputStream();
+        memory.writePages(new DataOutputStream(pages));
+        state.append("\npages ").append(Arrays.hashCode(pages.toByteArray())).append(' ')
+                .append(Integer.toHexString(memory.getWord(Memory.dataBaseAddress + 16)));
+        return state.toString();
+    }
+
+    private static void appendSymbols(StringBuilder state, ArrayList<Symbol> symbols) {
+        ArrayList<String> names = new ArrayList<>();
+        for (Symbol symbol : symbols) {
+            names.add(symbol.getName() + "=" + Integer.toHexString(symbol.getAddress()) + (symbol.getType() ? "d" : "t"));
+        }
+        names.sort(null);
+        state.append(names).append('\n');
+    }
+}
@@ -0,0 +1,205 @@
+package com.github.unaimillan.rars;
+
+import com.github.unaimillan.rars.api.Batch;
+import com.github.unaimillan.rars.api.Options;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs a small manifest with a job for every status through a pool of workers and checks the JSON line
+ * reported for each, and runs one program on many inputs at once to check that no run sees another's writes.
+ */
+public class TestBatch {
+
+    private static final int SHARED_INPUTS = 8;
+
+    // Adds the input to a word in the data segment and prints it, so runs that shared a written page would
+    // see each other's sums
+    private static final String ADD = String.join("\n",
+            ".data",
+            "cell: .word 7",
+            ".text",
+            "    li a7, 5",
+            "    ecall",
+            "    la t0, cell",
+            "    lw t1, 0(t0)",
+            "    add t1, t1, a0",
+            "    sw t1, 0(t0)",
+            "    mv a0, t1",
+            "    li a7, 1",
+            "    ecall",
+            "    li a0, 42",
+            "    li a7, 93",
+            "    ecall",
+            "");
+
+    private static final int MANY_INPUTS = 64;
+    private static final int WORDS = 2048;
+
+    // Adds the input to each of 2048 words spread over three pages and prints the first plus the last, which
+    // is 7 + 2 * input unless a page written by another run leaks in
+    private static final String SPREAD = String.join("\n",
+            ".data",
+            "cells: .word 7",
+            ".space " + (WORDS - 1) * 4,
+            ".text",
+            "    li a7, 5",
+            "    ecall",
+            "    la t0, cells",
+            "    li t1, " + WORDS,
+            "fill:",
+            "    lw t2, 0(t0)",
+            "    add t2, t2, a0",
+            "    sw t2, 0(t0)",
+            "    addi t0, t0, 4",
+            "    addi t1, t1, -1",
+            "    bnez t1, fill",
+            "    lw t1, -4(t0)",
+            "    la t0, cells",
+            "    lw a0, 0(t0)",
+            "    add a0, a0, t1",
+            "    li a7, 1",
+            "    ecall",
+            "    li a0, 42",
+            "    li a7, 93",
+            "    ecall",
+            "");
+
+    private static final String CONTROL = String.join("\n",
+            "    li a7, 11",
+            "    li a0, 1",
+            "    ecall",
+            "    li a0, 9",
+            "    ecall",
+            "    li a0, 10",
+            "    ecall",
+            "    li a0, 34",
+            "    ecall",
+            "    li a0, 92",
+            "    ecall",
+            "    li a0, 0",
+            "    li a7, 93",
+            "    ecall",
+            "");
+
+    @Test
+    void ReportsEveryStatus() throws Exception {
+        File dir = TestSupport.temporaryDirectory("batch");
+        try {
+            TestSupport.write(dir, "add.s", ADD);
+            TestSupport.write(dir, "control.s", CONTROL);
+            TestSupport.write(dir, "loop.s", "loop: j loop\n");
+            TestSupport.write(dir, "break.s", "    ebreak\n");
+            TestSupport.write(dir, "fault.s", "    lw t0, 0(zero)\n");
+            TestSupport.write(dir, "bad.s", "    addi t0\n");
+            TestSupport.write(dir, "one.txt", "1\n");
+            TestSupport.write(dir, "eight.txt", "8");
+            StringBuilder manifest = new StringBuilder(String.join("\n",
+                    "# sources\tstdin\texpected\tsteps\texit code",
+                    "add.s\tone.txt\teight.txt\t-\t42",
+                    "add.s\tone.txt\teight.txt\t-\t41",
+                    "add.s\tone.txt",
+                    "loop.s\t-\t-\t100",
+                    "break.s",
+                    "fault.s",
+                    "bad.s",
+                    "add.s\tmissing.txt",
+                    "control.s",
+                    ""));
+            for (int i = 0; i < SHARED_INPUTS; i++) {
+                TestSupport.write(dir, "in" + i + ".txt", String.valueOf(100 * i));
+                TestSupport.write(dir, "out" + i + ".txt", String.valueOf(100 * i + 7));
+                manifest.append("add.s\tin").append(i).append(".txt\tout").append(i).append(".txt\t-\t42\n");
+            }
+            TestSupport.write(dir, "jobs.tsv", manifest.toString());
+
+            TestSupport.initialize(false);
+            ArrayList<Batch.Job> jobs = Batch.readManifest(new File(dir, "jobs.tsv"));
+            assertEquals(9 + SHARED_INPUTS, jobs.size());
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Options options = new Options();
+            options.maxSteps = 10000;
+            new Batch(options, new PrintStream(bytes, true)).run(jobs, 4);
+
+            HashMap<Integer, String> results = byJob(bytes.toString());
+            assertEquals(jobs.size(), results.size());
+
+            assertResult(results.get(2), "passed", "\"exitCode\":42", "\"stdout\":\"8\"");
+            assertResult(results.get(3), "failed", "\"exitCode\":42");
+            assertResult(results.get(4), "completed", "\"stdout\":\"8\"");
+            assertResult(results.get(5), "step-limit", "\"reason\":\"MAX_STEPS\"", "\"instructions\":100,");
+            assertResult(results.get(6), "breakpoint", "\"reason\":\"BREAKPOINT\"");
+            assertResult(results.get(7), "runtime-error", "\"message\":");
+            assertResult(results.get(8), "assembly-error", "\"message\":", "bad.s");
+            assertResult(results.get(9), "io-error", "missing.txt");
+            // Every instruction but the exit call retires
+            assertResult(results.get(10), "completed", "\"exitCode\":0",
+                    "\"stdout\":\"\\u0001\\t\\n\\\"\\\\\"", "\"instructions\":13,");
+            for (int i = 0; i < SHARED_INPUTS; i++) {
+                assertResult(results.get(11 + i), "passed", "\"stdout\":\"" + (100 * i + 7) + "\"");
+            }
+        } finally {
+            TestSupport.delete(dir);
+        }
+    }
+
+    @Test
+    void ManyInputsOnSeveralThreads() throws Exception {
+        File dir = TestSupport.temporaryDirectory("batch");
+        try {
+            TestSupport.write(dir, "spread.s", SPREAD);
+            StringBuilder manifest = new StringBuilder();
+            for (int i = 0; i < MANY_INPUTS; i++) {
+                TestSupport.write(dir, "in" + i + ".txt", String.valueOf(i * 1000 + 1));
+                TestSupport.write(dir, "out" + i + ".txt", String.valueOf(7 + 2 * (i * 1000 + 1)));
+                manifest.append("spread.s\tin").append(i).append(".txt\tout").append(i).append(".txt\t-\t42\n");
+            }
+            TestSupport.write(dir, "jobs.tsv", manifest.toString());
+
+            TestSupport.initialize(false);
+            ArrayList<Batch.Job> jobs = Batch.readManifest(new File(dir, "jobs.tsv"));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            new Batch(new Options(), new PrintStream(bytes, true)).run(jobs, 8);
+
+            HashMap<Integer, String> results = byJob(bytes.toString());
+            assertEquals(MANY_INPUTS, results.size());
+            for (int i = 0; i < MANY_INPUTS; i++) {
+                assertResult(results.get(i + 1), "passed", "\"stdout\":\"" + (7 + 2 * (i * 1000 + 1)) + "\"");
+            }
+        } finally {
+            TestSupport.delete(dir);
+        }
+    }
+
+    // Results keyed by manifest line; each job must be reported once
+    private static HashMap<Integer, String> byJob(String output) {
+        HashMap<Integer, String> results = new HashMap<>();
+        Pattern job = Pattern.compile("^\\{\"job\":(\\d+),");
+        for (String line : output.split("\n")) {
+            Matcher m = job.matcher(line);
+            assertTrue(m.find(), line);
+            assertNull(results.put(Integer.parseInt(m.group(1)), line), "job reported twice: " + line);
+        }
+        return results;
+    }
+
+    private static void assertResult(String line, String status, String... fields) {
+        assertNotNull(line);
+        assertTrue(line.contains("\"status\":\"" + status + "\""), line);
+        for (String field : fields) {
+            assertTrue(line.contains(field), field + " in " + line);
+        }
+        for (int i = 0; i < line.length(); i++) {
+            assertTrue(line.charAt(i) >= 0x20, "control character in " + line);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.github.unaimillan.rars;
+
+import com.github.unaimillan.rars.api.Options;
+import com.github.unaimillan.rars.api.Program;
+import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
+import com.github.unaimillan.rars.simulator.Simulator;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stops a program part way, saves a checkpoint, restores it into a new Program and finishes the run there,
+ * and checks that the result is the same as running the program without stopping.
+ */
+public class TestCheckpoint {
+
+    private static final int INSTRUCTIONS_PER_MILLISECOND = 10;
+    private static final int HEAP_WORDS = 16;
+
+    // Mixes a random stream, the clock and heap words into a checksum, writing it to a file from time to time;
+    // at the end it seeks back to overwrite the start of the file, sleeps and allocates again
+    private static String program(File file) {
+        return String.join("\n",
+                ".data",
+                "name: .asciz \"" + file.getAbsolutePath() + "\"",
+                "head: .asciz \"HEAD\"",
+                ".text",
+                "main:",
+                "    li a0, 1",
+                "    li a1, 12345",
+                "    li a7, 40",
+                "    ecall",
+                "    li a0, " + HEAP_WORDS * 4,
+                "    li a7, 9",
+                "    ecall",
+                "    mv s0, a0",
+                "    la a0, name",
+                "    li a1, 1",
+                "    li a7, 1024",
+                "    ecall",
+                "    mv s1, a0",
+                "    li s2, 0",
+                "    li s3, 200",
+                "loop:",
+                "    li a0, 1",
+                "    li a7, 41",
+                "    ecall",
+                "    add s2, s2, a0",
+                "    andi t0, s3, " + (HEAP_WORDS - 1),
+                "    slli t0, t0, 2",
+                "    add t0, t0, s0",
+                "    lw t1, 0(t0)",
+                "    add s2, s2, t1",
+                "    sw s2, 0(t0)",
+                "    andi t1, s3, 31",
+                "    bnez t1, next",
+                "    mv a0, s1",
+                "    mv a1, t0",
+                "    li a2, 4",
+                "    li a7, 64",
+                "    ecall",
+                "    li a7, 30",
+                "    ecall",
+                "    add s2, s2, a0",
+                "    li a7, 1",
+                "    ecall",
+                "    li a0, ' '",
+                "    li a7, 11",
+                "    ecall",
+                "next:",
+                "    addi s3, s3, -1",
+                "    bnez s3, loop",
+                "    mv a0, s1",
+                "    li a1, 0",
+                "    li a2, 0",
+                "    li a7, 62",
+                "    ecall",
+                "    mv a0, s1",
+                "    la a1, head",
+                "    li a2, 4",
+                "    li a7, 64",
+                "    ecall",
+                "    mv a0, s1",
+                "    li a7, 57",
+                "    ecall",
+                "    li a0, 100",
+                "    li a7, 32",
+                "    ecall",
+                "    li a7, 30",
+                "    ecall",
+                "    li a7, 1",
+                "    ecall",
+                "    li a0, ' '",
+                "    li a7, 11",
+                "    ecall",
+                "    li a0, 4",
+                "    li a7, 9",
+                "    ecall",
+                "    sub a0, a0, s0",
+                "    li a7, 1",
+                "    ecall",
+                "    li a0, ' '",
+                "    li a7, 11",
+                "    ecall",
+                "    mv a0, s2",
+                "    li a7, 1",
+                "    ecall",
+                "    li a0, 42",
+                "    li a7, 93",
+                "    ecall",
+                "");
+    }
+
+    @Test
+    void RestoredRunMatchesUninterruptedRun() throws Exception {
+        File dir = TestSupport.temporaryDirectory("checkpoint");
+        File output = new File(dir, "out.bin");
+        File checkpoint = new File(dir, "machine.chk");
+        try {
+            String source = program(output);
+
+            Program reference = program(source, -1);
+            reference.setup(null, "");
+            assertEquals(Simulator.Reason.NORMAL_TERMINATION, reference.simulate());
+            assertEquals(42, reference.getExitCode());
+            byte[] expectedFile = Files.readAllBytes(output.toPath());
+            assertTrue(expectedFile.length > 4);
+            assertTrue(output.delete());
+
+            // Stop inside the loop, after some writes to the file and with more to come
+            Program first = program(source, 1500);
+            first.setup(null, "");
+            assertEquals(Simulator.Reason.MAX_STEPS, first.simulate());
+            first.saveCheckpoint(checkpoint.getPath());
+            String firstOutput = first.getSTDOUT();
+            assertFalse(firstOutput.isEmpty(), "the checkpoint should be taken after the first write");
+
+            Program second = program(source, -1);
+            second.setup(null, "");
+            second.restoreCheckpoint(checkpoint.getPath());
+            assertEquals(Simulator.Reason.NORMAL_TERMINATION, second.simulate());
+            assertEquals(42, second.getExitCode());
+
+            assertEquals(reference.getSTDOUT(), firstOutput + second.getSTDOUT());
+            assertEquals(snapshot(reference), snapshot(second));
+            assertArrayEquals(expectedFile, Files.readAllBytes(output.toPath()));
+        } finally {
+            TestSupport.delete(dir);
+        }
+    }
+
+    @Test
+    void CorruptCheckpointLeavesMachineUnchanged() throws Exception {
+        File dir = TestSupport.temporaryDirectory("checkpoint");
+        File output = new File(dir, "out.bin");
+        File checkpoint = new File(dir, "machine.chk");
+        try {
+            String source = program(output);
+            Program first = program(source, 1500);
+            first.setup(null, "");
+            assertEquals(Simulator.Reason.MAX_STEPS, first.simulate());
+            first.saveCheckpoint(checkpoint.getPath());
+            byte[] saved = Files.readAllBytes(checkpoint.toPath());
+
+            Program second = program(source, -1);
+            second.setup(null, "");
+            String before = snapshot(second);
+            // Cut the header short at a range of points; each restore must fail without touching the machine
+            int headerLength = ByteBuffer.wrap(saved).getInt(12);
+            for (int length = 16; length < 16 + headerLength; length += 7) {
+                byte[] truncated = saved.clone();
+                ByteBuffer.wrap(truncated).putInt(12, length - 16);
+                Files.write(checkpoint.toPath(), truncated);
+                assertThrows(IOException.class, () -> second.restoreCheckpoint(checkpoint.getPath()),
+                        "header cut to " + (length - 16) + " bytes");
+                assertEquals(before, snapshot(second), "header cut to " + (length - 16) + " bytes");
+            }
+        } finally {
+            TestSupport.delete(dir);
+        }
+    }
+
+    private static Program program(String source, int maxSteps) throws Exception {
+        Options opt = new Options();
+        opt.instructionsPerMillisecond = INSTRUCTIONS_PER_MILLISECOND;
+        opt.maxSteps = maxSteps;
+        return TestSupport.program(source, opt);
+    }
+
+    private static String snapshot(Program p) throws AddressErrorException {
+        return TestSupport.snapshot(p, Memory.heapBaseAddress, HEAP_WORDS,
+                "cycle", "cycleh", "instret", "instreth", "time", "timeh");
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.unaimillan.rars;
+
+import com.github.unaimillan.rars.api.Options;
+import com.github.unaimillan.rars.api.Program;
+import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
+import com.github.unaimillan.rars.simulator.Simulator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs hot loops on the fast path, where fused instruction pairs and compiled blocks take over after a few
+ * dozen iterations, and compares every stop with the same run on the general simulator loop.  Allowing
+ * self-modifying code keeps the simulator on the general loop, which never fuses or compiles.
+ */
+public class TestCompiledBlocks {
+
+    // One pass through the loop exercises every fused idiom: li and la (lui/auipc + addi), a global load
+    // (auipc + lw), call and tail (auipc + jalr) and slt/sltu/slti/sltiu followed by beqz/bnez
+    private static final String IDIOMS = String.join("\n",
+            ".data",
+            "buf: .word 1, -2, 3, -4, 5, -6, 7, -8",
+            "global: .word 0x1234",
+            "out: .space 64",
+            ".text",
+            "main:",
+            "    li s0, 300",
+            "    li s1, 0",
+            "    li s2, 0",
+            "loop:",
+            "    li t0, 0x12345678",
+            "    add s1, s1, t0",
+            "    la a3, buf",
+            "    andi t2, s0, 7",
+            "    slli t2, t2, 2",
+            "    add a3, a3, t2",
+            "    lw t3, 0(a3)",
+            "    add s1, s1, t3",
+            "    lw t4, global",
+            "    add s1, s1, t4",
+            "    call bump",
+            "    slti t5, s0, 100",
+            "    bnez t5, late",
+            "    sltu t6, s1, t0",
+            "    beqz t6, above",
+            "    xori s1, s1, 0x55",
+            "above:",
+            "    slt a1, s1, s2",
+            "    bnez a1, late",
+            "    sltiu a2, s0, 200",
+            "    beqz a2, late",
+            "    addi s1, s1, 7",
+            "late:",
+            "    la a3, out",
+            "    andi t2, s0, 15",
+            "    slli t2, t2, 2",
+            "    add a3, a3, t2",
+            "    sw s1, 0(a3)",
+            "    addi s0, s0, -1",
+            "    bnez s0, loop",
+            "    tail finish",
+            "bump:",
+            "    addi s2, s2, 1",
+            "    ret",
+            "finish:",
+            "    li a0, 42",
+            "    li a7, 93",
+            "    ecall",
+            "");
+
+    // The load in the middle of the loop body is misaligned on one late iteration, after the body has been
+    // compiled; the handler counts the fault and skips the load
+    private static final String FAULT = String.join("\n",
+            ".data",
+            "buf: .word 10, 20, 30, 40, 50, 60, 70, 80",
+            "out: .space 32",
+            ".text",
+            "main:",
+            "    la t0, handler",
+            "    csrw t0, utvec",
+            "    csrsi ustatus, 1",
+            "    la s0, buf",
+            "    la s6, out",
+            "    li s1, 0",
+            "    li s2, 400",
+            "    li s3, 0",
+            "    li s4, 0",
+            "loop:",
+            "    andi t1, s1, 7",
+            "    slli t1, t1, 2",
+            "    add t1, t1, s0",
+            "    xori t3, s1, 300",
+            "    seqz t3, t3",
+            "    add t1, t1, t3",
+            "    addi t2, s3, 1",
+            "    lw t2, 0(t1)",
+            "    add s3, s3, t2",
+            "    andi t4, s1, 7",
+            "    slli t4, t4, 2",
+            "    add t4, t4, s6",
+            "    sw s3, 0(t4)",
+            "    addi s1, s1, 1",
+            "    blt s1, s2, loop",
+            "    li a0, 42",
+            "    li a7, 93",
+            "    ecall",
+            "handler:",
+            "    addi s4, s4, 1",
+            "    csrr t5, uepc",
+            "    addi t5, t5, 4",
+            "    csrw t5, uepc",
+            "    uret",
+            "");
+
+    @Test
+    void FusedIdiomsMatchInterpreter() throws Exception {
+        assertSameRun(IDIOMS, -1, false);
+    }
+
+    @Test
+    void FaultingLoadMidBlockMatchesInterpreter() throws Exception {
+        assertSameRun(FAULT, -1, false);
+    }
+
+    @Test
+    void BreakpointOnSecondInstructionOfPair() throws Exception {
+        assertSameRun(IDIOMS, -1, true);
+    }
+
+    @Test
+    void StepLimitInsideBlock() throws Exception {
+        // Long enough for blocks to get hot within one run, and not a multiple of any loop length
+        for (int maxSteps : new int[]{2503, 3001, 5003}) {
+            assertSameRun(IDIOMS, maxSteps, false);
+            assertSameRun(FAULT, maxSteps, false);
+        }
+    }
+
+    /**
+     * Runs the program to the end on the fast path and on the general loop, stopping at the step limit and
+     * optionally at every instruction following a lui or auipc, and compares the machine state at each stop.
+     */
+    private static void assertSameRun(String source, int maxSteps, boolean breakAfterUpper) throws Exception {
+        List<String> expected = run(source, maxSteps, breakAfterUpper, true);
+        List<String> actual = run(source, maxSteps, breakAfterUpper, false);
+        if (maxSteps > 0 || breakAfterUpper) {
+            assertTrue(expected.size() > 1, "the run should stop along the way");
+        }
+        assertEquals(expected.size(), actual.size(), "number of stops");
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i), "stop " + i);
+        }
+    }
+
+    private static List<String> run(String source, int maxSteps, boolean breakAfterUpper, boolean interpreted)
+            throws Exception {
+        Options opt = new Options();
+        opt.maxSteps = maxSteps;
+        opt.selfModifyingCode = interpreted;
+        Program p = TestSupport.program(source, opt);
+        p.setup(null, "");
+        int[] breakPoints = breakAfterUpper ? afterUpper(p.getMemory()) : null;
+        List<String> stops = new ArrayList<>();
+        while (true) {
+            Simulator.Reason reason = p.simulate(breakPoints == null ? null : breakPoints.clone());
+            stops.add(reason + " " + TestSupport.snapshot(p, Memory.dataBaseAddress, 32,
+                    "cycle", "cycleh", "instret", "instreth", "ustatus", "uepc", "ucause", "utval"));
+            if (reason != Simulator.Reason.BREAKPOINT && reason != Simulator.Reason.MAX_STEPS) break;
+        }
+        assertEquals(42, p.getExitCode());
+        return stops;
+    }
+
+    // Addresses of the instructions following each lui and auipc in the text segment
+    private static int[] afterUpper(Memory memory) throws AddressErrorException {
+        List<Integer> addresses = new ArrayList<>();
+        for (int address = Memory.textBaseAddress; memory.getStatement(address) != null; address += 4) {
+            int opcode = memory.getStatement(address).getBinaryStatement() & 0x7F;
+            if (opcode == 0x37 || opcode == 0x17) addresses.add(address + 4);
+        }
+        assertFalse(addresses.isEmpty());
+        return addresses.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
@@ -0,0 +1,161 @@
+package com.github.unaimillan.rars;
+
+import com.github.unaimillan.rars.riscv.BasicInstruction;
+import com.github.unaimillan.rars.riscv.Instruction;
+import com.github.unaimillan.rars.riscv.InstructionSet;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the decision table decoder and the precomputed operand fields against the straightforward
+ * mask/match scan and mask string walk they replaced.
+ */
+public class TestInstructionDecoder {
+
+    private static final int RANDOM_WORDS = 200_000;
+
+    @Test
+    void DecoderMatchesReferenceScan32() {
+        checkDecoder(false);
+    }
+
+    @Test
+    void DecoderMatchesReferenceScan64() {
+        checkDecoder(true);
+    }
+
+    @Test
+    void ReadOperandMatchesMaskWalk() {
+        InstructionSet set = populate(true);
+        Random random = new Random(7);
+        int checked = 0;
+        for (BasicInstruction basic : basicInstructions(set)) {
+            String mask = basic.getOperationMask();
+            for (int n = 0; n < 64; n++) {
+                // keep the fixed bits so the word is a valid encoding, randomise the operand bits
+                int word = basic.getOpcodeMatch() | (random.nextInt() & ~basic.getOpcodeMask());
+                for (int i = 0; i < Instruction.operandMask.length; i++) {
+                    char operand = Instruction.operandMask[i];
+                    assertEquals(mask.indexOf(operand) != -1, basic.hasOperand(i),
+                            basic.getName() + " operand " + operand);
+                    assertEquals(readBinaryCode(mask, operand, word), basic.readOperand(i, word),
+                            basic.getName() + " operand " + operand + " of 0x" + Integer.toHexString(word));
+                    checked++;
+                }
+            }
+        }
+        assertTrue(checked > 0);
+    }
+
+    @Test
+    void ReadOperandSplitImmediates() {
+        InstructionSet set = populate(false);
+        // beq x0, x0, -2: imm[12|10:5] = 1|111111, imm[4:1|11] = 1111|1
+        assertSplit(set, "beq", 0xFE000FE3, 2, 0xFFF);
+        // jal x0, -2: imm[20|10:1|11|19:12] all ones
+        assertSplit(set, "jal", 0xFFFFF06F, 1, 0xFFFFF);
+        // sw x0, -1(x0): imm[11:5] and imm[4:0] all ones
+        assertSplit(set, "sw", 0xFE002FA3, 1, 0xFFF);
+        // sw x0, 0x7E0(x0): only the upper part of the split immediate
+        assertSplit(set, "sw", 0x7E002023, 1, 0x7E0);
+        // sw x0, 0x1F(x0): only the lower part
+        assertSplit(set, "sw", 0x00002FA3, 1, 0x1F);
+    }
+
+    private static void assertSplit(InstructionSet set, String name, int word, int operand, int expected) {
+        BasicInstruction basic = set.findByBinaryCode(word);
+        assertNotNull(basic, name);
+        assertEquals(name, basic.getName());
+        assertEquals(expected, readBinaryCode(basic.getOperationMask(), Instruction.operandMask[operand], word));
+        assertEquals(expected, basic.readOperand(operand, word), name);
+    }
+
+    private static void checkDecoder(boolean rv64) {
+        InstructionSet set = populate(rv64);
+        ReferenceDecoder reference = new ReferenceDecoder(basicInstructions(set));
+        for (BasicInstruction basic : basicInstructions(set)) {
+            int word = basic.getOpcodeMatch();
+            assertSame(reference.find(word), set.findByBinaryCode(word), basic.getName());
+            // every bit outside the mask flipped on as well
+            word |= ~basic.getOpcodeMask();
+            assertSame(reference.find(word), set.findByBinaryCode(word), basic.getName());
+        }
+        Random random = new Random(rv64 ? 64 : 32);
+        for (int n = 0; n < RANDOM_WORDS; n++) {
+            int word = random.nextInt();
+            if ((n & 1) == 0) word |= 3; // half of them in the 32 bit encoding space
+            assertSame(reference.find(word), set.findByBinaryCode(word), "0x" + Integer.toHexString(word));
+        }
+    }
+
+    private static InstructionSet populate(boolean rv64) {
+        Globals.initialize();
+        Globals.getSettings().setBooleanSettingNonPersistent(Settings.Bool.RV64_ENABLED, rv64);
+        InstructionSet.rv64 = rv64;
+        InstructionSet set = new InstructionSet();
+        set.populate();
+        return set;
+    }
+
+    private static List<BasicInstruction> basicInstructions(InstructionSet set) {
+        List<BasicInstruction> basics = new ArrayList<>();
+        for (Instruction inst : set.getInstructionList()) {
+            if (inst instanceof BasicInstruction) {
+                basics.add((BasicInstruction) inst);
+            }
+        }
+        return basics;
+    }
+
+    /**
+     * The operand extraction ProgramStatement used before operand fields were precomputed.
+     */
+    private static int readBinaryCode(String format, char mask, int binaryStatement) {
+        int out = 0;
+        for (int i = 0; i < 32; i++) {
+            if (format.charAt(i) == mask) {
+                out = (out << 1) | ((binaryStatement >> (31 - i)) & 1);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * The lookup InstructionSet used before the decision table: one map per distinct mask,
+     * tried most set bits first.
+     */
+    private static class ReferenceDecoder {
+        private final List<Integer> masks = new ArrayList<>();
+        private final HashMap<Integer, HashMap<Integer, BasicInstruction>> maskMap = new HashMap<>();
+
+        ReferenceDecoder(List<BasicInstruction> instructions) {
+            for (BasicInstruction basic : instructions) {
+                HashMap<Integer, BasicInstruction> matchMap = maskMap.get(basic.getOpcodeMask());
+                if (matchMap == null) {
+                    matchMap = new HashMap<>();
+                    maskMap.put(basic.getOpcodeMask(), matchMap);
+                    masks.add(basic.getOpcodeMask());
+                }
+                matchMap.put(basic.getOpcodeMatch(), basic);
+            }
+            masks.sort((a, b) -> {
+                int d = Integer.bitCount(b) - Integer.bitCount(a);
+                return d != 0 ? d : Integer.compare(a, b);
+            });
+        }
+
+        BasicInstruction find(int word) {
+            for (int mask : masks) {
+                BasicInstruction basic = maskMap.get(mask).get(word & mask);
+                if (basic != null) return basic;
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.unaimillan.rars;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the command line in its own JVM and checks the status it exits with: the program's exit code, or the
+ * code given for assembly and simulation errors.
+ */
+public class TestLaunch {
+
+    @Test
+    void ExitsWithProgramExitCode() throws Exception {
+        assertEquals(42, run("    li a0, 42\n    li a7, 93\n    ecall\n"));
+        assertEquals(0, run("    li a0, 0\n    li a7, 93\n    ecall\n"));
+        // The code of the program, not the one given for errors that did not happen
+        assertEquals(7, run("    li a0, 7\n    li a7, 93\n    ecall\n", "ae3", "se5"));
+    }
+
+    @Test
+    void ExitsWithZeroWithoutExitCode() throws Exception {
+        assertEquals(0, run("    li a0, 42\n    li a7, 10\n    ecall\n"));
+        assertEquals(0, run("    li a0, 42\n"));
+    }
+
+    @Test
+    void ExitsWithErrorCodes() throws Exception {
+        assertEquals(3, run("    li a0, 42\n    notaninstruction\n", "ae3", "se5"));
+        assertEquals(5, run("    li a0, 42\n    lw t0, 1(x0)\n    li a7, 93\n    ecall\n", "ae3", "se5"));
+    }
+
+    // Runs rars on the source with the given options, and returns its exit status
+    private static int run(String source, String... options) throws Exception {
+        File dir = TestSupport.temporaryDirectory("launch");
+        try {
+            File file = TestSupport.write(dir, "main.s", source);
+            ArrayList<String> command = new ArrayList<>(Arrays.asList(
+                    new File(System.getProperty("java.home"), "bin/java").getPath(),
+                    "-cp", System.getProperty("java.class.path"), Launch.class.getName(), "nc"));
+            command.addAll(Arrays.asList(options));
+            command.add(file.getPath());
+            Process process = new ProcessBuilder(command).redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            assertTrue(process.waitFor(60, TimeUnit.SECONDS), "rars did not finish");
+            return process.exitValue();
+        } finally {
+            TestSupport.delete(dir);
+        }
+    }
+}
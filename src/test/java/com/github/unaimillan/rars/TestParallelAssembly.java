@@ -0,0 +1,197 @@
+package com.github.unaimillan.rars;
+
+import com.github.unaimillan.rars.assembler.SourceLine;
+import com.github.unaimillan.rars.assembler.Token;
+import com.github.unaimillan.rars.assembler.TokenList;
+import com.github.unaimillan.rars.assembler.Tokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Assembles a multi-file project large enough to be tokenized and encoded in parallel, and checks that the
+ * statements and error messages, and their order, are those of tokenizing the files one at a time and encoding
+ * with the sequential loop, also when the error limit cuts the messages short.
+ */
+public class TestParallelAssembly {
+
+    private static final int FILES = 5;
+    private static final int STATEMENTS_PER_FILE = 1200; // each at least two machine statements
+
+    @Test
+    void ParallelMatchesSequential() throws Exception {
+        withProject(0, files -> {
+            Result sequential = assemble(files, true);
+            assertNull(sequential.errors, sequential.errors);
+            assertTrue(sequential.statements.size() > 4 * 2048, "too few statements to encode in parallel");
+            assertEquals(sequential, assemble(files, false));
+        });
+    }
+
+    @Test
+    void ParallelErrorsMatchSequential() throws Exception {
+        // Every message, then too many for the error limit, which cuts them short part way through file 3
+        for (int invalid : new int[]{40, Globals.maximumErrorMessages * 3 / 4}) {
+            withProject(invalid, files -> {
+                Result sequential = assemble(files, true);
+                assertNotNull(sequential.errors);
+                assertEquals(invalid * 2 > Globals.maximumErrorMessages, sequential.errors.endsWith("true"),
+                        sequential.errors);
+                assertEquals(sequential, assemble(files, false), invalid + " invalid statements per file");
+            });
+        }
+    }
+
+    @Test
+    void FirstTokenizingErrorInListOrder() throws Exception {
+        withProject(0, files -> {
+            TestSupport.write(new File(files.get(1)).getParentFile(), "f3.s", "    li t0, 'ab'\n");
+            TestSupport.write(new File(files.get(1)).getParentFile(), "f1.s", "    li t0, \"unterminated\n");
+            Result sequential = assemble(files, true);
+            assertNotNull(sequential.errors);
+            assertTrue(sequential.errors.contains("f1.s"), sequential.errors);
+            assertEquals(sequential, assemble(files, false));
+        });
+    }
+
+    private interface ProjectTest {
+        void run(ArrayList<String> files) throws Exception;
+    }
+
+    // Each file calls the next, with loops, data and long immediates.  Files 1 and 3 also place the given number
+    // of statements outside the text segment half way through, which is only found when they are stored.
+    private static void withProject(int invalid, ProjectTest test) throws Exception {
+        File dir = TestSupport.temporaryDirectory("parallel");
+        try {
+            ArrayList<String> files = new ArrayList<>();
+            for (int f = 0; f < FILES; f++) {
+                StringBuilder source = new StringBuilder();
+                source.append(".globl entry").append(f).append("\n.data\nd").append(f).append(": .word ").append(f)
+                        .append("\n.text\nentry").append(f).append(":\n");
+                for (int i = 0; i < STATEMENTS_PER_FILE; i++) {
+                    if ((f == 1 || f == 3) && i == STATEMENTS_PER_FILE / 2) {
+                        source.append(".text 0x").append(Integer.toHexString(0x1000 * f)).append('\n');
+                        for (int n = 0; n < invalid; n++) {
+                            source.append("    addi t").append(n % 7).append(", x0, ").append(n).append('\n');
+                        }
+                        // Carry on well past the code so far, in the text segment
+                        source.append(".text 0x").append(Integer.toHexString(0x00400000 + 0x100000 * f)).append('\n');
+                    }
+                    source.append("l").append(f).append('_').append(i).append(":\n");
+                    switch (i % 4) {
+                        case 0:
+                            source.append("    li t0, ").append(0x12345 * (i + 1)).append('\n');
+                            break;
+                        case 1:
+                            source.append("    la t1, d").append(f).append('\n');
+                            break;
+                        case 2:
+                            source.append("    bgt t0, t1, l").append(f).append('_').append(i - 2).append('\n');
+                            break;
+                        default:
+                            source.append("    call entry").append((f + 1) % FILES).append('\n');
+                            break;
+                    }
+                }
+                source.append("    ret\n");
+                files.add(TestSupport.write(dir, "f" + f + ".s", source.toString()).getPath());
+            }
+            test.run(files);
+        } finally {
+            TestSupport.delete(dir);
+        }
+    }
+
+    /**
+     * Tokenizes and assembles the files, either one at a time and with the sequential code generation loop,
+     * or the usual way.
+     */
+    private static Result assemble(ArrayList<String> files, boolean sequential) {
+        assertTrue(ForkJoinPool.getCommonPoolParallelism() > 1, "the common pool should have several threads");
+        TestSupport.initialize(false);
+        Tokenizer.clearCache();
+        Result result = new Result();
+        RISCVprogram lead = new RISCVprogram();
+        ArrayList<RISCVprogram> programs;
+        try {
+            if (sequential) {
+                // The loop prepareFilesForAssembly used before tokenizing in parallel
+                programs = new ArrayList<>();
+                for (String file : files) {
+                    RISCVprogram program = file.equals(files.get(0)) ? lead : new RISCVprogram();
+                    program.readSource(file);
+                    program.tokenize();
+                    programs.add(program);
+                }
+            } else {
+                programs = lead.prepareFilesForAssembly(new ArrayList<>(files), files.get(0), null);
+            }
+            for (RISCVprogram program : programs) {
+                describeTokens(result.tokens, program);
+            }
+            PrintStream out = System.out;
+            try {
+                if (sequential) {
+                    // Debug runs encode one statement at a time; keep their trace out of the test output
+                    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+                    Globals.debug = true;
+                }
+                lead.assemble(programs, true, false);
+            } finally {
+                Globals.debug = false;
+                System.setOut(out);
+            }
+            for (ProgramStatement statement : lead.getMachineList()) {
+                result.statements.add(Integer.toHexString(statement.getAddress()) + " "
+                        + Integer.toHexString(statement.getBinaryStatement()) + " " + statement.getSourceFile() + ":"
+                        + statement.getSourceLine() + " " + statement.getBasicAssemblyStatement());
+            }
+        } catch (AssemblyException e) {
+            result.errors = e.errors().generateErrorReport() + e.errors().errorLimitExceeded();
+        } finally {
+            Tokenizer.clearCache();
+        }
+        return result;
+    }
+
+    private static void describeTokens(ArrayList<String> lines, RISCVprogram program) {
+        for (SourceLine line : program.getSourceLineList()) {
+            lines.add(line.getFilename() + ":" + line.getLineNumber() + " " + line.getSource());
+        }
+        for (TokenList tokens : program.getTokenList()) {
+            StringBuilder text = new StringBuilder(tokens.getProcessedLine()).append(" |");
+            for (Token token : tokens) {
+                text.append(' ').append(token.getType()).append(':').append(token.getValue()).append('@')
+                        .append(token.getSourceLine()).append('.').append(token.getStartPos());
+            }
+            lines.add(text.toString());
+        }
+    }
+
+    private static class Result {
+        final ArrayList<String> tokens = new ArrayList<>();
+        final ArrayList<String> statements = new ArrayList<>();
+        String errors; // the report, or null if the files assembled
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Result && toString().equals(other.toString());
+        }
+
+        @Override
+        public int hashCode() {
+            return toString().hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return String.join("\n", tokens) + "\n--\n" + String.join("\n", statements) + "\n--\n" + errors;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.unaimillan.rars;
+
+import com.github.unaimillan.rars.api.Options;
+import com.github.unaimillan.rars.api.Program;
+import com.github.unaimillan.rars.riscv.InstructionSet;
+import com.github.unaimillan.rars.riscv.hardware.AddressErrorException;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Setup and inspection shared by the tests that assemble and run programs.
+ */
+public final class TestSupport {
+
+    private TestSupport() {
+    }
+
+    /**
+     * Resets the globals and populates the instruction set for the given register width.
+     *
+     * @param rv64 true for 64 bit registers
+     */
+    public static void initialize(boolean rv64) {
+        Globals.initialize();
+        Globals.getSettings().setBooleanSettingNonPersistent(Settings.Bool.RV64_ENABLED, rv64);
+        InstructionSet.rv64 = rv64;
+        Globals.instructionSet.populate();
+    }
+
+    /**
+     * Initializes a 32 bit machine and assembles the source into a new Program.
+     *
+     * @param source the program text
+     * @param opt    the options to run it with
+     * @return the assembled Program, not yet set up
+     */
+    public static Program program(String source, Options opt) throws AssemblyException {
+        initialize(false);
+        Program p = new Program(opt);
+        p.assembleString(source);
+        return p;
+    }
+
+    /**
+     * Describes x1 to x31, the named control and status registers and a range of memory words, so two
+     * machines can be compared with one assertEquals.
+     *
+     * @param p       the program to describe
+     * @param address the first memory word to include
+     * @param words   the number of words to include
+     * @param csrs    the names of the control and status registers to include
+     * @return the description
+     */
+    public static String snapshot(Program p, int address, int words, String... csrs) throws AddressErrorException {
+        StringBuilder state = new StringBuilder();
+        for (int i = 1; i < 32; i++) {
+            state.append('x').append(i).append('=').append(p.getRegisterValue("x" + i)).append(' ');
+        }
+        for (String csr : csrs) {
+            state.append(csr).append('=').append(p.getRegisterValue(csr)).append(' ');
+        }
+        Memory memory = p.getMemory();
+        for (int i = 0; i < words; i++) {
+            state.append(Integer.toHexString(memory.getWord(address + 4 * i))).append(' ');
+        }
+        return state.toString();
+    }
+
+    /**
+     * @param prefix the start of the directory name
+     * @return a new empty directory, to be removed with {@link #delete(File)}
+     */
+    public static File temporaryDirectory(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    /**
+     * Writes a file, replacing any file of the same name.
+     *
+     * @param dir      the directory to write in
+     * @param name     the file name
+     * @param contents the text to write
+     * @return the file
+     */
+    public static File write(File dir, String name, String contents) throws IOException {
+        File file = new File(dir, name);
+        Files.write(file.toPath(), contents.getBytes());
+        return file;
+    }
+
+    /**
+     * Deletes a file, or a directory and everything in it.
+     *
+     * @param file the file or directory
+     */
+    public static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) delete(child);
+        }
+        file.delete();
+    }
+}
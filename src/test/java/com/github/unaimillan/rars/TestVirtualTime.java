@@ -0,0 +1,99 @@
+package com.github.unaimillan.rars;
+
+import com.github.unaimillan.rars.api.Options;
+import com.github.unaimillan.rars.api.Program;
+import com.github.unaimillan.rars.simulator.Simulator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs a program that sleeps and reads the clock on a virtual clock, where time is instret / N plus the
+ * time slept, and checks the times it sees and that they do not depend on the run.
+ */
+public class TestVirtualTime {
+
+    private static final int INSTRUCTIONS_PER_MILLISECOND = 10;
+    private static final int SLEEP = 5000;
+
+    // Prints the Time syscall result and the time CSR at the start, after a sleep and after a loop of
+    // 2000 instructions.  The comments give the instructions retired before each instruction runs.
+    private static final String PROGRAM = String.join("\n",
+            "    li a7, 30",          // 0
+            "    ecall",              // 1: Time = 1 / 10 = 0
+            "    mv s0, a0",          // 2
+            "    csrr s1, time",      // 3: set after 3 retired = 0
+            "    li a0, " + SLEEP,    // 4, 5 (lui + addi)
+            "    li a7, 32",          // 6
+            "    ecall",              // 7: Sleep
+            "    li a7, 30",          // 8
+            "    ecall",              // 9: Time = 9 / 10 + 5000 = 5000
+            "    mv s2, a0",          // 10
+            "    li t0, 1000",        // 11
+            "loop:",
+            "    addi t0, t0, -1",    // 12 .. 2011: 1000 iterations of two instructions
+            "    bnez t0, loop",
+            "    li a7, 30",          // 2012
+            "    ecall",              // 2013: Time = 2013 / 10 + 5000 = 5201
+            "    mv s3, a0",          // 2014
+            "    csrr s4, time",      // 2015: set after 2015 retired = 5201
+            "    mv a0, s0",
+            "    jal print",
+            "    mv a0, s1",
+            "    jal print",
+            "    mv a0, s2",
+            "    jal print",
+            "    mv a0, s3",
+            "    jal print",
+            "    mv a0, s4",
+            "    jal print",
+            "    li a0, 42",
+            "    li a7, 93",
+            "    ecall",
+            "print:",
+            "    li a7, 1",
+            "    ecall",
+            "    li a0, '\\n'",
+            "    li a7, 11",
+            "    ecall",
+            "    ret",
+            "");
+
+    @Test
+    void ClockFollowsInstretAndSleep() throws Exception {
+        Program p = program();
+        long start = System.currentTimeMillis();
+        String first = run(p);
+        assertTrue(System.currentTimeMillis() - start < SLEEP, "sleeping on a virtual clock should not block");
+        String[] times = first.split("\n");
+        assertEquals(5, times.length, first);
+        assertEquals("0", times[0], "Time before sleeping");
+        assertEquals("0", times[1], "time CSR before sleeping");
+        assertEquals(String.valueOf(SLEEP + 9 / INSTRUCTIONS_PER_MILLISECOND), times[2], "Time after sleeping");
+        assertEquals(String.valueOf(SLEEP + 2013 / INSTRUCTIONS_PER_MILLISECOND), times[3], "Time after the loop");
+        assertEquals(String.valueOf(SLEEP + 2015 / INSTRUCTIONS_PER_MILLISECOND), times[4], "time CSR after the loop");
+    }
+
+    @Test
+    void RunsAreIdentical() throws Exception {
+        Program p = program();
+        String first = run(p);
+        String second = run(p);
+        assertEquals(first, second);
+        assertEquals(first, run(program()), "a new Program sees the same times");
+    }
+
+    private static Program program() throws Exception {
+        Options opt = new Options();
+        opt.instructionsPerMillisecond = INSTRUCTIONS_PER_MILLISECOND;
+        opt.maxSteps = 100000;
+        return TestSupport.program(PROGRAM, opt);
+    }
+
+    private static String run(Program p) throws Exception {
+        p.setup(null, "");
+        assertEquals(Simulator.Reason.NORMAL_TERMINATION, p.simulate());
+        assertEquals(42, p.getExitCode());
+        return p.getSTDOUT();
+    }
+}
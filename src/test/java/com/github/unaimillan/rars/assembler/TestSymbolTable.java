@@ -0,0 +1,169 @@
+package com.github.unaimillan.rars.assembler;
+
+import com.github.unaimillan.rars.ErrorList;
+import com.github.unaimillan.rars.Globals;
+import com.github.unaimillan.rars.TestSupport;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs random sequences of adds, removes and address fixes against a symbol table and a plain list scanned the
+ * way the table was before it was indexed by name and by address, and checks every lookup agrees after each step.
+ */
+public class TestSymbolTable {
+
+    private static final int STEPS = 5000;
+    private static final String[] NAMES = {"main", "loop", "done", "data", "buf", "end", "x", "y", "Loop", "a.b",
+            "_start", "table"};
+    // Few enough addresses that symbols often share one
+    private static final int[] ADDRESSES = {0x00400000, 0x00400004, 0x00400008, 0x0040000C, 0x10010000,
+            0x10010004, 0x10010010, -4};
+
+    @Test
+    void IndexesMatchListScan() {
+        TestSupport.initialize(false);
+        Globals.symbolTable.clear();
+        SymbolTable table = new SymbolTable("local");
+        ArrayList<Entry> reference = new ArrayList<>();
+        ArrayList<Entry> globals = new ArrayList<>();
+        Random random = new Random(10);
+        for (int step = 0; step < STEPS; step++) {
+            String name = NAMES[random.nextInt(NAMES.length)];
+            int address = ADDRESSES[random.nextInt(ADDRESSES.length)];
+            boolean data = random.nextBoolean();
+            switch (random.nextInt(6)) {
+                case 0:
+                case 1: {
+                    ErrorList errors = new ErrorList();
+                    table.addSymbol(new Token(TokenTypes.IDENTIFIER, name, null, step, 1), address, data, errors);
+                    boolean defined = find(reference, name) != null;
+                    assertEquals(defined, errors.errorsOccurred(), "add " + name);
+                    if (!defined) reference.add(new Entry(name, address, data));
+                    break;
+                }
+                case 2:
+                    table.removeSymbol(new Token(TokenTypes.IDENTIFIER, name, null, step, 1));
+                    reference.remove(find(reference, name));
+                    break;
+                case 3: {
+                    int replacement = ADDRESSES[random.nextInt(ADDRESSES.length)];
+                    table.fixSymbolTableAddress(address, replacement);
+                    for (Entry entry : reference) {
+                        if (entry.address == address) entry.address = replacement;
+                    }
+                    break;
+                }
+                case 4:
+                    // The global table the lookups fall back to
+                    if (find(globals, name) == null) {
+                        Globals.symbolTable.addSymbol(name, address, data);
+                        globals.add(new Entry(name, address, data));
+                    }
+                    break;
+                default:
+                    table.clear();
+                    reference.clear();
+                    break;
+            }
+            check(table, reference, globals, "step " + step);
+        }
+    }
+
+    @Test
+    void SharedAddressKeepsTableOrder() {
+        TestSupport.initialize(false);
+        Globals.symbolTable.clear();
+        SymbolTable table = new SymbolTable("local");
+        table.addSymbol("first", 8, false);
+        table.addSymbol("second", 4, false);
+        table.addSymbol("third", 8, false);
+        assertEquals("first", table.getSymbolGivenAddress("8").getName());
+        // Moving the symbols at 4 onto 8 leaves them in table order, not moved ones last
+        table.fixSymbolTableAddress(4, 8);
+        assertEquals("first", table.getSymbolGivenAddress("8").getName());
+        assertNull(table.getSymbolGivenAddress("4"));
+        table.removeSymbol(new Token(TokenTypes.IDENTIFIER, "first", null, 1, 1));
+        assertEquals("second", table.getSymbolGivenAddress("0x8").getName());
+        table.fixSymbolTableAddress(8, 12);
+        assertEquals("second", table.getSymbolGivenAddress("12").getName());
+        assertEquals(12, table.getAddress("third"));
+        assertNull(table.getSymbolGivenAddress("twelve"));
+    }
+
+    private static void check(SymbolTable table, ArrayList<Entry> reference, ArrayList<Entry> globals, String when) {
+        ArrayList<Symbol> all = table.getAllSymbols();
+        assertEquals(reference.size(), table.getSize(), when);
+        assertEquals(reference.size(), all.size(), when);
+        int data = 0;
+        for (int i = 0; i < all.size(); i++) {
+            Entry entry = reference.get(i);
+            assertEquals(entry.toString(), describe(all.get(i)), when);
+            // The name index holds the same objects as the list
+            assertSame(all.get(i), table.getSymbol(entry.name), when);
+            if (entry.data) data++;
+        }
+        assertEquals(data, table.getDataSymbols().size(), when);
+        assertEquals(reference.size() - data, table.getTextSymbols().size(), when);
+
+        for (String name : NAMES) {
+            Entry entry = find(reference, name);
+            Entry global = find(globals, name);
+            assertEquals(entry == null ? SymbolTable.NOT_FOUND : entry.address, table.getAddress(name), when + " " + name);
+            assertEquals(entry != null ? entry.address : global != null ? global.address : SymbolTable.NOT_FOUND,
+                    table.getAddressLocalOrGlobal(name), when + " " + name);
+        }
+        for (int address : ADDRESSES) {
+            Entry entry = atAddress(reference, address);
+            Entry global = atAddress(globals, address);
+            String where = when + " " + Integer.toHexString(address);
+            Symbol found = table.getSymbolGivenAddress(Integer.toString(address));
+            assertEquals(entry == null ? null : entry.toString(), found == null ? null : describe(found), where);
+            assertSame(found, table.getSymbolGivenAddress("0x" + Integer.toHexString(address)), where);
+            if (found != null) assertSame(table.getSymbol(found.getName()), found, where);
+            Entry either = entry != null ? entry : global;
+            Symbol foundEither = table.getSymbolGivenAddressLocalOrGlobal(Integer.toString(address));
+            assertEquals(either == null ? null : either.toString(), foundEither == null ? null : describe(foundEither),
+                    where);
+        }
+    }
+
+    private static String describe(Symbol symbol) {
+        return symbol.getName() + "@" + symbol.getAddress() + (symbol.getType() ? "d" : "t");
+    }
+
+    // The list scans the table used before the indexes
+    private static Entry find(ArrayList<Entry> entries, String name) {
+        for (Entry entry : entries) {
+            if (entry.name.equals(name)) return entry;
+        }
+        return null;
+    }
+
+    private static Entry atAddress(ArrayList<Entry> entries, int address) {
+        for (Entry entry : entries) {
+            if (entry.address == address) return entry;
+        }
+        return null;
+    }
+
+    private static class Entry {
+        final String name;
+        int address;
+        final boolean data;
+
+        Entry(String name, int address, boolean data) {
+            this.name = name;
+            this.address = address;
+            this.data = data;
+        }
+
+        @Override
+        public String toString() {
+            return name + "@" + address + (data ? "d" : "t");
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.github.unaimillan.rars.assembler;
+
+import com.github.unaimillan.rars.Globals;
+import com.github.unaimillan.rars.ProgramStatement;
+import com.github.unaimillan.rars.RISCVprogram;
+import com.github.unaimillan.rars.TestSupport;
+import com.github.unaimillan.rars.riscv.hardware.Memory;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Re-assembles a project after editing one file, and checks that only that file is tokenized again, that the
+ * reused tokens are the same as tokenizing from scratch, and that the first pass of the other files is repeated
+ * at their new addresses with the same result as parsing them.
+ */
+public class TestTokenCache {
+
+    private static final String MAIN = String.join("\n",
+            ".include \"defs.s\"",
+            ".globl main",
+            ".text",
+            "main:",
+            "    li a0, COUNT",
+            "    call sum",
+            "    call twice",
+            "    li a7, 93",
+            "    ecall",
+            "");
+
+    private static final String SUM = String.join("\n",
+            ".globl sum",
+            ".text",
+            "sum:",
+            "    mv t0, a0",
+            "    li a0, 0",
+            "sumloop:",
+            "    add a0, a0, t0",
+            "    addi t0, t0, -1",
+            "    bnez t0, sumloop",
+            "    ret",
+            "");
+
+    private static final String TWICE = String.join("\n",
+            ".globl twice, factor",
+            ".data",
+            "factor: .word 2",
+            ".text",
+            "twice:",
+            "    la t0, factor",
+            "    lw t0, 0(t0)",
+            "    mul a0, a0, t0",
+            "    ret",
+            "");
+
+    // Data holding the addresses of text and data labels of its own, of a global label and of labels defined later
+    private static final String TABLE = String.join("\n",
+            ".globl table",
+            ".text",
+            "entry:",
+            "    la t0, table",
+            "    lw: j lw",
+            "    ret",
+            ".data",
+            "table: .word entry, values, factor, later",
+            "values: .half 1, 2",
+            "    .byte 3",
+            "text: .asciz \"table\"",
+            ".align 3",
+            "real: .double 1.5",
+            "later: .word -1, values, entry",
+            "");
+
+    // A macro using an .eqv symbol defined after it, which is only substituted when the macro is expanded
+    private static final String MACRO = String.join("\n",
+            ".macro bump(%r)",
+            "    addi %r, %r, STEP",
+            ".end_macro",
+            ".eqv STEP 3",
+            ".text",
+            "    bump(t0)",
+            "");
+
+    @Test
+    void OnlyEditedFileIsTokenizedAgain() throws Exception {
+        TestSupport.initialize(false);
+        Tokenizer.clearCache();
+
+        File dir = TestSupport.temporaryDirectory("tokencache");
+        try {
+            File main = TestSupport.write(dir, "main.s", MAIN);
+            File defs = TestSupport.write(dir, "defs.s", ".eqv COUNT 10\n");
+            File sum = TestSupport.write(dir, "sum.s", SUM);
+            File twice = TestSupport.write(dir, "twice.s", TWICE);
+            ArrayList<String> files = new ArrayList<>();
+            files.add(main.getPath());
+            files.add(sum.getPath());
+            files.add(twice.getPath());
+
+            assemble(files);
+            Tokenizer.TokenizedFile mainTokens = Tokenizer.cachedTokens(main.getPath());
+            Tokenizer.TokenizedFile sumTokens = Tokenizer.cachedTokens(sum.getPath());
+            Tokenizer.TokenizedFile twiceTokens = Tokenizer.cachedTokens(twice.getPath());
+            assertNotNull(mainTokens);
+            assertNotNull(sumTokens);
+            assertNotNull(twiceTokens);
+
+            // Same length, so only the contents tell the edit apart
+            TestSupport.write(dir, "twice.s", TWICE.replace("factor: .word 2", "factor: .word 3"));
+            ArrayList<RISCVprogram> reassembled = assemble(files);
+            assertSame(mainTokens, Tokenizer.cachedTokens(main.getPath()), "main.s should be reused");
+            assertSame(sumTokens, Tokenizer.cachedTokens(sum.getPath()), "sum.s should be reused");
+            assertNotSame(twiceTokens, Tokenizer.cachedTokens(twice.getPath()), "twice.s should be tokenized again");
+            assertEquals(3, Memory.getInstance().getWord(Globals.symbolTable.getAddress("factor")));
+
+            // Tokens as the assembler got them, before it changed any
+            ArrayList<String> reused = describe(prepare(files));
+            Tokenizer.clearCache();
+            assertEquals(describe(prepare(files)), reused);
+            assertEquals(3, reassembled.size());
+
+            // An edit to an included file is a change to the file including it, even one that keeps its length
+            // and modification time
+            mainTokens = Tokenizer.cachedTokens(main.getPath());
+            sumTokens = Tokenizer.cachedTokens(sum.getPath());
+            long modified = defs.lastModified();
+            TestSupport.write(dir, "defs.s", ".eqv COUNT 20\n");
+            assertTrue(defs.setLastModified(modified));
+            assemble(files);
+            assertNotSame(mainTokens, Tokenizer.cachedTokens(main.getPath()), "main.s includes defs.s");
+            assertSame(sumTokens, Tokenizer.cachedTokens(sum.getPath()));
+        } finally {
+            Tokenizer.clearCache();
+            TestSupport.delete(dir);
+        }
+    }
+
+    @Test
+    void FirstPassIsReusedAtNewAddresses() throws Exception {
+        TestSupport.initialize(false);
+        Tokenizer.clearCache();
+
+        File dir = TestSupport.temporaryDirectory("parsecache");
+        try {
+            File main = TestSupport.write(dir, "main.s", MAIN);
+            TestSupport.write(dir, "defs.s", ".eqv COUNT 10\n");
+            ArrayList<String> files = new ArrayList<>();
+            files.add(main.getPath());
+            files.add(TestSupport.write(dir, "sum.s", SUM).getPath());
+            files.add(TestSupport.write(dir, "twice.s", TWICE).getPath());
+            files.add(TestSupport.write(dir, "table.s", TABLE).getPath());
+
+            assemble(files);
+            ArrayList<Assembler.ParsedFile> parsed = new ArrayList<>();
+            for (String file : files) {
+                parsed.add(Tokenizer.cachedTokens(file).parsed);
+                assertNotNull(parsed.get(parsed.size() - 1), file);
+            }
+
+            // Unchanged, every file is reused where it was
+            String reused = describeAssembly(assemble(files));
+            for (int f = 0; f < files.size(); f++) {
+                assertSame(parsed.get(f), Tokenizer.cachedTokens(files.get(f)).parsed, files.get(f));
+            }
+            Tokenizer.clearCache();
+            assertEquals(describeAssembly(assemble(files)), reused);
+
+            // Moves the text and data of the files after main.s
+            parsed.clear();
+            for (String file : files) {
+                parsed.add(Tokenizer.cachedTokens(file).parsed);
+            }
+            TestSupport.write(dir, "main.s", MAIN.replace("main:", ".data\n.word 7, 8\n.text\nmain:\n    nop"));
+            reused = describeAssembly(assemble(files));
+            assertNotSame(parsed.get(0), Tokenizer.cachedTokens(main.getPath()).parsed);
+            for (int f = 1; f < files.size(); f++) {
+                assertSame(parsed.get(f), Tokenizer.cachedTokens(files.get(f)).parsed, files.get(f));
+            }
+            Tokenizer.clearCache();
+            assertEquals(describeAssembly(assemble(files)), reused);
+
+            // Data moved by less than its alignment is parsed again
+            parsed.clear();
+            for (String file : files) {
+                parsed.add(Tokenizer.cachedTokens(file).parsed);
+            }
+            TestSupport.write(dir, "main.s", MAIN.replace("main:", ".data\n.byte 7\n.text\nmain:"));
+            reused = describeAssembly(assemble(files));
+            assertNotSame(parsed.get(3), Tokenizer.cachedTokens(files.get(3)).parsed);
+            Tokenizer.clearCache();
+            assertEquals(describeAssembly(assemble(files)), reused);
+        } finally {
+            Tokenizer.clearCache();
+            TestSupport.delete(dir);
+        }
+    }
+
+    @Test
+    void MacroExpansionKeepsEqvOfCachedTokens() throws Exception {
+        TestSupport.initialize(false);
+        Tokenizer.clearCache();
+
+        File dir = TestSupport.temporaryDirectory("macrocache");
+        try {
+            ArrayList<String> files = new ArrayList<>();
+            files.add(TestSupport.write(dir, "macro.s", MACRO).getPath());
+            for (int i = 0; i < 2; i++) {
+                RISCVprogram lead = new RISCVprogram();
+                lead.assemble(lead.prepareFilesForAssembly(files, files.get(0), null), true, false);
+                assertEquals("addi x5,x5,3", lead.getMachineList().get(0).getPrintableBasicAssemblyStatement().trim());
+            }
+            assertNotNull(Tokenizer.cachedTokens(files.get(0)));
+        } finally {
+            Tokenizer.clearCache();
+            TestSupport.delete(dir);
+        }
+    }
+
+    // The statements, symbols and data of an assembled program
+    private static String describeAssembly(ArrayList<RISCVprogram> programs) throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (ProgramStatement statement : programs.get(0).getMachineList()) {
+            text.append(Integer.toHexString(statement.getAddress())).append(' ')
+                    .append(Integer.toHexString(statement.getBinaryStatement())).append(' ')
+                    .append(statement.getSourceFile()).append(':').append(statement.getSourceLine()).append('\n');
+        }
+        for (RISCVprogram program : programs) {
+            for (Symbol symbol : program.getLocalSymbolTable().getAllSymbols()) {
+                text.append(symbol.getName()).append('@').append(symbol.getAddress()).append('\n');
+            }
+        }
+        for (Symbol symbol : Globals.symbolTable.getAllSymbols()) {
+            text.append("global ").append(symbol.getName()).append('@').append(symbol.getAddress()).append('\n');
+        }
+        for (int i = 0; i < 64; i++) {
+            text.append(Memory.getInstance().getWord(Memory.dataBaseAddress + 4 * i)).append(' ');
+        }
+        return text.toString();
+    }
+
+    private static ArrayList<RISCVprogram> prepare(ArrayList<String> files) throws Exception {
+        return new RISCVprogram().prepareFilesForAssembly(files, files.get(0), null);
+    }
+
+    private static ArrayList<RISCVprogram> assemble(ArrayList<String> files) throws Exception {
+        RISCVprogram lead = new RISCVprogram();
+        ArrayList<RISCVprogram> programs = lead.prepareFilesForAssembly(files, files.get(0), null);
+        lead.assemble(programs, true, false);
+        return programs;
+    }
+
+    private static ArrayList<String> describe(ArrayList<RISCVprogram> programs) {
+        ArrayList<String> lines = new ArrayList<>();
+        for (RISCVprogram program : programs) {
+            for (SourceLine line : program.getSourceLineList()) {
+                lines.add(line.getFilename() + ":" + line.getLineNumber() + " " + line.getSource());
+            }
+            for (TokenList tokens : program.getTokenList()) {
+                StringBuilder text = new StringBuilder(tokens.getProcessedLine()).append(" |");
+                for (Token token : tokens) {
+                    text.append(' ').append(token.getType()).append(':').append(token.getValue()).append('@')
+                            .append(token.getSourceLine()).append('.').append(token.getStartPos())
+                            .append(token.getSourceProgram() == program);
+                }
+                lines.add(text.toString());
+            }
+        }
+        return lines;
+    }
+}
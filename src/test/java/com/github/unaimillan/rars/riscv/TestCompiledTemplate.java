@@ -0,0 +1,209 @@
+package com.github.unaimillan.rars.riscv;
+
+import com.github.unaimillan.rars.*;
+import com.github.unaimillan.rars.assembler.Token;
+import com.github.unaimillan.rars.assembler.TokenList;
+import com.github.unaimillan.rars.assembler.Tokenizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Assembles the example of every pseudo-instruction with a range of register, immediate, label and long
+ * immediate operands, and checks that each compiled template expands to exactly the tokens that tokenizing the
+ * substituted template text gives.  Templates the tokenizer reads specially must not compile.
+ */
+public class TestCompiledTemplate {
+
+    private static final String PROLOGUE = String.join("\n",
+            ".data",
+            "data: .word 1",
+            ".text",
+            "label: nop",
+            "");
+
+    // Operands put in place of each number in an example
+    private static final String[] IMMEDIATES = {"0", "1", "-1", "100", "2047", "-2048", "2048", "-2049", "0x7FF",
+            "0x800", "0x12345", "-100000", "0x7FFFFFFF", "-2147483648", "0xFFFFFFFF", "0x80000000",
+            "4294967296", "0x123456789ABCDEF0", "-0x123456789", "9223372036854775807"};
+
+    private static final Pattern NUMBER = Pattern.compile("(?<![\\w.])-?(0x[0-9a-fA-F]+|\\d+)\\b");
+
+    @Test
+    void ExpansionMatchesTextRoute32() throws Exception {
+        checkTemplates(false);
+    }
+
+    @Test
+    void ExpansionMatchesTextRoute64() throws Exception {
+        checkTemplates(true);
+    }
+
+    @Test
+    void SpecialSyntaxIsNotCompiled() {
+        TestSupport.initialize(false);
+        InstructionSet set = Globals.instructionSet;
+        assertNotNull(CompiledTemplate.compile("addi RG1, RG2, VL3", set));
+        // Comments, labels and quoted text
+        assertNull(CompiledTemplate.compile("addi RG1, RG2, 1 # one", set));
+        assertNull(CompiledTemplate.compile("here: addi RG1, RG2, 1", set));
+        assertNull(CompiledTemplate.compile("addi RG1, RG2, 'a'", set));
+        // Markers run into other text
+        assertNull(CompiledTemplate.compile("addi RG1, RG2, VL3x", set));
+        assertNull(CompiledTemplate.compile("addi RG1, RG2, 1+VL3", set));
+        assertNull(CompiledTemplate.compile("jal x0, LABEL", set));
+        // A sign that is not part of a number
+        assertNull(CompiledTemplate.compile("addi RG1, RG2, -", set));
+        // Not an instruction
+        assertNull(CompiledTemplate.compile("nothing RG1", set));
+        assertNull(CompiledTemplate.compile("", set));
+    }
+
+    @Test
+    void UnsafeSubstitutionIsNotExpanded() {
+        TestSupport.initialize(false);
+        InstructionSet set = Globals.instructionSet;
+        RISCVprogram program = new RISCVprogram();
+        // A negative value after an identifier is read as two tokens
+        CompiledTemplate template = CompiledTemplate.compile("jal x0, there, VL2", set);
+        assertNotNull(template);
+        assertNotNull(template.expand(program, operands("x5", "5"), 0, 1));
+        assertNull(template.expand(program, operands("x5", "-5"), 0, 1));
+        assertNotEquals(4, tokenize(1, "jal x0, there, -5").size());
+        // A register operand that would not be one token
+        template = CompiledTemplate.compile("add RG1, x0, RG2", set);
+        assertNotNull(template);
+        assertNull(template.expand(program, operands("x5", "x6)"), 0, 1));
+        assertNull(template.expand(program, operands("x5", "x6,x7"), 0, 1));
+    }
+
+    private static void checkTemplates(boolean rv64) throws Exception {
+        TestSupport.initialize(rv64);
+        // Templates expanded at least once, by instruction
+        IdentityHashMap<ExtendedInstruction, BitSet> compared = new IdentityHashMap<>();
+        for (Instruction inst : Globals.instructionSet.getInstructionList()) {
+            if (!(inst instanceof ExtendedInstruction)) continue;
+            for (String line : variants(inst.getExampleFormat())) {
+                RISCVprogram program = assemble(line);
+                if (program == null) continue;
+                for (ProgramStatement statement : program.getParsedList()) {
+                    if (statement.getInstruction() instanceof ExtendedInstruction) {
+                        compare(program, statement, compared);
+                    }
+                }
+            }
+        }
+
+        // Every template was expanded, and compiled unless it uses syntax the tokenizer reads specially.  An
+        // instruction with the same example as one listed before it is never chosen.
+        HashSet<String> examples = new HashSet<>();
+        for (Instruction inst : Globals.instructionSet.getInstructionList()) {
+            if (!(inst instanceof ExtendedInstruction)) continue;
+            ExtendedInstruction extended = (ExtendedInstruction) inst;
+            if (!examples.add(extended.getExampleFormat().replaceAll("\\s", ""))) continue;
+            ArrayList<String> templates = extended.getBasicIntructionTemplateList();
+            BitSet expanded = compared.getOrDefault(extended, new BitSet());
+            for (int i = 0; i < templates.size(); i++) {
+                String id = extended.getExampleFormat() + " / " + templates.get(i);
+                if (extended.getCompiledTemplate(i) == null) {
+                    assertTrue(hasSpecialSyntax(templates.get(i)), "not compiled: " + id);
+                } else {
+                    assertTrue(expanded.get(i), "never expanded: " + id);
+                }
+            }
+        }
+    }
+
+    // Expands every template of the statement both ways and compares the tokens
+    private static void compare(RISCVprogram program, ProgramStatement statement,
+                                IdentityHashMap<ExtendedInstruction, BitSet> compared) {
+        ExtendedInstruction inst = (ExtendedInstruction) statement.getInstruction();
+        ArrayList<String> templates = inst.getBasicIntructionTemplateList();
+        int line = statement.getSourceLine();
+        int PC = statement.getAddress();
+        TokenList basic = tokenize(line, statement.getBasicAssemblyStatement());
+        for (int i = 0; i < templates.size(); i++) {
+            CompiledTemplate compiled = inst.getCompiledTemplate(i);
+            if (compiled == null) continue;
+            String text = ExtendedInstruction.makeTemplateSubstitutions(program, templates.get(i), basic, PC);
+            TokenList expected = tokenize(line, text);
+            TokenList actual = compiled.expand(program, statement.getBasicOperands(), PC, line);
+            String where = inst.getExampleFormat() + " / " + templates.get(i) + " for "
+                    + statement.getBasicAssemblyStatement() + " -> " + text;
+            assertNotNull(actual, where);
+            assertEquals(describe(expected), describe(actual), where);
+            assertSame(compiled.getInstructions(), Globals.instructionSet.matchOperator(expected.get(0).getValue()),
+                    where);
+            compared.computeIfAbsent(inst, k -> new BitSet()).set(i);
+        }
+    }
+
+    // The example with each register and number replaced, one at a time, and its label pointed elsewhere
+    private static ArrayList<String> variants(String example) {
+        ArrayList<String> lines = new ArrayList<>();
+        lines.add(example);
+        lines.add(example.replaceAll("\\blabel\\b", "data"));
+        lines.add(example.replaceAll("\\bt1\\b", "s11").replaceAll("\\bt2\\b", "a0")
+                .replaceAll("\\bf1\\b", "f31").replaceAll("\\bf2\\b", "ft0"));
+        // Numbers that are not part of a register name
+        Matcher number = NUMBER.matcher(example);
+        while (number.find()) {
+            for (String value : IMMEDIATES) {
+                lines.add(example.substring(0, number.start()) + value + example.substring(number.end()));
+            }
+        }
+        return lines;
+    }
+
+    // Assembles one statement after a label, or returns null if it does not assemble
+    private static RISCVprogram assemble(String line) {
+        RISCVprogram program = new RISCVprogram();
+        try {
+            program.fromString(PROLOGUE + line + "\n");
+            program.tokenize();
+            ArrayList<RISCVprogram> programs = new ArrayList<>();
+            programs.add(program);
+            program.assemble(programs, true, false);
+        } catch (AssemblyException e) {
+            return null;
+        }
+        return program;
+    }
+
+    private static TokenList tokenize(int line, String text) {
+        ErrorList errors = new ErrorList();
+        TokenList tokens = new Tokenizer().tokenizeLine(line, text, errors, false);
+        assertFalse(errors.errorsOccurred(), text);
+        return tokens;
+    }
+
+    // Type, value and position of each token
+    private static List<String> describe(TokenList tokens) {
+        ArrayList<String> described = new ArrayList<>();
+        for (Token token : tokens) {
+            described.add(token.getType() + ":" + token.getValue() + "@" + token.getSourceLine() + "."
+                    + token.getStartPos());
+        }
+        return described;
+    }
+
+    private static boolean hasSpecialSyntax(String template) {
+        for (String special : new String[]{"#", ":", "\"", "'", "%"}) {
+            if (template.contains(special)) return true;
+        }
+        return false;
+    }
+
+    private static ArrayList<String> operands(String... values) {
+        return new ArrayList<>(Arrays.asList(values));
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.unaimillan.rars.riscv;
+
+import com.github.unaimillan.rars.Globals;
+import com.github.unaimillan.rars.TestSupport;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the operator index behind matchOperator against a case-insensitive scan of the instruction list, and
+ * that the lists it shares between callers cannot be changed.
+ */
+public class TestInstructionSet {
+
+    @Test
+    void MatchOperatorMatchesScan32() {
+        checkMatchOperator(false);
+    }
+
+    @Test
+    void MatchOperatorMatchesScan64() {
+        checkMatchOperator(true);
+    }
+
+    @Test
+    void MatchOperatorIgnoresDefaultLocale() {
+        TestSupport.initialize(false);
+        Locale saved = Locale.getDefault();
+        try {
+            // Lower casing "I" in Turkish gives a dotless i
+            Locale.setDefault(new Locale("tr", "TR"));
+            assertSame(Globals.instructionSet.matchOperator("addi"), Globals.instructionSet.matchOperator("ADDI"));
+            assertSame(Globals.instructionSet.matchOperator("li"), Globals.instructionSet.matchOperator("LI"));
+        } finally {
+            Locale.setDefault(saved);
+        }
+    }
+
+    private static void checkMatchOperator(boolean rv64) {
+        TestSupport.initialize(rv64);
+        InstructionSet set = Globals.instructionSet;
+        for (Instruction inst : set.getInstructionList()) {
+            String name = inst.getName();
+            List<Instruction> matches = set.matchOperator(name);
+            assertEquals(scan(set, name), matches, name);
+            for (String spelling : new String[]{name.toUpperCase(Locale.ROOT), mixedCase(name)}) {
+                assertSame(matches, set.matchOperator(spelling), spelling);
+            }
+            assertUnmodifiable(matches, inst, name);
+        }
+        assertNull(set.matchOperator("notaninstruction"));
+        assertNull(set.matchOperator(""));
+    }
+
+    private static void assertUnmodifiable(List<Instruction> matches, Instruction inst, String name) {
+        assertThrows(UnsupportedOperationException.class, () -> matches.add(inst), name);
+        assertThrows(UnsupportedOperationException.class, () -> matches.set(0, inst), name);
+        assertThrows(UnsupportedOperationException.class, () -> matches.remove(0), name);
+        assertThrows(UnsupportedOperationException.class, matches::clear, name);
+    }
+
+    // Every instruction of the name in list order, as matchOperator found them before the index
+    private static List<Instruction> scan(InstructionSet set, String name) {
+        List<Instruction> found = new ArrayList<>();
+        for (Instruction inst : set.getInstructionList()) {
+            if (inst.getName().equalsIgnoreCase(name)) found.add(inst);
+        }
+        return found;
+    }
+
+    private static String mixedCase(String name) {
+        StringBuilder mixed = new StringBuilder(name);
+        for (int i = 0; i < mixed.length(); i += 2) {
+            mixed.setCharAt(i, Character.toUpperCase(mixed.charAt(i)));
+        }
+        return mixed.toString();
+    }
+}
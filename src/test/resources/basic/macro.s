@@ -0,0 +1,13 @@
+.eqv STEP 5
+.macro add_step(%reg)
+	addi %reg, %reg, STEP
+.end_macro
+.globl main
+.text
+main:
+	# Tests macro expansion, with an .eqv used inside the macro
+	li a0, 32
+	add_step(a0)
+	add_step(a0)
+	li a7, 93
+	ecall
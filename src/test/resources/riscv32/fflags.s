@@ -0,0 +1,917 @@
+.text
+ main:
+
+  # exact add
+  test_2: li gp, 2
+ la a0, test_2_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fadd.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # inexact add
+  test_3: li gp, 3
+ la a0, test_3_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fadd.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # inexact subtract
+  test_4: li gp, 4
+ la a0, test_4_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fsub.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # exact multiply
+  test_5: li gp, 5
+ la a0, test_5_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmul.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # inexact multiply
+  test_6: li gp, 6
+ la a0, test_6_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmul.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # exact divide
+  test_7: li gp, 7
+ la a0, test_7_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fdiv.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # inexact divide
+  test_8: li gp, 8
+ la a0, test_8_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fdiv.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # exact square root
+  test_9: li gp, 9
+ la a0, test_9_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fsqrt.s f3, f0
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # inexact square root
+  test_10: li gp, 10
+ la a0, test_10_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fsqrt.s f3, f0
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # exact fused multiply-add
+  test_11: li gp, 11
+ la a0, test_11_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmadd.s f3, f0, f1, f2
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # inexact fused multiply-add
+  test_12: li gp, 12
+ la a0, test_12_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmadd.s f3, f0, f1, f2
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fused multiply-add rounding a tie to even
+  test_13: li gp, 13
+ la a0, test_13_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmadd.s f3, f0, f1, f2
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fused multiply-subtract leaving only the rounding error, exact
+  test_14: li gp, 14
+ la a0, test_14_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmsub.s f3, f0, f1, f2
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # add overflows
+  test_15: li gp, 15
+ la a0, test_15_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fadd.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 5
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # subtract overflows to -inf
+  test_16: li gp, 16
+ la a0, test_16_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fsub.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 5
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # multiply overflows
+  test_17: li gp, 17
+ la a0, test_17_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmul.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 5
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # divide overflows
+  test_18: li gp, 18
+ la a0, test_18_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fdiv.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 5
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fused product overflows, sum does not
+  test_19: li gp, 19
+ la a0, test_19_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmadd.s f3, f0, f1, f2
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fused multiply-add overflows
+  test_20: li gp, 20
+ la a0, test_20_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmadd.s f3, f0, f1, f2
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 5
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # infinite operand raises nothing
+  test_21: li gp, 21
+ la a0, test_21_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fadd.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # infinite operand raises nothing
+  test_22: li gp, 22
+ la a0, test_22_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmul.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # exact subnormal add
+  test_23: li gp, 23
+ la a0, test_23_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fadd.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # exact subnormal multiply
+  test_24: li gp, 24
+ la a0, test_24_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmul.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # subnormal multiply rounds a tie to +0
+  test_25: li gp, 25
+ la a0, test_25_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmul.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 3
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # inexact subnormal multiply
+  test_26: li gp, 26
+ la a0, test_26_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmul.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 3
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # inexact subnormal divide
+  test_27: li gp, 27
+ la a0, test_27_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fdiv.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 3
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # inexact subnormal fused multiply-add
+  test_28: li gp, 28
+ la a0, test_28_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmadd.s f3, f0, f1, f2
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 3
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # rounds up to the smallest normal but is tiny after rounding
+  test_29: li gp, 29
+ la a0, test_29_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmul.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 3
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # rounds up to the smallest normal and is not tiny after rounding
+  test_30: li gp, 30
+ la a0, test_30_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmul.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fnmadd: -(+0) - +0 = -0
+  test_31: li gp, 31
+ la a0, test_31_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fnmadd.s f3, f0, f1, f2
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fnmadd: -(+0) - -0 = +0
+  test_32: li gp, 32
+ la a0, test_32_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fnmadd.s f3, f0, f1, f2
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fnmadd: exact cancellation gives +0
+  test_33: li gp, 33
+ la a0, test_33_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fnmadd.s f3, f0, f1, f2
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fnmsub: -(+0) + +0 = +0
+  test_34: li gp, 34
+ la a0, test_34_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fnmsub.s f3, f0, f1, f2
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fnmsub: -(+0) + -0 = -0
+  test_35: li gp, 35
+ la a0, test_35_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fnmsub.s f3, f0, f1, f2
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fnmsub: exact cancellation gives +0
+  test_36: li gp, 36
+ la a0, test_36_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fnmsub.s f3, f0, f1, f2
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fmsub: -0 - +0 = -0
+  test_37: li gp, 37
+ la a0, test_37_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmsub.s f3, f0, f1, f2
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # exact add keeps an earlier inexact
+  test_38: li gp, 38
+ la a0, test_38_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ li t0, 1
+ fsflags x0, t0
+ fadd.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # overflow is still raised after an earlier inexact
+  test_39: li gp, 39
+ la a0, test_39_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ li t0, 1
+ fsflags x0, t0
+ fmul.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 5
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # underflow is still raised after an earlier inexact
+  test_40: li gp, 40
+ la a0, test_40_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ li t0, 1
+ fsflags x0, t0
+ fdiv.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 3
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fmin(+0, -0) = -0
+  test_41: li gp, 41
+ la a0, test_41_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmin.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fmin(-0, +0) = -0
+  test_42: li gp, 42
+ la a0, test_42_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmin.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fmax(-0, +0) = +0
+  test_43: li gp, 43
+ la a0, test_43_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmax.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fmax(+0, -0) = +0
+  test_44: li gp, 44
+ la a0, test_44_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmax.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fmin(qNaN, 1) = 1
+  test_45: li gp, 45
+ la a0, test_45_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmin.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fmax(1, qNaN) = 1
+  test_46: li gp, 46
+ la a0, test_46_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmax.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fmin(sNaN, 1) = 1, invalid
+  test_47: li gp, 47
+ la a0, test_47_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmin.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 16
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fmax(1, sNaN) = 1, invalid
+  test_48: li gp, 48
+ la a0, test_48_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmax.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 16
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fmin of two qNaNs is the canonical NaN
+  test_49: li gp, 49
+ la a0, test_49_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmin.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fmax(sNaN, qNaN) is the canonical NaN, invalid
+  test_50: li gp, 50
+ la a0, test_50_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmax.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 16
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  # fmin(qNaN, -0) = -0
+  test_51: li gp, 51
+ la a0, test_51_data 
+ flw f0, 0(a0)
+ flw f1, 4(a0)
+ flw f2, 8(a0)
+ lw a3, 12(a0)
+ fmin.s f3, f0, f1
+ fmv.x.s a0, f3
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne a1, a2, fail
+
+  bne x0, gp, pass
+ fail: li a0, 0
+ li a7, 93
+ ecall
+ pass: li a0, 42
+ li a7, 93
+ ecall
+.data
+ test_2_data: .word 0x40200000
+ .word 0x3f800000
+ .word 0x00000000
+ .word 0x40600000
+ test_3_data: .word 0x3f800000
+ .word 0x30800000
+ .word 0x00000000
+ .word 0x3f800000
+ test_4_data: .word 0x3f800000
+ .word 0x30800000
+ .word 0x00000000
+ .word 0x3f800000
+ test_5_data: .word 0x3fc00000
+ .word 0xc0000000
+ .word 0x00000000
+ .word 0xc0400000
+ test_6_data: .word 0x3f8ccccd
+ .word 0x3f8ccccd
+ .word 0x00000000
+ .word 0x3f9ae148
+ test_7_data: .word 0x3f800000
+ .word 0x40800000
+ .word 0x00000000
+ .word 0x3e800000
+ test_8_data: .word 0x3f800000
+ .word 0x40400000
+ .word 0x00000000
+ .word 0x3eaaaaab
+ test_9_data: .word 0x40100000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x3fc00000
+ test_10_data: .word 0x40000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x3fb504f3
+ test_11_data: .word 0x40000000
+ .word 0x40400000
+ .word 0x3f800000
+ .word 0x40e00000
+ test_12_data: .word 0x3f8ccccd
+ .word 0x3f8ccccd
+ .word 0x3f800000
+ .word 0x400d70a4
+ test_13_data: .word 0x3f800800
+ .word 0x3f800800
+ .word 0x00000000
+ .word 0x3f801000
+ test_14_data: .word 0x3f8ccccd
+ .word 0x3f8ccccd
+ .word 0x3f9ae148
+ .word 0x3275c290
+ test_15_data: .word 0x7f7fffff
+ .word 0x7f7fffff
+ .word 0x00000000
+ .word 0x7f800000
+ test_16_data: .word 0xff7fffff
+ .word 0x7f7fffff
+ .word 0x00000000
+ .word 0xff800000
+ test_17_data: .word 0x7149f2ca
+ .word 0x7149f2ca
+ .word 0x00000000
+ .word 0x7f800000
+ test_18_data: .word 0x7f7fffff
+ .word 0x3f000000
+ .word 0x00000000
+ .word 0x7f800000
+ test_19_data: .word 0x7f7fffff
+ .word 0x40000000
+ .word 0xff7fffff
+ .word 0x7f7fffff
+ test_20_data: .word 0x7f7fffff
+ .word 0x3f800000
+ .word 0x7f7fffff
+ .word 0x7f800000
+ test_21_data: .word 0x7f800000
+ .word 0x3f800000
+ .word 0x00000000
+ .word 0x7f800000
+ test_22_data: .word 0x7f800000
+ .word 0x40000000
+ .word 0x00000000
+ .word 0x7f800000
+ test_23_data: .word 0x00000001
+ .word 0x00000001
+ .word 0x00000000
+ .word 0x00000002
+ test_24_data: .word 0x0d800000
+ .word 0x30800000
+ .word 0x00000000
+ .word 0x00080000
+ test_25_data: .word 0x00000001
+ .word 0x3f000000
+ .word 0x00000000
+ .word 0x00000000
+ test_26_data: .word 0x3f8ccccd
+ .word 0x00000200
+ .word 0x00000000
+ .word 0x00000233
+ test_27_data: .word 0x00800000
+ .word 0x40400000
+ .word 0x00000000
+ .word 0x002aaaab
+ test_28_data: .word 0x3f8ccccd
+ .word 0x00000200
+ .word 0x00000000
+ .word 0x00000233
+ test_29_data: .word 0x3f7fffff
+ .word 0x00800000
+ .word 0x00000000
+ .word 0x00800000
+ test_30_data: .word 0x20000001
+ .word 0x1ffffffe
+ .word 0x00000000
+ .word 0x00800000
+ test_31_data: .word 0x00000000
+ .word 0x3f800000
+ .word 0x00000000
+ .word 0x80000000
+ test_32_data: .word 0x00000000
+ .word 0x3f800000
+ .word 0x80000000
+ .word 0x00000000
+ test_33_data: .word 0x3f800000
+ .word 0x3f800000
+ .word 0xbf800000
+ .word 0x00000000
+ test_34_data: .word 0x00000000
+ .word 0x3f800000
+ .word 0x00000000
+ .word 0x00000000
+ test_35_data: .word 0x00000000
+ .word 0x3f800000
+ .word 0x80000000
+ .word 0x80000000
+ test_36_data: .word 0x3f800000
+ .word 0x3f800000
+ .word 0x3f800000
+ .word 0x00000000
+ test_37_data: .word 0x80000000
+ .word 0x3f800000
+ .word 0x00000000
+ .word 0x80000000
+ test_38_data: .word 0x40200000
+ .word 0x3f800000
+ .word 0x00000000
+ .word 0x40600000
+ test_39_data: .word 0x7149f2ca
+ .word 0x7149f2ca
+ .word 0x00000000
+ .word 0x7f800000
+ test_40_data: .word 0x00800000
+ .word 0x40400000
+ .word 0x00000000
+ .word 0x002aaaab
+ test_41_data: .word 0x00000000
+ .word 0x80000000
+ .word 0x00000000
+ .word 0x80000000
+ test_42_data: .word 0x80000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x80000000
+ test_43_data: .word 0x80000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ test_44_data: .word 0x00000000
+ .word 0x80000000
+ .word 0x00000000
+ .word 0x00000000
+ test_45_data: .word 0x7fc00000
+ .word 0x3f800000
+ .word 0x00000000
+ .word 0x3f800000
+ test_46_data: .word 0x3f800000
+ .word 0x7fc00000
+ .word 0x00000000
+ .word 0x3f800000
+ test_47_data: .word 0x7f800001
+ .word 0x3f800000
+ .word 0x00000000
+ .word 0x3f800000
+ test_48_data: .word 0x3f800000
+ .word 0x7f800001
+ .word 0x00000000
+ .word 0x3f800000
+ test_49_data: .word 0x7fc00000
+ .word 0x7fc00005
+ .word 0x00000000
+ .word 0x7fc00000
+ test_50_data: .word 0x7f800001
+ .word 0x7fc00000
+ .word 0x00000000
+ .word 0x7fc00000
+ test_51_data: .word 0x7fc00000
+ .word 0x80000000
+ .word 0x00000000
+ .word 0x80000000
@@ -0,0 +1,1240 @@
+.text
+ main:
+
+  # exact add
+  test_2: li gp, 2
+ la a0, test_2_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fadd.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # inexact add
+  test_3: li gp, 3
+ la a0, test_3_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fadd.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # inexact subtract
+  test_4: li gp, 4
+ la a0, test_4_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fsub.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # exact multiply
+  test_5: li gp, 5
+ la a0, test_5_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmul.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # inexact multiply
+  test_6: li gp, 6
+ la a0, test_6_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmul.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # exact divide
+  test_7: li gp, 7
+ la a0, test_7_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fdiv.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # inexact divide
+  test_8: li gp, 8
+ la a0, test_8_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fdiv.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # exact square root
+  test_9: li gp, 9
+ la a0, test_9_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fsqrt.d f3, f0
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # inexact square root
+  test_10: li gp, 10
+ la a0, test_10_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fsqrt.d f3, f0
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # exact fused multiply-add
+  test_11: li gp, 11
+ la a0, test_11_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmadd.d f3, f0, f1, f2
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # inexact fused multiply-add
+  test_12: li gp, 12
+ la a0, test_12_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmadd.d f3, f0, f1, f2
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fused multiply-add rounding a tie to even
+  test_13: li gp, 13
+ la a0, test_13_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmadd.d f3, f0, f1, f2
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # add overflows
+  test_14: li gp, 14
+ la a0, test_14_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fadd.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 5
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # subtract overflows to -inf
+  test_15: li gp, 15
+ la a0, test_15_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fsub.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 5
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # multiply overflows
+  test_16: li gp, 16
+ la a0, test_16_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmul.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 5
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # divide overflows
+  test_17: li gp, 17
+ la a0, test_17_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fdiv.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 5
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fused product overflows, sum does not
+  test_18: li gp, 18
+ la a0, test_18_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmadd.d f3, f0, f1, f2
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fused multiply-add overflows
+  test_19: li gp, 19
+ la a0, test_19_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmadd.d f3, f0, f1, f2
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 5
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # infinite operand raises nothing
+  test_20: li gp, 20
+ la a0, test_20_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fadd.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # exact subnormal add
+  test_21: li gp, 21
+ la a0, test_21_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fadd.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # exact subnormal multiply
+  test_22: li gp, 22
+ la a0, test_22_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmul.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # subnormal multiply rounds a tie to +0
+  test_23: li gp, 23
+ la a0, test_23_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmul.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 3
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # inexact subnormal multiply
+  test_24: li gp, 24
+ la a0, test_24_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmul.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 3
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # inexact subnormal divide
+  test_25: li gp, 25
+ la a0, test_25_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fdiv.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 3
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # inexact subnormal fused multiply-add
+  test_26: li gp, 26
+ la a0, test_26_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmadd.d f3, f0, f1, f2
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 3
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # rounds up to the smallest normal but is tiny after rounding
+  test_27: li gp, 27
+ la a0, test_27_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmul.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 3
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # rounds up to the smallest normal and is not tiny after rounding
+  test_28: li gp, 28
+ la a0, test_28_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmul.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fnmadd: -(+0) - +0 = -0
+  test_29: li gp, 29
+ la a0, test_29_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fnmadd.d f3, f0, f1, f2
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fnmadd: -(+0) - -0 = +0
+  test_30: li gp, 30
+ la a0, test_30_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fnmadd.d f3, f0, f1, f2
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fnmadd: exact cancellation gives +0
+  test_31: li gp, 31
+ la a0, test_31_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fnmadd.d f3, f0, f1, f2
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fnmsub: -(+0) + +0 = +0
+  test_32: li gp, 32
+ la a0, test_32_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fnmsub.d f3, f0, f1, f2
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fnmsub: -(+0) + -0 = -0
+  test_33: li gp, 33
+ la a0, test_33_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fnmsub.d f3, f0, f1, f2
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fnmsub: exact cancellation gives +0
+  test_34: li gp, 34
+ la a0, test_34_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fnmsub.d f3, f0, f1, f2
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # exact add keeps an earlier inexact
+  test_35: li gp, 35
+ la a0, test_35_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ li t0, 1
+ fsflags x0, t0
+ fadd.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 1
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # overflow is still raised after an earlier inexact
+  test_36: li gp, 36
+ la a0, test_36_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ li t0, 1
+ fsflags x0, t0
+ fmul.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 5
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # underflow is still raised after an earlier inexact
+  test_37: li gp, 37
+ la a0, test_37_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ li t0, 1
+ fsflags x0, t0
+ fdiv.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 3
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fmin(+0, -0) = -0
+  test_38: li gp, 38
+ la a0, test_38_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmin.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fmin(-0, +0) = -0
+  test_39: li gp, 39
+ la a0, test_39_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmin.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fmax(-0, +0) = +0
+  test_40: li gp, 40
+ la a0, test_40_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmax.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fmax(+0, -0) = +0
+  test_41: li gp, 41
+ la a0, test_41_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmax.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fmin(qNaN, 1) = 1
+  test_42: li gp, 42
+ la a0, test_42_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmin.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fmax(1, qNaN) = 1
+  test_43: li gp, 43
+ la a0, test_43_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmax.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fmin(sNaN, 1) = 1, invalid
+  test_44: li gp, 44
+ la a0, test_44_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmin.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 16
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fmax(1, sNaN) = 1, invalid
+  test_45: li gp, 45
+ la a0, test_45_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmax.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 16
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fmin of two qNaNs is the canonical NaN
+  test_46: li gp, 46
+ la a0, test_46_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmin.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fmax(sNaN, qNaN) is the canonical NaN, invalid
+  test_47: li gp, 47
+ la a0, test_47_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmax.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 16
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  # fmin(qNaN, -0) = -0
+  test_48: li gp, 48
+ la a0, test_48_data 
+ fld f0, 0(a0)
+ fld f1, 8(a0)
+ fld f2, 16(a0)
+ lw a3, 24(a0)
+ lw t1, 28(a0)
+ fmin.d f3, f0, f1
+ fsd f3, 0(a0)
+ lw t2, 4(a0)
+ lw a0, 0(a0)
+ fsflags a1, x0
+ li a2, 0
+ bne a0, a3, fail
+ bne t1, t2, fail
+ bne a1, a2, fail
+
+  bne x0, gp, pass
+ fail: li a0, 0
+ li a7, 93
+ ecall
+ pass: li a0, 42
+ li a7, 93
+ ecall
+.data
+ .align 3
+ test_2_data: .word 0x00000000
+ .word 0x40040000
+ .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x400c0000
+ test_3_data: .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x3c300000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x3ff00000
+ test_4_data: .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x3c300000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x3ff00000
+ test_5_data: .word 0x00000000
+ .word 0x3ff80000
+ .word 0x00000000
+ .word 0xc0000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0xc0080000
+ test_6_data: .word 0x9999999a
+ .word 0x3ff19999
+ .word 0x9999999a
+ .word 0x3ff19999
+ .word 0x00000000
+ .word 0x00000000
+ .word 0xf5c28f5d
+ .word 0x3ff35c28
+ test_7_data: .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x40100000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x3fd00000
+ test_8_data: .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x40080000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x55555555
+ .word 0x3fd55555
+ test_9_data: .word 0x00000000
+ .word 0x40020000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x3ff80000
+ test_10_data: .word 0x00000000
+ .word 0x40000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x667f3bcd
+ .word 0x3ff6a09e
+ test_11_data: .word 0x00000000
+ .word 0x40000000
+ .word 0x00000000
+ .word 0x40080000
+ .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x401c0000
+ test_12_data: .word 0x9999999a
+ .word 0x3ff19999
+ .word 0x9999999a
+ .word 0x3ff19999
+ .word 0x00000000
+ .word 0x3ff00000
+ .word 0x7ae147af
+ .word 0x4001ae14
+ test_13_data: .word 0x04000000
+ .word 0x3ff00000
+ .word 0x02000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x06000000
+ .word 0x3ff00000
+ test_14_data: .word 0xffffffff
+ .word 0x7fefffff
+ .word 0xffffffff
+ .word 0x7fefffff
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x7ff00000
+ test_15_data: .word 0xffffffff
+ .word 0xffefffff
+ .word 0xffffffff
+ .word 0x7fefffff
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0xfff00000
+ test_16_data: .word 0xd7d7625a
+ .word 0x6974e718
+ .word 0xd7d7625a
+ .word 0x6974e718
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x7ff00000
+ test_17_data: .word 0xffffffff
+ .word 0x7fefffff
+ .word 0x00000000
+ .word 0x3fe00000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x7ff00000
+ test_18_data: .word 0xffffffff
+ .word 0x7fefffff
+ .word 0x00000000
+ .word 0x40000000
+ .word 0xffffffff
+ .word 0xffefffff
+ .word 0xffffffff
+ .word 0x7fefffff
+ test_19_data: .word 0xffffffff
+ .word 0x7fefffff
+ .word 0x00000000
+ .word 0x3ff00000
+ .word 0xffffffff
+ .word 0x7fefffff
+ .word 0x00000000
+ .word 0x7ff00000
+ test_20_data: .word 0x00000000
+ .word 0x7ff00000
+ .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x7ff00000
+ test_21_data: .word 0x00000001
+ .word 0x00000000
+ .word 0x00000001
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000002
+ .word 0x00000000
+ test_22_data: .word 0x00000000
+ .word 0x01700000
+ .word 0x00000000
+ .word 0x3e100000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00001000
+ test_23_data: .word 0x00000001
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x3fe00000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ test_24_data: .word 0x9999999a
+ .word 0x3ff19999
+ .word 0x00004000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00004666
+ .word 0x00000000
+ test_25_data: .word 0x00000000
+ .word 0x00100000
+ .word 0x00000000
+ .word 0x40080000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x55555555
+ .word 0x00055555
+ test_26_data: .word 0x9999999a
+ .word 0x3ff19999
+ .word 0x00004000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00004666
+ .word 0x00000000
+ test_27_data: .word 0xffffffff
+ .word 0x3fefffff
+ .word 0x00000000
+ .word 0x00100000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00100000
+ test_28_data: .word 0x00000001
+ .word 0x20000000
+ .word 0xfffffffe
+ .word 0x1fffffff
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00100000
+ test_29_data: .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x80000000
+ test_30_data: .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x80000000
+ .word 0x00000000
+ .word 0x00000000
+ test_31_data: .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0xbff00000
+ .word 0x00000000
+ .word 0x00000000
+ test_32_data: .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ test_33_data: .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x80000000
+ .word 0x00000000
+ .word 0x80000000
+ test_34_data: .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x00000000
+ test_35_data: .word 0x00000000
+ .word 0x40040000
+ .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x400c0000
+ test_36_data: .word 0xd7d7625a
+ .word 0x6974e718
+ .word 0xd7d7625a
+ .word 0x6974e718
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x7ff00000
+ test_37_data: .word 0x00000000
+ .word 0x00100000
+ .word 0x00000000
+ .word 0x40080000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x55555555
+ .word 0x00055555
+ test_38_data: .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x80000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x80000000
+ test_39_data: .word 0x00000000
+ .word 0x80000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x80000000
+ test_40_data: .word 0x00000000
+ .word 0x80000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ test_41_data: .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x80000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ test_42_data: .word 0x00000000
+ .word 0x7ff80000
+ .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x3ff00000
+ test_43_data: .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x7ff80000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x3ff00000
+ test_44_data: .word 0x00000001
+ .word 0x7ff00000
+ .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x3ff00000
+ test_45_data: .word 0x00000000
+ .word 0x3ff00000
+ .word 0x00000001
+ .word 0x7ff00000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x3ff00000
+ test_46_data: .word 0x00000000
+ .word 0x7ff80000
+ .word 0x00000005
+ .word 0x7ff80000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x7ff80000
+ test_47_data: .word 0x00000001
+ .word 0x7ff00000
+ .word 0x00000000
+ .word 0x7ff80000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x7ff80000
+ test_48_data: .word 0x00000000
+ .word 0x7ff80000
+ .word 0x00000000
+ .word 0x80000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x00000000
+ .word 0x80000000